@@ -0,0 +1,190 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DatabaseBenchmarks.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.benchmarks;
+
+import com.sun.electric.database.CellTree;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.IdReader;
+import com.sun.electric.database.id.IdWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of Snapshot creation and of Snapshot transfer by IdWriter/IdReader.
+ * The edit is a move of one row instance in the array cell of a SyntheticDesign.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseBenchmarks {
+
+    @Param({"100"})
+    public int transistorsPerRow;
+    @Param({"10", "100"})
+    public int arraySize;
+
+    private SyntheticDesign design;
+    private CellTree[] editedTrees;
+    private Snapshot editedSnapshot;
+    private int numInstances;
+    private int editCount;
+    /** full Snapshot as written for an empty IdManager */
+    private byte[] snapshotBytes;
+    /**
+     * IdWriter and IdReader keep tables of the TextDescriptors and Orientations sent so far,
+     * so the diff is written and read by a writer and a reader which already passed the unedited Snapshot.
+     */
+    private IdWriter diffWriter;
+    private ByteArrayOutputStream diffStream;
+    private IdReader diffReader;
+    private ReplayStream replayStream;
+    private Snapshot mirrorSnapshot;
+    /** diff from the unedited to the edited Snapshot */
+    private byte[] diffBytes;
+
+    /**
+     * Input stream which can be refilled with the next message of the writer.
+     */
+    private static class ReplayStream extends ByteArrayInputStream {
+
+        private ReplayStream() {
+            super(new byte[0]);
+        }
+
+        private void replay(byte[] bytes) {
+            buf = bytes;
+            pos = 0;
+            count = bytes.length;
+            mark = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        design = new SyntheticDesign(transistorsPerRow, arraySize, arraySize);
+        numInstances = arraySize * arraySize;
+        Snapshot snapshot = design.snapshot;
+        editedTrees = design.getCellTrees();
+        editedTrees[design.arrayCellId.cellIndex] = design.moveRowInstance(0, 1);
+        editedSnapshot = snapshot.with(null, null, editedTrees, null);
+
+        snapshotBytes = writeSnapshot();
+
+        diffStream = new ByteArrayOutputStream();
+        diffWriter = new IdWriter(design.idManager, new DataOutputStream(diffStream));
+        replayStream = new ReplayStream();
+        IdManager mirrorIdManager = new IdManager();
+        diffReader = new IdReader(new DataInputStream(replayStream), mirrorIdManager);
+        snapshot.writeDiffs(diffWriter, design.idManager.getInitialSnapshot());
+        diffWriter.flush();
+        replayStream.replay(diffStream.toByteArray());
+        mirrorSnapshot = Snapshot.readSnapshot(diffReader, mirrorIdManager.getInitialSnapshot());
+        // the first diff may extend the tables, the next ones repeat it exactly
+        replayStream.replay(writeSnapshotDiff());
+        Snapshot.readSnapshot(diffReader, mirrorSnapshot);
+        diffBytes = writeSnapshotDiff();
+    }
+
+    /**
+     * Snapshot.with of prepared CellTrees.
+     */
+    @Benchmark
+    public Snapshot snapshotWith() {
+        return design.snapshot.with(null, null, editedTrees, null);
+    }
+
+    /**
+     * Snapshot.with after a fresh edit, including the new CellBackup and CellTree of the edited cell.
+     */
+    @Benchmark
+    public Snapshot snapshotWithEdit() {
+        CellTree[] cellTrees = design.getCellTrees();
+        int nodeId = editCount++ % numInstances;
+        cellTrees[design.arrayCellId.cellIndex] = design.moveRowInstance(nodeId, 1);
+        return design.snapshot.with(null, null, cellTrees, null);
+    }
+
+    /**
+     * Writes the whole design for a client with an empty IdManager.
+     */
+    @Benchmark
+    public byte[] writeSnapshot() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IdWriter writer = new IdWriter(design.idManager, new DataOutputStream(out));
+        design.snapshot.writeDiffs(writer, design.idManager.getInitialSnapshot());
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the whole design into an empty IdManager.
+     */
+    @Benchmark
+    public Snapshot readSnapshot() throws IOException {
+        IdManager idManager = new IdManager();
+        IdReader reader = new IdReader(new DataInputStream(new ByteArrayInputStream(snapshotBytes)), idManager);
+        return Snapshot.readSnapshot(reader, idManager.getInitialSnapshot());
+    }
+
+    /**
+     * Writes the edit for a client which has the unedited Snapshot.
+     */
+    @Benchmark
+    public byte[] writeSnapshotDiff() throws IOException {
+        diffStream.reset();
+        editedSnapshot.writeDiffs(diffWriter, design.snapshot);
+        diffWriter.flush();
+        return diffStream.toByteArray();
+    }
+
+    /**
+     * Reads the edit into a client which has the unedited Snapshot.
+     */
+    @Benchmark
+    public Snapshot readSnapshotDiff() throws IOException {
+        replayStream.replay(diffBytes);
+        return Snapshot.readSnapshot(diffReader, mirrorSnapshot);
+    }
+}
@@ -0,0 +1,252 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GeometryBenchmarks.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.benchmarks;
+
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.geometry.PolyBase;
+import com.sun.electric.database.geometry.PolyMerge;
+import com.sun.electric.database.geometry.bool.DeltaMerge;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.RTBounds;
+import com.sun.electric.database.topology.RTNode;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.util.math.DBMath;
+
+import java.awt.geom.Rectangle2D;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of shape generation, spatial search and merging
+ * on the flattened geometry of a SyntheticDesign.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeometryBenchmarks {
+
+    @Param({"100"})
+    public int transistorsPerRow;
+    @Param({"5", "20"})
+    public int arraySize;
+
+    /** number of search windows per RTNode benchmark call */
+    private static final int NUM_WINDOWS = 1000;
+
+    private SyntheticDesign design;
+    private NodeInst[] rowNodes;
+    /** flattened shapes in lambda units */
+    private List<PolyBase> shapes;
+    /** flattened shapes in grid units, which have integer coordinates */
+    private List<PolyBase> gridShapes;
+    /** shapes of one row instance in grid units */
+    private List<PolyBase> rowGridShapes;
+    private Layer[] layers;
+    private RTNode root;
+    private Rectangle2D[] windows;
+    /** grid coordinates (lx, ly, hx, hy) of the Metal-1 rectangles */
+    private int[] metal1Rects;
+
+    private static class Box implements RTBounds {
+
+        private final Rectangle2D bounds;
+
+        private Box(Rectangle2D bounds) {
+            this.bounds = bounds;
+        }
+
+        public Rectangle2D getBounds() {
+            return bounds;
+        }
+    }
+
+    /** DataOutputStream target which discards the output of DeltaMerge */
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        design = new SyntheticDesign(transistorsPerRow, arraySize, arraySize);
+        Cell rowCell = design.newDatabase().getCell(design.rowCellId);
+        List<NodeInst> nodes = new ArrayList<NodeInst>();
+        for (Iterator<NodeInst> it = rowCell.getNodes(); it.hasNext();) {
+            nodes.add(it.next());
+        }
+        rowNodes = nodes.toArray(new NodeInst[nodes.size()]);
+
+        shapes = design.getFlatShapes(false);
+        gridShapes = design.getFlatShapes(true);
+        rowGridShapes = gridShapes.subList(0, gridShapes.size() / (arraySize * arraySize));
+        Set<Layer> layerSet = new LinkedHashSet<Layer>();
+        root = RTNode.makeTopLevel();
+        Rectangle2D extent = null;
+        int[] rects = new int[16];
+        int numRects = 0;
+        for (PolyBase poly : shapes) {
+            layerSet.add(poly.getLayer());
+            Rectangle2D bounds = poly.getBounds2D();
+            root = RTNode.linkGeom(null, root, new Box(bounds));
+            if (extent == null) {
+                extent = (Rectangle2D) bounds.clone();
+            } else {
+                extent.add(bounds);
+            }
+            if (poly.getLayer().getName().equals("Metal-1") && poly.getBox() != null) {
+                if (numRects * 4 == rects.length) {
+                    int[] newRects = new int[rects.length * 2];
+                    System.arraycopy(rects, 0, newRects, 0, rects.length);
+                    rects = newRects;
+                }
+                rects[numRects * 4 + 0] = (int) DBMath.lambdaToGrid(bounds.getMinX());
+                rects[numRects * 4 + 1] = (int) DBMath.lambdaToGrid(bounds.getMinY());
+                rects[numRects * 4 + 2] = (int) DBMath.lambdaToGrid(bounds.getMaxX());
+                rects[numRects * 4 + 3] = (int) DBMath.lambdaToGrid(bounds.getMaxY());
+                numRects++;
+            }
+        }
+        layers = layerSet.toArray(new Layer[layerSet.size()]);
+        metal1Rects = new int[numRects * 4];
+        System.arraycopy(rects, 0, metal1Rects, 0, metal1Rects.length);
+
+        // windows about the size of one transistor with its contacts
+        Random random = new Random(0);
+        windows = new Rectangle2D[NUM_WINDOWS];
+        double size = SyntheticDesign.PITCH * 2;
+        for (int i = 0; i < windows.length; i++) {
+            double x = extent.getMinX() + random.nextDouble() * (extent.getWidth() - size);
+            double y = extent.getMinY() + random.nextDouble() * (extent.getHeight() - size);
+            windows[i] = new Rectangle2D.Double(x, y, size, size);
+        }
+    }
+
+    /**
+     * Technology.getShapeOfNode of every node in the row cell.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int getShapeOfNode() {
+        int numPolys = 0;
+        for (NodeInst ni : rowNodes) {
+            Poly[] polys = design.tech.getShapeOfNode(ni);
+            numPolys += polys.length;
+        }
+        return numPolys;
+    }
+
+    /**
+     * RTNode.Search of small windows in the R-tree of the flattened shapes.
+     */
+    @Benchmark
+    public int rtreeSearch() {
+        int numFound = 0;
+        for (Rectangle2D window : windows) {
+            for (RTNode.Search sea = new RTNode.Search(window, root, true); sea.hasNext();) {
+                sea.next();
+                numFound++;
+            }
+        }
+        return numFound;
+    }
+
+    /**
+     * PolyMerge of the shapes of one row instance with java.awt.geom.Area.
+     * Merging the whole array with Area takes minutes.
+     */
+    @Benchmark
+    public int polyMergeAreaRow() {
+        return polyMerge(new PolyMerge(false), rowGridShapes);
+    }
+
+    /**
+     * PolyMerge of the shapes of one row instance by scanline.
+     */
+    @Benchmark
+    public int polyMergeScanlineRow() {
+        return polyMerge(new PolyMerge(true), rowGridShapes);
+    }
+
+    /**
+     * PolyMerge of the flattened shapes by scanline.
+     */
+    @Benchmark
+    public int polyMergeScanline() {
+        return polyMerge(new PolyMerge(true), gridShapes);
+    }
+
+    private int polyMerge(PolyMerge merge, List<PolyBase> polys) {
+        for (PolyBase poly : polys) {
+            merge.addPolygon(poly.getLayer(), poly);
+        }
+        int numPolys = 0;
+        for (Layer layer : layers) {
+            numPolys += merge.getMergedPoints(layer, true).size();
+        }
+        return numPolys;
+    }
+
+    /**
+     * DeltaMerge.loop over the flattened Metal-1 rectangles.
+     * The rectangles are put into a new DeltaMerge on each call, so loop sorts unsorted points as in a real merge.
+     */
+    @Benchmark
+    public int deltaMergeLoop() throws IOException {
+        DeltaMerge dm = new DeltaMerge();
+        for (int i = 0; i < metal1Rects.length; i += 4) {
+            dm.put(metal1Rects[i + 0], metal1Rects[i + 1], metal1Rects[i + 2], metal1Rects[i + 3]);
+        }
+        return dm.loop(new DataOutputStream(NULL_STREAM));
+    }
+}
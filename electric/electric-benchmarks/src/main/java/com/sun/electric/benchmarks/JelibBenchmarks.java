@@ -0,0 +1,98 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibBenchmarks.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.benchmarks;
+
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.input.JelibParser;
+import com.sun.electric.tool.user.ErrorLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of JelibParser on a SyntheticDesign saved in JELIB format.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JelibBenchmarks {
+
+    @Param({"1000"})
+    public int transistorsPerRow;
+    @Param({"10", "100"})
+    public int arraySize;
+    /** number of threads which parse cell contents, 0 for all available processors */
+    @Param({"1", "0"})
+    public int numThreads;
+
+    private File dir;
+    private URL fileURL;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticDesign design = new SyntheticDesign(transistorsPerRow, arraySize, arraySize);
+        dir = File.createTempFile("electric-benchmarks", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        fileURL = design.writeJelib(dir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Parses the library into a fresh IdManager.
+     */
+    @Benchmark
+    public JelibParser parse() throws IOException {
+        LibId libId = new IdManager().newLibId("bench");
+        return JelibParser.parse(libId, fileURL, FileType.JELIB, false, ErrorLogger.newInstance("JELIB benchmark"), numThreads);
+    }
+}
@@ -0,0 +1,289 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SyntheticDesign.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.benchmarks;
+
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.CellTree;
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableCell;
+import com.sun.electric.database.ImmutableExport;
+import com.sun.electric.database.ImmutableLibrary;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.LibraryBackup;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.geometry.PolyBase;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.id.CellUsage;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.database.text.CellName;
+import com.sun.electric.database.text.Name;
+import com.sun.electric.database.text.Setting;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.TechFactory;
+import com.sun.electric.technology.TechPool;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.technology.technologies.Generic;
+import com.sun.electric.tool.ToolSettings;
+import com.sun.electric.tool.io.output.Output;
+import com.sun.electric.util.math.DBMath;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Synthetic MoCMOS design of configurable size for benchmarks.
+ * The "row" cell has a row of N-Transistors between Metal-1-N-Active contacts
+ * which are chained by Metal-1 arcs. The "array" cell places a grid of "row" instances.
+ * The design is built directly as a Snapshot, so neither Jobs nor a user interface are needed.
+ */
+public class SyntheticDesign {
+
+    /** distance between neighbour transistors in a row (lambda) */
+    public static final int PITCH = 10;
+    /** distance between neighbour rows of the array (lambda) */
+    public static final int ROW_PITCH = 20;
+
+    public final int transistorsPerRow;
+    public final int numRows;
+    public final int numColumns;
+    public final IdManager idManager;
+    public final Environment environment;
+    public final TechPool techPool;
+    public final Technology tech;
+    public final LibId libId;
+    public final CellId rowCellId;
+    public final CellId arrayCellId;
+    public final CellTree rowTree;
+    public final CellTree arrayTree;
+    public final Snapshot snapshot;
+
+    /**
+     * Builds the design.
+     * @param transistorsPerRow number of transistors in the row cell
+     * @param numRows number of rows in the array cell
+     * @param numColumns number of row instances in each row of the array cell
+     */
+    public SyntheticDesign(int transistorsPerRow, int numRows, int numColumns) {
+        this.transistorsPerRow = transistorsPerRow;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        idManager = new IdManager();
+        Generic generic = Generic.newInstance(idManager);
+        tech = TechFactory.getTechFactory("mocmos").newInstance(generic);
+        environment = idManager.getInitialEnvironment()
+                .withToolSettings((Setting.RootGroup) ToolSettings.getToolSettings(""))
+                .addTech(generic).addTech(tech);
+        techPool = environment.techPool;
+        libId = idManager.newLibId("bench");
+
+        rowCellId = libId.newCellId(CellName.parseName("row;1{lay}"));
+        ImmutableNodeInst[] rowNodes = makeRow();
+        rowTree = makeTree(rowCellId, rowNodes, makeRowArcs(rowNodes), CellTree.NULL_ARRAY);
+
+        arrayCellId = libId.newCellId(CellName.parseName("array;1{lay}"));
+        CellUsage u = arrayCellId.getUsageIn(rowCellId);
+        CellTree[] subTrees = new CellTree[u.indexInParent + 1];
+        subTrees[u.indexInParent] = rowTree;
+        arrayTree = makeTree(arrayCellId, makeArray(), new ImmutableArcInst[0], subTrees);
+
+        LibraryBackup libBackup = new LibraryBackup(ImmutableLibrary.newInstance(libId, null, null), true, new LibId[0]);
+        snapshot = idManager.getInitialSnapshot().with(null, environment, new CellTree[]{rowTree, arrayTree}, new LibraryBackup[]{libBackup});
+    }
+
+    private CellTree makeTree(CellId cellId, ImmutableNodeInst[] nodes, ImmutableArcInst[] arcs, CellTree[] subTrees) {
+        ImmutableCell c = ImmutableCell.newInstance(cellId, 0).withTechId(tech.getId());
+        CellBackup backup = CellBackup.newInstance(c, techPool).with(c, nodes, arcs, new ImmutableExport[0], techPool);
+        return CellTree.newInstance(c, techPool).with(backup, subTrees, techPool);
+    }
+
+    /**
+     * Contacts come before transistors to keep the nodes sorted by name.
+     */
+    private ImmutableNodeInst[] makeRow() {
+        PrimitiveNode contact = tech.findNodeProto("Metal-1-N-Active-Con");
+        PrimitiveNode transistor = tech.findNodeProto("N-Transistor");
+        ImmutableNodeInst[] nodes = new ImmutableNodeInst[transistorsPerRow * 2 + 1];
+        int nodeId = 0;
+        for (int i = 0; i <= transistorsPerRow; i++) {
+            nodes[nodeId] = ImmutableNodeInst.newInstance(nodeId, contact.getId(), Name.findName("Metal-1-N-Active-Con@" + i), TextDescriptor.EMPTY,
+                    Orientation.IDENT, EPoint.fromLambda(i * PITCH, 0), EPoint.ORIGIN, 0, 0, null);
+            nodeId++;
+        }
+        for (int i = 0; i < transistorsPerRow; i++) {
+            nodes[nodeId] = ImmutableNodeInst.newInstance(nodeId, transistor.getId(), Name.findName("N-Transistor@" + i), TextDescriptor.EMPTY,
+                    Orientation.IDENT, EPoint.fromLambda(i * PITCH + PITCH / 2, 0), EPoint.ORIGIN, 0, 0, null);
+            nodeId++;
+        }
+        return nodes;
+    }
+
+    private ImmutableArcInst[] makeRowArcs(ImmutableNodeInst[] nodes) {
+        ArcProto metal1 = tech.findArcProto("Metal-1");
+        long extend = metal1.getFactoryDefaultInst().getGridExtendOverMin();
+        PrimitiveNode contact = tech.findNodeProto("Metal-1-N-Active-Con");
+        ImmutableArcInst[] arcs = new ImmutableArcInst[transistorsPerRow];
+        for (int i = 0; i < transistorsPerRow; i++) {
+            ImmutableNodeInst tail = nodes[i];
+            ImmutableNodeInst head = nodes[i + 1];
+            arcs[i] = ImmutableArcInst.newInstance(i, metal1.getId(), Name.findName("net@" + i), TextDescriptor.EMPTY,
+                    tail.nodeId, contact.getPort(0).getId(), tail.anchor,
+                    head.nodeId, contact.getPort(0).getId(), head.anchor,
+                    extend, 0, ImmutableArcInst.FACTORY_DEFAULT_FLAGS);
+        }
+        return arcs;
+    }
+
+    private ImmutableNodeInst[] makeArray() {
+        ImmutableNodeInst[] nodes = new ImmutableNodeInst[numRows * numColumns];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numColumns; j++) {
+                int nodeId = i * numColumns + j;
+                nodes[nodeId] = ImmutableNodeInst.newInstance(nodeId, rowCellId, Name.findName("row@" + nodeId), TextDescriptor.EMPTY,
+                        Orientation.IDENT, getRowAnchor(i, j), EPoint.ORIGIN, 0, 0, TextDescriptor.EMPTY);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the anchor of a row instance in the array cell.
+     * @param i row of the array
+     * @param j column of the array
+     * @return the anchor in the array cell
+     */
+    public EPoint getRowAnchor(int i, int j) {
+        return EPoint.fromLambda(j * (transistorsPerRow + 1) * PITCH, i * ROW_PITCH);
+    }
+
+    /**
+     * Returns the CellTrees of the snapshot, indexed by cellIndex, to be edited.
+     * @return a new array of CellTrees
+     */
+    public CellTree[] getCellTrees() {
+        CellTree[] cellTrees = new CellTree[snapshot.getNumCells()];
+        for (int cellIndex = 0; cellIndex < cellTrees.length; cellIndex++) {
+            cellTrees[cellIndex] = snapshot.getCellTree(cellIndex);
+        }
+        return cellTrees;
+    }
+
+    /**
+     * Returns the array cell with one row instance moved.
+     * @param nodeId the row instance to move
+     * @param dx the displacement in lambda
+     * @return the CellTree of the modified array cell
+     */
+    public CellTree moveRowInstance(int nodeId, double dx) {
+        CellBackup backup = arrayTree.top;
+        ImmutableNodeInst[] nodes = backup.cellRevision.nodes.toArray(new ImmutableNodeInst[backup.cellRevision.nodes.size()]);
+        ImmutableNodeInst n = nodes[nodeId];
+        nodes[nodeId] = n.withAnchor(EPoint.fromLambda(n.anchor.getLambdaX() + dx, n.anchor.getLambdaY()));
+        backup = backup.with(backup.cellRevision.d, nodes, null, null, techPool);
+        return arrayTree.with(backup, arrayTree.getSubTrees(), techPool);
+    }
+
+    /**
+     * Makes a database with this design.
+     * @return a new EDatabase
+     */
+    public EDatabase newDatabase() {
+        return new EDatabase(snapshot, "bench");
+    }
+
+    /**
+     * Saves the library of this design in JELIB format.
+     * @param dir the directory of the library file
+     * @return URL of the library file
+     * @throws IOException if the library can't be written
+     */
+    public URL writeJelib(File dir) throws IOException {
+        // JELIB writer looks for project settings in the environment of the current thread
+        Environment oldEnvironment = Environment.setThreadEnvironment(environment);
+        try {
+            if (Output.writePanicSnapshot(snapshot, dir, false)) {
+                throw new IOException("Can't write library to " + dir);
+            }
+        } finally {
+            Environment.setThreadEnvironment(oldEnvironment);
+        }
+        return new File(dir, libId.libName + ".jelib").toURI().toURL();
+    }
+
+    /**
+     * Returns the flattened shapes of the array cell, as they are computed by Technology.getShapeOfNode
+     * and Technology.getShapeOfArc on the row cell.
+     * @param inGrid true to return the shapes in grid units, false in lambda units
+     * @return the shapes
+     */
+    public List<PolyBase> getFlatShapes(boolean inGrid) {
+        double scale = inGrid ? DBMath.GRID : 1;
+        Cell rowCell = newDatabase().getCell(rowCellId);
+        List<Poly> rowShapes = new ArrayList<Poly>();
+        for (Iterator<NodeInst> it = rowCell.getNodes(); it.hasNext();) {
+            for (Poly poly : tech.getShapeOfNode(it.next())) {
+                rowShapes.add(poly);
+            }
+        }
+        for (Iterator<ArcInst> it = rowCell.getArcs(); it.hasNext();) {
+            for (Poly poly : tech.getShapeOfArc(it.next())) {
+                rowShapes.add(poly);
+            }
+        }
+        List<PolyBase> shapes = new ArrayList<PolyBase>();
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numColumns; j++) {
+                EPoint anchor = getRowAnchor(i, j);
+                for (Poly poly : rowShapes) {
+                    Point2D[] points = poly.getPoints();
+                    Point2D[] newPoints = new Point2D[points.length];
+                    for (int k = 0; k < points.length; k++) {
+                        newPoints[k] = new Point2D.Double((points[k].getX() + anchor.getLambdaX()) * scale,
+                                (points[k].getY() + anchor.getLambdaY()) * scale);
+                    }
+                    PolyBase newPoly = new PolyBase(newPoints);
+                    newPoly.setStyle(poly.getStyle());
+                    newPoly.setLayer(poly.getLayer());
+                    shapes.add(newPoly);
+                }
+            }
+        }
+        return shapes;
+    }
+}
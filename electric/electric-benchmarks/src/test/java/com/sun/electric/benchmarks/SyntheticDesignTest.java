@@ -0,0 +1,82 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SyntheticDesignTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.benchmarks;
+
+import com.sun.electric.database.CellTree;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.input.JelibParser;
+import com.sun.electric.tool.user.ErrorLogger;
+
+import java.io.File;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that the synthetic design is valid input for the benchmarks.
+ */
+public class SyntheticDesignTest {
+
+    @Test
+    public void testDesign() {
+        SyntheticDesign design = new SyntheticDesign(10, 3, 4);
+        design.snapshot.check();
+        assertEquals(21, design.rowTree.top.cellRevision.nodes.size());
+        assertEquals(10, design.rowTree.top.cellRevision.arcs.size());
+        assertEquals(12, design.arrayTree.top.cellRevision.nodes.size());
+
+        CellTree[] cellTrees = design.getCellTrees();
+        cellTrees[design.arrayCellId.cellIndex] = design.moveRowInstance(5, 1);
+        Snapshot edited = design.snapshot.with(null, null, cellTrees, null);
+        edited.check();
+        assertEquals(design.getRowAnchor(1, 1).getLambdaX() + 1,
+                edited.getCell(design.arrayCellId).cellRevision.nodes.get(5).anchor.getLambdaX(), 0);
+
+        int numShapes = design.getFlatShapes(false).size();
+        assertTrue(numShapes > 0);
+        assertEquals(0, numShapes % 12);
+        assertEquals(numShapes, design.getFlatShapes(true).size());
+    }
+
+    @Test
+    public void testJelib() throws Exception {
+        SyntheticDesign design = new SyntheticDesign(10, 3, 4);
+        File dir = File.createTempFile("electric-benchmarks", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        try {
+            URL fileURL = design.writeJelib(dir);
+            ErrorLogger errorLogger = ErrorLogger.newInstance("JELIB test");
+            JelibParser.parse(new IdManager().newLibId("bench"), fileURL, FileType.JELIB, false, errorLogger);
+            assertEquals(0, errorLogger.getNumErrors());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
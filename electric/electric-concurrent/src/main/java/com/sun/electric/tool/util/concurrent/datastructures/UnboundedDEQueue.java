@@ -130,6 +130,15 @@ public class UnboundedDEQueue<T> extends IDEStructure<T> {
 		return (bottom <= top.get());
 	}
 
+	/**
+	 * 
+	 * @return the approximate number of elements, the value may be outdated
+	 *         if other threads modify the queue concurrently
+	 */
+	public int size() {
+		return Math.max(0, bottom - top.get());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
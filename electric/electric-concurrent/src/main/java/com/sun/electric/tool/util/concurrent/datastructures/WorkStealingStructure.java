@@ -25,6 +25,7 @@ package com.sun.electric.tool.util.concurrent.datastructures;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.sun.electric.tool.util.concurrent.debug.Debug;
 import com.sun.electric.tool.util.concurrent.debug.StealTracker;
@@ -53,6 +54,8 @@ public class WorkStealingStructure<T> extends IStructure<T> implements IWorkStea
 	protected MultiThreadedRandomizer randomizer;
 	private StealTracker stealTracker;
 	private boolean debug;
+	// number of successful steals (always counted, used by the pool metrics)
+	private final AtomicLong steals = new AtomicLong();
 
 	public WorkStealingStructure(int numOfThreads) {
 		this(numOfThreads, false);
@@ -181,13 +184,40 @@ public class WorkStealingStructure<T> extends IStructure<T> implements IWorkStea
 				int foreigner = randomizer.getRandomizer().nextInt(dataQueues.size());
 				result = dataQueues.get(Long.valueOf(foreigner)).getFromTop();
 			}
-			if (result != null && this.debug)
-				stealTracker.countSteal();
+			if (result != null) {
+				steals.incrementAndGet();
+				if (this.debug)
+					stealTracker.countSteal();
+			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * 
+	 * @return number of items removed from a foreign data queue
+	 */
+	public long getSteals() {
+		return steals.get();
+	}
+
+	/**
+	 * 
+	 * @return approximate number of items in each data queue
+	 */
+	public int[] getQueueSizes() {
+		int[] sizes = new int[dataQueues.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			IDEStructure<T> queue = dataQueues.get(Long.valueOf(i));
+			if (queue instanceof UnboundedDEQueue)
+				sizes[i] = ((UnboundedDEQueue<T>) queue).size();
+			else if (queue != null && !queue.isEmpty())
+				sizes[i] = 1;
+		}
+		return sizes;
+	}
+
 	/**
 	 * Add a thread to the data queue mapping
 	 */
@@ -0,0 +1,130 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GrainSizeEstimator.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.util.concurrent.patterns;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 
+ * Grain size control of parallel for loops with an adaptive range (step
+ * BlockedRange.ADAPTIVE). Each executed PForTask reports how long it took for
+ * how many iterations. The estimator keeps a moving average of the time per
+ * iteration for each task class and chooses the grain size so that a task runs
+ * about TARGET_TASK_NANOS: large enough to hide the scheduling overhead of the
+ * pool, small enough to leave work to steal.
+ * 
+ */
+public class GrainSizeEstimator {
+
+	/** desired execution time of one task */
+	public static final long TARGET_TASK_NANOS = 500000;
+
+	/** weight of a new measurement in the moving average */
+	private static final double WEIGHT = 0.25;
+
+	private static final Map<Class<?>, Estimate> estimates = new ConcurrentHashMap<Class<?>, Estimate>();
+
+	private static class Estimate {
+		private volatile double nanosPerItem;
+		private volatile int lastGrainSize;
+
+		private Estimate(double nanosPerItem) {
+			this.nanosPerItem = nanosPerItem;
+		}
+	}
+
+	private GrainSizeEstimator() {
+	}
+
+	/**
+	 * record the execution of a task
+	 * 
+	 * @param taskClass
+	 *            class of the task
+	 * @param items
+	 *            number of iterations of the task
+	 * @param nanos
+	 *            execution time of the task
+	 */
+	public static void recordTask(Class<?> taskClass, int items, long nanos) {
+		if (items <= 0)
+			return;
+		double nanosPerItem = (double) nanos / items;
+		Estimate estimate = estimates.get(taskClass);
+		if (estimate == null) {
+			estimates.put(taskClass, new Estimate(nanosPerItem));
+		} else {
+			// racy update of the average, a lost measurement does not matter
+			estimate.nanosPerItem += WEIGHT * (nanosPerItem - estimate.nanosPerItem);
+		}
+	}
+
+	/**
+	 * choose the grain size for a part of a loop
+	 * 
+	 * @param taskClass
+	 *            class of the task
+	 * @param size
+	 *            number of iterations of the part
+	 * @return number of iterations per task, between 1 and a quarter of the
+	 *         part
+	 */
+	public static int getGrainSize(Class<?> taskClass, int size) {
+		int maxGrain = Math.max(1, size / 4);
+		Estimate estimate = estimates.get(taskClass);
+		int grain;
+		if (estimate == null) {
+			// no measurement yet: small tasks to learn fast
+			grain = Math.max(1, size / 8);
+		} else if (estimate.nanosPerItem <= 0) {
+			grain = maxGrain;
+		} else {
+			double g = TARGET_TASK_NANOS / estimate.nanosPerItem;
+			grain = (int) Math.max(1, Math.min(maxGrain, g));
+			estimate.lastGrainSize = grain;
+		}
+		return grain;
+	}
+
+	/**
+	 * 
+	 * @return the last chosen grain size of each task class with measurements
+	 */
+	public static Map<String, Integer> getGrainSizes() {
+		Map<String, Integer> result = new TreeMap<String, Integer>();
+		for (Map.Entry<Class<?>, Estimate> e : estimates.entrySet()) {
+			result.put(e.getKey().getName(), Integer.valueOf(e.getValue().lastGrainSize));
+		}
+		return result;
+	}
+
+	/**
+	 * forget all measurements
+	 */
+	public static void reset() {
+		estimates.clear();
+	}
+}
@@ -101,6 +101,10 @@ public class PForJob<T extends BlockedRange<T>> extends PJob {
 		public void execute() {
 			List<T> tmpRange;
 
+			boolean adaptive = range.isAdaptive();
+			if (adaptive)
+				range.setGrainSize(GrainSizeEstimator.getGrainSize(task.getClass(), range.size()));
+
 			int step = job.getThreadPool().getPoolSize();
 			while (((tmpRange = range.splitBlockedRange(step))) != null) {
 				for (T tr : tmpRange) {
@@ -108,6 +112,7 @@ public class PForJob<T extends BlockedRange<T>> extends PJob {
 						PForTask<T> taskObj = (PForTask<T>) task.clone();
 						taskObj.setRange(tr);
 						taskObj.setPJob(job);
+						taskObj.adaptive = adaptive;
 						job.add(taskObj, PJob.SERIAL);
 					} catch (Exception e) {
 						e.printStackTrace();
@@ -33,6 +33,9 @@ import com.sun.electric.tool.util.concurrent.utils.BlockedRange;
 public abstract class PForTask<T extends BlockedRange<T>> extends PTask implements Cloneable {
 
 	protected T range;
+	// measure the execution time for the grain size of adaptive ranges
+	boolean adaptive;
+	private long startTime;
 
 	public PForTask(PJob job, T range) {
 		super(job);
@@ -47,6 +50,30 @@ public abstract class PForTask<T extends BlockedRange<T>> extends PTask implemen
 		this.range = range;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sun.electric.tool.util.concurrent.patterns.PTask#before()
+	 */
+	@Override
+	public void before() {
+		if (adaptive)
+			startTime = System.nanoTime();
+		super.before();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sun.electric.tool.util.concurrent.patterns.PTask#after()
+	 */
+	@Override
+	public void after() {
+		if (adaptive)
+			GrainSizeEstimator.recordTask(getClass(), range.size(), System.nanoTime() - startTime);
+		super.after();
+	}
+
 	/**
 	 * set current job
 	 * 
@@ -35,6 +35,7 @@ public abstract class PoolWorkerStrategy extends WorkerStrategy {
 	
 	protected volatile boolean pleaseWait = false;
 	private IStructure<PTask> taskPool = null;
+	protected final WorkerMetrics metrics = new WorkerMetrics();
 	
 	public void pleaseWait() {
 		this.pleaseWait = true;
@@ -63,6 +64,13 @@ public abstract class PoolWorkerStrategy extends WorkerStrategy {
 		this.taskPool = taskPool;
 	}
 
+	/**
+	 * @return the counters of this worker
+	 */
+	public WorkerMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * @return the taskPool
 	 */
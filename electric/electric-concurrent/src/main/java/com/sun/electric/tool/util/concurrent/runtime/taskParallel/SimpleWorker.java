@@ -58,12 +58,14 @@ public class SimpleWorker extends PoolWorkerStrategy {
 	public void execute() {	    
 		this.threadId = ThreadID.get();
 		this.executed = 0;
+		metrics.workerStarted();
 		while (!abort) {
 			this.checkForWait();
 
 			// retrieve a new task
 			PTask task = getTaskPool().remove();
 			if (task != null) {
+				long taskStart = System.nanoTime();
 				try {
 					// set the current thread id
 					task.setThreadID(ThreadID.get());
@@ -75,6 +77,7 @@ public class SimpleWorker extends PoolWorkerStrategy {
 				} finally {
 					// do some clean up work etc. after execution of the task
 					task.after();
+					metrics.taskExecuted(System.nanoTime() - taskStart);
 
 					// Debug
 					
@@ -83,6 +86,7 @@ public class SimpleWorker extends PoolWorkerStrategy {
 				Thread.yield();
 			}
 		}
+		metrics.workerStopped();
 	}
 
 }
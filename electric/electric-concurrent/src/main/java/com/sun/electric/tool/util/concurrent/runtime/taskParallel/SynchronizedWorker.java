@@ -76,6 +76,7 @@ public class SynchronizedWorker extends PoolWorkerStrategy {
     public void execute() {
         this.threadId = ThreadID.get();
         this.executed = 0;
+        metrics.workerStarted();
         while (!abort) {
             this.checkForWait();
 
@@ -84,6 +85,7 @@ public class SynchronizedWorker extends PoolWorkerStrategy {
             // retrieve a new task
             PTask task = taskPool.remove();
             if (task != null) {
+                long taskStart = System.nanoTime();
                 try {
                     // set the current thread id
                     task.setThreadID(ThreadID.get());
@@ -95,6 +97,7 @@ public class SynchronizedWorker extends PoolWorkerStrategy {
                 } finally {
                     // do some clean up work etc. after execution of the task
                     task.after();
+                    metrics.taskExecuted(System.nanoTime() - taskStart);
 
                     // Debug
 
@@ -103,6 +106,7 @@ public class SynchronizedWorker extends PoolWorkerStrategy {
                 Thread.yield();
             }
         }
+        metrics.workerStopped();
     }
 
 }
@@ -23,8 +23,15 @@
  */
 package com.sun.electric.tool.util.concurrent.runtime.taskParallel;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import com.sun.electric.tool.util.concurrent.datastructures.IStructure;
 import com.sun.electric.tool.util.concurrent.debug.Debug;
@@ -65,6 +72,11 @@ public class ThreadPool extends IThreadPool {
 	private ThreadPoolState state;
 	private UniqueIDGenerator generator;
 	private ThreadPoolType type;
+	private final AtomicLong submitted = new AtomicLong();
+	private ThreadPoolMetrics metrics;
+	private ObjectName metricsName;
+
+	private static final AtomicInteger poolCounter = new AtomicInteger();
 
 	/**
 	 * prevent from creating thread pools via constructor
@@ -84,9 +96,13 @@ public class ThreadPool extends IThreadPool {
 
 		workers = ConcurrentCollectionFactory.createArrayList();
 
+		List<WorkerMetrics> workerMetrics = new ArrayList<WorkerMetrics>();
 		for (int i = 0; i < numOfThreads; i++) {
-			workers.add(new Worker(this));
+			Worker worker = new Worker(this);
+			workers.add(worker);
+			workerMetrics.add(worker.strategy.getMetrics());
 		}
+		metrics = new ThreadPoolMetrics(this, workerMetrics, taskPool);
 		state = ThreadPoolState.Init;
 	}
 
@@ -98,6 +114,7 @@ public class ThreadPool extends IThreadPool {
 			for (Worker worker : workers) {
 				worker.start();
 			}
+			registerMetrics();
 		}
 		state = ThreadPoolState.Started;
 	}
@@ -117,6 +134,7 @@ public class ThreadPool extends IThreadPool {
 
 		this.join();
 		state = ThreadPoolState.Closed;
+		unregisterMetrics();
 
 		// print statistics in debug mode
 		if (Debug.isDebug()) {
@@ -174,6 +192,7 @@ public class ThreadPool extends IThreadPool {
 	 * @param item
 	 */
 	public void add(PTask item) {
+		submitted.incrementAndGet();
 		taskPool.add(item);
 	}
 
@@ -183,6 +202,7 @@ public class ThreadPool extends IThreadPool {
 	 * @param item
 	 */
 	public void add(PTask item, int threadId) {
+		submitted.incrementAndGet();
 		taskPool.add(item, threadId);
 	}
 
@@ -194,6 +214,48 @@ public class ThreadPool extends IThreadPool {
 		return this.numOfThreads;
 	}
 
+	/**
+	 * 
+	 * @return number of tasks added to the pool
+	 */
+	public long getSubmittedTasks() {
+		return submitted.get();
+	}
+
+	/**
+	 * 
+	 * @return the counters of this thread pool
+	 */
+	public ThreadPoolMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * register the counters at the platform MBean server. Failures are
+	 * ignored, the pool works without JMX.
+	 */
+	private void registerMetrics() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("com.sun.electric.tool.util.concurrent:type=ThreadPool,id="
+					+ poolCounter.getAndIncrement());
+			server.registerMBean(metrics, name);
+			metricsName = name;
+		} catch (Exception e) {
+			metricsName = null;
+		}
+	}
+
+	private void unregisterMetrics() {
+		if (metricsName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+		} catch (Exception e) {
+		}
+		metricsName = null;
+	}
+
 	/**
 	 * Worker class. This class uses a worker strategy to determine how to
 	 * process tasks in the pool.
@@ -0,0 +1,202 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ThreadPoolMetrics.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.util.concurrent.runtime.taskParallel;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.electric.tool.util.concurrent.datastructures.IStructure;
+import com.sun.electric.tool.util.concurrent.datastructures.WorkStealingStructure;
+import com.sun.electric.tool.util.concurrent.patterns.GrainSizeEstimator;
+import com.sun.electric.tool.util.concurrent.patterns.PTask;
+
+/**
+ * 
+ * Live view of the counters of a thread pool: per worker counters
+ * (WorkerMetrics), queue depths and steals of the task pool and the grain sizes
+ * of adaptive parallel for loops. The values are read on each call.
+ * 
+ */
+public class ThreadPoolMetrics implements ThreadPoolMetricsMXBean {
+
+	private final List<WorkerMetrics> workers;
+	private final IStructure<PTask> taskPool;
+	private final ThreadPool pool;
+
+	ThreadPoolMetrics(ThreadPool pool, List<WorkerMetrics> workers, IStructure<PTask> taskPool) {
+		this.pool = pool;
+		this.workers = workers;
+		this.taskPool = taskPool;
+	}
+
+	public int getPoolSize() {
+		return workers.size();
+	}
+
+	public long getSubmittedTasks() {
+		return pool.getSubmittedTasks();
+	}
+
+	public long getExecutedTasks() {
+		long result = 0;
+		for (WorkerMetrics w : workers)
+			result += w.getExecuted();
+		return result;
+	}
+
+	public long getPendingTasks() {
+		return Math.max(0, getSubmittedTasks() - getExecutedTasks());
+	}
+
+	public int[] getQueueDepths() {
+		if (taskPool instanceof WorkStealingStructure)
+			return ((WorkStealingStructure<PTask>) taskPool).getQueueSizes();
+		return new int[0];
+	}
+
+	public long getSteals() {
+		if (taskPool instanceof WorkStealingStructure)
+			return ((WorkStealingStructure<PTask>) taskPool).getSteals();
+		return 0;
+	}
+
+	public long getBusyNanos() {
+		long result = 0;
+		for (WorkerMetrics w : workers)
+			result += w.getBusyNanos();
+		return result;
+	}
+
+	public long getIdleNanos() {
+		long result = 0;
+		for (WorkerMetrics w : workers)
+			result += w.getIdleNanos();
+		return result;
+	}
+
+	public double getUtilization() {
+		long busy = getBusyNanos();
+		long total = busy + getIdleNanos();
+		return total != 0 ? (double) busy / total : 0;
+	}
+
+	public long getMeanTaskNanos() {
+		long executed = getExecutedTasks();
+		return executed != 0 ? getBusyNanos() / executed : 0;
+	}
+
+	public long[] getWorkerExecutedTasks() {
+		long[] result = new long[workers.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = workers.get(i).getExecuted();
+		return result;
+	}
+
+	public long[] getWorkerBusyNanos() {
+		long[] result = new long[workers.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = workers.get(i).getBusyNanos();
+		return result;
+	}
+
+	public long[] getWorkerIdleNanos() {
+		long[] result = new long[workers.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = workers.get(i).getIdleNanos();
+		return result;
+	}
+
+	public long[] getLatencyHistogram() {
+		long[] result = new long[WorkerMetrics.NUM_LATENCY_BUCKETS];
+		for (WorkerMetrics w : workers) {
+			long[] h = w.getLatencyHistogram();
+			for (int i = 0; i < result.length; i++)
+				result[i] += h[i];
+		}
+		return result;
+	}
+
+	public String[] getGrainSizes() {
+		Map<String, Integer> grainSizes = GrainSizeEstimator.getGrainSizes();
+		String[] result = new String[grainSizes.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> e : grainSizes.entrySet())
+			result[i++] = e.getKey() + "=" + e.getValue();
+		return result;
+	}
+
+	public void dumpCSV(String fileName) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		try {
+			writeCSV(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * write the counters in CSV format: one line per worker and one line for
+	 * the whole pool. The latency histogram follows in columns
+	 * "lat_2^i" (number of tasks which took [2^i, 2^(i+1)) nanoseconds).
+	 * 
+	 * @param out
+	 */
+	public void writeCSV(PrintWriter out) {
+		StringBuilder header = new StringBuilder("worker,executed,busy_ns,idle_ns,max_task_ns,mean_task_ns,queue_depth");
+		for (int i = 0; i < WorkerMetrics.NUM_LATENCY_BUCKETS; i++)
+			header.append(",lat_2^").append(i);
+		out.println(header);
+
+		int[] depths = getQueueDepths();
+		long maxTask = 0;
+		int totalDepth = 0;
+		for (int i = 0; i < workers.size(); i++) {
+			WorkerMetrics w = workers.get(i);
+			int depth = i < depths.length ? depths[i] : 0;
+			totalDepth += depth;
+			maxTask = Math.max(maxTask, w.getMaxTaskNanos());
+			writeCSVLine(out, String.valueOf(i), w.getExecuted(), w.getBusyNanos(), w.getIdleNanos(),
+					w.getMaxTaskNanos(), w.getMeanTaskNanos(), depth, w.getLatencyHistogram());
+		}
+		writeCSVLine(out, "pool", getExecutedTasks(), getBusyNanos(), getIdleNanos(), maxTask,
+				getMeanTaskNanos(), depths.length != 0 ? totalDepth : getPendingTasks(), getLatencyHistogram());
+		out.println("# submitted=" + getSubmittedTasks() + ",steals=" + getSteals());
+		for (String grain : getGrainSizes())
+			out.println("# grain " + grain);
+		out.flush();
+	}
+
+	private static void writeCSVLine(PrintWriter out, String name, long executed, long busy, long idle,
+			long maxTask, long meanTask, long depth, long[] histogram) {
+		StringBuilder line = new StringBuilder(name);
+		line.append(',').append(executed).append(',').append(busy).append(',').append(idle);
+		line.append(',').append(maxTask).append(',').append(meanTask).append(',').append(depth);
+		for (long h : histogram)
+			line.append(',').append(h);
+		out.println(line);
+	}
+}
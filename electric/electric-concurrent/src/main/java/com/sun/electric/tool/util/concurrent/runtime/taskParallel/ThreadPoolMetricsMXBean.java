@@ -0,0 +1,138 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ThreadPoolMetricsMXBean.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.util.concurrent.runtime.taskParallel;
+
+import java.io.IOException;
+
+/**
+ * 
+ * Management interface of the thread pool counters. The thread pool registers
+ * it at the platform MBean server while it runs, so the counters can be
+ * watched with jconsole or any other JMX client.
+ * 
+ */
+public interface ThreadPoolMetricsMXBean {
+
+	/**
+	 * 
+	 * @return number of worker threads
+	 */
+	public int getPoolSize();
+
+	/**
+	 * 
+	 * @return number of tasks added to the pool
+	 */
+	public long getSubmittedTasks();
+
+	/**
+	 * 
+	 * @return number of tasks executed by all workers
+	 */
+	public long getExecutedTasks();
+
+	/**
+	 * 
+	 * @return number of tasks added but not yet executed
+	 */
+	public long getPendingTasks();
+
+	/**
+	 * 
+	 * @return approximate number of tasks in each work stealing queue, empty if
+	 *         the pool does not use work stealing
+	 */
+	public int[] getQueueDepths();
+
+	/**
+	 * 
+	 * @return number of tasks taken from the queue of another worker
+	 */
+	public long getSteals();
+
+	/**
+	 * 
+	 * @return nanoseconds spent in tasks, summed over all workers
+	 */
+	public long getBusyNanos();
+
+	/**
+	 * 
+	 * @return nanoseconds spent without a task, summed over all workers
+	 */
+	public long getIdleNanos();
+
+	/**
+	 * 
+	 * @return busy time divided by busy plus idle time
+	 */
+	public double getUtilization();
+
+	/**
+	 * 
+	 * @return mean execution time of a task
+	 */
+	public long getMeanTaskNanos();
+
+	/**
+	 * 
+	 * @return executed tasks of each worker
+	 */
+	public long[] getWorkerExecutedTasks();
+
+	/**
+	 * 
+	 * @return busy nanoseconds of each worker
+	 */
+	public long[] getWorkerBusyNanos();
+
+	/**
+	 * 
+	 * @return idle nanoseconds of each worker
+	 */
+	public long[] getWorkerIdleNanos();
+
+	/**
+	 * 
+	 * @return task latency histogram of all workers, bucket i counts the tasks
+	 *         which took [2^i, 2^(i+1)) nanoseconds
+	 */
+	public long[] getLatencyHistogram();
+
+	/**
+	 * 
+	 * @return the grain sizes chosen for adaptive parallel for loops, one
+	 *         entry "task class=grain size" per task class
+	 */
+	public String[] getGrainSizes();
+
+	/**
+	 * write all counters to a CSV file
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 */
+	public void dumpCSV(String fileName) throws IOException;
+}
@@ -0,0 +1,140 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: WorkerMetrics.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.util.concurrent.runtime.taskParallel;
+
+/**
+ * 
+ * Counters of one thread pool worker. The counters are written only by the
+ * worker thread, so recording costs two calls of System.nanoTime() per task and
+ * no synchronization. Other threads read them without locking, so a snapshot
+ * may be slightly inconsistent while the worker runs.
+ * 
+ */
+public class WorkerMetrics {
+
+	/** number of buckets of the task latency histogram */
+	public static final int NUM_LATENCY_BUCKETS = 40;
+
+	private volatile long startTime;
+	private volatile long stopTime;
+	private volatile long executed;
+	private volatile long busyNanos;
+	private volatile long maxTaskNanos;
+	private final long[] latencyHistogram = new long[NUM_LATENCY_BUCKETS];
+
+	/**
+	 * called by the worker when it starts
+	 */
+	void workerStarted() {
+		startTime = System.nanoTime();
+		stopTime = 0;
+	}
+
+	/**
+	 * called by the worker when it terminates
+	 */
+	void workerStopped() {
+		stopTime = System.nanoTime();
+	}
+
+	/**
+	 * called by the worker after the execution of a task
+	 * 
+	 * @param taskNanos
+	 *            execution time of the task
+	 */
+	void taskExecuted(long taskNanos) {
+		executed++;
+		busyNanos += taskNanos;
+		if (taskNanos > maxTaskNanos)
+			maxTaskNanos = taskNanos;
+		latencyHistogram[getLatencyBucket(taskNanos)]++;
+	}
+
+	/**
+	 * 
+	 * @return the bucket of the latency histogram: bucket i counts the tasks
+	 *         which took [2^i, 2^(i+1)) nanoseconds
+	 */
+	public static int getLatencyBucket(long taskNanos) {
+		if (taskNanos <= 0)
+			return 0;
+		return Math.min(NUM_LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(taskNanos));
+	}
+
+	/**
+	 * 
+	 * @return number of executed tasks
+	 */
+	public long getExecuted() {
+		return executed;
+	}
+
+	/**
+	 * 
+	 * @return nanoseconds spent in the execution of tasks
+	 */
+	public long getBusyNanos() {
+		return busyNanos;
+	}
+
+	/**
+	 * 
+	 * @return nanoseconds spent without a task (waiting, polling or stealing)
+	 *         since the worker started
+	 */
+	public long getIdleNanos() {
+		long start = startTime;
+		if (start == 0)
+			return 0;
+		long stop = stopTime;
+		long elapsed = (stop != 0 ? stop : System.nanoTime()) - start;
+		return Math.max(0, elapsed - busyNanos);
+	}
+
+	/**
+	 * 
+	 * @return the longest execution time of a task
+	 */
+	public long getMaxTaskNanos() {
+		return maxTaskNanos;
+	}
+
+	/**
+	 * 
+	 * @return the mean execution time of a task, 0 if no task was executed
+	 */
+	public long getMeanTaskNanos() {
+		long n = executed;
+		return n != 0 ? busyNanos / n : 0;
+	}
+
+	/**
+	 * 
+	 * @return a copy of the latency histogram
+	 */
+	public long[] getLatencyHistogram() {
+		return latencyHistogram.clone();
+	}
+}
@@ -33,11 +33,37 @@ import java.util.List;
  * 
  */
 public abstract class BlockedRange<T extends BlockedRange<T>> {
+
+	/**
+	 * step width of a range whose grain size is chosen by the runtime from the
+	 * measured execution times of the tasks
+	 */
+	public static final int ADAPTIVE = 0;
 	
 	protected int blockID;
 	
 	public abstract List<T> splitBlockedRange(int step);
 
+	/**
+	 * 
+	 * @return number of iterations of this range
+	 */
+	public abstract int size();
+
+	/**
+	 * 
+	 * @return true if the step width is ADAPTIVE and not yet chosen
+	 */
+	public abstract boolean isAdaptive();
+
+	/**
+	 * replace ADAPTIVE step widths so that a piece of this range has about
+	 * grainSize iterations
+	 * 
+	 * @param grainSize
+	 */
+	public abstract void setGrainSize(int grainSize);
+
 	public abstract T createInstance(int number, int total);
 	
 	public int getBlockID() {
@@ -53,6 +53,19 @@ public class BlockedRange1D extends BlockedRange<BlockedRange1D> {
 		return range.step();
 	}
 
+	public int size() {
+		return Math.max(0, range.end() - range.start());
+	}
+
+	public boolean isAdaptive() {
+		return range.step() == ADAPTIVE;
+	}
+
+	public void setGrainSize(int grainSize) {
+		if (range.step == ADAPTIVE)
+			range.step = Math.max(1, grainSize);
+	}
+
 	/**
 	 * split the current block range into smaller pieces according to step
 	 * width
@@ -53,6 +53,27 @@ public class BlockedRange2D extends BlockedRange<BlockedRange2D> {
 		return row;
 	}
 
+	public int size() {
+		return Math.max(0, row.end() - row.start()) * Math.max(0, col.end() - col.start());
+	}
+
+	public boolean isAdaptive() {
+		return row.step() == ADAPTIVE || col.step() == ADAPTIVE;
+	}
+
+	/**
+	 * adaptive columns are not split unless the grain is smaller than a row,
+	 * adaptive rows are grouped to reach the grain size
+	 */
+	public void setGrainSize(int grainSize) {
+		grainSize = Math.max(1, grainSize);
+		int cols = Math.max(1, col.end() - col.start());
+		if (col.step == ADAPTIVE)
+			col.step = Math.min(cols, grainSize);
+		if (row.step == ADAPTIVE)
+			row.step = Math.max(1, grainSize / col.step);
+	}
+
 	/**
 	 * split current 2-dimensional blocked range into smaller pieces
 	 * according to both step widths
@@ -0,0 +1,115 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ThreadPoolMetricsTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.util.concurrent.test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sun.electric.tool.util.concurrent.patterns.PForJob;
+import com.sun.electric.tool.util.concurrent.patterns.PForTask;
+import com.sun.electric.tool.util.concurrent.runtime.Scheduler.SchedulingStrategy;
+import com.sun.electric.tool.util.concurrent.runtime.taskParallel.ThreadPool;
+import com.sun.electric.tool.util.concurrent.runtime.taskParallel.ThreadPoolMetrics;
+import com.sun.electric.tool.util.concurrent.runtime.taskParallel.WorkerMetrics;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange2D;
+
+public class ThreadPoolMetricsTest {
+
+	private static final int SIZE = 10000;
+	private static final int NUM_THREADS = 4;
+
+	@Test
+	public void testAdaptiveParallelFor() throws Exception {
+		ThreadPool pool = ThreadPool.initialize(SchedulingStrategy.workStealing, NUM_THREADS);
+		AtomicIntegerArray counts = new AtomicIntegerArray(SIZE);
+		for (int run = 0; run < 3; run++) {
+			PForJob<BlockedRange1D> job = new PForJob<BlockedRange1D>(new BlockedRange1D(0, SIZE,
+					BlockedRange.ADAPTIVE), new CountTask(counts));
+			job.execute();
+		}
+		ThreadPoolMetrics metrics = pool.getMetrics();
+		pool.shutdown();
+
+		for (int i = 0; i < SIZE; i++)
+			Assert.assertEquals(3, counts.get(i));
+
+		Assert.assertEquals(NUM_THREADS, metrics.getPoolSize());
+		Assert.assertEquals(metrics.getSubmittedTasks(), metrics.getExecutedTasks());
+		Assert.assertEquals(0, metrics.getPendingTasks());
+		long histogramTotal = 0;
+		for (long h : metrics.getLatencyHistogram())
+			histogramTotal += h;
+		Assert.assertEquals(metrics.getExecutedTasks(), histogramTotal);
+		Assert.assertEquals(1, metrics.getGrainSizes().length);
+
+		StringWriter csv = new StringWriter();
+		metrics.writeCSV(new PrintWriter(csv));
+		String[] lines = csv.toString().split("\n");
+		Assert.assertTrue(lines[0].startsWith("worker,executed,"));
+		Assert.assertTrue(lines[NUM_THREADS + 1].startsWith("pool," + metrics.getExecutedTasks() + ","));
+	}
+
+	@Test
+	public void testAdaptiveRange2D() {
+		BlockedRange2D range = new BlockedRange2D(0, 100, BlockedRange.ADAPTIVE, 0, 50, BlockedRange.ADAPTIVE);
+		Assert.assertTrue(range.isAdaptive());
+		Assert.assertEquals(5000, range.size());
+		range.setGrainSize(200);
+		Assert.assertFalse(range.isAdaptive());
+		Assert.assertEquals(50, range.col().step());
+		Assert.assertEquals(4, range.row().step());
+	}
+
+	@Test
+	public void testLatencyBucket() {
+		Assert.assertEquals(0, WorkerMetrics.getLatencyBucket(0));
+		Assert.assertEquals(0, WorkerMetrics.getLatencyBucket(1));
+		Assert.assertEquals(10, WorkerMetrics.getLatencyBucket(1024));
+		Assert.assertEquals(10, WorkerMetrics.getLatencyBucket(2047));
+		Assert.assertEquals(WorkerMetrics.NUM_LATENCY_BUCKETS - 1, WorkerMetrics.getLatencyBucket(Long.MAX_VALUE));
+	}
+
+	public static class CountTask extends PForTask<BlockedRange1D> {
+
+		private AtomicIntegerArray counts;
+
+		public CountTask(AtomicIntegerArray counts) {
+			this.counts = counts;
+		}
+
+		@Override
+		public void execute() {
+			for (int i = range.start(); i < range.end(); i++) {
+				counts.incrementAndGet(i);
+			}
+		}
+	}
+}
@@ -149,6 +149,19 @@ public class CellBackup {
         return new CellBackup(newRevision, this.techPool, true);
     }
 
+    /**
+     * Creates a new instance of CellBackup whose CellRevision keeps its nodes in a compact form.
+     * @return new CellBackup with packed nodes or this CellBackup.
+     * @see CellRevision#withPackedNodes()
+     */
+    public CellBackup withPackedNodes() {
+        CellRevision newRevision = cellRevision.withPackedNodes();
+        if (newRevision == cellRevision) {
+            return this;
+        }
+        return new CellBackup(newRevision, this.techPool, this.modified);
+    }
+
     /**
      * Creates a new instance of CellBackup with modified flag off.
      * @return new snapshot which differs froms this Snapshot or this Snapshot.
@@ -131,6 +131,40 @@ public class CellRevision {
                 this.definedExports, this.definedExportsLength, this.deletedExports);
     }
 
+    /**
+     * Creates a new instance of CellRevision which keeps its nodes in a compact form.
+     * Nodes of the new CellRevision are created on demand, so use sameNode
+     * instead of identity to compare them. A modification of nodes unpacks them again.
+     * @return new CellRevision with packed nodes, or this CellRevision if the nodes are already packed
+     * or can't be packed.
+     */
+    public CellRevision withPackedNodes() {
+        if (nodes instanceof PackedNodeList || nodes.isEmpty()) {
+            return this;
+        }
+        PackedNodeList packedNodes = PackedNodeList.pack(nodes);
+        if (packedNodes == null) {
+            return this;
+        }
+        return new CellRevision(this.d, packedNodes, this.arcs, this.exports,
+                this.techUsages, this.cellUsages, this.exportIndex,
+                this.definedExports, this.definedExportsLength, this.deletedExports);
+    }
+
+    /**
+     * Returns true if the specified ImmutableNodeInst is the node of this CellRevision with the specified index.
+     * It is the identity comparison for unpacked nodes, and it compares fields of packed nodes.
+     * @param nodeIndex index of a node in this CellRevision.
+     * @param n ImmutableNodeInst to compare.
+     * @return true if n is the node with nodeIndex.
+     */
+    public boolean sameNode(int nodeIndex, ImmutableNodeInst n) {
+        if (nodes instanceof PackedNodeList) {
+            return ((PackedNodeList) nodes).isSame(nodeIndex, n);
+        }
+        return nodes.get(nodeIndex) == n;
+    }
+
     /**
      * Creates a new instance of CellRevision which differs from this CellRevision.
      * Four array parameters are supplied. Each parameter may be null if its contents is the same as in this Snapshot.
@@ -48,7 +48,8 @@ public class IdMapper implements Serializable {
     public static IdMapper renameLibrary(Snapshot snapshot, LibId oldLibId, LibId newLibId) {
         IdMapper idMapper = new IdMapper();
         idMapper.libIdMap.put(oldLibId, newLibId);
-        for (CellBackup cellBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
@@ -71,7 +72,8 @@ public class IdMapper implements Serializable {
 
     public static IdMapper consolidateExportIds(Snapshot snapshot) {
         IdMapper idMapper = new IdMapper();
-        for (CellBackup cellBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
@@ -544,6 +544,17 @@ public class ImmutableArcInst extends ImmutableElectricObject {
         }
     }
 
+    /**
+     * Returns the location of an arc end, shared with the anchor of the node at that end when they are equal.
+     * Most arc ends are on pins and contacts, so the arc needs no EPoint of its own.
+     * @param location the location of the arc end.
+     * @param n the node at the arc end.
+     * @return the anchor of the node if it equals location, otherwise location.
+     */
+    public static EPoint shareLocation(EPoint location, ImmutableNodeInst n) {
+        return location != null && location.equals(n.anchor) ? n.anchor : location;
+    }
+
     /**
      * Returns new ImmutableArcInst object.
      * @param arcId id of this ArcInst in parent.
@@ -602,7 +602,7 @@ class ImmutableNetSchem {
 
     private void initNodables() {
         Global.Buf globalBuf = new Global.Buf();
-        Map<ImmutableNodeInst, Set<Global>> nodeInstExcludeGlobal = null;
+        Map<Integer, Set<Global>> nodeInstExcludeGlobal = null;
         for (int i = 0; i < numNodes; i++) {
             ImmutableNodeInst n = nodes.get(i);
 //            NodeProto np = ni.getProto();
@@ -670,9 +670,9 @@ class ImmutableNetSchem {
                     if (gb != null) {
                         // remember excluded globals for this NodeInst
                         if (nodeInstExcludeGlobal == null) {
-                            nodeInstExcludeGlobal = new HashMap<ImmutableNodeInst, Set<Global>>();
+                            nodeInstExcludeGlobal = new HashMap<Integer, Set<Global>>();
                         }
-                        nodeInstExcludeGlobal.put(n, gb);
+                        nodeInstExcludeGlobal.put(Integer.valueOf(i), gb);
                         // fix Set of globals
                         gs = gs.remove(gb.iterator());
                     }
@@ -766,7 +766,7 @@ class ImmutableNetSchem {
             EquivalentSchematicExports netEq = iconInst.eq;
             EquivalentSchematicExports schemEq = netEq.implementation;
             assert schemEq != null;
-            Set<Global> gs = nodeInstExcludeGlobal != null ? nodeInstExcludeGlobal.get(n) : null; // exclude set of globals
+            Set<Global> gs = nodeInstExcludeGlobal != null ? nodeInstExcludeGlobal.get(Integer.valueOf(nodeIndex)) : null; // exclude set of globals
             if (gs != null) {
                 if (iconInstExcludeGlobals == null) {
                     iconInstExcludeGlobals = new IdentityHashMap<IconInst, Set<Global>>();
@@ -52,6 +52,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Immutable class ImmutableNodeInst represents a node instance.
@@ -141,6 +142,10 @@ public class ImmutableNodeInst extends ImmutableElectricObject {
     public static final Flag LOCKED = new Flag(NILOCKED);
     public final static ImmutableNodeInst[] NULL_ARRAY = {};
     public final static ImmutableArrayList<ImmutableNodeInst> EMPTY_LIST = new ImmutableArrayList<ImmutableNodeInst>(NULL_ARRAY);
+    /** Shared size points. A layout has few distinct node sizes, so nodes of the same size share one EPoint. */
+    private static final ConcurrentHashMap<EPoint, EPoint> allSizes = new ConcurrentHashMap<EPoint, EPoint>();
+    /** Maximal number of shared size points. */
+    private static final int MAX_SHARED_SIZES = 1 << 16;
     /** id of this NodeInst in parent. */
     public final int nodeId;
     /** Prototype id. */
@@ -221,6 +226,9 @@ public class ImmutableNodeInst extends ImmutableElectricObject {
             Orientation orient, EPoint anchor, EPoint size,
             int flags, byte techBits, TextDescriptor protoDescriptor,
             Variable[] vars, ImmutablePortInst[] ports, Variable[] params) {
+        if (size != EPoint.ORIGIN) {
+            size = getSharedSize(size);
+        }
         if (protoId instanceof CellId && ((CellId) protoId).isIcon()) {
             return new ImmutableIconInst(nodeId, protoId, name, nameDescriptor,
                     orient, anchor, size, flags, techBits, protoDescriptor,
@@ -233,6 +241,27 @@ public class ImmutableNodeInst extends ImmutableElectricObject {
         }
     }
 
+    /**
+     * Returns the shared EPoint equal to the specified size.
+     * After about MAX_SHARED_SIZES distinct sizes, new sizes are not shared.
+     * It is called without a lock, because libraries may be read by several threads.
+     * @param size the size of a node.
+     * @return the shared EPoint equal to size, or size itself.
+     */
+    private static EPoint getSharedSize(EPoint size) {
+        EPoint sharedSize = allSizes.get(size);
+        if (sharedSize != null) {
+            return sharedSize;
+        }
+        if (allSizes.size() < MAX_SHARED_SIZES) {
+            sharedSize = allSizes.putIfAbsent(size, size);
+            if (sharedSize != null) {
+                return sharedSize;
+            }
+        }
+        return size;
+    }
+
     /**
      * Returns new ImmutableNodeInst or ImmutableIconInst object.
      * @param nodeId id of this NodeInst in parent.
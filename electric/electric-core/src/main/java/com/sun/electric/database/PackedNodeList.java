@@ -0,0 +1,357 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PackedNodeList.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database;
+
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.id.NodeProtoId;
+import com.sun.electric.database.text.ImmutableArrayList;
+import com.sun.electric.database.text.Name;
+import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.database.variable.Variable;
+import com.sun.electric.util.math.Orientation;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Compact list of the ImmutableNodeInsts of a CellRevision.
+ * <P>
+ * The nodes are kept column by column instead of as objects:
+ *    anchors are grid coordinates;
+ *    TextDescriptors and Orientations are indices in small tables of this list;
+ *    Variables, PortInsts and parameters are kept only if some node has them.
+ * An ImmutableNodeInst is created again by every call of "get", so two calls return different objects.
+ * Use CellRevision.sameNode to compare a node with an element of this list.
+ */
+class PackedNodeList extends ImmutableArrayList<ImmutableNodeInst> {
+
+    /** Maximal number of distinct TextDescriptors. */  private static final int MAX_DESCRIPTORS = 1 << 16;
+    /** Maximal number of distinct Orientations. */     private static final int MAX_ORIENTS = 1 << 8;
+
+    private final int size;
+    private final int[] nodeIds;
+    private final NodeProtoId[] protoIds;
+    private final Name[] names;
+    private final int[] anchorX;
+    private final int[] anchorY;
+    private final EPoint[] sizes;
+    private final int[] flags;
+    private final byte[] techBits;
+    /** table of TextDescriptors, its first entry is null */
+    private final TextDescriptor[] descriptors;
+    private final char[] nameDescriptors;
+    private final char[] protoDescriptors;
+    private final Orientation[] orients;
+    private final byte[] orientIndices;
+    /** Variables of nodes, null if no node has Variables; null entries are empty arrays */
+    private final Variable[][] vars;
+    /** PortInsts of nodes, null if no node has PortInsts; null entries are empty arrays */
+    private final ImmutablePortInst[][] ports;
+    /** parameters of icon instances, null if no node has parameters; null entries are empty arrays */
+    private final Variable[][] params;
+    /** List interface for iterators and sublists. */
+    private final List<ImmutableNodeInst> view = new AbstractList<ImmutableNodeInst>() {
+
+        @Override
+        public ImmutableNodeInst get(int index) {
+            return PackedNodeList.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    private PackedNodeList(List<ImmutableNodeInst> nodes, Map<TextDescriptor, Integer> descriptorMap, Map<Orientation, Integer> orientMap) {
+        super(ImmutableNodeInst.NULL_ARRAY);
+        size = nodes.size();
+        nodeIds = new int[size];
+        protoIds = new NodeProtoId[size];
+        names = new Name[size];
+        anchorX = new int[size];
+        anchorY = new int[size];
+        sizes = new EPoint[size];
+        flags = new int[size];
+        techBits = new byte[size];
+        nameDescriptors = new char[size];
+        protoDescriptors = new char[size];
+        orientIndices = new byte[size];
+        descriptors = new TextDescriptor[descriptorMap.size() + 1];
+        for (Map.Entry<TextDescriptor, Integer> e : descriptorMap.entrySet()) {
+            descriptors[e.getValue().intValue()] = e.getKey();
+        }
+        orients = new Orientation[orientMap.size()];
+        for (Map.Entry<Orientation, Integer> e : orientMap.entrySet()) {
+            orients[e.getValue().intValue()] = e.getKey();
+        }
+        Variable[][] vars = null;
+        ImmutablePortInst[][] ports = null;
+        Variable[][] params = null;
+        for (int i = 0; i < size; i++) {
+            ImmutableNodeInst n = nodes.get(i);
+            nodeIds[i] = n.nodeId;
+            protoIds[i] = n.protoId;
+            names[i] = n.name;
+            anchorX[i] = (int) n.anchor.getGridX();
+            anchorY[i] = (int) n.anchor.getGridY();
+            sizes[i] = n.size;
+            flags[i] = n.flags;
+            techBits[i] = n.techBits;
+            nameDescriptors[i] = descriptorIndex(descriptorMap, n.nameDescriptor);
+            protoDescriptors[i] = descriptorIndex(descriptorMap, n.protoDescriptor);
+            orientIndices[i] = (byte) orientMap.get(n.orient).intValue();
+            if (n.getNumVariables() != 0) {
+                if (vars == null) {
+                    vars = new Variable[size][];
+                }
+                vars[i] = n.getVars();
+            }
+            if (n.ports.length != 0) {
+                if (ports == null) {
+                    ports = new ImmutablePortInst[size][];
+                }
+                ports[i] = n.ports;
+            }
+            if (n instanceof ImmutableIconInst && ((ImmutableIconInst) n).params.length != 0) {
+                if (params == null) {
+                    params = new Variable[size][];
+                }
+                params[i] = ((ImmutableIconInst) n).params;
+            }
+        }
+        this.vars = vars;
+        this.ports = ports;
+        this.params = params;
+    }
+
+    /**
+     * Returns a PackedNodeList with the same nodes as the specified list.
+     * @param nodes list of nodes.
+     * @return a PackedNodeList or null if the nodes have too many distinct TextDescriptors or Orientations.
+     */
+    static PackedNodeList pack(List<ImmutableNodeInst> nodes) {
+        Map<TextDescriptor, Integer> descriptorMap = new IdentityHashMap<TextDescriptor, Integer>();
+        Map<Orientation, Integer> orientMap = new IdentityHashMap<Orientation, Integer>();
+        for (ImmutableNodeInst n : nodes) {
+            internDescriptor(descriptorMap, n.nameDescriptor);
+            internDescriptor(descriptorMap, n.protoDescriptor);
+            if (!orientMap.containsKey(n.orient)) {
+                orientMap.put(n.orient, Integer.valueOf(orientMap.size()));
+            }
+        }
+        if (descriptorMap.size() >= MAX_DESCRIPTORS || orientMap.size() > MAX_ORIENTS) {
+            return null;
+        }
+        return new PackedNodeList(nodes, descriptorMap, orientMap);
+    }
+
+    private static void internDescriptor(Map<TextDescriptor, Integer> descriptorMap, TextDescriptor td) {
+        if (td != null && !descriptorMap.containsKey(td)) {
+            descriptorMap.put(td, Integer.valueOf(descriptorMap.size() + 1));
+        }
+    }
+
+    private static char descriptorIndex(Map<TextDescriptor, Integer> descriptorMap, TextDescriptor td) {
+        return td != null ? (char) descriptorMap.get(td).intValue() : 0;
+    }
+
+    /**
+     * Returns true if the specified node is the same as the node at the specified index.
+     * Fields of the node are compared with the packed fields as the identity
+     * of the node would be compared in an unpacked list.
+     * @param index index of the node in this list.
+     * @param n node to compare.
+     * @return true if n is the node at the index.
+     */
+    boolean isSame(int index, ImmutableNodeInst n) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return n != null
+                && n.nodeId == nodeIds[index]
+                && n.protoId == protoIds[index]
+                && n.name == names[index]
+                && n.anchor.getGridX() == anchorX[index]
+                && n.anchor.getGridY() == anchorY[index]
+                && n.size.equals(sizes[index])
+                && n.flags == flags[index]
+                && n.techBits == techBits[index]
+                && n.nameDescriptor == descriptors[nameDescriptors[index]]
+                && n.protoDescriptor == descriptors[protoDescriptors[index]]
+                && n.orient == orients[orientIndices[index] & 0xFF]
+                && n.getVars() == getVars(index)
+                && n.ports == getPorts(index)
+                && (n instanceof ImmutableIconInst ? ((ImmutableIconInst) n).params : Variable.NULL_ARRAY) == getParams(index);
+    }
+
+    private Variable[] getVars(int index) {
+        Variable[] v = vars != null ? vars[index] : null;
+        return v != null ? v : Variable.NULL_ARRAY;
+    }
+
+    private ImmutablePortInst[] getPorts(int index) {
+        ImmutablePortInst[] p = ports != null ? ports[index] : null;
+        return p != null ? p : ImmutablePortInst.NULL_ARRAY;
+    }
+
+    private Variable[] getParams(int index) {
+        Variable[] p = params != null ? params[index] : null;
+        return p != null ? p : Variable.NULL_ARRAY;
+    }
+
+    @Override
+    public ImmutableNodeInst get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ImmutableNodeInst.newInstance(nodeIds[index], protoIds[index], names[index], descriptors[nameDescriptors[index]],
+                orients[orientIndices[index] & 0xFF], EPoint.fromGrid(anchorX[index], anchorY[index]), sizes[index],
+                flags[index], techBits[index], descriptors[protoDescriptors[index]],
+                getVars(index), getPorts(index), getParams(index));
+    }
+
+    @Override
+    public ImmutableArrayList<ImmutableNodeInst> with(ImmutableNodeInst[] a) {
+        if (a == null) {
+            return this;
+        }
+        int l;
+        for (l = a.length; l > 0 && a[l - 1] == null; l--);
+        if (l == size) {
+            int i = 0;
+            while (i < size && isSame(i, a[i])) {
+                i++;
+            }
+            if (i == l) {
+                return this;
+            }
+        }
+        return new ImmutableArrayList<ImmutableNodeInst>(a, 0, l);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (o instanceof ImmutableNodeInst) {
+            for (int i = 0; i < size; i++) {
+                if (isSame(i, (ImmutableNodeInst) o)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (o instanceof ImmutableNodeInst) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (isSame(i, (ImmutableNodeInst) o)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return view.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return view.toArray(a);
+    }
+
+    @Override
+    public Iterator<ImmutableNodeInst> iterator() {
+        return view.iterator();
+    }
+
+    @Override
+    public ListIterator<ImmutableNodeInst> listIterator() {
+        return view.listIterator();
+    }
+
+    @Override
+    public ListIterator<ImmutableNodeInst> listIterator(int index) {
+        return view.listIterator(index);
+    }
+
+    @Override
+    public List<ImmutableNodeInst> subList(int fromIndex, int toIndex) {
+        return view.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super ImmutableNodeInst> action) {
+        view.forEach(action);
+    }
+
+    @Override
+    public Spliterator<ImmutableNodeInst> spliterator() {
+        return view.spliterator();
+    }
+
+    /**
+     * Nodes of this list are created on demand and have no identity,
+     * so this list equals only itself.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public Object clone() {
+        return this;
+    }
+}
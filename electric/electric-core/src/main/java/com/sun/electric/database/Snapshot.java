@@ -43,6 +43,7 @@ import com.sun.electric.technology.technologies.Schematics;
 import com.sun.electric.tool.Tool;
 import com.sun.electric.util.TextUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -63,8 +64,10 @@ public class Snapshot {
     public final IdManager idManager;
     public final int snapshotId;
     public final Tool tool;
-    public final ImmutableArrayList<CellTree> cellTrees;
-    public final ImmutableArrayList<CellBackup> cellBackups;
+    private final ImmutableArrayList<CellTree> cellTrees;
+    private final ImmutableArrayList<CellBackup> cellBackups;
+    /** cells read on first use, or null if the cells are in the lists above */
+    private final SnapshotStore cellStore;
     private final int[] cellGroups;
     private final CellId[] groupMainSchematics;
     public final ImmutableArrayList<LibraryBackup> libBackups;
@@ -76,6 +79,7 @@ public class Snapshot {
     private Snapshot(IdManager idManager, int snapshotId, Tool tool,
             ImmutableArrayList<CellTree> cellTrees,
             ImmutableArrayList<CellBackup> cellBackups,
+            SnapshotStore cellStore,
             int[] cellGroups, CellId[] groupMainSchematics,
             ImmutableArrayList<LibraryBackup> libBackups,
             Environment environment) {
@@ -84,12 +88,13 @@ public class Snapshot {
         this.tool = tool;
         this.cellTrees = cellTrees;
         this.cellBackups = cellBackups;
+        this.cellStore = cellStore;
         this.cellGroups = cellGroups;
         this.groupMainSchematics = groupMainSchematics;
         this.libBackups = libBackups;
         this.environment = environment;
         techPool = environment.techPool;
-        equivSchemExports = new EquivalentSchematicExports[cellTrees.size()];
+        equivSchemExports = new EquivalentSchematicExports[getNumCells()];
 //        if (Job.getDebug())
 //            check();
     }
@@ -98,7 +103,7 @@ public class Snapshot {
      * Creates empty snapshot.
      */
     public Snapshot(IdManager idManager) {
-        this(idManager, 0, null, CellTree.EMPTY_LIST, CellBackup.EMPTY_LIST,
+        this(idManager, 0, null, CellTree.EMPTY_LIST, CellBackup.EMPTY_LIST, null,
                 new int[0], new CellId[0],
                 LibraryBackup.EMPTY_LIST, idManager.getInitialEnvironment());
     }
@@ -141,15 +146,19 @@ public class Snapshot {
         if (environment == null) {
             environment = this.environment;
         }
-        ImmutableArrayList<CellTree> cellTrees = copyArray(cellTreesArray, this.cellTrees);
+        if (cellTreesArray == null && libBackupsArray == null && this.environment == environment) {
+            return this;
+        }
+        ImmutableArrayList<CellTree> oldCellTrees = cellTreeList();
+        ImmutableArrayList<CellTree> cellTrees = copyArray(cellTreesArray, oldCellTrees);
         ImmutableArrayList<LibraryBackup> libBackups = copyArray(libBackupsArray, this.libBackups);
-        if (this.cellTrees == cellTrees && this.libBackups == libBackups && this.environment == environment) {
+        if (oldCellTrees == cellTrees && this.libBackups == libBackups && this.environment == environment) {
             return this;
         }
         TechPool techPool = environment.techPool;
 
         // Check usages in cells
-        boolean namesChanged = this.libBackups != libBackups || this.cellTrees.size() != cellTrees.size();
+        boolean namesChanged = this.libBackups != libBackups || oldCellTrees.size() != cellTrees.size();
         for (int cellIndex = 0; cellIndex < cellTrees.size(); cellIndex++) {
             CellTree newTree = cellTrees.get(cellIndex);
             CellTree oldTree = getCellTree(cellIndex);
@@ -186,8 +195,8 @@ public class Snapshot {
                 namesChanged = true;
             }
         }
-        ImmutableArrayList<CellBackup> cellBackups = this.cellBackups;
-        if (this.cellTrees != cellTrees) {
+        ImmutableArrayList<CellBackup> cellBackups = cellBackupList();
+        if (oldCellTrees != cellTrees) {
             CellBackup[] cellBackupArray = new CellBackup[cellTrees.size()];
             for (int cellIndex = 0; cellIndex < cellTrees.size(); cellIndex++) {
                 CellTree cellTree = cellTrees.get(cellIndex);
@@ -234,11 +243,11 @@ public class Snapshot {
         }
 
         Snapshot snapshot = new Snapshot(idManager, idManager.newSnapshotId(), tool,
-                cellTrees, cellBackups, cellGroups, groupMainSchematics,
+                cellTrees, cellBackups, null, cellGroups, groupMainSchematics,
                 libBackups, environment);
 
         // Try to reuse EquivalenSchematicExports
-        for (CellTree cellTree : snapshot.cellTrees) {
+        for (CellTree cellTree : cellTrees) {
             if (cellTree == null) {
                 continue;
             }
@@ -315,8 +324,8 @@ public class Snapshot {
 
     public Snapshot with(Tool tool, Environment environment) {
         TechPool techPool = environment.techPool;
-        CellBackup[] cellBackupArray = new CellBackup[cellBackups.size()];
-        for (CellBackup cellBackup : cellBackups) {
+        CellBackup[] cellBackupArray = new CellBackup[getNumCells()];
+        for (CellBackup cellBackup : cellBackupList()) {
             if (cellBackup == null) {
                 continue;
             }
@@ -384,6 +393,7 @@ public class Snapshot {
      * @return Snapshot with renamed Ids.
      */
     public Snapshot withRenamedIds(IdMapper idMapper, CellId fromGroup, String toGroup) {
+        ImmutableArrayList<CellBackup> cellBackups = cellBackupList();
         int maxCellIndex = -1;
         for (CellBackup cellBackup : cellBackups) {
             if (cellBackup == null) {
@@ -541,7 +551,7 @@ public class Snapshot {
             oldSnapshot = idManager.getInitialSnapshot();
         }
         List<CellId> changed = null;
-        int numCells = Math.max(oldSnapshot.cellBackups.size(), cellBackups.size());
+        int numCells = Math.max(oldSnapshot.getNumCells(), getNumCells());
         for (int i = 0; i < numCells; i++) {
             CellBackup oldBackup = oldSnapshot.getCell(i);
             CellBackup newBackup = getCell(i);
@@ -561,7 +571,8 @@ public class Snapshot {
 
     public Collection<CellId> getCellsDownTop() {
         LinkedHashSet<CellId> order = new LinkedHashSet<CellId>();
-        for (CellBackup cellBackup : cellBackups) {
+        for (int cellIndex = 0; cellIndex < getNumCells(); cellIndex++) {
+            CellBackup cellBackup = getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
@@ -607,11 +618,59 @@ public class Snapshot {
     }
 
     public CellTree getCellTree(int cellIndex) {
-        return cellIndex < cellTrees.size() ? cellTrees.get(cellIndex) : null;
+        if (cellIndex >= getNumCells()) {
+            return null;
+        }
+        return cellStore != null ? cellStore.getCellTree(cellIndex) : cellTrees.get(cellIndex);
     }
 
     public CellBackup getCell(int cellIndex) {
-        return cellIndex < cellBackups.size() ? cellBackups.get(cellIndex) : null;
+        if (cellIndex >= getNumCells()) {
+            return null;
+        }
+        return cellStore != null ? cellStore.getCell(cellIndex) : cellBackups.get(cellIndex);
+    }
+
+    /**
+     * Returns the number of cell indices in this Snapshot.
+     * Cells with cellIndex not less than this number are absent.
+     * @return the number of cell indices in this Snapshot.
+     */
+    public int getNumCells() {
+        return cellStore != null ? cellStore.size() : cellBackups.size();
+    }
+
+    /**
+     * Returns true if a cell of this Snapshot is in memory.
+     */
+    boolean isCellLoaded(int cellIndex) {
+        return cellStore == null || cellIndex >= cellStore.size() || cellStore.isLoaded(cellIndex);
+    }
+
+    private ImmutableArrayList<CellTree> cellTreeList() {
+        return cellStore != null ? cellStore.getCellTrees() : cellTrees;
+    }
+
+    private ImmutableArrayList<CellBackup> cellBackupList() {
+        return cellStore != null ? cellStore.getCellBackups() : cellBackups;
+    }
+
+    /**
+     * Returns Snapshot which equals this Snapshot, but keeps its cells in a file.
+     * The cells are written to the file now and are read back on their first use
+     * by getCell, getCellRevision or getCellTree, so a large design occupies memory
+     * only by the cells which are visited.
+     * A modification of the returned Snapshot by "with" methods reads all its cells.
+     * The file can be read only during this session, and must be kept until the returned
+     * Snapshot is discarded.
+     * @param file the file to keep the cells.
+     * @return Snapshot with cells in the file.
+     * @throws IOException if the file can't be written.
+     */
+    public Snapshot withStoredCells(File file) throws IOException {
+        SnapshotStore cellStore = new SnapshotStore(this, file);
+        return new Snapshot(idManager, idManager.newSnapshotId(), tool, null, null, cellStore,
+                cellGroups, groupMainSchematics, libBackups, environment);
     }
 
     public CellRevision getCellRevision(int cellIndex) {
@@ -772,8 +831,8 @@ public class Snapshot {
             writer.writeInt(Integer.MAX_VALUE);
         }
 
-        writer.writeInt(cellBackups.size());
-        for (int i = 0; i < cellBackups.size(); i++) {
+        writer.writeInt(getNumCells());
+        for (int i = 0; i < getNumCells(); i++) {
             CellBackup oldBackup = oldSnapshot.getCell(i);
             CellBackup newBackup = getCell(i);
             if (oldBackup == newBackup) {
@@ -794,7 +853,7 @@ public class Snapshot {
         boolean cellGroupsChanged = cellGroups != oldSnapshot.cellGroups;
         writer.writeBoolean(cellGroupsChanged);
         if (cellGroupsChanged) {
-            assert cellGroups.length == cellBackups.size();
+            assert cellGroups.length == getNumCells();
             for (int cellIndex = 0; cellIndex < cellGroups.length; cellIndex++) {
                 writer.writeInt(cellGroups[cellIndex]);
             }
@@ -842,10 +901,10 @@ public class Snapshot {
         }
 
         int cellLen = reader.readInt();
-        int cellMax = Math.min(oldSnapshot.cellBackups.size(), cellLen);
+        int cellMax = Math.min(oldSnapshot.getNumCells(), cellLen);
         CellBackup[] cellBackupsArray = new CellBackup[cellLen];
         for (int cellIndex = 0; cellIndex < cellMax; cellIndex++) {
-            cellBackupsArray[cellIndex] = oldSnapshot.cellBackups.get(cellIndex);
+            cellBackupsArray[cellIndex] = oldSnapshot.getCell(cellIndex);
         }
         if (technologiesChanged) {
             for (int cellIndex = 0; cellIndex < cellLen; cellIndex++) {
@@ -898,7 +957,7 @@ public class Snapshot {
         }
         CellTree[] cellTreesArray = oldSnapshot.computeCellTrees(cellBackups, environment.techPool);
         ImmutableArrayList<CellTree> cellTrees = new ImmutableArrayList<CellTree>(cellTreesArray);
-        return new Snapshot(oldSnapshot.idManager, snapshotId, tool, cellTrees, cellBackups,
+        return new Snapshot(oldSnapshot.idManager, snapshotId, tool, cellTrees, cellBackups, null,
                 cellGroups, groupMainSchematics,
                 libBackups, environment);
     }
@@ -922,6 +981,8 @@ public class Snapshot {
             }
             libBackup.check();
         }
+        ImmutableArrayList<CellTree> cellTrees = cellTreeList();
+        ImmutableArrayList<CellBackup> cellBackups = cellBackupList();
         assert cellTrees.size() == cellBackups.size();
         for (int cellIndex = 0; cellIndex < cellTrees.size(); cellIndex++) {
             CellTree cellTree = cellTrees.get(cellIndex);
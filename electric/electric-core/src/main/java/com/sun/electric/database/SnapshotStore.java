@@ -0,0 +1,268 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SnapshotStore.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database;
+
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.IdReader;
+import com.sun.electric.database.id.IdWriter;
+import com.sun.electric.database.text.ImmutableArrayList;
+import com.sun.electric.technology.TechPool;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class to keep the cells of a Snapshot in a memory-mapped file.
+ * <P>
+ * Every CellBackup is written with an IdWriter of its own, in the encoding of Snapshot.writeDiffs,
+ * so that it can be read alone.  A CellBackup is read with an IdReader on its first request,
+ * and a CellTree is built from the CellBackups of its subtree on its first request.
+ * Both are kept afterwards, so a cell is always represented by the same objects.
+ * The nodes of a cell read from the store are packed, see CellRevision.withPackedNodes.
+ * <P>
+ * The Ids are not written, so the file can be read only by the IdManager which wrote it.
+ * The file must not be changed while the store is in use.
+ */
+class SnapshotStore {
+
+    /** log2 of the size of a mapped segment */             private static final int SEGMENT_SHIFT = 30;
+    /** size of a mapped segment */                         private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    private final File file;
+    private final IdManager idManager;
+    private final TechPool techPool;
+    private final MappedByteBuffer[] segments;
+    /** offsets of the cells in the file, or -1 for absent cells */
+    private final long[] offsets;
+    private final int[] lengths;
+    private final AtomicReferenceArray<CellBackup> cellBackups;
+    private final AtomicReferenceArray<CellTree> cellTrees;
+    private ImmutableArrayList<CellBackup> cellBackupList;
+    private ImmutableArrayList<CellTree> cellTreeList;
+
+    /**
+     * Writes the cells of a Snapshot into a file and maps it.
+     * @param snapshot the Snapshot whose cells are written.
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written or mapped.
+     */
+    SnapshotStore(Snapshot snapshot, File file) throws IOException {
+        this.file = file;
+        idManager = snapshot.idManager;
+        techPool = snapshot.techPool;
+        int numCells = snapshot.getNumCells();
+        offsets = new long[numCells];
+        lengths = new int[numCells];
+        Arrays.fill(offsets, -1);
+
+        long length = 0;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            for (int cellIndex = 0; cellIndex < numCells; cellIndex++) {
+                CellBackup cellBackup = snapshot.getCell(cellIndex);
+                if (cellBackup == null) {
+                    continue;
+                }
+                byteStream.reset();
+                IdWriter writer = new IdWriter(idManager, new DataOutputStream(byteStream));
+                cellBackup.write(writer);
+                writer.flush();
+                int cellLength = byteStream.size();
+                if (cellLength > SEGMENT_SIZE) {
+                    throw new IOException(cellBackup.cellRevision.d.cellId + " is too large to store");
+                }
+
+                // a cell never crosses a segment boundary
+                long segmentEnd = ((length >> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+                if (length + cellLength > segmentEnd) {
+                    for (; length < segmentEnd; length++) {
+                        out.write(0);
+                    }
+                }
+                offsets[cellIndex] = length;
+                lengths[cellIndex] = cellLength;
+                byteStream.writeTo(out);
+                length += cellLength;
+            }
+        } finally {
+            out.close();
+        }
+
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT)];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s << SEGMENT_SHIFT;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        } finally {
+            raf.close();
+        }
+        cellBackups = new AtomicReferenceArray<CellBackup>(numCells);
+        cellTrees = new AtomicReferenceArray<CellTree>(numCells);
+    }
+
+    /**
+     * Returns the number of cell indices in this store.
+     */
+    int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns true if the CellBackup with the given cellIndex was already read.
+     */
+    boolean isLoaded(int cellIndex) {
+        return cellBackups.get(cellIndex) != null;
+    }
+
+    /**
+     * Returns the CellBackup with the given cellIndex, reading it on the first request.
+     * @param cellIndex cellIndex of the cell.
+     * @return the CellBackup or null if the cell is absent.
+     */
+    CellBackup getCell(int cellIndex) {
+        CellBackup cellBackup = cellBackups.get(cellIndex);
+        if (cellBackup != null || offsets[cellIndex] < 0) {
+            return cellBackup;
+        }
+        ByteBuffer buf = segments[(int) (offsets[cellIndex] >> SEGMENT_SHIFT)].duplicate();
+        int start = (int) (offsets[cellIndex] & (SEGMENT_SIZE - 1));
+        buf.limit(start + lengths[cellIndex]);
+        buf.position(start);
+        try {
+            IdReader reader = new IdReader(new DataInputStream(new BufferInputStream(buf)), idManager);
+            cellBackup = CellBackup.read(reader, techPool).withPackedNodes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read " + idManager.getCellId(cellIndex) + " from " + file, e);
+        }
+        assert cellBackup.cellRevision.d.cellId.cellIndex == cellIndex;
+
+        // the first CellBackup read is the one which is kept
+        if (!cellBackups.compareAndSet(cellIndex, null, cellBackup)) {
+            cellBackup = cellBackups.get(cellIndex);
+        }
+        return cellBackup;
+    }
+
+    /**
+     * Returns the CellTree with the given cellIndex, building it on the first request.
+     * @param cellIndex cellIndex of the cell.
+     * @return the CellTree or null if the cell is absent.
+     */
+    CellTree getCellTree(int cellIndex) {
+        CellTree cellTree = cellTrees.get(cellIndex);
+        if (cellTree != null) {
+            return cellTree;
+        }
+        CellBackup top = getCell(cellIndex);
+        if (top == null) {
+            return null;
+        }
+        CellId cellId = top.cellRevision.d.cellId;
+        int[] instCounts = top.cellRevision.getInstCounts();
+        CellTree[] subTrees = new CellTree[instCounts.length];
+        for (int i = 0; i < subTrees.length; i++) {
+            if (instCounts[i] != 0) {
+                subTrees[i] = getCellTree(cellId.getUsageIn(i).protoId.cellIndex);
+            }
+        }
+        cellTree = CellTree.newInstance(top.cellRevision.d, techPool).with(top, subTrees, techPool);
+        if (!cellTrees.compareAndSet(cellIndex, null, cellTree)) {
+            cellTree = cellTrees.get(cellIndex);
+        }
+        return cellTree;
+    }
+
+    /**
+     * Returns the list of all CellBackups, reading the cells not read yet.
+     */
+    synchronized ImmutableArrayList<CellBackup> getCellBackups() {
+        if (cellBackupList == null) {
+            CellBackup[] cellBackupArray = new CellBackup[size()];
+            for (int cellIndex = 0; cellIndex < cellBackupArray.length; cellIndex++) {
+                cellBackupArray[cellIndex] = getCell(cellIndex);
+            }
+            cellBackupList = new ImmutableArrayList<CellBackup>(cellBackupArray);
+        }
+        return cellBackupList;
+    }
+
+    /**
+     * Returns the list of all CellTrees, building the trees not built yet.
+     */
+    synchronized ImmutableArrayList<CellTree> getCellTrees() {
+        if (cellTreeList == null) {
+            CellTree[] cellTreeArray = new CellTree[size()];
+            for (int cellIndex = 0; cellIndex < cellTreeArray.length; cellIndex++) {
+                cellTreeArray[cellIndex] = getCellTree(cellIndex);
+            }
+            cellTreeList = new ImmutableArrayList<CellTree>(cellTreeArray);
+        }
+        return cellTreeList;
+    }
+
+    /**
+     * InputStream which reads the remaining bytes of a ByteBuffer.
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buf;
+
+        private BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+    }
+}
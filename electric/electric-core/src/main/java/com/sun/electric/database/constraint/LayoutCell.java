@@ -868,7 +868,8 @@ class LayoutCell {
         // now make the change
         ImmutableArcInst oldD = ai.getD();
         ImmutableArcInst d = oldD;
-        d = d.withLocations(EPoint.snap(tailPt), EPoint.snap(headPt));
+        d = d.withLocations(ImmutableArcInst.shareLocation(EPoint.snap(tailPt), ai.getTailPortInst().getNodeInst().getD()),
+                ImmutableArcInst.shareLocation(EPoint.snap(headPt), ai.getHeadPortInst().getNodeInst().getD()));
         ai.lowLevelModify(d);
         if (Layout.DEBUG) {
             System.out.println(ai + " now runs from tail ("
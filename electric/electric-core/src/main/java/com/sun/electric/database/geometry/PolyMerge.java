@@ -23,6 +23,7 @@
  */
 package com.sun.electric.database.geometry;
 
+import com.sun.electric.database.geometry.bool.ManhattanRegion;
 import com.sun.electric.technology.Layer;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.GenMath;
@@ -57,15 +58,89 @@ import java.util.List;
  * At end of merging, call:<BR>
  *    merge.getMergedPoints(layer)<BR>
  * for each layer, and it returns an array of PolyBases on that layer.
+ * <P>
+ * A merge created with "new PolyMerge(true)" keeps each layer in a ManhattanRegion
+ * as long as all of its geometry is Manhattan with integer coordinates,
+ * and switches that layer to a java.awt.geom.Area when other geometry arrives.
  */
 public class PolyMerge
         extends GeometryHandler
 {
+	/** true to keep Manhattan layers in ManhattanRegions */
+	private final boolean scanline;
+
 	/**
 	 * Method to create a new "merge" object.
 	 */
 	public PolyMerge()
 	{
+		this(false);
+	}
+
+	/**
+	 * Method to create a new "merge" object.
+	 * @param scanline true to merge Manhattan geometry with integer coordinates by scanline
+	 * instead of with java.awt.geom.Area.
+	 */
+	public PolyMerge(boolean scanline)
+	{
+		this.scanline = scanline;
+	}
+
+	/**
+	 * Method to return the Area of a layer, converting it from a ManhattanRegion if necessary.
+	 * @param layer the layer.
+	 * @param create true to create an empty Area if the layer has no geometry.
+	 * @return the Area of the layer (null if there is none and "create" is false).
+	 */
+	private Area getArea(Object layer, boolean create)
+	{
+		Object value = layers.get(layer);
+		if (value instanceof ManhattanRegion)
+		{
+			Area area = new Area(((ManhattanRegion)value).getShape(null));
+			layers.put((Layer)layer, area);
+			return area;
+		}
+		Area area = (Area)value;
+		if (area == null && create)
+		{
+			area = new Area();
+			layers.put((Layer)layer, area);
+		}
+		return area;
+	}
+
+	/**
+	 * Method to return the ManhattanRegion of a layer.
+	 * @param layer the layer.
+	 * @param create true to create an empty region if the layer has no geometry.
+	 * @return the region of the layer, or null if the layer is kept in an Area
+	 * (or has no geometry and "create" is false).
+	 */
+	private ManhattanRegion getRegion(Object layer, boolean create)
+	{
+		Object value = layers.get(layer);
+		if (value instanceof ManhattanRegion) return (ManhattanRegion)value;
+		if (value != null || !create || !scanline) return null;
+		ManhattanRegion region = new ManhattanRegion();
+		layers.put((Layer)layer, region);
+		return region;
+	}
+
+	/**
+	 * Method to return an Area with the geometry of a layer inside of a given rectangle.
+	 * It does not change the representation of the layer.
+	 * @param layer the layer.
+	 * @param bounds the rectangle of interest.
+	 * @return an Area which is exact inside of "bounds", or null if the layer has no geometry.
+	 */
+	private Area getLocalArea(Object layer, Rectangle2D bounds)
+	{
+		Object value = layers.get(layer);
+		if (value instanceof ManhattanRegion)
+			return new Area(((ManhattanRegion)value).getShape(bounds));
+		return (Area)value;
 	}
 
 	/**
@@ -94,12 +169,16 @@ public class PolyMerge
 	 */
 	public void addRectangle(Layer layer, Rectangle2D rect)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null)
+		if (ManhattanRegion.isCoordinate(rect))
 		{
-			area = new Area();
-			layers.put(layer, area);
+			ManhattanRegion region = getRegion(layer, true);
+			if (region != null)
+			{
+				region.addRectangle((int)rect.getMinX(), (int)rect.getMinY(), (int)rect.getMaxX(), (int)rect.getMaxY());
+				return;
+			}
 		}
+		Area area = getArea(layer, true);
 
 		// add "rect" to "area"
 		Area additionalArea = new Area(rect);
@@ -113,12 +192,13 @@ public class PolyMerge
 	 */
 	public void addPolygon(Layer layer, PolyBase poly)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null)
+		ManhattanRegion region = getRegion(layer, true);
+		if (region != null)
 		{
-			area = new Area();
-			layers.put(layer, area);
+			if (region.addPolygon(poly.getPoints())) return;
+			if (region.isEmpty()) layers.remove(layer);
 		}
+		Area area = getArea(layer, true);
 
 		// add "poly" to "area"
 		// It can't add only rectangles otherwise it doesn't cover
@@ -134,7 +214,9 @@ public class PolyMerge
 	 */
 	public void subtract(Object layer, Object poly)
 	{
-		Area area = (Area)layers.get(layer);
+		ManhattanRegion region = getRegion(layer, false);
+		if (region != null && region.subtractPolygon(((PolyBase)poly).getPoints())) return;
+		Area area = getArea(layer, false);
 		if (area == null) return;
 		Area subtractArea = new Area((PolyBase)poly);
 		area.subtract(subtractArea);
@@ -160,14 +242,24 @@ public class PolyMerge
 	{
 		for(Layer subLayer : other.layers.keySet())
 		{
-			Area subArea = (Area)other.layers.get(subLayer);
-
-			Area area = (Area)layers.get(subLayer);
-			if (area == null)
+			Object subValue = other.layers.get(subLayer);
+			if (subValue instanceof ManhattanRegion)
 			{
-				area = new Area();
-				layers.put(subLayer, area);
+				ManhattanRegion region = getRegion(subLayer, true);
+				if (region != null)
+				{
+					ManhattanRegion newRegion = ((ManhattanRegion)subValue).transform(trans);
+					if (newRegion != null)
+					{
+						region.add(newRegion);
+						continue;
+					}
+					if (region.isEmpty()) layers.remove(subLayer);
+				}
 			}
+			Area subArea = other.getLocalArea(subLayer, null);
+
+			Area area = getArea(subLayer, true);
 			Area newArea = subArea.createTransformedArea(trans);
 			area.add(newArea);
 		}
@@ -180,10 +272,26 @@ public class PolyMerge
 	 */
 	public void addLayer(Layer fromLayer, Layer toLayer)
 	{
-		Area fromArea = (Area)layers.get(fromLayer);
-		if (fromArea == null) return;
+		Object fromValue = layers.get(fromLayer);
+		if (fromValue == null) return;
+		if (fromValue instanceof ManhattanRegion)
+		{
+			ManhattanRegion fromRegion = (ManhattanRegion)fromValue;
+			Object toValue = layers.get(toLayer);
+			if (toValue == null)
+			{
+				layers.put(toLayer, fromRegion.copy());
+				return;
+			}
+			if (toValue instanceof ManhattanRegion)
+			{
+				((ManhattanRegion)toValue).add(fromRegion);
+				return;
+			}
+		}
+		Area fromArea = getLocalArea(fromLayer, null);
 
-		Area toArea = (Area)layers.get(toLayer);
+		Area toArea = getArea(toLayer, false);
 		if (toArea == null)
 		{
 			toArea = new Area(fromArea);
@@ -202,15 +310,18 @@ public class PolyMerge
 	 */
 	public boolean intersects(Layer layer, PolyBase poly)
 	{
-		Area layerArea = (Area)layers.get(layer);
-		if (layerArea == null) return false;
+		Object value = layers.get(layer);
+		if (value == null) return false;
 
 		// simple calculation for manhattan polygon
 		Rectangle2D box = poly.getBox();
 		if (box != null)
 		{
-			return layerArea.intersects(box);
+			if (value instanceof ManhattanRegion)
+				return ((ManhattanRegion)value).intersects(box);
+			return ((Area)value).intersects(box);
 		}
+		Area layerArea = getLocalArea(layer, poly.getBounds2D());
 
 		// more complex calculation (not done yet)
 		Area intersectArea = new Area(poly);
@@ -227,20 +338,22 @@ public class PolyMerge
 	 */
 	public void intersectLayers(Layer sourceA, Layer sourceB, Layer dest)
 	{
-		Area destArea = null;
-		Area sourceAreaA = (Area)layers.get(sourceA);
-		if (sourceAreaA != null)
+		Object destValue = null;
+		Object sourceValueA = layers.get(sourceA);
+		Object sourceValueB = layers.get(sourceB);
+		if (sourceValueA instanceof ManhattanRegion && sourceValueB instanceof ManhattanRegion)
 		{
-			Area sourceAreaB = (Area)layers.get(sourceB);
-			if (sourceAreaB != null)
-			{
-				destArea = new Area(sourceAreaA);
-				destArea.intersect(sourceAreaB);
-				if (destArea.isEmpty()) destArea = null;
-			}
+			ManhattanRegion destRegion = ((ManhattanRegion)sourceValueA).copy();
+			destRegion.intersect((ManhattanRegion)sourceValueB);
+			if (!destRegion.isEmpty()) destValue = destRegion;
+		} else if (sourceValueA != null && sourceValueB != null)
+		{
+			Area destArea = new Area(getLocalArea(sourceA, null));
+			destArea.intersect(getLocalArea(sourceB, null));
+			if (!destArea.isEmpty()) destValue = destArea;
 		}
-		if (destArea == null) layers.remove(dest); else
-			layers.put(dest, destArea);
+		if (destValue == null) layers.remove(dest); else
+			layers.put(dest, destValue);
 	}
 
 	/**
@@ -252,20 +365,22 @@ public class PolyMerge
 	 */
 	public void subtractLayers(Layer sourceA, Layer sourceB, Layer dest)
 	{
-		Area destArea = null;
-		Area sourceAreaA = (Area)layers.get(sourceA);
-		if (sourceAreaA != null)
+		Object destValue = null;
+		Object sourceValueA = layers.get(sourceA);
+		Object sourceValueB = layers.get(sourceB);
+		if (sourceValueA instanceof ManhattanRegion && sourceValueB instanceof ManhattanRegion)
 		{
-			Area sourceAreaB = (Area)layers.get(sourceB);
-			if (sourceAreaB != null)
-			{
-				destArea = new Area(sourceAreaA);
-				destArea.subtract(sourceAreaB);
-				if (destArea.isEmpty()) destArea = null;
-			}
+			ManhattanRegion destRegion = ((ManhattanRegion)sourceValueA).copy();
+			destRegion.subtract((ManhattanRegion)sourceValueB);
+			if (!destRegion.isEmpty()) destValue = destRegion;
+		} else if (sourceValueA != null && sourceValueB != null)
+		{
+			Area destArea = new Area(getLocalArea(sourceA, null));
+			destArea.subtract(getLocalArea(sourceB, null));
+			if (!destArea.isEmpty()) destValue = destArea;
 		}
-		if (destArea == null) layers.remove(dest); else
-			layers.put(dest, destArea);
+		if (destValue == null) layers.remove(dest); else
+			layers.put(dest, destValue);
 	}
 
 	/**
@@ -276,10 +391,17 @@ public class PolyMerge
 	{
 		for(Layer subLayer : other.layers.keySet())
 		{
-			Area area = (Area)layers.get(subLayer);
-			if (area == null) continue;
+			Object value = layers.get(subLayer);
+			if (value == null) continue;
 
-			Area subArea = (Area)other.layers.get(subLayer);
+			Object subValue = other.layers.get(subLayer);
+			if (value instanceof ManhattanRegion && subValue instanceof ManhattanRegion)
+			{
+				((ManhattanRegion)value).subtract((ManhattanRegion)subValue);
+				continue;
+			}
+			Area area = getArea(subLayer, false);
+			Area subArea = other.getLocalArea(subLayer, null);
 			area.subtract(subArea);
 		}
 	}
@@ -292,11 +414,21 @@ public class PolyMerge
 	 */
 	public void insetLayer(Layer source, Layer dest, double amount)
 	{
-		Area sourceArea = (Area)layers.get(source);
-		if (sourceArea == null) layers.remove(dest); else
+		Object sourceValue = layers.get(source);
+		if (sourceValue == null) layers.remove(dest); else
 		{
-			layers.put(dest, sourceArea.clone());
-			if (amount == 0) return;
+			Area sourceArea;
+			if (sourceValue instanceof ManhattanRegion)
+			{
+				layers.put(dest, ((ManhattanRegion)sourceValue).copy());
+				if (amount == 0) return;
+				sourceArea = getLocalArea(source, null);
+			} else
+			{
+				sourceArea = (Area)sourceValue;
+				layers.put(dest, sourceArea.clone());
+				if (amount == 0) return;
+			}
 			List<PolyBase> orig = getAreaPoints(sourceArea, source, true);
 			Point2D [] subtractPoints = new Point2D[4];
 			for(PolyBase poly : orig)
@@ -342,8 +474,10 @@ public class PolyMerge
 	 */
 	public boolean isEmpty(Layer layer)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null) return true;
+		Object value = layers.get(layer);
+		if (value == null) return true;
+		if (value instanceof ManhattanRegion) return ((ManhattanRegion)value).isEmpty();
+		Area area = (Area)value;
 		return area.isEmpty();
 	}
 
@@ -355,8 +489,14 @@ public class PolyMerge
 	 */
 	public boolean contains(Layer layer, Rectangle2D rect)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null) return false;
+		Object value = layers.get(layer);
+		if (value == null) return false;
+		if (value instanceof ManhattanRegion)
+		{
+			double remainingArea = rect.getWidth() * rect.getHeight() - ((ManhattanRegion)value).getArea(rect);
+			return DBMath.areEquals(remainingArea, 0);
+		}
+		Area area = (Area)value;
 		if (area.contains(rect)) return true;
 
 		Area rectArea = new Area(rect);
@@ -379,8 +519,14 @@ public class PolyMerge
 	public boolean contains(Layer layer, PolyBase poly)
 	{
 		// find the area for the given layer
-		Area area = (Area)layers.get(layer);
-		if (area == null) return false;
+		Object value = layers.get(layer);
+		if (value == null) return false;
+		if (value instanceof ManhattanRegion)
+		{
+			Rectangle2D box = poly.getBox();
+			if (box != null) return contains(layer, box);
+		}
+		Area area = getLocalArea(layer, poly.getBounds2D());
 
 		// create an area that is the new polygon minus the original area
 		Area polyArea = new Area(poly);
@@ -396,7 +542,7 @@ public class PolyMerge
     public Area exclusive(Layer layer, PolyBase poly)
     {
         // find the area for the given layer
-		Area area = (Area)layers.get(layer);
+		Area area = getLocalArea(layer, poly.getBounds2D());
 		if (area == null) return null;
 
         // create an area that is the new polygon minus the original area
@@ -464,8 +610,10 @@ public class PolyMerge
 	 */
 	public double getAreaOfLayer(Layer layer)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null) return 0;
+		Object value = layers.get(layer);
+		if (value == null) return 0;
+		if (value instanceof ManhattanRegion) return ((ManhattanRegion)value).getArea();
+		Area area = (Area)value;
 		return getAreaOfArea(area);
 	}
 
@@ -488,9 +636,10 @@ public class PolyMerge
 	 */
 	public boolean contains(Layer layer, Point2D pt)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null) return false;
-		return area.contains(pt);
+		Object value = layers.get(layer);
+		if (value == null) return false;
+		if (value instanceof ManhattanRegion) return ((ManhattanRegion)value).contains(pt.getX(), pt.getY());
+		return ((Area)value).contains(pt);
 	}
 
 	public Collection<PolyBase> getObjects(Object layer, boolean modified, boolean simple)
@@ -508,7 +657,7 @@ public class PolyMerge
 	 */
     public List<PolyBase> getMergedPoints(Layer layer, boolean simple)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getLocalArea(layer, null);
 		if (area == null) return null;
 		return getAreaPoints(area, layer, simple);
 	}
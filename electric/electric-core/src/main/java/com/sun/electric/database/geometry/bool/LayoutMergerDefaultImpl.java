@@ -24,6 +24,7 @@
  */
 package com.sun.electric.database.geometry.bool;
 
+import com.sun.electric.database.geometry.ERectangle;
 import com.sun.electric.database.geometry.PolyBase;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.technology.Layer;
@@ -33,33 +34,52 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
- *
+ * Default implementation of LayoutMerger.
+ * Small layers are merged by one DeltaMerge in memory.
+ * Large layers are cut into horizontal stripes which are merged concurrently;
+ * a stitching thread combines the scanlines of the stripes and streams them
+ * through in-memory pipes into UnloadPolys.
  */
 class LayoutMergerDefaultImpl implements LayoutMerger {
 
     private final VectorCache vectorCache;
     private final Cell topCell;
+    private final int stripeThreshold;
+    private final int minBoxesPerStripe;
 
-    private static final int TMP_FILE_THRESHOLD = 1000000;
+    /** number of flat boxes of a layer above which it is merged in stripes */
+    private static final int STRIPE_THRESHOLD = 100000;
+    /** minimal number of flat boxes per stripe */
+    private static final int MIN_BOXES_PER_STRIPE = 50000;
+    /** size in bytes of the pipes between merge threads */
+    private static final int PIPE_SIZE = 1 << 16;
 
     static class Factory extends LayoutMergerFactory {
         @Override
         public LayoutMerger newMerger(Cell topCell) {
-            return new LayoutMergerDefaultImpl(topCell);
+            return new LayoutMergerDefaultImpl(topCell, STRIPE_THRESHOLD, MIN_BOXES_PER_STRIPE);
         }
     }
 
-    private LayoutMergerDefaultImpl(Cell topCell) {
+    /**
+     * Creates a merger of the layers of a cell.
+     * @param topCell the cell to merge.
+     * @param stripeThreshold number of flat boxes of a layer above which it is merged in stripes.
+     * @param minBoxesPerStripe minimal number of flat boxes per stripe.
+     */
+    LayoutMergerDefaultImpl(Cell topCell, int stripeThreshold, int minBoxesPerStripe) {
         vectorCache = new VectorCache(topCell.getDatabase().backup());
         vectorCache.scanLayers(topCell.getId());
         this.topCell = topCell;
+        this.stripeThreshold = stripeThreshold;
+        this.minBoxesPerStripe = minBoxesPerStripe;
     }
 
     public Collection<Layer> getLayers() {
@@ -73,43 +93,97 @@ class LayoutMergerDefaultImpl implements LayoutMerger {
     public Iterable<PolyBase.PolyBaseTree> merge(Layer layer) {
         Iterable<PolyBase.PolyBaseTree> trees = null;
         try {
-            boolean inMemory = vectorCache.getNumFlatBoxes(topCell.getId(), layer) <= TMP_FILE_THRESHOLD;
-            ByteArrayOutputStream bout = null;
-            File file = null;
-            DataOutputStream out;
-            if (inMemory) {
-                bout = new ByteArrayOutputStream();
-                out = new DataOutputStream(bout);
-            } else {
-                file = File.createTempFile("Electric", "DRC");
-                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
-            }
-            DeltaMerge dm = collectLayer(vectorCache, layer);
-            dm.loop(out);
-            out.close();
-            dm = null;
-            DataInputStream inpS;
-            if (inMemory) {
-                byte[] ba = bout.toByteArray();
-                bout = null;
-                inpS = new DataInputStream(new ByteArrayInputStream(ba));
+            int numBoxes = vectorCache.getNumFlatBoxes(topCell.getId(), layer);
+            if (numBoxes > stripeThreshold) {
+                int numStripes = Math.min(Runtime.getRuntime().availableProcessors(), numBoxes / minBoxesPerStripe);
+                trees = mergeInStripes(layer, Math.max(numStripes, 1));
             } else {
-                inpS = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                trees = mergeInMemory(layer);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return trees;
+    }
+
+    private Iterable<PolyBase.PolyBaseTree> mergeInMemory(Layer layer) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        DeltaMerge dm = collectLayer(vectorCache, layer);
+        dm.loop(out);
+        out.close();
+        dm = null;
+        byte[] ba = bout.toByteArray();
+        bout = null;
+        DataInputStream inpS = new DataInputStream(new ByteArrayInputStream(ba));
+
+        UnloadPolys up = new UnloadPolys();
+        Iterable<PolyBase.PolyBaseTree> trees = up.loop(inpS, false);
+        inpS.close();
+        return trees;
+    }
+
+    private Iterable<PolyBase.PolyBaseTree> mergeInStripes(Layer layer, int numStripes) throws IOException {
+        // cut the bounds of the top cell into stripes of equal height
+        ERectangle bounds = topCell.getBounds();
+        long minY = bounds.getGridMinY();
+        long height = bounds.getGridMaxY() - minY;
+        int[] stripeY = new int[numStripes + 1];
+        stripeY[0] = Integer.MIN_VALUE;
+        for (int i = 1; i < numStripes; i++) {
+            stripeY[i] = (int)(minY + height*i/numStripes);
+        }
+        stripeY[numStripes] = Integer.MAX_VALUE;
+        StripeCollector collector = new StripeCollector(stripeY);
+        vectorCache.collectLayer(layer, topCell.getId(), false, collector);
+        return mergeStripes(collector.dms, "Merge " + layer.getName());
+    }
+
+    /**
+     * Method to merge stripes concurrently and to unload the stitched result.
+     * @param dms the boxes of each stripe, from bottom to top; they are released as they are merged.
+     * @param name the prefix of the names of the merge threads.
+     * @return the merged polygons.
+     */
+    static Iterable<PolyBase.PolyBaseTree> mergeStripes(DeltaMerge[] dms, String name) throws IOException {
+        int numStripes = dms.length;
+        Pipeline pipeline = new Pipeline();
+        Thread[] threads = new Thread[numStripes + 1];
+        DataInputStream[] stripeIns = new DataInputStream[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            PipedOutputStream pout = new PipedOutputStream();
+            stripeIns[i] = new DataInputStream(new BufferedInputStream(new PipedInputStream(pout, PIPE_SIZE), PIPE_SIZE));
+            threads[i] = new StripeThread(pipeline, name + " stripe " + i, dms[i],
+                    new DataOutputStream(new BufferedOutputStream(pout, PIPE_SIZE)));
+            dms[i] = null;
+        }
+        PipedOutputStream pout = new PipedOutputStream();
+        DataInputStream inpS = new DataInputStream(new BufferedInputStream(new PipedInputStream(pout, PIPE_SIZE), PIPE_SIZE));
+        threads[numStripes] = new StitchThread(pipeline, name + " stitch", stripeIns,
+                new DataOutputStream(new BufferedOutputStream(pout, PIPE_SIZE)));
+        for (Thread t: threads) {
+            t.start();
+        }
 
+        Iterable<PolyBase.PolyBaseTree> trees;
+        try {
             UnloadPolys up = new UnloadPolys();
             trees = up.loop(inpS, false);
+        } finally {
+            // closing the pipe also stops the other threads if UnloadPolys failed
             inpS.close();
-            if (!inMemory) {
-                file.delete();
+            for (Thread t: threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        pipeline.checkFailure();
         return trees;
-
     }
-    
+
     private DeltaMerge collectLayer(VectorCache vce, Layer layer) {
         final DeltaMerge dm = new DeltaMerge();
         VectorCache.PutRectangle putRectangle = new VectorCache.PutRectangle() {
@@ -120,4 +194,208 @@ class LayoutMergerDefaultImpl implements LayoutMerger {
         vce.collectLayer(layer, topCell.getId(), false, putRectangle);
         return dm;
     }
+
+    /**
+     * Class to collect boxes into one DeltaMerge per stripe.
+     * Boxes which cross stripe boundaries are cut.
+     */
+    static class StripeCollector implements VectorCache.PutRectangle {
+        private final int[] stripeY;
+        final DeltaMerge[] dms;
+
+        /**
+         * @param stripeY stripe i covers Y coordinates from stripeY[i] (inclusive) to stripeY[i+1] (exclusive).
+         */
+        StripeCollector(int[] stripeY) {
+            this.stripeY = stripeY;
+            dms = new DeltaMerge[stripeY.length - 1];
+            for (int i = 0; i < dms.length; i++) {
+                dms[i] = new DeltaMerge();
+            }
+        }
+
+        public void put(int lx, int ly, int hx, int hy) {
+            int i = Arrays.binarySearch(stripeY, 1, dms.length, ly);
+            i = i >= 0 ? i : -i - 2;
+            for (; i < dms.length && stripeY[i] < hy; i++) {
+                int cly = Math.max(ly, stripeY[i]);
+                int chy = Math.min(hy, stripeY[i + 1]);
+                if (cly < chy) {
+                    dms[i].put(lx, cly, hx, chy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Class to remember the first failure of the merge threads.
+     */
+    private static class Pipeline {
+        private volatile Throwable failure;
+
+        private void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable e = failure;
+            if (e instanceof IOException) {
+                throw (IOException)e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException)e;
+            }
+            if (e instanceof Error) {
+                throw (Error)e;
+            }
+        }
+    }
+
+    /**
+     * Thread to run the scanline of one stripe.
+     */
+    private static class StripeThread extends Thread {
+        private final Pipeline pipeline;
+        private DeltaMerge dm;
+        private final DataOutputStream out;
+
+        private StripeThread(Pipeline pipeline, String name, DeltaMerge dm, DataOutputStream out) {
+            super(name);
+            setDaemon(true);
+            this.pipeline = pipeline;
+            this.dm = dm;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                dm.loop(out);
+            } catch (Throwable e) {
+                pipeline.fail(e);
+            } finally {
+                dm = null;
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    pipeline.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread to combine the scanlines of all stripes.
+     * For each X, the Y lists of the stripes are concatenated from bottom to top.
+     * A change which ends at the top of a stripe and a change of the opposite direction
+     * which starts at the bottom of the next stripe cancel each other.
+     */
+    private static class StitchThread extends Thread {
+        private final Pipeline pipeline;
+        private final DataInputStream[] ins;
+        private final DataOutputStream out;
+        private final int[] headX;
+        private final int[][] headValues;
+        private final int[] headCounts;
+        private final boolean[] live;
+        private int[] outValues = new int[16];
+        private int outCount;
+
+        private StitchThread(Pipeline pipeline, String name, DataInputStream[] ins, DataOutputStream out) {
+            super(name);
+            setDaemon(true);
+            this.pipeline = pipeline;
+            this.ins = ins;
+            this.out = out;
+            headX = new int[ins.length];
+            headValues = new int[ins.length][];
+            headCounts = new int[ins.length];
+            live = new boolean[ins.length];
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < ins.length; i++) {
+                    readHead(i);
+                }
+                for (;;) {
+                    boolean found = false;
+                    int x = 0;
+                    for (int i = 0; i < ins.length; i++) {
+                        if (live[i] && (!found || headX[i] < x)) {
+                            x = headX[i];
+                            found = true;
+                        }
+                    }
+                    if (!found) {
+                        break;
+                    }
+                    outCount = 0;
+                    for (int i = 0; i < ins.length; i++) {
+                        if (live[i] && headX[i] == x) {
+                            for (int k = 0; k < headCounts[i]; k++) {
+                                append(headValues[i][k]);
+                            }
+                            readHead(i);
+                        }
+                    }
+                    if (outCount == 0) {
+                        continue;
+                    }
+                    out.writeBoolean(true);
+                    out.writeInt(x);
+                    out.writeInt(outCount);
+                    for (int k = 0; k < outCount; k++) {
+                        out.writeInt(outValues[k]);
+                    }
+                }
+                out.writeBoolean(false);
+            } catch (Throwable e) {
+                pipeline.fail(e);
+            } finally {
+                try {
+                    out.close();
+                    for (DataInputStream in: ins) {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    pipeline.fail(e);
+                }
+            }
+        }
+
+        private void readHead(int i) throws IOException {
+            DataInputStream in = ins[i];
+            live[i] = in.readBoolean();
+            if (!live[i]) {
+                return;
+            }
+            headX[i] = in.readInt();
+            int count = in.readInt();
+            if (headValues[i] == null || headValues[i].length < count) {
+                headValues[i] = new int[Math.max(16, count)];
+            }
+            for (int k = 0; k < count; k++) {
+                headValues[i][k] = in.readInt();
+            }
+            headCounts[i] = count;
+        }
+
+        private void append(int value) {
+            if (outCount > 0) {
+                int last = outValues[outCount - 1];
+                if ((last >> 1) == (value >> 1) && (last & 1) != (value & 1)) {
+                    outCount--;
+                    return;
+                }
+            }
+            if (outCount >= outValues.length) {
+                outValues = Arrays.copyOf(outValues, outValues.length*2);
+            }
+            outValues[outCount++] = value;
+        }
+    }
 }
@@ -0,0 +1,716 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegion.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.bool;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class to hold a Manhattan region with integer coordinates.
+ * The region is stored as a sequence of vertical slabs.
+ * Slab i spans from xs[i] to xs[i+1] and holds a sorted list of disjoint y-intervals.
+ * Adjacent slabs always differ, and the last slab is always empty.
+ * <P>
+ * Added and subtracted rectangles are collected in a DeltaMerge and
+ * are merged into the slabs in one scanline pass when the region is next examined,
+ * so building a region of N rectangles takes O(N log N) time.
+ * Boolean operations between regions are linear in the size of both regions.
+ */
+public class ManhattanRegion {
+
+    /** the smallest coordinate accepted by the region */
+    public static final int MIN_COORD = -0x40000000;
+    /** the largest coordinate accepted by the region */
+    public static final int MAX_COORD = 0x3fffffff;
+
+    private static final int UNION = 0;
+    private static final int INTERSECT = 1;
+    private static final int DIFFERENCE = 2;
+    private static final int XOR = 3;
+
+    private static final int[] NO_INTS = new int[0];
+
+    /** number of slab boundaries */
+    private int numXs;
+    /** slab boundaries */
+    private int[] xs = NO_INTS;
+    /** index in "ys" of the first interval of each slab */
+    private int[] starts = new int[1];
+    /** interval ends of all slabs */
+    private int[] ys = NO_INTS;
+    /** rectangles added since the last scanline pass */
+    private DeltaMerge pendingAdd;
+    /** rectangles subtracted since the last scanline pass */
+    private DeltaMerge pendingSubtract;
+
+    /**
+     * Constructs an empty region.
+     */
+    public ManhattanRegion() {
+    }
+
+    /**
+     * Method to tell whether a coordinate can be stored in a region.
+     * @param v the coordinate.
+     * @return true if the coordinate is an integer in the range of the region.
+     */
+    public static boolean isCoordinate(double v) {
+        return v >= MIN_COORD && v <= MAX_COORD && v == (int) v;
+    }
+
+    /**
+     * Method to tell whether a rectangle can be stored in a region.
+     * @param rect the rectangle.
+     * @return true if all sides of the rectangle are region coordinates.
+     */
+    public static boolean isCoordinate(Rectangle2D rect) {
+        return isCoordinate(rect.getMinX()) && isCoordinate(rect.getMinY())
+                && isCoordinate(rect.getMaxX()) && isCoordinate(rect.getMaxY());
+    }
+
+    /**
+     * Method to add a rectangle to this region.
+     * Empty rectangles are ignored.
+     * @param lx the low X coordinate.
+     * @param ly the low Y coordinate.
+     * @param hx the high X coordinate.
+     * @param hy the high Y coordinate.
+     */
+    public void addRectangle(int lx, int ly, int hx, int hy) {
+        if (lx >= hx || ly >= hy) {
+            return;
+        }
+        checkCoordinates(lx, ly, hx, hy);
+        if (pendingSubtract != null) {
+            flush();
+        }
+        if (pendingAdd == null) {
+            pendingAdd = new DeltaMerge();
+        }
+        pendingAdd.put(lx, ly, hx, hy);
+    }
+
+    /**
+     * Method to subtract a rectangle from this region.
+     * Empty rectangles are ignored.
+     * @param lx the low X coordinate.
+     * @param ly the low Y coordinate.
+     * @param hx the high X coordinate.
+     * @param hy the high Y coordinate.
+     */
+    public void subtractRectangle(int lx, int ly, int hx, int hy) {
+        if (lx >= hx || ly >= hy || numXs == 0 && pendingAdd == null) {
+            return;
+        }
+        checkCoordinates(lx, ly, hx, hy);
+        if (pendingSubtract == null) {
+            pendingSubtract = new DeltaMerge();
+        }
+        pendingSubtract.put(lx, ly, hx, hy);
+    }
+
+    /**
+     * Method to add a Manhattan polygon to this region.
+     * The polygon is filled with the even-odd rule.
+     * @param points the points of the polygon.
+     * @return false if the polygon has non-Manhattan edges or non-integer coordinates.
+     * In this case the region is not changed.
+     */
+    public boolean addPolygon(Point2D[] points) {
+        ManhattanRegion poly = fromPolygon(points);
+        if (poly == null) {
+            return false;
+        }
+        poly.putRectangles(this, true);
+        return true;
+    }
+
+    /**
+     * Method to subtract a Manhattan polygon from this region.
+     * The polygon is filled with the even-odd rule.
+     * @param points the points of the polygon.
+     * @return false if the polygon has non-Manhattan edges or non-integer coordinates.
+     * In this case the region is not changed.
+     */
+    public boolean subtractPolygon(Point2D[] points) {
+        ManhattanRegion poly = fromPolygon(points);
+        if (poly == null) {
+            return false;
+        }
+        poly.putRectangles(this, false);
+        return true;
+    }
+
+    /**
+     * Method to add another region to this one.
+     * @param other the other region.
+     */
+    public void add(ManhattanRegion other) {
+        flush();
+        other.flush();
+        setTo(combine(this, other, UNION));
+    }
+
+    /**
+     * Method to subtract another region from this one.
+     * @param other the other region.
+     */
+    public void subtract(ManhattanRegion other) {
+        flush();
+        other.flush();
+        setTo(combine(this, other, DIFFERENCE));
+    }
+
+    /**
+     * Method to intersect this region with another one.
+     * @param other the other region.
+     */
+    public void intersect(ManhattanRegion other) {
+        flush();
+        other.flush();
+        setTo(combine(this, other, INTERSECT));
+    }
+
+    /**
+     * Method to make a copy of this region.
+     * @return a new region with the same geometry.
+     */
+    public ManhattanRegion copy() {
+        flush();
+        ManhattanRegion result = new ManhattanRegion();
+        result.setTo(this);
+        return result;
+    }
+
+    /**
+     * Method to transform this region.
+     * @param trans the transformation.
+     * @return the transformed region or null if the transformed region
+     * can't be represented exactly (because of rotation or of non-integer coordinates).
+     */
+    public ManhattanRegion transform(AffineTransform trans) {
+        flush();
+        if (trans.isIdentity()) {
+            return copy();
+        }
+        if ((trans.getType() & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) != 0) {
+            return null;
+        }
+        ManhattanRegion result = new ManhattanRegion();
+        double[] coords = new double[4];
+        for (int i = 0; i < numXs - 1; i++) {
+            for (int k = starts[i]; k < starts[i + 1]; k += 2) {
+                coords[0] = xs[i];
+                coords[1] = ys[k];
+                coords[2] = xs[i + 1];
+                coords[3] = ys[k + 1];
+                trans.transform(coords, 0, coords, 0, 2);
+                for (int j = 0; j < coords.length; j++) {
+                    if (!isCoordinate(coords[j])) {
+                        return null;
+                    }
+                }
+                result.addRectangle((int) Math.min(coords[0], coords[2]), (int) Math.min(coords[1], coords[3]),
+                        (int) Math.max(coords[0], coords[2]), (int) Math.max(coords[1], coords[3]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method to tell whether this region is empty.
+     * @return true if this region is empty.
+     */
+    public boolean isEmpty() {
+        flush();
+        return numXs == 0;
+    }
+
+    /**
+     * Method to compute the area of this region.
+     * @return the area of this region.
+     */
+    public double getArea() {
+        flush();
+        double area = 0;
+        for (int i = 0; i < numXs - 1; i++) {
+            long h = 0;
+            for (int k = starts[i]; k < starts[i + 1]; k += 2) {
+                h += (long) ys[k + 1] - ys[k];
+            }
+            area += (double) h * ((long) xs[i + 1] - xs[i]);
+        }
+        return area;
+    }
+
+    /**
+     * Method to compute the area of this region inside of a rectangle.
+     * @param rect the rectangle.
+     * @return the area of the intersection of this region and the rectangle.
+     */
+    public double getArea(Rectangle2D rect) {
+        flush();
+        double lx = rect.getMinX(), ly = rect.getMinY(), hx = rect.getMaxX(), hy = rect.getMaxY();
+        double area = 0;
+        for (int i = Math.max(findSlab(lx), 0); i < numXs - 1 && xs[i] < hx; i++) {
+            double w = Math.min(hx, xs[i + 1]) - Math.max(lx, xs[i]);
+            if (w <= 0) {
+                continue;
+            }
+            double h = 0;
+            int end = starts[i + 1];
+            for (int k = findInterval(i, ly); k < end && ys[k] < hy; k += 2) {
+                h += Math.max(0, Math.min(hy, ys[k + 1]) - Math.max(ly, ys[k]));
+            }
+            area += w * h;
+        }
+        return area;
+    }
+
+    /**
+     * Method to tell whether the interior of this region intersects the interior of a rectangle.
+     * @param rect the rectangle.
+     * @return true if the region and the rectangle share a positive area.
+     */
+    public boolean intersects(Rectangle2D rect) {
+        flush();
+        double lx = rect.getMinX(), ly = rect.getMinY(), hx = rect.getMaxX(), hy = rect.getMaxY();
+        if (lx >= hx || ly >= hy) {
+            return false;
+        }
+        for (int i = Math.max(findSlab(lx), 0); i < numXs - 1 && xs[i] < hx; i++) {
+            if (xs[i + 1] <= lx) {
+                continue;
+            }
+            int k = findInterval(i, ly);
+            if (k < starts[i + 1] && ys[k] < hy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to tell whether a point is inside of this region.
+     * Like java.awt.geom.Area, points on the low edges are inside and points on the high edges are outside.
+     * @param x the X coordinate of the point.
+     * @param y the Y coordinate of the point.
+     * @return true if the point is inside of this region.
+     */
+    public boolean contains(double x, double y) {
+        flush();
+        int i = findSlab(x);
+        if (i < 0 || i >= numXs - 1) {
+            return false;
+        }
+        int k = findInterval(i, y);
+        return k < starts[i + 1] && ys[k] <= y;
+    }
+
+    /**
+     * Method to return the outline of this region as a Shape.
+     * Rectangles that are identical in adjacent slabs are joined,
+     * so "new Area(region.getShape(null))" is cheap to construct.
+     * @param clip the rectangle to clip the region or null to return the whole region.
+     * @return a Path2D with the disjoint rectangles of this region.
+     */
+    public Path2D getShape(Rectangle2D clip) {
+        flush();
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        double clx = Double.NEGATIVE_INFINITY, cly = Double.NEGATIVE_INFINITY;
+        double chx = Double.POSITIVE_INFINITY, chy = Double.POSITIVE_INFINITY;
+        if (clip != null) {
+            clx = clip.getMinX();
+            cly = clip.getMinY();
+            chx = clip.getMaxX();
+            chy = clip.getMaxY();
+        }
+        // open rectangles with their low Y, high Y and low X
+        double[] open = new double[0];
+        int numOpen = 0;
+        double[] cur = new double[0];
+        double x = 0;
+        for (int i = Math.max(findSlab(clx), 0); i < numXs; i++) {
+            x = Math.max(clx, xs[i]);
+            if (x >= chx) {
+                x = chx;
+                break;
+            }
+            // collect the clipped intervals of this slab
+            int numCur = 0;
+            int end = starts[i + 1];
+            for (int k = findInterval(i, cly); k < end && ys[k] < chy; k += 2) {
+                double ly = Math.max(cly, ys[k]);
+                double hy = Math.min(chy, ys[k + 1]);
+                if (ly >= hy) {
+                    continue;
+                }
+                if (numCur + 3 > cur.length) {
+                    cur = Arrays.copyOf(cur, Math.max(12, cur.length * 2));
+                }
+                cur[numCur++] = ly;
+                cur[numCur++] = hy;
+                cur[numCur++] = x;
+            }
+            // close open rectangles which don't continue, continue those which do
+            int j = 0;
+            for (int o = 0; o < numOpen; o += 3) {
+                while (j < numCur && cur[j] < open[o]) {
+                    j += 3;
+                }
+                if (j < numCur && cur[j] == open[o] && cur[j + 1] == open[o + 1]) {
+                    cur[j + 2] = open[o + 2];
+                } else {
+                    appendRectangle(path, open[o + 2], open[o], x, open[o + 1]);
+                }
+            }
+            double[] t = open;
+            open = cur;
+            cur = t;
+            numOpen = numCur;
+        }
+        for (int o = 0; o < numOpen; o += 3) {
+            appendRectangle(path, open[o + 2], open[o], x, open[o + 1]);
+        }
+        return path;
+    }
+
+    private static void appendRectangle(Path2D path, double lx, double ly, double hx, double hy) {
+        if (lx >= hx) {
+            return;
+        }
+        path.moveTo(lx, ly);
+        path.lineTo(hx, ly);
+        path.lineTo(hx, hy);
+        path.lineTo(lx, hy);
+        path.closePath();
+    }
+
+    /**
+     * Method to find a slab.
+     * @param x the X coordinate.
+     * @return the index of the slab containing x, or -1 if x is left of the region.
+     */
+    private int findSlab(double x) {
+        int lo = 0, hi = numXs - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * Method to find the first interval of a slab which ends above a given Y.
+     * @param slab the slab index.
+     * @param y the Y coordinate.
+     * @return the index in "ys" of the low end of the interval (starts[slab+1] if there is none).
+     */
+    private int findInterval(int slab, double y) {
+        int lo = starts[slab] >> 1, hi = (starts[slab + 1] >> 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ys[mid * 2 + 1] <= y) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo * 2;
+    }
+
+    private static void checkCoordinates(int lx, int ly, int hx, int hy) {
+        if (lx < MIN_COORD || hx > MAX_COORD || ly < MIN_COORD || hy > MAX_COORD) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Method to replace the slabs of this region.
+     * Slab arrays are never modified after they are built, so they may be shared.
+     */
+    private void setTo(ManhattanRegion other) {
+        numXs = other.numXs;
+        xs = other.xs;
+        starts = other.starts;
+        ys = other.ys;
+    }
+
+    /**
+     * Method to put the rectangles of this region into the pending lists of another region.
+     */
+    private void putRectangles(ManhattanRegion dest, boolean add) {
+        for (int i = 0; i < numXs - 1; i++) {
+            for (int k = starts[i]; k < starts[i + 1]; k += 2) {
+                if (add) {
+                    dest.addRectangle(xs[i], ys[k], xs[i + 1], ys[k + 1]);
+                } else {
+                    dest.subtractRectangle(xs[i], ys[k], xs[i + 1], ys[k + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to merge the pending rectangles into the slabs.
+     */
+    private void flush() {
+        if (pendingAdd != null) {
+            DeltaMerge dm = pendingAdd;
+            pendingAdd = null;
+            ManhattanRegion added = fromDeltaMerge(dm);
+            setTo(numXs == 0 ? added : combine(this, added, UNION));
+        }
+        if (pendingSubtract != null) {
+            DeltaMerge dm = pendingSubtract;
+            pendingSubtract = null;
+            if (numXs != 0) {
+                setTo(combine(this, fromDeltaMerge(dm), DIFFERENCE));
+            }
+        }
+    }
+
+    /**
+     * Method to build a region from the output of a DeltaMerge.
+     * For each X the DeltaMerge writes the Y coordinates where the coverage changes,
+     * so each slab is the previous slab XORed with these intervals.
+     */
+    private static ManhattanRegion fromDeltaMerge(DeltaMerge dm) {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bout);
+            dm.loop(out);
+            out.close();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bout.toByteArray()));
+            Builder b = new Builder();
+            int[] flips = NO_INTS;
+            while (in.readBoolean()) {
+                int x = in.readInt();
+                int count = in.readInt();
+                if (count > flips.length) {
+                    flips = new int[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    flips[i] = in.readInt() >> 1;
+                }
+                b.applyFlips(x, flips, count);
+            }
+            return b.finish();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Method to build a region from a Manhattan polygon using the even-odd rule.
+     * Each vertical edge flips the coverage of its Y range to the right of the edge.
+     * @return the region or null if the polygon isn't Manhattan or has non-integer coordinates.
+     */
+    private static ManhattanRegion fromPolygon(Point2D[] points) {
+        int n = points.length;
+        long[] edges = new long[n];
+        int[] lows = new int[n];
+        int[] highs = new int[n];
+        int numEdges = 0;
+        for (int i = 0; i < n; i++) {
+            Point2D p0 = points[i == 0 ? n - 1 : i - 1];
+            Point2D p1 = points[i];
+            if (!isCoordinate(p1.getX()) || !isCoordinate(p1.getY())) {
+                return null;
+            }
+            if (p0.getY() == p1.getY()) {
+                continue;
+            }
+            if (p0.getX() != p1.getX()) {
+                return null;
+            }
+            lows[numEdges] = (int) Math.min(p0.getY(), p1.getY());
+            highs[numEdges] = (int) Math.max(p0.getY(), p1.getY());
+            edges[numEdges] = ((long) (int) p1.getX()) << 32 | numEdges;
+            numEdges++;
+        }
+        Arrays.sort(edges, 0, numEdges);
+        Builder b = new Builder();
+        int[] flips = new int[numEdges * 2];
+        for (int i = 0; i < numEdges;) {
+            int x = (int) (edges[i] >> 32);
+            int count = 0;
+            for (; i < numEdges && (int) (edges[i] >> 32) == x; i++) {
+                int e = (int) edges[i];
+                flips[count++] = lows[e];
+                flips[count++] = highs[e];
+            }
+            Arrays.sort(flips, 0, count);
+            b.applyFlips(x, flips, count);
+        }
+        return b.finish();
+    }
+
+    /**
+     * Method to combine two regions slab by slab.
+     */
+    private static ManhattanRegion combine(ManhattanRegion a, ManhattanRegion b, int op) {
+        Builder out = new Builder();
+        int ia = 0, ib = 0;
+        while (ia < a.numXs || ib < b.numXs) {
+            int x;
+            if (ib >= b.numXs || ia < a.numXs && a.xs[ia] <= b.xs[ib]) {
+                x = a.xs[ia];
+            } else {
+                x = b.xs[ib];
+            }
+            if (ia < a.numXs && a.xs[ia] == x) {
+                ia++;
+            }
+            if (ib < b.numXs && b.xs[ib] == x) {
+                ib++;
+            }
+            out.startSlab(x);
+            combineIntervals(a.ys, ia == 0 ? 0 : a.starts[ia - 1], a.starts[ia],
+                    b.ys, ib == 0 ? 0 : b.starts[ib - 1], b.starts[ib], op, out);
+            out.endSlab();
+        }
+        return out.finish();
+    }
+
+    /**
+     * Method to combine two sorted lists of interval ends.
+     * Equal ends toggle the state once per occurrence, so a list may contain duplicates.
+     */
+    private static void combineIntervals(int[] a, int ai, int aEnd, int[] b, int bi, int bEnd, int op, Builder out) {
+        boolean inA = false, inB = false, inOut = false;
+        while (ai < aEnd || bi < bEnd) {
+            int y;
+            if (bi >= bEnd || ai < aEnd && a[ai] <= b[bi]) {
+                y = a[ai];
+            } else {
+                y = b[bi];
+            }
+            while (ai < aEnd && a[ai] == y) {
+                inA = !inA;
+                ai++;
+            }
+            while (bi < bEnd && b[bi] == y) {
+                inB = !inB;
+                bi++;
+            }
+            boolean o;
+            switch (op) {
+                case UNION:
+                    o = inA || inB;
+                    break;
+                case INTERSECT:
+                    o = inA && inB;
+                    break;
+                case DIFFERENCE:
+                    o = inA && !inB;
+                    break;
+                default:
+                    o = inA != inB;
+                    break;
+            }
+            if (o != inOut) {
+                out.addY(y);
+                inOut = o;
+            }
+        }
+    }
+
+    /**
+     * Class to append slabs to a new region.
+     * Slabs equal to their predecessor are dropped.
+     */
+    private static class Builder {
+
+        private final ManhattanRegion r = new ManhattanRegion();
+        private int numYs;
+
+        private void startSlab(int x) {
+            if (r.numXs + 2 > r.starts.length) {
+                int newLength = Math.max(8, r.starts.length * 2);
+                r.starts = Arrays.copyOf(r.starts, newLength);
+                r.xs = Arrays.copyOf(r.xs, newLength);
+            }
+            r.xs[r.numXs] = x;
+            r.starts[r.numXs] = numYs;
+        }
+
+        private void addY(int y) {
+            if (numYs >= r.ys.length) {
+                r.ys = Arrays.copyOf(r.ys, Math.max(16, r.ys.length * 2));
+            }
+            r.ys[numYs++] = y;
+        }
+
+        private void endSlab() {
+            int start = r.starts[r.numXs];
+            int len = numYs - start;
+            boolean same;
+            if (r.numXs == 0) {
+                same = len == 0;
+            } else {
+                int prevStart = r.starts[r.numXs - 1];
+                same = len == start - prevStart;
+                for (int k = 0; same && k < len; k++) {
+                    same = r.ys[prevStart + k] == r.ys[start + k];
+                }
+            }
+            if (same) {
+                numYs = start;
+            } else {
+                r.numXs++;
+            }
+        }
+
+        /**
+         * Method to append a slab which is the last slab XORed with the intervals in "flips".
+         */
+        private void applyFlips(int x, int[] flips, int count) {
+            int prevStart = r.numXs == 0 ? 0 : r.starts[r.numXs - 1];
+            int prevEnd = numYs;
+            startSlab(x);
+            // appending never overwrites the last slab, even if "ys" is reallocated
+            combineIntervals(r.ys, prevStart, prevEnd, flips, 0, count, XOR, this);
+            endSlab();
+        }
+
+        private ManhattanRegion finish() {
+            r.starts[r.numXs] = numYs;
+            assert r.numXs == 0 || r.starts[r.numXs] == r.starts[r.numXs - 1];
+            return r;
+        }
+    }
+}
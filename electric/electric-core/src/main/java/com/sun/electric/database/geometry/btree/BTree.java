@@ -314,6 +314,160 @@ public class BTree
         throw new RuntimeException("not implemented");
     }
 
+    /**
+     *  Returns a loader which fills this (empty) tree from keys
+     *  supplied in strictly increasing order.  Leaves are filled one
+     *  after another and the interior nodes above them, with their
+     *  counts and summaries, are built bottom-up as each node is
+     *  completed, so loading n values is a single linear pass rather
+     *  than n walks from the root.  The tree must not be used until
+     *  BulkLoader.finish() has been called.
+     */
+    public BulkLoader bulkLoad() {
+        if (size!=0) throw new RuntimeException("bulkLoad() may only be used on an empty BTree");
+        return new BulkLoader();
+    }
+
+    /** Builds a BTree bottom-up from sorted keys; see {@see BTree#bulkLoad()}. */
+    public class BulkLoader {
+
+        /** the leaf being filled */
+        private final LeafNodeCursor<K,V,S> leaf = new LeafNodeCursor<K,V,S>(BTree.this);
+
+        /** the open interior node at each level above the leaves */
+        private final List<InteriorNodeCursor<K,V,S>> levels = new ArrayList<InteriorNodeCursor<K,V,S>>();
+
+        /** per level: least key, number of values, and summary beneath the open node; count of its last child */
+        private final List<byte[]> levelKeys = new ArrayList<byte[]>();
+        private final List<byte[]> levelSummaries = new ArrayList<byte[]>();
+        private       int[]        levelCounts = new int[4];
+        private       int[]        lastChildCounts = new int[4];
+
+        private final byte[] kbuf = new byte[uk.getSize()];
+        private final byte[] lastKey = new byte[uk.getSize()];
+        private final byte[] leafKey = new byte[uk.getSize()];
+        private final byte[] leafSummary = summary==null ? null : new byte[summary.getSize()];
+        private       int    count = 0;
+        private       boolean finished = false;
+
+        private BulkLoader() {
+            // the (empty) root leaf becomes the first leaf
+            leaf.initBuf(ps.getPage(rootpage, false), rootpage, false);
+        }
+
+        /** appends a value whose key is strictly greater than every key appended so far */
+        public void append(K key, V val) {
+            if (finished) throw new RuntimeException("BulkLoader has already finished");
+            uk.serialize(key, kbuf, 0);
+            if (count > 0 && uk.compare(kbuf, 0, lastKey, 0) <= 0)
+                throw new RuntimeException("BulkLoader keys must be strictly increasing");
+
+            // leave room for one more value, just like a tree built by appending
+            if (leaf.getNumBuckets() >= leaf.getMaxBuckets()-1) {
+                closeLeaf(false);
+                leaf.initBuf(ps.getPage(ps.createPage(), false), -1, false);
+            }
+            leaf.appendVal(kbuf, 0, val);
+            System.arraycopy(kbuf, 0, lastKey, 0, lastKey.length);
+            count++;
+        }
+
+        /** completes the tree; it may then be used (and appended to) normally */
+        public void finish() {
+            if (finished) return;
+            finished = true;
+            closeLeaf(true);
+            int leafPage = leaf.getPageId();
+            if (levels.size() > 0) {
+                for(int level = 0; level < levels.size(); level++) {
+                    InteriorNodeCursor<K,V,S> cur = levels.get(level);
+                    cur.setRightMost(true);
+                    if (level == levels.size()-1) {
+                        cur.setParent(cur.getPageId());
+                        rootpage = cur.getPageId();
+                        cur.writeBack();
+                        break;
+                    }
+                    cur.writeBack();
+                    addChild(level+1, cur.getPageId(), levelKeys.get(level), levelCounts[level], levelSummaries.get(level));
+                }
+            } else {
+                // a single leaf is the root
+                leaf.setParent(leafPage);
+                leaf.writeBack();
+                rootpage = leafPage;
+            }
+            size = count;
+            if (count > 0) {
+                largestKeyPage = leafPage;
+                System.arraycopy(lastKey, 0, largestKey, 0, largestKey.length);
+            }
+        }
+
+        private void closeLeaf(boolean isRightMost) {
+            leaf.setRightMost(isRightMost);
+            leaf.writeBack();
+            if (leaf.getNumBuckets()==0 || (isRightMost && levels.size()==0)) return;
+            leaf.getKey(0, leafKey, 0);
+            if (summary!=null) leaf.getSummary(leafSummary, 0);
+            addChild(0, leaf.getPageId(), leafKey, leaf.getNumBuckets(), leafSummary);
+        }
+
+        /** adds a completed child node to the open interior node at the given level */
+        private void addChild(int level, int pageid, byte[] key, int num, byte[] summ) {
+            if (level == levels.size()) {
+                levels.add(new InteriorNodeCursor<K,V,S>(BTree.this));
+                levelKeys.add(new byte[uk.getSize()]);
+                levelSummaries.add(summary==null ? null : new byte[summary.getSize()]);
+                if (level >= levelCounts.length) {
+                    int[] newCounts = new int[levelCounts.length*2];
+                    System.arraycopy(levelCounts, 0, newCounts, 0, levelCounts.length);
+                    levelCounts = newCounts;
+                    int[] newLast = new int[lastChildCounts.length*2];
+                    System.arraycopy(lastChildCounts, 0, newLast, 0, lastChildCounts.length);
+                    lastChildCounts = newLast;
+                }
+                openNode(level);
+            }
+            InteriorNodeCursor<K,V,S> cur = levels.get(level);
+            if (cur.getNumBuckets() > 0 && cur.getNumBuckets() >= cur.getMaxBuckets()-1) {
+                cur.writeBack();
+                addChild(level+1, cur.getPageId(), levelKeys.get(level), levelCounts[level], levelSummaries.get(level));
+                openNode(level);
+            }
+            byte[] nodeSummary = levelSummaries.get(level);
+            int n = cur.getNumBuckets();
+            if (n == 0) {
+                cur.setNumBuckets(1);
+                System.arraycopy(key, 0, levelKeys.get(level), 0, key.length);
+                if (summary!=null) System.arraycopy(summ, 0, nodeSummary, 0, nodeSummary.length);
+                levelCounts[level] = 0;
+            } else {
+                int ofs = cur.insertNewBucketAt(n);
+                System.arraycopy(key, 0, cur.getBuf(), ofs, key.length);
+                cur.setNumValsBelowBucket(n-1, lastChildCounts[level]);
+                if (summary!=null) summary.multiply(nodeSummary, 0, summ, 0, nodeSummary, 0);
+            }
+            cur.setBucketPageId(n, pageid);
+            if (summary!=null) cur.setSummary(n, summ, 0);
+            levelCounts[level] += num;
+            lastChildCounts[level] = num;
+
+            // point the child at its parent
+            CachedPage cp = ps.getPage(pageid, true);
+            ui.serializeInt(cur.getPageId(), cp.getBuf(), 0);
+            cp.setDirty();
+        }
+
+        private void openNode(int level) {
+            InteriorNodeCursor<K,V,S> cur = levels.get(level);
+            cur.forgetCachedPage();
+            int pageid = ps.createPage();
+            cur.initBuf(ps.getPage(pageid, false), pageid, false);
+            cur.setNumBuckets(0);
+        }
+    }
+
     /** compute the summary of all (key,value) pairs between min and max, inclusive; null means "no limit" */
     public S getSummaryFromKeys(K min, K max) {
         if (min!=null) uk.serialize(min, keybuf, 0);
@@ -114,6 +114,20 @@ class LeafNodeCursor
         writeBack();
     }
 
+    /**
+     *  Append a key/value pair after the last bucket without marking
+     *  the page dirty; the caller must writeBack() once it is done
+     *  filling the page.
+     */
+    public void appendVal(byte[] key, int key_ofs, V val) {
+        assert val!=null;
+        assert getNumBuckets() < getMaxBuckets();
+        int pos = LEAF_HEADER_SIZE + LEAF_ENTRY_SIZE*getNumBuckets();
+        System.arraycopy(key, key_ofs, getBuf(), pos, bt.uk.getSize());
+        bt.uv.serialize(val, getBuf(), pos + bt.uk.getSize());
+        setNumBuckets(getNumBuckets()+1);
+    }
+
     /** Delete the key/value pair at the designated bucket. */
     public void deleteVal(int bucket) {
         assert bucket < getNumBuckets();
@@ -0,0 +1,120 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedPageStorage.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ *  A PageStorage whose pages live outside the Java heap, in a
+ *  temporary file that is memory-mapped a segment at a time.  The
+ *  operating system decides which pages stay resident, so the heap
+ *  only holds whatever a {@see CachingPageStorageWrapper} in front of
+ *  this class chooses to keep.
+ *
+ *  Like FilePageStorage, the on-disk format is not stable and the
+ *  file is discarded when the storage is closed.
+ */
+public class MappedPageStorage extends PageStorage {
+
+    public static MappedPageStorage create() {
+        return new MappedPageStorage();
+    }
+
+    // same page size as FilePageStorage
+    private static final int BLOCK_SIZE = 4096 * 4;
+
+    // each mapped segment is 64MB
+    private static final int SEGMENT_SHIFT = 26;
+
+    //////////////////////////////////////////////////////////////////////////////
+
+    private final    int                 pagesPerSegment;
+    private          File                file;
+    private          RandomAccessFile    raf;
+    private          FileChannel         channel;
+    private volatile MappedByteBuffer[]  segments = new MappedByteBuffer[0];
+    private          int                 numpages;
+
+    private MappedPageStorage() {
+        super(BLOCK_SIZE);
+        this.pagesPerSegment = (1 << SEGMENT_SHIFT) / BLOCK_SIZE;
+        this.numpages = 0;
+    }
+
+    public synchronized int getNumPages() { return numpages; }
+
+    public synchronized int createPage() {
+        try {
+            if (raf == null) {
+                file = File.createTempFile("pagestorage", ".ebtree");
+                file.deleteOnExit();
+                raf = new RandomAccessFile(file, "rw");
+                channel = raf.getChannel();
+            }
+            int seg = numpages / pagesPerSegment;
+            if (seg >= segments.length) {
+                MappedByteBuffer[] newsegments = new MappedByteBuffer[seg+1];
+                System.arraycopy(segments, 0, newsegments, 0, segments.length);
+                newsegments[seg] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                               ((long)seg) << SEGMENT_SHIFT, 1 << SEGMENT_SHIFT);
+                segments = newsegments;
+            }
+        } catch (IOException e) { throw new RuntimeException(e); }
+        return numpages++;
+    }
+
+    /** returns a private view of the segment holding pageid, positioned at the start of the page */
+    private ByteBuffer getPageBuffer(int pageid) {
+        ByteBuffer bb = segments[pageid / pagesPerSegment].duplicate();
+        bb.position((pageid % pagesPerSegment) * getPageSize());
+        return bb;
+    }
+
+    public void writePage(int pageid, byte[] buf, int ofs) {
+        getPageBuffer(pageid).put(buf, ofs, getPageSize());
+    }
+
+    public void readPage(int pageid, byte[] buf, int ofs) {
+        getPageBuffer(pageid).get(buf, ofs, getPageSize());
+    }
+
+    public void fsync(int pageid) {
+        // do nothing because we currently make no guarantees about when things hit the disk
+    }
+
+    public synchronized void close() {
+        // mapped segments are released by the garbage collector
+        segments = new MappedByteBuffer[0];
+        try {
+            if (channel != null) channel.close();
+            if (raf != null) raf.close();
+        } catch (IOException e) { throw new RuntimeException(e); }
+        if (file != null) file.delete();
+        channel = null;
+        raf = null;
+        file = null;
+    }
+}
@@ -1303,7 +1303,7 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
         if (!cellContentsFresh) {
 //            System.out.println("Refresh contents of " + this);
             Topology topology = getTopologyOptional();
-            nodes = topology != null ? topology.backupNodes(backup.cellRevision.nodes) : null;
+            nodes = topology != null ? topology.backupNodes(backup.cellRevision) : null;
             arcs = topology != null ? topology.backupArcs(backup.cellRevision.arcs) : null;
             exports = backupExports();
         }
@@ -4731,7 +4731,7 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
                 for (int nodeIndex = 0; nodeIndex < topology.getNumNodes(); nodeIndex++) {
                     NodeInst ni = topology.getNode(nodeIndex);
                     ImmutableNodeInst n = ni.getD();
-                    assert cellRevision.nodes.get(nodeIndex) == n;
+                    assert cellRevision.sameNode(nodeIndex, n);
                 }
             }
         }
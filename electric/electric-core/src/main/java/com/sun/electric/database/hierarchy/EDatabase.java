@@ -37,7 +37,6 @@ import com.sun.electric.database.id.IdManager;
 import com.sun.electric.database.id.LibId;
 import com.sun.electric.database.id.TechId;
 import com.sun.electric.database.network.NetworkManager;
-import com.sun.electric.database.text.ImmutableArrayList;
 import com.sun.electric.database.text.Setting;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.technology.TechPool;
@@ -512,7 +511,7 @@ public class EDatabase {
 //        long startTime = System.currentTimeMillis();
         assert techPool == snapshot.techPool;
         CellTree[] cellTrees = new CellTree[linkedCells.size()];
-        boolean cellsChanged = cellTrees.length != snapshot.cellTrees.size();
+        boolean cellsChanged = cellTrees.length != snapshot.getNumCells();
         for (int cellIndex = 0; cellIndex < cellTrees.length; cellIndex++) {
             Cell cell = getCell(cellIndex);
             if (cell != null) {
@@ -537,7 +536,8 @@ public class EDatabase {
         }
 
         setSnapshot(snapshot.with(changingTool, environment, cellTrees, libBackups), true);
-        for (CellTree cellTree : snapshot.cellTrees) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellTree cellTree = snapshot.getCellTree(cellIndex);
             if (cellTree == null) {
                 continue;
             }
@@ -560,7 +560,8 @@ public class EDatabase {
         recoverLibraries();
         recycleCells();
         BitSet recovered = new BitSet();
-        for (CellBackup newBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup newBackup = snapshot.getCell(cellIndex);
             if (newBackup != null) {
                 recoverRecursively(newBackup.cellRevision.d.cellId, recovered);
             }
@@ -617,9 +618,8 @@ public class EDatabase {
         recycleCells();
 
         BitSet cellNamesChangedInLibrary = new BitSet();
-        ImmutableArrayList<CellBackup> cellBackups = snapshot.cellBackups;
-        if (oldSnapshot.cellBackups.size() == cellBackups.size()) {
-            for (int cellIndex = 0; cellIndex < cellBackups.size(); cellIndex++) {
+        if (oldSnapshot.getNumCells() == snapshot.getNumCells()) {
+            for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
                 CellBackup oldBackup = oldSnapshot.getCell(cellIndex);
                 CellBackup newBackup = snapshot.getCell(cellIndex);
                 if (oldBackup == newBackup) {
@@ -652,7 +652,8 @@ public class EDatabase {
         BitSet updated = new BitSet();
         BitSet exportsModified = new BitSet();
         BitSet boundsModified = new BitSet();
-        for (CellBackup newBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup newBackup = snapshot.getCell(cellIndex);
             if (newBackup != null) {
                 undoRecursively(oldSnapshot, newBackup.cellRevision.d.cellId, updated, exportsModified, boundsModified);
             }
@@ -792,15 +793,15 @@ public class EDatabase {
     }
 
     private void recycleCells() {
-        ImmutableArrayList<CellBackup> cellBackups = snapshot.cellBackups;
-        while (linkedCells.size() > cellBackups.size()) {
+        int numCells = snapshot.getNumCells();
+        while (linkedCells.size() > numCells) {
             linkedCells.remove(linkedCells.size() - 1);
         }
-        while (linkedCells.size() < cellBackups.size()) {
+        while (linkedCells.size() < numCells) {
             linkedCells.add(null);
         }
-        for (int cellIndex = 0; cellIndex < cellBackups.size(); cellIndex++) {
-            CellBackup newBackup = cellBackups.get(cellIndex);
+        for (int cellIndex = 0; cellIndex < numCells; cellIndex++) {
+            CellBackup newBackup = snapshot.getCell(cellIndex);
             Cell cell = linkedCells.get(cellIndex);
             if (newBackup == null) {
                 if (cell != null) {
@@ -814,8 +815,8 @@ public class EDatabase {
 
     private void recoverCellGroups() {
         ArrayList<TreeSet<Cell>> groups = new ArrayList<TreeSet<Cell>>();
-        for (int cellIndex = 0; cellIndex < snapshot.cellBackups.size(); cellIndex++) {
-            CellBackup cellBackup = snapshot.cellBackups.get(cellIndex);
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
@@ -909,7 +910,7 @@ public class EDatabase {
             assert environment == snapshot.environment;
             assert techPool == snapshot.techPool;
             assert linkedLibs.size() == snapshot.libBackups.size();
-            assert linkedCells.size() == snapshot.cellBackups.size();
+            assert linkedCells.size() == snapshot.getNumCells();
         }
 
         for (int libIndex = 0; libIndex < linkedLibs.size(); libIndex++) {
@@ -932,7 +933,7 @@ public class EDatabase {
             Cell cell = linkedCells.get(cellIndex);
             if (cell == null) {
                 if (snapshotFresh) {
-                    assert snapshot.cellBackups.get(cellIndex) == null;
+                    assert snapshot.getCell(cellIndex) == null;
                 }
                 continue;
             }
@@ -943,7 +944,7 @@ public class EDatabase {
             cell.check();
             if (snapshotFresh) {
                 assert cell.cellBackupFresh;
-                assert cell.backup == snapshot.cellBackups.get(cellIndex);
+                assert cell.backup == snapshot.getCell(cellIndex);
                 assert cell.getBounds() == snapshot.getCellBounds(cellId);
 //                cell.checkBoundsCorrect();
             }
@@ -962,7 +963,7 @@ public class EDatabase {
 
         if (snapshotFresh) {
             HashMap<Cell.CellGroup, Integer> groupNums = new HashMap<Cell.CellGroup, Integer>();
-            for (int i = 0; i < snapshot.cellBackups.size(); i++) {
+            for (int i = 0; i < snapshot.getNumCells(); i++) {
                 CellBackup cellBackup = snapshot.getCell(i);
                 if (cellBackup == null) {
                     continue;
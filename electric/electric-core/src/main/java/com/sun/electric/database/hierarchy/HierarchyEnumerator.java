@@ -23,6 +23,7 @@
  */
 package com.sun.electric.database.hierarchy;
 
+import com.sun.electric.database.id.CellId;
 import com.sun.electric.database.id.CellUsage;
 import com.sun.electric.database.network.Global;
 import com.sun.electric.database.network.Netlist;
@@ -37,13 +38,22 @@ import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.tool.Job;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 
 import java.awt.geom.AffineTransform;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** The HierarchyEnumerator can help programs that need to "flatten"
  * the design hierarchy. Examples of such programs include the logical
@@ -426,6 +436,127 @@ public final class HierarchyEnumerator {
         //public abstract void visitNodeInstBottomUp(Nodable ni, CellInfo info);
     }
 
+    /** A MultiVisitor lets several Visitors share a single traversal of
+     * the design. Each Visitor sees the same calls, with its own
+     * CellInfo, that it would see if the design were enumerated for it
+     * alone: a Cell instance is expanded when at least one Visitor asks
+     * for it, and only the Visitors that asked for it are told about its
+     * contents.
+     */
+    public static class MultiVisitor extends Visitor {
+
+        private final Visitor[] visitors;
+
+        public MultiVisitor(Visitor... visitors) {
+            this.visitors = visitors.clone();
+        }
+
+        public CellInfo newCellInfo() {
+            return new MultiCellInfo(visitors);
+        }
+
+        public boolean enterCell(CellInfo info) {
+            MultiCellInfo multiInfo = (MultiCellInfo) info;
+            boolean enumInsts = false;
+            for (int i = 0; i < visitors.length; i++) {
+                if (multiInfo.active[i]) {
+                    multiInfo.entered[i] = visitors[i].enterCell(multiInfo.infos[i]);
+                    enumInsts |= multiInfo.entered[i];
+                }
+            }
+            return enumInsts;
+        }
+
+        public void exitCell(CellInfo info) {
+            MultiCellInfo multiInfo = (MultiCellInfo) info;
+            for (int i = 0; i < visitors.length; i++) {
+                if (multiInfo.entered[i]) {
+                    visitors[i].exitCell(multiInfo.infos[i]);
+                }
+            }
+        }
+
+        public boolean visitNodeInst(Nodable ni, CellInfo info) {
+            MultiCellInfo multiInfo = (MultiCellInfo) info;
+            boolean descend = false;
+            for (int i = 0; i < visitors.length; i++) {
+                multiInfo.descend[i] = multiInfo.entered[i] && visitors[i].visitNodeInst(ni, multiInfo.infos[i]);
+                descend |= multiInfo.descend[i];
+            }
+            return descend;
+        }
+    }
+
+    /** The CellInfo of a MultiVisitor holds one CellInfo per Visitor. */
+    private static class MultiCellInfo extends CellInfo {
+
+        private final CellInfo[] infos;
+        /** which Visitors asked to expand this Cell instance */
+        private final boolean[] active;
+        /** which Visitors enumerate the contents of this Cell instance */
+        private final boolean[] entered;
+        /** which Visitors asked to expand the last Nodable visited */
+        private final boolean[] descend;
+
+        MultiCellInfo(Visitor[] visitors) {
+            infos = new CellInfo[visitors.length];
+            for (int i = 0; i < visitors.length; i++) {
+                infos[i] = visitors[i].newCellInfo();
+            }
+            active = new boolean[visitors.length];
+            entered = new boolean[visitors.length];
+            descend = new boolean[visitors.length];
+        }
+
+        @Override
+        void init(Nodable parentInst, Cell cell, VarContext context, Netlist netlist,
+                int[] netToNetID, int[][] exportNdxToNetIDs,
+                AffineTransform xformToRoot, Map<Integer, NetDescription> netIdToNetDesc,
+                CellInfo parentInfo) {
+            super.init(parentInst, cell, context, netlist, netToNetID, exportNdxToNetIDs,
+                    xformToRoot, netIdToNetDesc, parentInfo);
+            MultiCellInfo parent = (MultiCellInfo) parentInfo;
+            for (int i = 0; i < infos.length; i++) {
+                infos[i].init(parentInst, cell, context, netlist, netToNetID, exportNdxToNetIDs,
+                        xformToRoot, netIdToNetDesc, parent != null ? parent.infos[i] : null);
+                active[i] = parent == null || parent.descend[i];
+            }
+        }
+    }
+
+    /** A CellVisitor computes one result per Cell rather than one per
+     * Cell instance. Use it instead of a Visitor when the work done for
+     * a Cell depends only on that Cell and on the results of the Cells it
+     * instantiates, and not on the transform, VarContext or net numbering
+     * of a particular instance. A Cell that is arrayed a million times is
+     * then visited once.
+     *
+     * <p>Cells are visited bottom-up: visitCell() is called for a Cell
+     * after it has been called for every Cell the first one instantiates.
+     * When enumerateCells() runs on more than one thread, Cells that do
+     * not instantiate each other may be visited concurrently, so
+     * visitCell() must only examine the database and must synchronize any
+     * state it shares with other calls.
+     */
+    public static abstract class CellVisitor<R> {
+
+        /** Decide whether the Cell instantiated by a Nodable takes part
+         * in the traversal. The decision must not depend on the context
+         * of the instance. The default is to expand every Cell instance.
+         * @param no a Nodable that instantiates a Cell.
+         * @return true to visit the Cell instantiated by no. */
+        public boolean visitSubCell(Nodable no) {
+            return true;
+        }
+
+        /** Compute the result for one Cell.
+         * @param netlist the Netlist of the Cell.
+         * @param subCellResults the results of the Cells visited so far,
+         * which include all the Cells instantiated by this one.
+         * @return the result for the Cell, which must not be null. */
+        public abstract R visitCell(Netlist netlist, Map<CellId, R> subCellResults);
+    }
+
     /** The NetDescription object provides a Network and the level of
      * hierarchy in which the Network occurs. The visitor can use
      * NetDescription to formulate, for example, the name of
@@ -888,6 +1019,159 @@ public final class HierarchyEnumerator {
         (new HierarchyEnumerator()).doIt(rootNetlist.getCell(), context, rootNetlist, visitor, caching);
     }
 
+
+    /** Visit each distinct Cell in the hierarchy below a root Cell once,
+     * bottom-up.
+     * @param rootNetlist the Netlist of the root Cell. The Netlists of
+     * the subcells are taken from it.
+     * @param visitor the object that computes the result of each Cell.
+     * @param numThreads the number of threads that visit Cells. If it is
+     * 1, all Cells are visited in the calling thread. Otherwise the threads
+     * use the Environment, EditingPreferences and UserInterface of the
+     * calling thread.
+     * @return the results of all visited Cells, keyed by CellId. */
+    public static <R> Map<CellId, R> enumerateCells(Netlist rootNetlist, CellVisitor<R> visitor, int numThreads) {
+        CellTraversal<R> traversal = new CellTraversal<R>(visitor);
+        traversal.collect(rootNetlist);
+        if (numThreads > 1 && traversal.cells.size() > 1) {
+            traversal.visitParallel(numThreads);
+        } else {
+            traversal.visitSerial();
+        }
+        return traversal.results;
+    }
+
+    /** The state of one enumerateCells() call. */
+    private static class CellTraversal<R> {
+
+        private final CellVisitor<R> visitor;
+        /** every distinct Cell, each after the Cells it instantiates */
+        private final List<CellNode> cells = new ArrayList<CellNode>();
+        private final Map<CellId, CellNode> cellNodes = new HashMap<CellId, CellNode>();
+        private final Map<CellId, R> results = new ConcurrentHashMap<CellId, R>();
+        private int numVisited;
+        private Throwable failure;
+
+        private static class CellNode {
+
+            private final Netlist netlist;
+            /** the Cells that instantiate this one */
+            private final List<CellNode> parents = new ArrayList<CellNode>();
+            /** the number of instantiated Cells not visited yet */
+            private final AtomicInteger numPending = new AtomicInteger();
+
+            CellNode(Netlist netlist) {
+                this.netlist = netlist;
+            }
+        }
+
+        CellTraversal(CellVisitor<R> visitor) {
+            this.visitor = visitor;
+        }
+
+        /** Collect the Cells below a Netlist in the calling thread, so
+         * that no Netlist is computed concurrently. */
+        private CellNode collect(Netlist netlist) {
+            CellId cellId = netlist.getCell().getId();
+            CellNode node = cellNodes.get(cellId);
+            if (node != null) {
+                return node;
+            }
+            node = new CellNode(netlist);
+            cellNodes.put(cellId, node);
+            Set<CellNode> subCells = new HashSet<CellNode>();
+            for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext();) {
+                Nodable no = it.next();
+                if (!no.isCellInstance() || ((Cell) no.getProto()).isIcon() || !visitor.visitSubCell(no)) {
+                    continue;
+                }
+                CellNode subCell = collect(netlist.getNetlist(no));
+                if (subCells.add(subCell)) {
+                    subCell.parents.add(node);
+                    node.numPending.incrementAndGet();
+                }
+            }
+            cells.add(node);
+            return node;
+        }
+
+        private void visit(CellNode node) {
+            CellId cellId = node.netlist.getCell().getId();
+            R result = visitor.visitCell(node.netlist, results);
+            if (result == null) {
+                error(true, "no result for " + cellId);
+            }
+            results.put(cellId, result);
+        }
+
+        private void visitSerial() {
+            for (CellNode node : cells) {
+                visit(node);
+            }
+        }
+
+        private void visitParallel(int numThreads) {
+            ExecutorService threads = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("HierarchyEnumerator"));
+            try {
+                // find the leaf cells before any of them is visited
+                List<CellNode> leaves = new ArrayList<CellNode>();
+                for (CellNode node : cells) {
+                    if (node.numPending.get() == 0) {
+                        leaves.add(node);
+                    }
+                }
+                for (CellNode node : leaves) {
+                    submit(threads, node);
+                }
+                synchronized (this) {
+                    while (numVisited < cells.size() && failure == null) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                threads.shutdownNow();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+
+        /** Visit a Cell whose subcells are all visited, then schedule
+         * the parents that were waiting only for it. */
+        private void submit(final ExecutorService threads, final CellNode node) {
+            threads.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        visit(node);
+                        for (CellNode parent : node.parents) {
+                            if (parent.numPending.decrementAndGet() == 0) {
+                                submit(threads, parent);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (CellTraversal.this) {
+                            if (failure == null) {
+                                failure = e;
+                            }
+                            CellTraversal.this.notifyAll();
+                        }
+                        return;
+                    }
+                    synchronized (CellTraversal.this) {
+                        numVisited++;
+                        CellTraversal.this.notifyAll();
+                    }
+                }
+            });
+        }
+    }
     /**
      * Method to count number of unique cells in hierarchy.  Useful
      * for progress tracking of hierarchical netlisters and writers.
@@ -24,8 +24,13 @@
  */
 package com.sun.electric.database.network;
 
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.CellRevision;
 import com.sun.electric.database.CellTree;
 import com.sun.electric.database.EquivPorts;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableExport;
+import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.EDatabase;
@@ -34,7 +39,9 @@ import com.sun.electric.database.hierarchy.Nodable;
 import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.prototype.PortProto;
 import com.sun.electric.database.text.Name;
+import com.sun.electric.database.text.ImmutableArrayList;
 import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.Connection;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.technology.ArcProto;
@@ -48,6 +55,7 @@ import com.sun.electric.util.math.GenMath;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -114,6 +122,10 @@ public class NetCell {
     int numExportedDrawns;
     /** */
     int numConnectedDrawns;
+    /** Port instances which start a new drawn if they are not connected to exports or arcs. */
+    private BitSet seedPortInsts;
+    /** True if some port instances have isolated connections; such drawns are not updated incrementally. */
+    private boolean hasIsolatedPorts;
     /** A map from canonic String to NetName. */
     HashMap<Name, GenMath.MutableInteger> netNames = new HashMap<Name, GenMath.MutableInteger>();
     /** Counter for enumerating NetNames. */
@@ -494,6 +506,8 @@ public class NetCell {
             numDrawns++;
         }
         numConnectedDrawns = numDrawns;
+        seedPortInsts = new BitSet(arcsOffset);
+        hasIsolatedPorts = false;
         for (int i = 0, numNodes = cell.getNumNodes(); i < numNodes; i++) {
             NodeInst ni = cell.getNode(i);
             NodeProto np = ni.getProto();
@@ -501,16 +515,25 @@ public class NetCell {
                     || np.getFunction() == PrimitiveNode.Function.ART && np != Generic.tech().simProbeNode
                     || np == Artwork.tech().pinNode
                     || np == Generic.tech().invisiblePinNode) {
+                if (!hasIsolatedPorts && np instanceof PrimitiveNode) {
+                    for (int j = 0, numPorts = np.getNumPorts(); j < numPorts; j++) {
+                        if (((PrimitivePort) np.getPort(j)).isIsolated()) {
+                            hasIsolatedPorts = true;
+                        }
+                    }
+                }
                 continue;
             }
             int numPortInsts = np.getNumPorts();
             for (int j = 0; j < numPortInsts; j++) {
                 PortInst pi = ni.getPortInst(j);
                 int piOffset = getPortInstOffset(pi);
-                if (drawns[piOffset] >= 0) {
+                if (pi.getPortProto() instanceof PrimitivePort && ((PrimitivePort) pi.getPortProto()).isIsolated()) {
+                    hasIsolatedPorts = true;
                     continue;
                 }
-                if (pi.getPortProto() instanceof PrimitivePort && ((PrimitivePort) pi.getPortProto()).isIsolated()) {
+                seedPortInsts.set(piOffset);
+                if (drawns[piOffset] >= 0) {
                     continue;
                 }
                 addToDrawn(pi);
@@ -524,6 +547,329 @@ public class NetCell {
 //  			cell.getNumArcs() + " arcs, " + (arcsOffset - cell.getNumPorts()) + " portinsts, " + netMap.length + "(" + piDrawns + ") drawns");
     }
 
+    /**
+     * Updates drawns after arcs of this Cell were added, removed or reconnected.
+     * Drawns which are not touched by changed arcs keep their contents; only touched
+     * drawns are traversed again. Then all drawns are renumbered in the order
+     * which makeDrawns would produce.
+     * @param oldCellTree CellTree for which drawns were computed.
+     * @param newCellTree current CellTree.
+     * @return false if drawns can't be updated incrementally and must be recomputed.
+     */
+    private boolean updateDrawns(CellTree oldCellTree, CellTree newCellTree) {
+        if (drawns == null || seedPortInsts == null || hasIsolatedPorts
+                || !sameNodesAndExports(oldCellTree, newCellTree, false)) {
+            return false;
+        }
+        ImmutableArrayList<ImmutableArcInst> oldArcs = oldCellTree.top.cellRevision.arcs;
+        ImmutableArrayList<ImmutableArcInst> newArcs = newCellTree.top.cellRevision.arcs;
+        if (arcsOffset + oldArcs.size() != drawns.length || newArcs.size() != cell.getNumArcs()) {
+            return false;
+        }
+        int numPorts = cell.getNumPorts();
+        int oldNumDrawns = numDrawns;
+        int[] oldArcIndexByArcId = oldCellTree.top.getArcIndexByArcIdMap();
+        int[] newDrawns = new int[arcsOffset + newArcs.size()];
+        System.arraycopy(drawns, 0, newDrawns, 0, arcsOffset);
+        boolean[] dirty = new boolean[oldNumDrawns];
+        BitSet keptOldArcs = new BitSet(oldArcs.size());
+        int[] stack = new int[16];
+        int stackSize = 0;
+
+        // Copy drawns of unchanged arcs and mark drawns at the ends of new arcs
+        for (int arcIndex = 0; arcIndex < newArcs.size(); arcIndex++) {
+            ImmutableArcInst a = newArcs.get(arcIndex);
+            int oldArcIndex = a.arcId < oldArcIndexByArcId.length ? oldArcIndexByArcId[a.arcId] : -1;
+            if (oldArcIndex >= 0 && sameArcConnectivity(oldArcs.get(oldArcIndex), a)) {
+                newDrawns[arcsOffset + arcIndex] = drawns[arcsOffset + oldArcIndex];
+                keptOldArcs.set(oldArcIndex);
+                continue;
+            }
+            newDrawns[arcsOffset + arcIndex] = -1;
+            ArcInst ai = cell.getArc(arcIndex);
+            if (ai.getProto().getFunction() == ArcProto.Function.NONELEC) {
+                continue;
+            }
+            int head = drawns[getPortInstOffset(ai.getHeadPortInst())];
+            if (head >= 0) {
+                dirty[head] = true;
+            }
+            int tail = drawns[getPortInstOffset(ai.getTailPortInst())];
+            if (tail >= 0) {
+                dirty[tail] = true;
+            }
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+            }
+            stack[stackSize++] = arcsOffset + arcIndex;
+        }
+
+        // Mark drawns of removed arcs
+        for (int oldArcIndex = 0; oldArcIndex < oldArcs.size(); oldArcIndex++) {
+            if (keptOldArcs.get(oldArcIndex)) {
+                continue;
+            }
+            int drawn = drawns[arcsOffset + oldArcIndex];
+            if (drawn >= 0) {
+                dirty[drawn] = true;
+            }
+        }
+
+        // Clear marked drawns and collect their seeds
+        for (int i = 0; i < newDrawns.length; i++) {
+            int drawn = newDrawns[i];
+            if (drawn < 0 || !dirty[drawn]) {
+                continue;
+            }
+            newDrawns[i] = -1;
+            if (i >= numPorts && i < arcsOffset && !seedPortInsts.get(i)) {
+                continue;
+            }
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+            }
+            stack[stackSize++] = i;
+        }
+
+        // Traverse cleared drawns
+        int numLabels = oldNumDrawns;
+        int[] seeds = Arrays.copyOf(stack, stackSize);
+        for (int seed : seeds) {
+            if (newDrawns[seed] >= 0) {
+                continue;
+            }
+            int label = numLabels++;
+            newDrawns[seed] = label;
+            stackSize = 0;
+            stack[stackSize++] = seed;
+            while (stackSize > 0) {
+                int k = stack[--stackSize];
+                int[] neighbours = getNeighbours(k);
+                for (int n : neighbours) {
+                    if (newDrawns[n] >= 0) {
+                        assert newDrawns[n] == label;
+                        continue;
+                    }
+                    newDrawns[n] = label;
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = n;
+                }
+            }
+        }
+
+        // Renumber drawns in the order of makeDrawns
+        int[] drawnByLabel = new int[numLabels];
+        Arrays.fill(drawnByLabel, -1);
+        int count = 0;
+        for (int i = 0; i < numPorts; i++) {
+            int label = newDrawns[i];
+            if (drawnByLabel[label] < 0) {
+                drawnByLabel[label] = count++;
+            }
+        }
+        numExportedDrawns = count;
+        for (int i = arcsOffset; i < newDrawns.length; i++) {
+            int label = newDrawns[i];
+            if (label >= 0 && drawnByLabel[label] < 0) {
+                drawnByLabel[label] = count++;
+            }
+        }
+        numConnectedDrawns = count;
+        for (int i = seedPortInsts.nextSetBit(numPorts); i >= 0 && i < arcsOffset; i = seedPortInsts.nextSetBit(i + 1)) {
+            int label = newDrawns[i];
+            if (drawnByLabel[label] < 0) {
+                drawnByLabel[label] = count++;
+            }
+        }
+        numDrawns = count;
+        for (int i = 0; i < newDrawns.length; i++) {
+            int label = newDrawns[i];
+            if (label >= 0) {
+                assert drawnByLabel[label] >= 0;
+                newDrawns[i] = drawnByLabel[label];
+            }
+        }
+        drawns = newDrawns;
+        return true;
+    }
+
+    /**
+     * Returns offsets of elements directly connected to the element with specified offset.
+     * This is the same connectivity which addToDrawn traverses.
+     */
+    private int[] getNeighbours(int offset) {
+        int numPorts = cell.getNumPorts();
+        if (offset < numPorts) {
+            return new int[]{getPortInstOffset(cell.getPort(offset).getOriginalPort())};
+        }
+        if (offset >= arcsOffset) {
+            ArcInst ai = cell.getArc(offset - arcsOffset);
+            ArcProto ap = ai.getProto();
+            PortInst hpi = ai.getHeadPortInst();
+            PortInst tpi = ai.getTailPortInst();
+            boolean head = hpi.getPortProto() != busPinPort || ap == busArc;
+            boolean tail = tpi.getPortProto() != busPinPort || ap == busArc;
+            if (head && tail) {
+                return new int[]{getPortInstOffset(hpi), getPortInstOffset(tpi)};
+            }
+            if (head) {
+                return new int[]{getPortInstOffset(hpi)};
+            }
+            if (tail) {
+                return new int[]{getPortInstOffset(tpi)};
+            }
+            return new int[0];
+        }
+
+        // find node by port instance offset
+        int lo = 0, hi = ni_pi.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (ni_pi[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        NodeInst ni = cell.getNode(lo);
+        PortInst pi = ni.getPortInst(offset - ni_pi[lo]);
+        PortProto pp = pi.getPortProto();
+        NodeProto np = ni.getProto();
+        int[] result = new int[4];
+        int n = 0;
+        if (np instanceof PrimitiveNode && np.getNumPorts() > 1) {
+            int topology = ((PrimitivePort) pp).getTopology();
+            for (int i = 0, numNodePorts = np.getNumPorts(); i < numNodePorts; i++) {
+                if (((PrimitivePort) np.getPort(i)).getTopology() != topology) {
+                    continue;
+                }
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, n * 2);
+                }
+                result[n++] = ni_pi[lo] + i;
+            }
+        }
+        for (Iterator<Connection> it = pi.getConnections(); it.hasNext();) {
+            ArcInst ai = it.next().getArc();
+            ArcProto ap = ai.getProto();
+            if (ap.getFunction() == ArcProto.Function.NONELEC) {
+                continue;
+            }
+            if (pp == busPinPort && ap != busArc) {
+                continue;
+            }
+            if (n == result.length) {
+                result = Arrays.copyOf(result, n * 2);
+            }
+            result[n++] = getArcOffset(ai);
+        }
+        for (Iterator<Export> it = pi.getExports(); it.hasNext();) {
+            if (n == result.length) {
+                result = Arrays.copyOf(result, n * 2);
+            }
+            result[n++] = it.next().getPortIndex();
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private int getArcOffset(ArcInst ai) {
+        return arcsOffset + cell.getMemoization().getArcIndex(ai.getD());
+    }
+
+    /**
+     * Checks that two CellTrees differ only in data which doesn't affect netlists,
+     * for example in positions and sizes of nodes and arcs, or in variables.
+     */
+    private static boolean sameNetlistContents(CellTree oldCellTree, CellTree newCellTree) {
+        if (!sameNodesAndExports(oldCellTree, newCellTree, true)) {
+            return false;
+        }
+        ImmutableArrayList<ImmutableArcInst> oldArcs = oldCellTree.top.cellRevision.arcs;
+        ImmutableArrayList<ImmutableArcInst> newArcs = newCellTree.top.cellRevision.arcs;
+        if (oldArcs == newArcs) {
+            return true;
+        }
+        if (oldArcs.size() != newArcs.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldArcs.size(); i++) {
+            ImmutableArcInst oldA = oldArcs.get(i);
+            ImmutableArcInst newA = newArcs.get(i);
+            if (oldA != newA && (oldA.arcId != newA.arcId || oldA.name != newA.name || !sameArcConnectivity(oldA, newA))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that two CellTrees have the same exports and the same nodes as far as
+     * netlists are concerned, and that subcells have the same exports.
+     * @param checkEquivPorts true to check also equivalent ports of subcells.
+     */
+    private static boolean sameNodesAndExports(CellTree oldCellTree, CellTree newCellTree, boolean checkEquivPorts) {
+        CellBackup oldTop = oldCellTree.top;
+        CellBackup newTop = newCellTree.top;
+        if (oldTop.techPool != newTop.techPool) {
+            return false;
+        }
+        CellTree[] oldSubTrees = oldCellTree.getSubTrees();
+        CellTree[] newSubTrees = newCellTree.getSubTrees();
+        for (int i = 0; i < Math.max(oldSubTrees.length, newSubTrees.length); i++) {
+            CellTree oldSubTree = i < oldSubTrees.length ? oldSubTrees[i] : null;
+            CellTree newSubTree = i < newSubTrees.length ? newSubTrees[i] : null;
+            if (oldSubTree == newSubTree) {
+                continue;
+            }
+            if (oldSubTree == null || newSubTree == null) {
+                return false;
+            }
+            if (checkEquivPorts
+                    ? !oldSubTree.getEquivPorts().equalsPorts(newSubTree.getEquivPorts())
+                    : !oldSubTree.top.cellRevision.sameExports(newSubTree.top.cellRevision)) {
+                return false;
+            }
+        }
+
+        CellRevision oldRevision = oldTop.cellRevision;
+        CellRevision newRevision = newTop.cellRevision;
+        if (oldRevision.exports != newRevision.exports) {
+            if (oldRevision.exports.size() != newRevision.exports.size()) {
+                return false;
+            }
+            for (int i = 0; i < oldRevision.exports.size(); i++) {
+                ImmutableExport oldE = oldRevision.exports.get(i);
+                ImmutableExport newE = newRevision.exports.get(i);
+                if (oldE != newE && (oldE.exportId != newE.exportId || oldE.name != newE.name
+                        || oldE.originalNodeId != newE.originalNodeId || oldE.originalPortId != newE.originalPortId)) {
+                    return false;
+                }
+            }
+        }
+        if (oldRevision.nodes != newRevision.nodes) {
+            if (oldRevision.nodes.size() != newRevision.nodes.size()) {
+                return false;
+            }
+            for (int i = 0; i < oldRevision.nodes.size(); i++) {
+                ImmutableNodeInst oldN = oldRevision.nodes.get(i);
+                ImmutableNodeInst newN = newRevision.nodes.get(i);
+                if (oldN != newN && (oldN.nodeId != newN.nodeId || oldN.protoId != newN.protoId
+                        || oldN.name != newN.name || oldN.techBits != newN.techBits)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameArcConnectivity(ImmutableArcInst oldA, ImmutableArcInst newA) {
+        return oldA == newA || oldA.protoId == newA.protoId
+                && oldA.headNodeId == newA.headNodeId && oldA.headPortId == newA.headPortId
+                && oldA.tailNodeId == newA.tailNodeId && oldA.tailPortId == newA.tailPortId;
+    }
+
     void showDrawns() {
         java.io.PrintWriter out;
         String filePath = "tttt";
@@ -875,12 +1221,15 @@ public class NetCell {
             if (oldCellTree == newCellTree) {
                 return;
             }
-            if (oldCellTree == null || !newCellTree.sameNetlist(oldCellTree)) {
+            if ((oldCellTree == null || !newCellTree.sameNetlist(oldCellTree))
+                    && (oldCellTree == null || !sameNetlistContents(oldCellTree, newCellTree))) {
                 // clear errors for cell
                 networkManager.startErrorLogging(cell);
                 try {
 
-                    makeDrawns();
+                    if (oldCellTree == null || !updateDrawns(oldCellTree, newCellTree)) {
+                        makeDrawns();
+                    }
                     // Gather port and arc names
                     initNetnames();
 
@@ -27,6 +27,7 @@ import com.sun.electric.database.EObjectInputStream;
 import com.sun.electric.database.EObjectOutputStream;
 import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.constraint.Constraints;
 import com.sun.electric.database.geometry.EPoint;
 import com.sun.electric.database.geometry.Poly;
@@ -452,9 +453,11 @@ public class ArcInst extends Geometric implements Comparable<ArcInst> {
         do {
             arcId = parentId.newArcId();
         } while (parent.getArcById(arcId) != null);
+        ImmutableNodeInst tailD = tailPort.getNodeInst().getD();
+        ImmutableNodeInst headD = headPort.getNodeInst().getD();
         ImmutableArcInst d = ImmutableArcInst.newInstance(arcId, protoType.getId(), nameKey, nameDescriptor,
-                tailPort.getNodeInst().getD().nodeId, tailProto.getId(), tailPt,
-                headPort.getNodeInst().getD().nodeId, headProto.getId(), headPt,
+                tailD.nodeId, tailProto.getId(), ImmutableArcInst.shareLocation(tailPt, tailD),
+                headD.nodeId, headProto.getId(), ImmutableArcInst.shareLocation(headPt, headD),
                 gridExtendOverMin, angle, flags);
         ArcInst ai = new ArcInst(topology, d, headPort, tailPort);
 
@@ -0,0 +1,392 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PackedRTree.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.topology;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The PackedRTree class implements static R-Trees which are bulk-loaded by the
+ * Sort-Tile-Recursive algorithm: Leutenegger, Lopez, Edgington, "STR: A Simple and Efficient
+ * Algorithm for R-Tree Packing", ICDE 1997.
+ * <P>
+ * Unlike RTNode, the tree can't be modified after it is built. All of its bounding boxes are kept
+ * in one array of doubles, and the entries of every tree node are stored contiguously, so a search
+ * walks primitive arrays instead of RTNode and Rectangle2D objects.
+ * Entries [0,getNumObjects()) are the RTBounds objects, the following entries are the tree nodes
+ * from the bottom level up, and the last entry is the root.
+ * <P>
+ * A PackedRTree is immutable, so it can be searched by several threads without synchronization.
+ */
+public class PackedRTree {
+
+    /** number of entries in a tree node */
+    private static final int NODESIZE = 16;
+    /** empty tree */
+    public static final PackedRTree EMPTY = new PackedRTree(new RTBounds[0]);
+    /** objects in the leaves of this tree */
+    private final RTBounds[] objects;
+    /** bounding boxes of entries: minX, minY, maxX, maxY */
+    private final double[] boxes;
+    /** first entry of every tree node */
+    private final int[] firstEntry;
+    /** entry after the last entry of every tree node */
+    private final int[] lastEntry;
+    /** number of tree levels */
+    private final int height;
+
+    /**
+     * Builds the tree over the specified objects.
+     * The bounds of the objects are read once, so the tree must be rebuilt when they change.
+     * @param objs objects to put into the tree.
+     */
+    public PackedRTree(RTBounds[] objs) {
+        int numObjects = objs.length;
+        int numNodes = 0;
+        int numLevels = 0;
+        for (int count = numObjects; count > 1 || numLevels == 0 && count > 0; count = (count + NODESIZE - 1) / NODESIZE) {
+            numNodes += (count + NODESIZE - 1) / NODESIZE;
+            numLevels++;
+        }
+        objects = new RTBounds[numObjects];
+        boxes = new double[(numObjects + numNodes) * 4];
+        firstEntry = new int[numNodes];
+        lastEntry = new int[numNodes];
+        height = numLevels;
+
+        // sort the objects
+        double[] srcBoxes = new double[numObjects * 4];
+        for (int i = 0; i < numObjects; i++) {
+            Rectangle2D r = objs[i].getBounds();
+            srcBoxes[i * 4 + 0] = r.getMinX();
+            srcBoxes[i * 4 + 1] = r.getMinY();
+            srcBoxes[i * 4 + 2] = r.getMaxX();
+            srcBoxes[i * 4 + 3] = r.getMaxY();
+        }
+        int[] order = sortTiles(srcBoxes, 0, numObjects);
+        for (int i = 0; i < numObjects; i++) {
+            int k = order[i];
+            objects[i] = objs[k];
+            System.arraycopy(srcBoxes, k * 4, boxes, i * 4, 4);
+        }
+
+        // build levels from bottom to top
+        int levelStart = 0, levelEnd = numObjects;
+        int[] srcFirst = new int[numNodes];
+        int[] srcLast = new int[numNodes];
+        while (levelEnd - levelStart > 1 || levelEnd == numObjects && levelEnd > levelStart) {
+            int count = levelEnd - levelStart;
+            int numParents = (count + NODESIZE - 1) / NODESIZE;
+            int parentStart = levelEnd;
+
+            // make parents of consecutive entries
+            for (int p = 0; p < numParents; p++) {
+                int entry = parentStart + p;
+                int first = levelStart + p * NODESIZE;
+                int last = Math.min(first + NODESIZE, levelEnd);
+                srcFirst[p] = first;
+                srcLast[p] = last;
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                for (int e = first; e < last; e++) {
+                    minX = Math.min(minX, boxes[e * 4 + 0]);
+                    minY = Math.min(minY, boxes[e * 4 + 1]);
+                    maxX = Math.max(maxX, boxes[e * 4 + 2]);
+                    maxY = Math.max(maxY, boxes[e * 4 + 3]);
+                }
+                boxes[entry * 4 + 0] = minX;
+                boxes[entry * 4 + 1] = minY;
+                boxes[entry * 4 + 2] = maxX;
+                boxes[entry * 4 + 3] = maxY;
+            }
+
+            // sort parents into tiles, so that the next level groups nearby parents
+            if (numParents > 1) {
+                double[] parentBoxes = new double[numParents * 4];
+                System.arraycopy(boxes, parentStart * 4, parentBoxes, 0, numParents * 4);
+                int[] parentOrder = sortTiles(parentBoxes, 0, numParents);
+                for (int p = 0; p < numParents; p++) {
+                    int k = parentOrder[p];
+                    System.arraycopy(parentBoxes, k * 4, boxes, (parentStart + p) * 4, 4);
+                    firstEntry[parentStart + p - numObjects] = srcFirst[k];
+                    lastEntry[parentStart + p - numObjects] = srcLast[k];
+                }
+            } else {
+                firstEntry[parentStart - numObjects] = srcFirst[0];
+                lastEntry[parentStart - numObjects] = srcLast[0];
+            }
+            levelStart = parentStart;
+            levelEnd = parentStart + numParents;
+        }
+        assert levelEnd == numObjects + numNodes;
+    }
+
+    /**
+     * Method to order entries for packing by the Sort-Tile-Recursive algorithm.
+     * Entries are sorted into vertical slices by the X coordinate of their centers,
+     * and each slice is sorted by the Y coordinate of the centers.
+     * @param srcBoxes bounding boxes of entries
+     * @param start first entry to sort
+     * @param end entry after the last entry to sort
+     * @return the order of entries
+     */
+    private static int[] sortTiles(double[] srcBoxes, int start, int end) {
+        int count = end - start;
+        int[] order = new int[count];
+        double[] keys = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = start + i;
+            keys[i] = srcBoxes[(start + i) * 4 + 0] + srcBoxes[(start + i) * 4 + 2];
+        }
+        sort(order, keys, 0, count);
+
+        int numParents = (count + NODESIZE - 1) / NODESIZE;
+        int numSlices = (int) Math.ceil(Math.sqrt(numParents));
+        int sliceSize = numSlices * NODESIZE;
+        for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(sliceStart + sliceSize, count);
+            for (int i = sliceStart; i < sliceEnd; i++) {
+                keys[i] = srcBoxes[order[i] * 4 + 1] + srcBoxes[order[i] * 4 + 3];
+            }
+            sort(order, keys, sliceStart, sliceEnd);
+        }
+        return order;
+    }
+
+    /**
+     * Method to sort a range of an index array by keys.
+     * Ties keep their original order, so the tree doesn't depend on the sorting algorithm.
+     */
+    private static void sort(int[] order, double[] keys, int from, int to) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+        int[] tmpOrder = new int[n];
+        double[] tmpKeys = new double[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = from; lo < to; lo += 2 * width) {
+                int mid = Math.min(lo + width, to);
+                int hi = Math.min(lo + 2 * width, to);
+                int i = lo, j = mid, k = 0;
+                while (i < mid && j < hi) {
+                    if (keys[j] < keys[i]) {
+                        tmpOrder[k] = order[j];
+                        tmpKeys[k++] = keys[j++];
+                    } else {
+                        tmpOrder[k] = order[i];
+                        tmpKeys[k++] = keys[i++];
+                    }
+                }
+                while (i < mid) {
+                    tmpOrder[k] = order[i];
+                    tmpKeys[k++] = keys[i++];
+                }
+                while (j < hi) {
+                    tmpOrder[k] = order[j];
+                    tmpKeys[k++] = keys[j++];
+                }
+                System.arraycopy(tmpOrder, 0, order, lo, k);
+                System.arraycopy(tmpKeys, 0, keys, lo, k);
+            }
+        }
+    }
+
+    /**
+     * Method to return the number of objects in this PackedRTree.
+     * @return the number of objects in this PackedRTree.
+     */
+    public int getNumObjects() {
+        return objects.length;
+    }
+
+    /**
+     * Method to return an object of this PackedRTree in the leaf order.
+     * @param i index of the object.
+     * @return the object.
+     */
+    public RTBounds getObject(int i) {
+        return objects[i];
+    }
+
+    /**
+     * Method to return the bounds of all objects in this PackedRTree.
+     * @return the bounds of all objects, or null if this tree is empty.
+     */
+    public Rectangle2D getBounds() {
+        if (height == 0) {
+            return null;
+        }
+        int root = boxes.length / 4 - 1;
+        return new Rectangle2D.Double(boxes[root * 4 + 0], boxes[root * 4 + 1],
+                boxes[root * 4 + 2] - boxes[root * 4 + 0], boxes[root * 4 + 3] - boxes[root * 4 + 1]);
+    }
+
+    /**
+     * Method to check the consistency of this PackedRTree.
+     * @exception AssertionError if the tree is inconsistent.
+     */
+    public void check() {
+        int numObjects = objects.length;
+        int numEntries = boxes.length / 4;
+        int[] parentCount = new int[numEntries];
+        for (int node = 0; node < firstEntry.length; node++) {
+            int entry = numObjects + node;
+            int first = firstEntry[node];
+            int last = lastEntry[node];
+            assert first < last && last - first <= NODESIZE && last <= entry;
+            for (int e = first; e < last; e++) {
+                parentCount[e]++;
+                assert boxes[entry * 4 + 0] <= boxes[e * 4 + 0];
+                assert boxes[entry * 4 + 1] <= boxes[e * 4 + 1];
+                assert boxes[entry * 4 + 2] >= boxes[e * 4 + 2];
+                assert boxes[entry * 4 + 3] >= boxes[e * 4 + 3];
+            }
+        }
+        for (int e = 0; e < numEntries - 1; e++) {
+            assert parentCount[e] == 1;
+        }
+        for (int i = 0; i < numObjects; i++) {
+            Rectangle2D r = objects[i].getBounds();
+            assert boxes[i * 4 + 0] == r.getMinX() && boxes[i * 4 + 1] == r.getMinY()
+                    && boxes[i * 4 + 2] == r.getMaxX() && boxes[i * 4 + 3] == r.getMaxY();
+        }
+    }
+
+    /**
+     * Class to search a given area of a PackedRTree.
+     * It returns the same objects as RTNode.Search, but in the leaf order of the PackedRTree.
+     * A Search may be reused for other areas by the method init.
+     */
+    public static class Search implements Iterator<RTBounds> {
+
+        /** tree to search */
+        private final PackedRTree tree;
+        /** current depth of search */
+        private int depth;
+        /** next entry to examine at each depth */
+        private final int[] position;
+        /** entry after the last entry at each depth */
+        private final int[] end;
+        /** desired search bounds */
+        private double minX, minY, maxX, maxY;
+        /** includes objects on the search area edges */
+        private boolean includeEdges;
+        /** the next object to return */
+        private RTBounds nextObj;
+
+        public Search(Rectangle2D bounds, PackedRTree tree, boolean includeEdges) {
+            this.tree = tree;
+            position = new int[tree.height + 1];
+            end = new int[position.length];
+            init(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), includeEdges);
+        }
+
+        /**
+         * Method to restart this Search in another area.
+         * @param minX the low X coordinate of the area.
+         * @param minY the low Y coordinate of the area.
+         * @param maxX the high X coordinate of the area.
+         * @param maxY the high Y coordinate of the area.
+         * @param includeEdges true if objects along edges are considered in.
+         */
+        public void init(double minX, double minY, double maxX, double maxY, boolean includeEdges) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.includeEdges = includeEdges;
+            nextObj = null;
+            depth = 0;
+            int root = tree.boxes.length / 4 - 1;
+            position[0] = root;
+            end[0] = tree.height > 0 ? root + 1 : root;
+        }
+
+        /**
+         * Method to return the next object in the bounds of the search.
+         * @return the next object found.  Returns null when all objects have been reported.
+         */
+        private RTBounds nextObject() {
+            double[] boxes = tree.boxes;
+            int numObjects = tree.objects.length;
+            for (;;) {
+                int e = position[depth];
+                if (e < end[depth]) {
+                    position[depth] = e + 1;
+                    int b = e * 4;
+                    if (includeEdges) {
+                        if (boxes[b + 2] < minX || boxes[b + 0] > maxX || boxes[b + 3] < minY || boxes[b + 1] > maxY) {
+                            continue;
+                        }
+                    } else {
+                        if (boxes[b + 2] <= minX || boxes[b + 0] >= maxX || boxes[b + 3] <= minY || boxes[b + 1] >= maxY) {
+                            continue;
+                        }
+                    }
+                    if (e < numObjects) {
+                        return tree.objects[e];
+                    }
+
+                    // look down the hierarchy
+                    int node = e - numObjects;
+                    depth++;
+                    position[depth] = tree.firstEntry[node];
+                    end[depth] = tree.lastEntry[node];
+                } else {
+                    // pop up the hierarchy
+                    if (depth == 0) {
+                        break;
+                    }
+                    depth--;
+                }
+            }
+            return null;
+        }
+
+        public boolean hasNext() {
+            if (nextObj == null) {
+                nextObj = nextObject();
+            }
+            return nextObj != null;
+        }
+
+        public RTBounds next() {
+            if (nextObj == null) {
+                nextObj = nextObject();
+                if (nextObj == null) {
+                    throw new NoSuchElementException();
+                }
+            }
+            RTBounds ret = nextObj;
+            nextObj = null;
+            return ret;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Search.remove()");
+        }
+    }
+}
@@ -81,10 +81,10 @@ public class Topology {
     private final ArrayList<ArcInst> arcs = new ArrayList<ArcInst>();
     /** True if arc bounds are valid. */
     boolean validArcBounds;
-    /** The geometric data structure. */
-    private RTNode rTree = RTNode.makeTopLevel();
-    /** True of RTree matches node/arc sizes */
-    private boolean rTreeFresh;
+    /** The geometric data structure built on demand, null if it doesn't match node/arc sizes. */
+    private RTNode rTree;
+    /** The packed geometric data structure for searches, null if it doesn't match node/arc sizes. */
+    private volatile PackedRTree packedRTree;
 
     /** Creates a new instance of Topology */
     public Topology(Cell cell, boolean loadBackup) {
@@ -273,13 +273,13 @@ public class Topology {
         }
     }
 
-    public ImmutableNodeInst[] backupNodes(ImmutableArrayList<ImmutableNodeInst> oldNodes) {
+    public ImmutableNodeInst[] backupNodes(CellRevision oldRevision) {
         ImmutableNodeInst[] newNodes = new ImmutableNodeInst[nodes.size()];
-        boolean changed = nodes.size() != oldNodes.size();
+        boolean changed = nodes.size() != oldRevision.nodes.size();
         for (int i = 0; i < nodes.size(); i++) {
             NodeInst ni = nodes.get(i);
             ImmutableNodeInst d = ni.getD();
-            changed = changed || oldNodes.get(i) != d;
+            changed = changed || !oldRevision.sameNode(i, d);
             newNodes[i] = d;
         }
         return changed ? newNodes : null;
@@ -903,7 +903,7 @@ public class Topology {
      * @return an iterator over all of the RTBounds objects in that area.
      */
     public Iterator<RTBounds> searchIterator(Rectangle2D bounds, boolean includeEdges) {
-        return new RTNode.Search(bounds, getRTree(), includeEdges);
+        return new PackedRTree.Search(bounds, getPackedRTree(), includeEdges);
     }
 
     void setArcsDirty() {
@@ -914,20 +914,53 @@ public class Topology {
     }
 
     public void unfreshRTree() {
-        rTreeFresh = false;
+        rTree = null;
+        packedRTree = null;
+    }
+
+    /**
+     * Method to return packed R-Tree of this Cell.
+     * The packed R-Tree is rebuilt after changes of this Cell as a whole,
+     * and it can be searched by several threads.
+     * @return packed R-Tree of this Cell.
+     */
+    public PackedRTree getPackedRTree() {
+        PackedRTree tree = packedRTree;
+        if (tree != null) {
+            return tree;
+        }
+        synchronized (this) {
+            tree = packedRTree;
+            if (tree == null) {
+                if (!validArcBounds) {
+                    computeArcBounds();
+                }
+                RTBounds[] geoms = new RTBounds[nodes.size() + arcs.size()];
+                int numGeoms = 0;
+                for (NodeInst ni : nodes) {
+                    geoms[numGeoms++] = ni;
+                }
+                for (ArcInst ai : arcs) {
+                    geoms[numGeoms++] = ai;
+                }
+                tree = numGeoms > 0 ? new PackedRTree(geoms) : PackedRTree.EMPTY;
+                packedRTree = tree;
+            }
+        }
+        return tree;
     }
 
     /**
      * Method to R-Tree of this Cell.
      * The R-Tree organizes all of the Geometric objects spatially for quick search.
+     * It is built only for the callers which still need RTNode, and it is dropped
+     * after changes of this Cell together with the packed R-Tree.
      * @return R-Tree of this Cell.
      */
     public RTNode getRTree() {
-        if (rTreeFresh) {
-            return rTree;
+        if (rTree == null) {
+            rebuildRTree();
         }
-        rebuildRTree();
-        rTreeFresh = true;
         return rTree;
     }
 
@@ -948,7 +981,6 @@ public class Topology {
         }
         root.checkRTree(0, cellId);
         rTree = root;
-        rTreeFresh = true;
 //        long stopTime = System.currentTimeMillis();
 //        if (Job.getDebug()) System.out.println("Rebuilding R-Tree in " + this + " took " + (stopTime - startTime) + " msec");
     }
@@ -1030,8 +1062,13 @@ public class Topology {
             assert usages[i] == 0;
         }
 
-        if (rTreeFresh) {
+        if (rTree != null) {
             rTree.checkRTree(0, cell.getId());
         }
+        PackedRTree tree = packedRTree;
+        if (tree != null) {
+            assert tree.getNumObjects() == nodes.size() + arcs.size();
+            tree.check();
+        }
     }
 }
@@ -61,6 +61,9 @@ public class EJob {
     /** job key */                              Job.Key jobKey;
     /** type of job (change or examine) */      public final Type jobType;
     /** name of job */                          public final String jobName;
+    /** priority of job */                      final Job.Priority priority;
+    /** True if started on snapshot of other job */ boolean onMySnapshot;
+    /** number of later jobs started before this job */ int overtaken;
 
     public Snapshot oldSnapshot;
     public Snapshot newSnapshot;
@@ -82,13 +85,15 @@ public class EJob {
         jobKey = new Job.Key(connection, jobId, jobType != Job.Type.CLIENT_EXAMINE);
         this.jobType = jobType;
         this.jobName = jobName;
+        priority = Job.Priority.USER;
         state = State.WAITING;
         serializedJob = bytes;
     }
 
-    EJob(Job job, Job.Type jobType, String jobName, EditingPreferences editingPreferences) {
+    EJob(Job job, Job.Type jobType, String jobName, Job.Priority priority, EditingPreferences editingPreferences) {
         this.jobType = jobType;
         this.jobName = jobName;
+        this.priority = priority != null ? priority : Job.Priority.USER;
         state = State.CLIENT_WAITING;
         serverJob = clientJob = job;
         this.editingPreferences = editingPreferences;
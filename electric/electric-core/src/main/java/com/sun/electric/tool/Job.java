@@ -272,7 +272,7 @@ public abstract class Job implements Serializable {
 	 *            the priority of this Job.
 	 */
 	public Job(String jobName, Tool tool, Type jobType, Cell upCell, Cell downCell, Priority priority) {
-		ejob = new EJob(this, jobType, jobName, EditingPreferences.getThreadEditingPreferences());
+		ejob = new EJob(this, jobType, jobName, priority, EditingPreferences.getThreadEditingPreferences());
 		UserInterface ui = getUserInterface();
 		database = ui != null ? ui.getDatabase() : EDatabase.clientDatabase();
 		this.tool = tool;
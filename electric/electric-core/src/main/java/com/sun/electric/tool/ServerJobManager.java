@@ -60,6 +60,8 @@ public class ServerJobManager {
 
     private static final String CLASS_NAME = Job.class.getName();
     private static final int defaultNumThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /** number of times a waiting examine job may be overtaken by later jobs of higher priority */
+    static final int MAX_OVERTAKES = 8;
     private final ReentrantLock lock = new ReentrantLock();
 
     void lock() {
@@ -194,6 +196,7 @@ public class ServerJobManager {
     void addJob(EJob ejob, boolean onMySnapshot) {
         lock();
         try {
+            ejob.onMySnapshot = onMySnapshot;
             if (onMySnapshot) {
                 waitingJobs.add(0, ejob);
             } else {
@@ -339,11 +342,71 @@ public class ServerJobManager {
 //        }
 //    }
     private boolean canDoIt() {
+        return selectWaitingJob() >= 0;
+    }
+
+    /**
+     * Returns index of waiting EJob which can be started now, or -1 if none.
+     * @return index in waitingJobs or -1.
+     */
+    private int selectWaitingJob() {
+        if (runningChangeJob) {
+            return -1;
+        }
+        return selectWaitingJob(waitingJobs, startedJobs.isEmpty());
+    }
+
+    /**
+     * Returns index of waiting EJob which can be started now, or -1 if none.
+     * CHANGE and UNDO jobs run alone in the order they were queued.
+     * Examine jobs queued before the first waiting CHANGE job read the same
+     * snapshot, so they run concurrently and may overtake each other:
+     * jobs started on the snapshot of other job go first, then jobs which
+     * were overtaken MAX_OVERTAKES times, then jobs with higher Job.Priority,
+     * then jobs queued earlier.
+     * @param waitingJobs waiting jobs in the order they were queued.
+     * @param noStartedJobs true if no job is running now.
+     * @return index in waitingJobs or -1.
+     */
+    static int selectWaitingJob(List<EJob> waitingJobs, boolean noStartedJobs) {
         if (waitingJobs.isEmpty()) {
-            return false;
+            return -1;
+        }
+        EJob first = waitingJobs.get(0);
+        if (!first.isExamine()) {
+            return noStartedJobs ? 0 : -1;
         }
-        EJob ejob = waitingJobs.get(0);
-        return startedJobs.isEmpty() || !runningChangeJob && ejob.isExamine();
+        if (first.onMySnapshot || first.overtaken >= MAX_OVERTAKES) {
+            return 0;
+        }
+        int bestIndex = 0;
+        for (int i = 1; i < waitingJobs.size(); i++) {
+            EJob ejob = waitingJobs.get(i);
+            if (!ejob.isExamine()) {
+                break;
+            }
+            if (ejob.overtaken >= MAX_OVERTAKES) {
+                return i;
+            }
+            if (ejob.priority.compareTo(waitingJobs.get(bestIndex).priority) < 0) {
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * Removes the selected EJob from waiting jobs.
+     * Jobs queued before it are counted as overtaken.
+     * @param waitingJobs waiting jobs in the order they were queued.
+     * @param jobIndex index of the selected job.
+     * @return the selected job.
+     */
+    static EJob removeWaitingJob(List<EJob> waitingJobs, int jobIndex) {
+        for (int i = 0; i < jobIndex; i++) {
+            waitingJobs.get(i).overtaken++;
+        }
+        return waitingJobs.remove(jobIndex);
     }
 
     private void setEJobState(EJob ejob, EJob.State newState, String info) {
@@ -474,8 +537,9 @@ public class ServerJobManager {
             for (;;) {
                 signalledEThread = false;
                 // Search for examine
-                if (canDoIt()) {
-                    EJob ejob = waitingJobs.remove(0);
+                int jobIndex = selectWaitingJob();
+                if (jobIndex >= 0) {
+                    EJob ejob = removeWaitingJob(waitingJobs, jobIndex);
                     startedJobs.add(ejob);
                     if (ejob.isExamine()) {
                         assert !runningChangeJob;
@@ -31,6 +31,7 @@ import com.sun.electric.database.network.Netlist;
 import com.sun.electric.database.constraint.Layout;
 import com.sun.electric.database.geometry.*;
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
 import com.sun.electric.database.hierarchy.Nodable;
@@ -947,6 +948,7 @@ public class DRC extends Listener
         /** time stamp for numbering networks. */					int checkTimeStamp;
         /** for numbering networks. */								int checkNetNumber;
         /** total errors found in all threads. */					int totalSpacingMsgFound;
+        /** errors logged through this ReportInfo. */				int numErrorsLogged;
         /** for logging errors */                                   ErrorLogger errorLogger;
         /** for interactive error logging */                        boolean interactiveLogger;
         /** to cache current extra bits */                          int activeSpacingBits = 0;
@@ -981,6 +983,23 @@ public class DRC extends Listener
     {
         ErrorLogger errorLogger = reportInfo.errorLogger;
 
+        if (errorLogger == null) return;
+
+        // The tiles of tiled DRC share the logger: search for repeated errors and log them atomically
+        synchronized (errorLogger)
+        {
+            logDRCError(reportInfo, errorType, msg, cell, limit, actual, rule, poly1, geom1, layer1, poly2, geom2, layer2);
+        }
+    }
+
+    private static void logDRCError(ReportInfo reportInfo,
+                                    DRCErrorType errorType, String msg,
+                                    Cell cell, double limit, double actual, String rule,
+                                    PolyBase poly1, Geometric geom1, Layer layer1,
+                                    PolyBase poly2, Geometric geom2, Layer layer2)
+    {
+        ErrorLogger errorLogger = reportInfo.errorLogger;
+
         if (errorLogger == null) return;
 
 		// if this error is in an ignored area, don't record it
@@ -1160,6 +1179,7 @@ public class DRC extends Listener
         }
 
         errorLogger.logMessage(errorMessage.toString(), geomList, polyList, cell, sortKey, !onlyWarning);
+        if (!onlyWarning) reportInfo.numErrorsLogged++;
         // Temporary display of errors.
         if (reportInfo.interactiveLogger)
             Job.getUserInterface().termLogging(errorLogger, false, false);
@@ -2233,6 +2253,10 @@ public class DRC extends Listener
         @BooleanPref(node=DRC_NODE, key = "MinMultiThread", factory = false)
         public boolean isMultiThreaded;
 
+        /** Whether multi-threaded DRC splits the cell into tiles instead of layers. The default is by layers. */
+        @BooleanPref(node=DRC_NODE, key = "MultiThreadTiles", factory = false)
+        public boolean isTiled;
+
         public Map<Technology,Double> resolutions = new HashMap<Technology,Double>();
         public Map<Technology,String> overrides = new HashMap<Technology,String>();
 
@@ -2589,36 +2613,30 @@ class CellLayersContainer implements Serializable
  **************************************************************************************************************/
 
 /**
- * Class to collect which layers are available in the design
+ * Class to collect which layers are available in the design.
+ * Each Cell is visited once, however many times it is instantiated.
  */
-class CheckCellLayerEnumerator extends HierarchyEnumerator.Visitor {
-    private Map<Cell, Cell> cellsMap;
-    private CellLayersContainer cellLayersCon;
-
-    CheckCellLayerEnumerator(CellLayersContainer cellLayersC) {
-        cellsMap = new HashMap<Cell, Cell>();
-        cellLayersCon = cellLayersC;
-    }
+class CheckCellLayerEnumerator extends HierarchyEnumerator.CellVisitor<Set<Layer>> {
 
     /**
-     * When the cell should be visited. Either it is the first time or the number of layers hasn't reached
-     * the maximum
-     *
-     * @param cell
-     * @return
+     * Method to find the layers of a Cell and of all Cells below it.
+     * @param topCell the top Cell.
+     * @param cellLayersCon the container that receives the layers of every Cell.
+     * @param numThreads the number of threads that visit Cells.
      */
-    private boolean skipCell(Cell cell) {
-        return cellsMap.get(cell) != null;
-    }
-
-    public boolean enterCell(HierarchyEnumerator.CellInfo info) {
-        Cell cell = info.getCell();
-        if (skipCell(cell)) return false; // skip
-        cellsMap.put(cell, cell);
-        return true;
+    static void collectLayers(Cell topCell, CellLayersContainer cellLayersCon, int numThreads) {
+        Map<CellId, Set<Layer>> cellLayers = HierarchyEnumerator.enumerateCells(topCell.getNetlist(),
+            new CheckCellLayerEnumerator(), numThreads);
+        EDatabase database = topCell.getDatabase();
+        for (Map.Entry<CellId, Set<Layer>> e : cellLayers.entrySet()) {
+            Cell cell = database.getCell(e.getKey());
+            assert (cellLayersCon.getLayersSet(cell) == null);
+            cellLayersCon.addCellLayers(cell, e.getValue());
+        }
     }
 
-    private Set<Layer> getLayersInCell(Cell cell) {
+    public Set<Layer> visitCell(Netlist netlist, Map<CellId, Set<Layer>> subCellResults) {
+        Cell cell = netlist.getCell();
         Map<NodeProto, NodeProto> tempNodeMap = new HashMap<NodeProto, NodeProto>();
         Map<ArcProto, ArcProto> tempArcMap = new HashMap<ArcProto, ArcProto>();
         Set<Layer> set = new HashSet<Layer>();
@@ -2629,9 +2647,9 @@ class CheckCellLayerEnumerator extends HierarchyEnumerator.Visitor {
             NodeInst ni = it.next();
             NodeProto np = ni.getProto();
             if (ni.isCellInstance()) {
-                Set<Layer> s = cellLayersCon.getLayersSet(np);
-                set.addAll(s);
-                assert (s != null); // it must have layers? unless is empty
+                Set<Layer> s = subCellResults.get(((Cell) np).getId());
+                if (s != null) // icons are not visited
+                    set.addAll(s);
             } else {
                 if (tempNodeMap.get(np) != null)
                     continue; // done with this PrimitiveNode
@@ -2664,20 +2682,6 @@ class CheckCellLayerEnumerator extends HierarchyEnumerator.Visitor {
         }
         return set;
     }
-
-    public void exitCell(HierarchyEnumerator.CellInfo info) {
-        Cell cell = info.getCell();
-        Set<Layer> set = getLayersInCell(cell);
-        assert (cellLayersCon.getLayersSet(cell) == null);
-        cellLayersCon.addCellLayers(cell, set);
-    }
-
-    public boolean visitNodeInst(Nodable no, HierarchyEnumerator.CellInfo info) {
-        NodeInst ni = no.getNodeInst();
-
-        // true only for Cells
-        return ni.isCellInstance();
-    }
 }
 
 /***************** LAYER INTERACTIONS ******************/
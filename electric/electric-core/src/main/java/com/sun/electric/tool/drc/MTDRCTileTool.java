@@ -0,0 +1,195 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MTDRCTileTool.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.geometry.GeometryHandler;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.Consumer;
+import com.sun.electric.tool.MultiTaskJob;
+import com.sun.electric.tool.ServerJobManager;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.concurrent.utils.ElapseTimer;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+
+/**
+ * Hierarchical layout DRC which splits the top cell into spatial tiles.
+ * <P>
+ * MTDRCLayoutTool runs one task per layer, so designs dominated by a few layers
+ * keep only a few processors busy. This tool runs the Quick checks on every layer,
+ * with one task per tile:
+ *    The hierarchical networks are numbered once and shared by all tiles.
+ *    Every object of the top cell is checked by the tile containing the lower-left corner of its bounds.
+ *        Its interactions with the surrounding objects, which may belong to other tiles, are found
+ *        in the database, so the tiles overlap by the worst spacing distance of the technology.
+ *    The contents of every subcell are checked by exactly one tile.
+ *    The minimum areas of the top cell are checked by a task of its own.
+ * All tiles log into the same ErrorLogger, which drops errors already found by other tiles
+ * (an interaction at a tile seam is found from both of its sides).
+ * <P>
+ * As in the serial check, cells whose DRC dates are still good are skipped,
+ * and the dates of the cells found clean are stored at the end.
+ */
+public class MTDRCTileTool extends MultiTaskJob<Integer, MTDRCTool.MTDRCResult, MTDRCTool.MTDRCResult>
+{
+    private static final long serialVersionUID = 1L;
+
+    /** number of tiles per thread, to balance the load. */            private static final int TILES_PER_THREAD = 4;
+    /** minimum tile size in units of the worst spacing distance. */   private static final double MIN_TILE_SIZE = 10;
+    /** key of the task which checks the minimum areas. */             private static final int AREA_TASK = -1;
+
+    private DRC.DRCPreferences dp;
+    private Cell topCell;
+    private transient ElapseTimer timer;
+    private transient ErrorLogger errorLogger;
+    private transient Quick quick;
+    private transient TileGrid tileGrid;
+
+    public MTDRCTileTool(DRC.DRCPreferences dp, Cell c, Consumer<MTDRCTool.MTDRCResult> consumer)
+    {
+        super("Design-Rule Tiled Check " + c, DRC.getDRCTool(), consumer);
+        this.dp = dp;
+        this.topCell = c;
+    }
+
+    @Override
+    public void prepareTasks()
+    {
+        timer = ElapseTimer.createInstance().start();
+        errorLogger = DRC.getDRCErrorLogger(true, ", tiled");
+        quick = Quick.prepareTiles(errorLogger, topCell, this, dp, GeometryHandler.GHMode.ALGO_SWEEP);
+        if (quick == null) return; // nothing to check
+
+        double worstDistance = DRC.getWorstSpacingDistance(topCell.getTechnology(), -1);
+        int numTiles = ServerJobManager.getMaxNumberOfThreads() * TILES_PER_THREAD;
+        tileGrid = new TileGrid(topCell.getBounds(), worstDistance * MIN_TILE_SIZE, numTiles);
+        System.out.println("Checking " + topCell + " in " + tileGrid.numX + "x" + tileGrid.numY + " tiles");
+        startTask("Area", Integer.valueOf(AREA_TASK));
+        for (int i = 0; i < tileGrid.getNumTiles(); i++)
+            startTask("Tile " + i, Integer.valueOf(i));
+    }
+
+    @Override
+    public MTDRCTool.MTDRCResult runTask(Integer taskKey)
+    {
+        if (taskKey.intValue() == AREA_TASK)
+            return quick.checkTiledArea();
+        return quick.checkTile(tileGrid, taskKey.intValue());
+    }
+
+    @Override
+    public MTDRCTool.MTDRCResult mergeTaskResults(Map<Integer,MTDRCTool.MTDRCResult> taskResults)
+    {
+        // a task which threw an exception has no result
+        boolean runFine = tileGrid == null || taskResults.size() == tileGrid.getNumTiles() + 1;
+        for (MTDRCTool.MTDRCResult p : taskResults.values())
+        {
+            if (!p.isRunFine())
+                runFine = false;
+        }
+        errorLogger.sortLogs();
+        errorLogger.termLogging(true);
+        int numTE = errorLogger.getNumErrors();
+        int numTW = errorLogger.getNumWarnings();
+        System.out.println("Finished " + ((runFine)?"without":"with") + " problems.");
+
+        System.out.println("Total DRC Errors: " + numTE);
+        System.out.println("Total DRC Warnings: " + numTW);
+        timer.end();
+        System.out.println("Total Time: " + timer);
+
+        if (runFine)
+            MTDRCTool.updateDRCDates(taskResults.values(), topCell, dp);
+        return new MTDRCTool.MTDRCResult(numTE, numTW, runFine, null, null, null, null, null);
+    }
+
+    /**
+     * Class to split the bounds of the top cell into a grid of tiles.
+     */
+    static class TileGrid
+    {
+        private final double minX, minY;
+        private final double tileWidth, tileHeight;
+        private final int numX, numY;
+
+        /**
+         * Creates a grid of about "numTiles" tiles which are not smaller than "minTileSize".
+         */
+        TileGrid(Rectangle2D bounds, double minTileSize, int numTiles)
+        {
+            minX = bounds.getMinX();
+            minY = bounds.getMinY();
+            double width = Math.max(bounds.getWidth(), DRC.TINYDELTA);
+            double height = Math.max(bounds.getHeight(), DRC.TINYDELTA);
+            int nX = (int)Math.round(Math.sqrt(numTiles * width / height));
+            int nY = (int)Math.round(numTiles / (double)Math.max(nX, 1));
+            if (minTileSize > 0)
+            {
+                nX = Math.min(nX, (int)(width / minTileSize));
+                nY = Math.min(nY, (int)(height / minTileSize));
+            }
+            numX = Math.max(nX, 1);
+            numY = Math.max(nY, 1);
+            tileWidth = width / numX;
+            tileHeight = height / numY;
+        }
+
+        int getNumTiles() { return numX * numY; }
+
+        /**
+         * Method to return the area which contains the lower-left corners of the objects owned by a tile.
+         */
+        Rectangle2D getTileBounds(int tileIndex)
+        {
+            int x = tileIndex % numX;
+            int y = tileIndex / numX;
+            return new Rectangle2D.Double(minX + x * tileWidth - DRC.TINYDELTA, minY + y * tileHeight - DRC.TINYDELTA,
+                tileWidth + 2 * DRC.TINYDELTA, tileHeight + 2 * DRC.TINYDELTA);
+        }
+
+        /**
+         * Method to return the tile which owns an object of the top cell.
+         * The owner contains the lower-left corner of the object, so the object intersects
+         * the owner and is found by the search of getTileBounds of the owner.
+         * @param bounds the bounds of the object.
+         */
+        int getTile(Rectangle2D bounds)
+        {
+            int x = (int)Math.floor((bounds.getMinX() - minX) / tileWidth);
+            int y = (int)Math.floor((bounds.getMinY() - minY) / tileHeight);
+            x = Math.max(0, Math.min(numX - 1, x));
+            y = Math.max(0, Math.min(numY - 1, y));
+            return y * numX + x;
+        }
+
+        /**
+         * Method to return the tile which checks the contents of a subcell.
+         */
+        int getCellTile(Cell cell)
+        {
+            return cell.getId().cellIndex % getNumTiles();
+        }
+    }
+}
@@ -24,13 +24,12 @@
 package com.sun.electric.tool.drc;
 
 import com.sun.electric.database.hierarchy.Cell;
-import com.sun.electric.database.hierarchy.HierarchyEnumerator;
-import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.tool.Consumer;
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.MultiTaskJob;
+import com.sun.electric.tool.ServerJobManager;
 import com.sun.electric.tool.util.concurrent.utils.ElapseTimer;
 import com.sun.electric.technology.*;
 import com.sun.electric.util.TextUtils;
@@ -64,8 +63,7 @@ public abstract class MTDRCTool extends MultiTaskJob<Layer, MTDRCTool.MTDRCResul
     {
         Technology tech = topCell.getTechnology();
         cellLayersCon = new CellLayersContainer();
-        CheckCellLayerEnumerator layerCellCheck = new CheckCellLayerEnumerator(cellLayersCon);
-        HierarchyEnumerator.enumerateCell(topCell, VarContext.globalContext, layerCellCheck);
+        CheckCellLayerEnumerator.collectLayers(topCell, cellLayersCon, ServerJobManager.getMaxNumberOfThreads());
         Collection<Layer> layers = cellLayersCon.getLayersSet(topCell);
         globalStartTime.start();
         for (Layer layer : layers)
@@ -85,10 +83,6 @@ public abstract class MTDRCTool extends MultiTaskJob<Layer, MTDRCTool.MTDRCResul
     public MTDRCResult mergeTaskResults(Map<Layer,MTDRCResult> taskResults)
     {
         int numTE = 0, numTW = 0;
-        Set<Cell> goodSpacingSet = new HashSet<Cell>();
-        Set<Cell> goodAreaSet = new HashSet<Cell>();
-        Set<Cell> cleanSpacingSet = new HashSet<Cell>();
-        Set<Cell> cleanAreaSet = new HashSet<Cell>();
         boolean runFine = true;
 
         for (Map.Entry<Layer, MTDRCResult> e : taskResults.entrySet())
@@ -98,15 +92,43 @@ public abstract class MTDRCTool extends MultiTaskJob<Layer, MTDRCTool.MTDRCResul
             numTW += p.numWarns;
             if (!p.runfine)
                 runFine = false;
+        }
+        System.out.println("Finished " + ((runFine)?"without":"with") + " problems.");
+
+        System.out.println("Total DRC Errors: " + numTE);
+        System.out.println("Total DRC Warnings: " + numTW);
+        globalStartTime.end();
+        System.out.println("Total Time: " + globalStartTime);
+
+        if (runFine)
+            updateDRCDates(taskResults.values(), topCell, dp);
+
+        return new MTDRCResult(numTE, numTW, runFine, null, null, null, null, null);
+    }
+
+    /**
+     * Method to store the DRC dates found by several tasks.
+     * A cell is marked as good only if no task found errors in it.
+     * @param taskResults results of the tasks.
+     * @param topCell the cell checked by the tasks.
+     * @param dp DRC preferences.
+     */
+    static void updateDRCDates(Collection<MTDRCResult> taskResults, Cell topCell, DRC.DRCPreferences dp)
+    {
+        Set<Cell> goodSpacingSet = new HashSet<Cell>();
+        Set<Cell> goodAreaSet = new HashSet<Cell>();
+        Set<Cell> cleanSpacingSet = new HashSet<Cell>();
+        Set<Cell> cleanAreaSet = new HashSet<Cell>();
 
-            // Collect all cells that must be clear
+        // Collect all cells that must be clear
+        for (MTDRCResult p : taskResults)
+        {
             cleanSpacingSet.addAll(p.cleanSpacingDRCDate);
             cleanAreaSet.addAll(p.cleanAreaDRCDate);
         }
         // Now that all the cells to be clean are collected, then good cells can be stored.
-        for (Map.Entry<Layer, MTDRCResult> e : taskResults.entrySet())
+        for (MTDRCResult p : taskResults)
         {
-            MTDRCResult p = e.getValue();
             for (Cell c : p.goodSpacingDRCDate)
             {
                 if (!cleanSpacingSet.contains(c))
@@ -118,21 +140,9 @@ public abstract class MTDRCTool extends MultiTaskJob<Layer, MTDRCTool.MTDRCResul
                     goodAreaSet.add(c);
             }
         }
-        System.out.println("Finished " + ((runFine)?"without":"with") + " problems.");
-
-        System.out.println("Total DRC Errors: " + numTE);
-        System.out.println("Total DRC Warnings: " + numTW);
-        globalStartTime.end();
-        System.out.println("Total Time: " + globalStartTime);
-
-        if (runFine)
-        {
-            int activeSpacingBits = DRC.getActiveBits(topCell.getTechnology(), dp);
-             DRC.addDRCUpdate(activeSpacingBits, goodSpacingSet, cleanSpacingSet,
-                goodAreaSet, cleanAreaSet, null, dp);
-        }
-
-        return new MTDRCResult(numTE, numTW, runFine, null, null, null, null, null);
+        int activeSpacingBits = DRC.getActiveBits(topCell.getTechnology(), dp);
+        DRC.addDRCUpdate(activeSpacingBits, goodSpacingSet, cleanSpacingSet,
+            goodAreaSet, cleanAreaSet, null, dp);
     }
 
     @Override
@@ -198,5 +208,10 @@ public abstract class MTDRCTool extends MultiTaskJob<Layer, MTDRCTool.MTDRCResul
         {
             return numWarns;
         }
+
+        boolean isRunFine()
+        {
+            return runfine;
+        }
     }
 }
@@ -104,7 +104,7 @@ public class Quick
 	private HashMap<Layer,DRCTemplate> enclosedAreaLayerMap = new HashMap<Layer,DRCTemplate>();    // For enclosed area checking
     private HashMap<Layer,DRCTemplate> spacingLayerMap = new HashMap<Layer,DRCTemplate>();    // to detect holes using the area function
     private HashMap<Layer,DRCTemplate> slotSizeLayerMap = new HashMap<Layer,DRCTemplate>();    // For max length checking
-    private DRC.CheckDRCJob job; // Reference to running job
+    private Job job; // Reference to running job
     private DRC.DRCPreferences dp;
 	private HashMap<Cell,Cell> cellsMap = new HashMap<Cell,Cell>(); // for cell caching
     private HashMap<Geometric,Geometric> nodesMap = new HashMap<Geometric,Geometric>(); // for node caching
@@ -131,6 +131,40 @@ public class Quick
     // To speed up the layer process
     private ValidationLayers validLayers;
 
+    /** tiles of the top cell in tiled DRC, null otherwise */   private MTDRCTileTool.TileGrid tileGrid;
+    /** index of the tile checked by this Quick */              private int tileIndex;
+    /** cells visited by this tile (CheckProto is shared) */    private Set<Cell> tileCheckedCells;
+    /** cells of tiled DRC which need no check */               private Set<Cell> upToDateCells;
+
+    /**
+     * Creates a Quick which checks one tile of a tiled DRC.
+     * It shares the hierarchical network numbers, the exclusion areas and the
+     * valid layers computed by "master", but keeps its own caches.
+     */
+    private Quick(Quick master, MTDRCTileTool.TileGrid tileGrid, int tileIndex)
+    {
+        this.job = master.job;
+        this.dp = master.dp;
+        this.mergeMode = master.mergeMode;
+        cellLayersCon = master.cellLayersCon;
+        checkInsts = master.checkInsts;
+        checkProtos = master.checkProtos;
+        networkLists = master.networkLists;
+        minAreaLayerMap = master.minAreaLayerMap;
+        enclosedAreaLayerMap = master.enclosedAreaLayerMap;
+        spacingLayerMap = master.spacingLayerMap;
+        slotSizeLayerMap = master.slotSizeLayerMap;
+        od2Layers = master.od2Layers;
+        topCell = master.topCell;
+        validLayers = master.validLayers;
+        upToDateCells = master.upToDateCells;
+        reportInfo = new DRC.ReportInfo(master.reportInfo.errorLogger, topCell.getTechnology(), dp, false);
+        reportInfo.exclusionMap = master.reportInfo.exclusionMap;
+        this.tileGrid = tileGrid;
+        this.tileIndex = tileIndex;
+        tileCheckedCells = new HashSet<Cell>();
+    }
+
     public static ErrorLogger checkDesignRules(DRC.DRCPreferences dp, Cell cell, Geometric[] geomsToCheck, boolean[] validity)
     {
         ErrorLogger errorLog = DRC.getDRCErrorLogger(true, null);
@@ -157,25 +191,159 @@ public class Quick
         q.doCheck(errorLog, cell, geomsToCheck, validity, bounds, onlyArea);
 	}
 
+    /**
+     * Method to prepare a tiled DRC of cell "cell".
+     * The hierarchical networks are numbered once here and shared by all tiles,
+     * which are then checked in parallel by checkTile.
+     * @return the prepared Quick or null if there is nothing to check.
+     */
+    static Quick prepareTiles(ErrorLogger errorLog, Cell cell, Job job, DRC.DRCPreferences dp, GeometryHandler.GHMode mode)
+    {
+        Quick q = new Quick(null, dp, mode);
+        q.job = job;
+        if (!q.prepareCheck(errorLog, cell, 0, false)) return null;
+        q.upToDateCells = new HashSet<Cell>();
+        q.collectUpToDateCells(cell, new HashSet<Cell>());
+        return q;
+    }
+
+    /**
+     * Method to find the cells of a tiled DRC which need no check: their spacing DRC dates
+     * are good and so are the dates of all their subcells.
+     * This is the condition under which the serial check skips a cell.
+     * @return true if "cell" needs no check.
+     */
+    private boolean collectUpToDateCells(Cell cell, Set<Cell> visited)
+    {
+        if (!visited.add(cell)) return upToDateCells.contains(cell);
+        boolean allSubCellsStillOK = true;
+        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        {
+            NodeInst ni = it.next();
+            if (!ni.isCellInstance() || ni.isIconOfParent()) continue;
+            if (!collectUpToDateCells((Cell)ni.getProto(), visited))
+                allSubCellsStillOK = false;
+        }
+        Date lastSpacingGoodDate = DRC.getLastDRCDateBasedOnBits(cell, true, reportInfo.activeSpacingBits, !reportInfo.inMemory);
+        if (!allSubCellsStillOK || !DRC.isCellDRCDateGood(cell, lastSpacingGoodDate)) return false;
+        upToDateCells.add(cell);
+        return true;
+    }
+
+    /**
+     * Method to check one tile of a tiled DRC prepared by prepareTiles.
+     * Objects of the top cell are checked by the tile which owns them, the contents
+     * of each subcell are checked by one tile only (see MTDRCTileTool.TileGrid).
+     * Errors go to the ErrorLogger shared by all tiles.
+     * @param tileGrid the tiles of the top cell.
+     * @param tileIndex the tile to check.
+     * @return the cells whose DRC dates must be updated.
+     */
+    MTDRCTool.MTDRCResult checkTile(MTDRCTileTool.TileGrid tileGrid, int tileIndex)
+    {
+        Quick q = new Quick(this, tileGrid, tileIndex);
+        int retval = q.checkThisCell(topCell, 0, null);
+        boolean notAborted = retval >= 0 && (job == null || !job.checkAbort());
+        return new MTDRCTool.MTDRCResult(0, 0, notAborted, q.goodSpacingDRCDate, q.cleanSpacingDRCDate,
+            q.goodAreaDRCDate, q.cleanAreaDRCDate, null);
+    }
+
+    /**
+     * Method to check the minimum areas of the top cell of a tiled DRC prepared by prepareTiles.
+     * The merged polygons cross the tiles, so this check runs as a task of its own.
+     * @return the cells whose area DRC dates must be updated.
+     */
+    MTDRCTool.MTDRCResult checkTiledArea()
+    {
+        Quick q = new Quick(this, null, 0);
+        if (!dp.ignoreAreaCheck && reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL)
+        {
+            // if the cell hasn't changed since the last good check, stop now
+            Date lastAreaGoodDate = DRC.getLastDRCDateBasedOnBits(topCell, false, -1, !reportInfo.inMemory);
+            if (!upToDateCells.contains(topCell) || !DRC.isCellDRCDateGood(topCell, lastAreaGoodDate))
+            {
+                int totalAreaMsgFound = q.checkMinAreaSlow(topCell);
+                if (totalAreaMsgFound == 0)
+                    q.goodAreaDRCDate.add(topCell);
+                else
+                    q.cleanAreaDRCDate.add(topCell);
+            }
+        }
+        boolean notAborted = job == null || !job.checkAbort();
+        return new MTDRCTool.MTDRCResult(0, 0, notAborted, q.goodSpacingDRCDate, q.cleanSpacingDRCDate,
+            q.goodAreaDRCDate, q.cleanAreaDRCDate, null);
+    }
+
     // returns the number of errors found
 	private void doCheck(ErrorLogger errorLog, Cell cell, Geometric[] geomsToCheck, boolean[] validity,
                          Rectangle2D bounds, boolean onlyArea)
 	{
+        // if checking specific instances, adjust options and processor count
+        int count = (geomsToCheck != null) ? geomsToCheck.length : 0;
+        if (!prepareCheck(errorLog, cell, count, onlyArea)) return;
+        ErrorLogger errorLogger = errorLog;
+
+		// now do the DRC
+        int logsFound = 0;
+//        int totalErrors = 0;
+
+		if (count == 0)
+		{
+			// just do full DRC here
+			/*totalErrors =*/ checkThisCell(cell, 0, bounds);
+			// sort the errors by layer
+			errorLogger.sortLogs();
+		} else
+		{
+			// check only these "count" instances (either an incremental DRC or a quiet one...from Array command)
+			if (validity == null)
+			{
+				// not a quiet DRC, so it must be incremental
+                logsFound = errorLogger.getNumLogs();
+			}
+
+            // @TODO missing counting this number of errors.
+			checkTheseGeometrics(cell, count, geomsToCheck, validity);
+		}
+
+//		if (errorLogger != null) {
+//            errorLogger.termLogging(true);
+//            logsFound = errorLogger.getNumLogs() - logsFound;
+//        }
+
+        // -2 if cells and subcells are ok
+        // Commentted out on May 2, 2006. Not sure why this condition is valid
+        // If goodDRCDate contains information of DRC clean cells, it destroys that information -> wrong
+//		if (totalErrors != 0 && totalErrors != -2) goodDRCDate.clear();
+
+		// some cells were sucessfully checked: save that information in the database
+	    // some cells don't have valid DRC date anymore and therefore they should be clean
+        // This is only going to happen if job was not aborted.
+	    if ((job == null || !job.checkAbort()))
+	    {
+            DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
+                goodAreaDRCDate, cleanAreaDRCDate, null, dp);
+	    }
+	}
+
+    /**
+     * Method to number the hierarchical networks of cell "cell" and to collect
+     * the rules and the exclusion areas needed by the check.
+     * @return false if there is nothing else to check.
+     */
+    private boolean prepareCheck(ErrorLogger errorLog, Cell cell, int count, boolean onlyArea)
+    {
 		// Check if there are DRC rules for particular tech
         Technology tech = cell.getTechnology();
 		DRCRules rules = DRC.getRules(tech);
 
-        // if checking specific instances, adjust options and processor count
-        int count = (geomsToCheck != null) ? geomsToCheck.length : 0;
-
         reportInfo = new DRC.ReportInfo(errorLog, tech, dp, (count > 0));
-        ErrorLogger errorLogger = errorLog;
 
         // caching bits
         System.out.println("Running DRC with " + DRC.explainBits(reportInfo.activeSpacingBits, dp));
 
 		// Nothing to check for this particular technology
-		if (rules == null || rules.getNumberOfRules() == 0) return /*errorLogger*/;
+		if (rules == null || rules.getNumberOfRules() == 0) return false;
 
 	    topCell = cell; /* Especially important for minArea checking */
 
@@ -229,7 +397,7 @@ public class Quick
                 else
                     cleanAreaDRCDate.add(cell);
                 System.out.println("Missing update in dates");
-                return /*errorLogger*/;
+                return false;
             }
         }
 
@@ -249,8 +417,7 @@ public class Quick
 		ElapseTimer timer = ElapseTimer.createInstance().start();
         System.out.print("Checking again hierarchy");
         // Another hierarchy traverse ....
-        CheckCellLayerEnumerator layerCellCheck = new CheckCellLayerEnumerator(cellLayersCon);
-        HierarchyEnumerator.enumerateCell(topCell, VarContext.globalContext, layerCellCheck);
+        CheckCellLayerEnumerator.collectLayers(topCell, cellLayersCon, 1);
         timer.end();
         System.out.println(" .... (" + timer+ ")");
 
@@ -325,48 +492,7 @@ public class Quick
 		// now search for DRC exclusion areas
         reportInfo.exclusionMap.clear();
 		accumulateExclusion(cell);
-
-		// now do the DRC
-        int logsFound = 0;
-//        int totalErrors = 0;
-
-		if (count == 0)
-		{
-			// just do full DRC here
-			/*totalErrors =*/ checkThisCell(cell, 0, bounds);
-			// sort the errors by layer
-			errorLogger.sortLogs();
-		} else
-		{
-			// check only these "count" instances (either an incremental DRC or a quiet one...from Array command)
-			if (validity == null)
-			{
-				// not a quiet DRC, so it must be incremental
-                logsFound = errorLogger.getNumLogs();
-			}
-
-            // @TODO missing counting this number of errors.
-			checkTheseGeometrics(cell, count, geomsToCheck, validity);
-		}
-
-//		if (errorLogger != null) {
-//            errorLogger.termLogging(true);
-//            logsFound = errorLogger.getNumLogs() - logsFound;
-//        }
-
-        // -2 if cells and subcells are ok
-        // Commentted out on May 2, 2006. Not sure why this condition is valid
-        // If goodDRCDate contains information of DRC clean cells, it destroys that information -> wrong
-//		if (totalErrors != 0 && totalErrors != -2) goodDRCDate.clear();
-
-		// some cells were sucessfully checked: save that information in the database
-	    // some cells don't have valid DRC date anymore and therefore they should be clean
-        // This is only going to happen if job was not aborted.
-	    if ((job == null || !job.checkAbort()))
-	    {
-            DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
-                goodAreaDRCDate, cleanAreaDRCDate, null, dp);
-	    }
+        return true;
 	}
 
     /*************************** QUICK DRC CELL EXAMINATION ***************************/
@@ -447,7 +573,8 @@ public class Quick
 			}
 
 			CheckProto cp = getCheckProto((Cell)np);
-			if (cp.cellChecked && !cp.cellParameterized) continue;
+			boolean cellChecked = (tileGrid == null) ? cp.cellChecked : !tileCheckedCells.add((Cell)np);
+			if (cellChecked && !cp.cellParameterized) continue;
 
 			// recursively check the subcell
 			CheckInst ci = checkInsts.get(ni);
@@ -467,21 +594,33 @@ public class Quick
 
 		// prepare to check cell
 		CheckProto cp = getCheckProto(cell);
-		cp.cellChecked = true;
         boolean checkArea = (cell == topCell && !dp.ignoreAreaCheck && reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL);
-
-        // if the cell hasn't changed since the last good check, stop now
         Date lastSpacingGoodDate = DRC.getLastDRCDateBasedOnBits(cell, true, reportInfo.activeSpacingBits, !reportInfo.inMemory);
-        Date lastAreaGoodDate = DRC.getLastDRCDateBasedOnBits(cell, false, -1, !reportInfo.inMemory);
-        if (allSubCellsStillOK && DRC.isCellDRCDateGood(cell, lastSpacingGoodDate) &&
-            (!checkArea || DRC.isCellDRCDateGood(cell, lastAreaGoodDate)))
-		{
-            return 0;
-		}
+        if (tileGrid != null)
+        {
+            // the area of the top cell is checked by a task of its own (see checkTiledArea)
+            checkArea = false;
+            if (cell != topCell && tileGrid.getCellTile(cell) != tileIndex) return 0;
+
+            // if the cell and its subcells haven't changed since the last good check, stop now
+            if (upToDateCells.contains(cell)) return 0;
+        } else
+        {
+            cp.cellChecked = true;
+
+            // if the cell hasn't changed since the last good check, stop now
+            Date lastAreaGoodDate = DRC.getLastDRCDateBasedOnBits(cell, false, -1, !reportInfo.inMemory);
+            if (allSubCellsStillOK && DRC.isCellDRCDateGood(cell, lastSpacingGoodDate) &&
+                (!checkArea || DRC.isCellDRCDateGood(cell, lastAreaGoodDate)))
+            {
+                return 0;
+            }
+        }
 
 		// announce progress
         ElapseTimer timer = ElapseTimer.createInstance().start();
-		System.out.println("Checking " + cell);
+        if (tileGrid == null)
+            System.out.println("Checking " + cell);
 
 		// now look at every node and arc here
 		reportInfo.totalSpacingMsgFound = 0;
@@ -502,7 +641,27 @@ public class Quick
 //        instanceInteractionList.clear(); // part4
         instanceInteractionMap.clear(); // part4
 
-        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        Iterator<NodeInst> nodesIt = cell.getNodes();
+        Iterator<ArcInst> arcsIt = cell.getArcs();
+        if (tileGrid != null && cell == topCell)
+        {
+            // only the objects owned by this tile
+            List<NodeInst> tileNodes = new ArrayList<NodeInst>();
+            List<ArcInst> tileArcs = new ArrayList<ArcInst>();
+            for (Iterator<RTBounds> it = cell.searchIterator(tileGrid.getTileBounds(tileIndex)); it.hasNext(); )
+            {
+                Geometric geom = (Geometric)it.next();
+                if (tileGrid.getTile(geom.getBounds()) != tileIndex) continue;
+                if (geom instanceof NodeInst)
+                    tileNodes.add((NodeInst)geom);
+                else
+                    tileArcs.add((ArcInst)geom);
+            }
+            nodesIt = tileNodes.iterator();
+            arcsIt = tileArcs.iterator();
+        }
+
+        for(Iterator<NodeInst> it = nodesIt; it.hasNext(); )
 		{
             if (job != null && job.checkAbort()) return -1;
 
@@ -528,7 +687,7 @@ public class Quick
 			}
 		}
 		Technology cellTech = cell.getTechnology();
-		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		for(Iterator<ArcInst> it = arcsIt; it.hasNext(); )
 		{
             if (job != null && job.checkAbort()) return -1;
 
@@ -568,7 +727,8 @@ public class Quick
 		}
 
 		// if there were no errors, remember that
-		if (reportInfo.errorLogger != null)
+		// (the ErrorLogger of tiled DRC is shared, so its counts are not local)
+		if (reportInfo.errorLogger != null && tileGrid == null)
 		{
 			int localErrors = reportInfo.errorLogger.getNumErrors() - prevErrors;
 			int localWarnings = reportInfo.errorLogger.getNumWarnings() - prevWarns;
@@ -741,7 +901,11 @@ public class Quick
                 continue;
 
             // Checking combination
-            boolean ret = DRC.checkOD2Combination(tech, ni, layer, od2Layers, reportInfo);
+            boolean ret;
+            synchronized (od2Layers) // shared by the tiles of tiled DRC
+            {
+                ret = DRC.checkOD2Combination(tech, ni, layer, od2Layers, reportInfo);
+            }
             if (ret)
             {
                 // panic errors -> return regarless errorTypeSearch
@@ -2572,7 +2736,8 @@ public class Quick
 			return 0;
 
         // remember number of errors before the min area checking
-        int errorFound = reportInfo.errorLogger.getNumErrors();
+        // (count only the errors of this Quick: the ErrorLogger of tiled DRC is shared)
+        int errorFound = reportInfo.numErrorsLogged;
 
 		// Get merged areas.
         DRC.DRCCheckMinArea algoType = dp.minAreaAlgoOption;
@@ -2592,7 +2757,7 @@ public class Quick
         }
         HierarchyEnumerator.enumerateCell(cell, VarContext.globalContext, quickArea);
 
-        errorFound = reportInfo.errorLogger.getNumErrors() - errorFound;
+        errorFound = reportInfo.numErrorsLogged - errorFound;
 
         return errorFound;
 	}
@@ -147,6 +147,7 @@ public class Connectivity
 	/** true to ignore select/well around active layers */		private boolean ignoreActiveSelectWell;
 	/** true to grid align the extracted geometry */			private boolean gridAlignExtraction;
 	/** true to approximate cut placement */					private boolean approximateCuts;
+	/** true to merge Manhattan geometry by scanline */		private boolean scanlineMerge;
 	/** true if extracting hierarchically */					private boolean recursive;
 	/** the smallest polygon acceptable for merging */			private double smallestPoly;
 	/** debugging: list of objects created */					private List<ERectangle> addedRectangles;
@@ -185,6 +186,7 @@ public class Connectivity
 		private boolean approximateCuts;
 		private boolean flattenPcells;
 		private boolean usePureLayerNodes;
+		private boolean scanlineMerge;
 		/** debugging: list of objects created */	private List<List<ERectangle>> addedBatchRectangles;
 		/** debugging: list of objects created */	private List<List<ERectangle>> addedBatchLines;
 		/** debugging: list of objects created */	private List<String> addedBatchNames;
@@ -207,6 +209,7 @@ public class Connectivity
 			approximateCuts = Extract.isApproximateCuts();
 			flattenPcells = Extract.isFlattenPcells();
 			usePureLayerNodes = Extract.isUsePureLayerNodes();
+			scanlineMerge = Extract.isScanlineMerge();
 			startJob();
 		}
 
@@ -240,7 +243,7 @@ public class Connectivity
 			Job.getUserInterface().startProgressDialog("Extracting", null);
 
 			Connectivity c = new Connectivity(cell, this, errorLogger, smallestPolygonSize, activeHandling,
-				gridAlignExtraction, scaledResolution, approximateCuts, recursive, pats);
+				gridAlignExtraction, scaledResolution, approximateCuts, scanlineMerge, recursive, pats);
 
 			if (recursive) c.totalCells = c.countExtracted(cell, pats, flattenPcells);
 			c.cellsExtracted = 0;
@@ -302,14 +305,16 @@ public class Connectivity
 	 * 2: Insist on two different active layers (N and P) but ignore select/well surrounds.
      * @param gridAlignExtraction true to align extraction to some the technology grid
      * @param approximateCuts approximate cuts
+     * @param scanlineMerge true to merge Manhattan geometry by scanline instead of with java.awt.geom.Area
      * @param recursive run recursively
      * @param pats a List of cell name patterns that will be flattened.
      */
 	private Connectivity(Cell cell, Job j, ErrorLogger eLog, double smallestPolygonSize, int activeHandling,
-		boolean gridAlignExtraction, double scaledResolution, boolean approximateCuts, boolean recursive,
-		List<Pattern> pats)
+		boolean gridAlignExtraction, double scaledResolution, boolean approximateCuts, boolean scanlineMerge,
+		boolean recursive, List<Pattern> pats)
 	{
 	    this.approximateCuts = approximateCuts;
+	    this.scanlineMerge = scanlineMerge;
 		this.recursive = recursive;
 		tech = cell.getTechnology();
 		convertedCells = new HashMap<Cell,Cell>();
@@ -563,8 +568,8 @@ public class Connectivity
 		convertedCells.put(oldCell, newCell);
 
 		// create a merge for the geometry in the cell
-		PolyMerge merge = new PolyMerge();
-        PolyMerge selectMerge = new PolyMerge();
+		PolyMerge merge = new PolyMerge(scanlineMerge);
+        PolyMerge selectMerge = new PolyMerge(scanlineMerge);
 
         // convert the nodes
 		if (!startSection(oldCell, "Gathering geometry in " + oldCell + "..."))		// HAS PROGRESS IN IT
@@ -584,7 +589,7 @@ public class Connectivity
 		}
 
 		// now remember the original merge
-		PolyMerge originalMerge = new PolyMerge();
+		PolyMerge originalMerge = new PolyMerge(scanlineMerge);
 		originalMerge.addMerge(merge, new AffineTransform());
 
 		// start by extracting vias
@@ -638,7 +643,7 @@ public class Connectivity
 		cleanupExports(oldCell, newCell);
 
 		// cleanup by auto-stitching
-		PolyMerge originalUnscaledMerge = new PolyMerge();
+		PolyMerge originalUnscaledMerge = new PolyMerge(scanlineMerge);
 		double shrinkage = 1.0 / SCALEFACTOR;
 		AffineTransform shrink = new AffineTransform(shrinkage, 0, 0, shrinkage, 0, 0);
 		originalUnscaledMerge.addMerge(originalMerge, shrink);
@@ -1529,7 +1534,7 @@ public class Connectivity
         }
 
         // first get all select layers
-        PolyMerge merge = new PolyMerge();
+        PolyMerge merge = new PolyMerge(scanlineMerge);
         for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); ) {
             NodeInst ni = it.next();
             if (ni.isCellInstance()) continue;
@@ -2635,7 +2640,7 @@ public class Connectivity
 		// recursively scan the R-Tree, merging geometry on created nodes and removing them from the main merge
         if (!usePureLayerNodes)
         {
-            PolyMerge subtractMerge = new PolyMerge();
+            PolyMerge subtractMerge = new PolyMerge(scanlineMerge);
 		    extractContactNodes(root, merge, subtractMerge, 0, contactNodes.size());
             merge.subtractMerge(subtractMerge);
         }
@@ -4959,7 +4964,7 @@ public class Connectivity
 		}
 
 		// remove redundant centerlines
-		PolyMerge reCheck = new PolyMerge();
+		PolyMerge reCheck = new PolyMerge(scanlineMerge);
 		for(int i=0; i<centerlines.size(); i++)
 		{
 			Centerline cl = centerlines.get(i);
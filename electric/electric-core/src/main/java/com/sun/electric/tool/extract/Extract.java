@@ -233,4 +233,24 @@ public class Extract extends Tool
 	 * @return true if the node extractor should use pure-layer nodes for connectivity, by default.
 	 */
 	public static boolean isFactoryUsePureLayerNodes() { return cacheUsePureLayerNodes.getBooleanFactoryValue(); }
+
+	private static Pref cacheScanlineMerge = Pref.makeBooleanPref("ScanlineMerge", Extract.tool.prefs, false);
+	/**
+	 * Method to tell whether the node extractor should merge Manhattan geometry with a scanline algorithm.
+	 * The alternative is to merge all geometry with java.awt.geom.Area, which is slow for large cells.
+	 * Non-Manhattan layers are always merged with java.awt.geom.Area.
+	 * The default is "false".
+	 * @return true if the node extractor should merge Manhattan geometry with a scanline algorithm.
+	 */
+	public static boolean isScanlineMerge() { return cacheScanlineMerge.getBoolean(); }
+	/**
+	 * Method to set whether the node extractor should merge Manhattan geometry with a scanline algorithm.
+	 * @param a true if the node extractor should merge Manhattan geometry with a scanline algorithm.
+	 */
+	public static void setScanlineMerge(boolean a) { cacheScanlineMerge.setBoolean(a); }
+	/**
+	 * Method to tell whether the node extractor should merge Manhattan geometry with a scanline algorithm, by default.
+	 * @return true if the node extractor should merge Manhattan geometry with a scanline algorithm, by default.
+	 */
+	public static boolean isFactoryScanlineMerge() { return cacheScanlineMerge.getBooleanFactoryValue(); }
 }
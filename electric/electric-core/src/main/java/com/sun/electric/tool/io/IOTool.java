@@ -287,6 +287,27 @@ public class IOTool extends Tool
 	 */
 	public static int getFactoryBackupRedundancy() { return cacheBackupRedundancy.getIntFactoryValue(); }
 
+	private static Pref cacheLibraryReadThreads = Pref.makeIntServerPref("LibraryReadThreads", IOTool.tool.prefs, 1);
+	/**
+	 * Method to tell how many threads to use when parsing cell contents of JELIB/DELIB libraries.
+	 * The value is:
+	 * 1 to read libraries serially [the default];
+	 * 0 to use all available processors;
+	 * N to use N threads.
+	 * @return the number of threads to use when reading libraries.
+	 */
+	public static int getLibraryReadThreads() { return cacheLibraryReadThreads.getInt(); }
+	/**
+	 * Method to set how many threads to use when parsing cell contents of JELIB/DELIB libraries.
+	 * @param n the number of threads to use when reading libraries (0 for all available processors).
+	 */
+	public static void setLibraryReadThreads(int n) { cacheLibraryReadThreads.setInt(n); }
+	/**
+	 * Method to tell how many threads to use when parsing cell contents of JELIB/DELIB libraries, by default.
+	 * @return the number of threads to use when reading libraries, by default.
+	 */
+	public static int getFactoryLibraryReadThreads() { return cacheLibraryReadThreads.getIntFactoryValue(); }
+
 	/****************************** GENERAL OUTPUT PREFERENCES ******************************/
 
 	/**
@@ -774,6 +795,48 @@ public class IOTool extends Tool
 	 */
 	public static boolean isFactoryGDSInSimplifyCells() { return cacheGDSInSimplifyCells.getBooleanFactoryValue(); }
 
+	private static Pref cacheGDSInReadThreads = Pref.makeIntPref("GDSInReadThreads", IOTool.tool.prefs, 1);
+	/**
+	 * Method to tell how many threads GDS Input uses to read structures.
+	 * The value is:
+	 * 1 to read the file as a stream [the default];
+	 * 0 to memory-map the file and use all available processors;
+	 * N to memory-map the file and use N threads.
+	 * @return the number of threads GDS Input uses to read structures.
+	 */
+	public static int getGDSInReadThreads() { return cacheGDSInReadThreads.getInt(); }
+	/**
+	 * Method to set how many threads GDS Input uses to read structures.
+	 * @param n the number of threads GDS Input uses to read structures (0 for all available processors).
+	 */
+	public static void setGDSInReadThreads(int n) { cacheGDSInReadThreads.setInt(n); }
+	/**
+	 * Method to tell how many threads GDS Input uses to read structures, by default.
+	 * @return the number of threads GDS Input uses to read structures, by default.
+	 */
+	public static int getFactoryGDSInReadThreads() { return cacheGDSInReadThreads.getIntFactoryValue(); }
+
+	private static Pref cacheGDSOutWriteThreads = Pref.makeIntPref("GDSOutWriteThreads", IOTool.tool.prefs, 1);
+	/**
+	 * Method to tell how many threads GDS Output uses to encode structures.
+	 * The value is:
+	 * 1 to write each structure as the hierarchy is traversed [the default];
+	 * 0 to encode and merge structures on all available processors;
+	 * N to encode and merge structures on N threads.
+	 * @return the number of threads GDS Output uses to encode structures.
+	 */
+	public static int getGDSOutWriteThreads() { return cacheGDSOutWriteThreads.getInt(); }
+	/**
+	 * Method to set how many threads GDS Output uses to encode structures.
+	 * @param n the number of threads GDS Output uses to encode structures (0 for all available processors).
+	 */
+	public static void setGDSOutWriteThreads(int n) { cacheGDSOutWriteThreads.setInt(n); }
+	/**
+	 * Method to tell how many threads GDS Output uses to encode structures, by default.
+	 * @return the number of threads GDS Output uses to encode structures, by default.
+	 */
+	public static int getFactoryGDSOutWriteThreads() { return cacheGDSOutWriteThreads.getIntFactoryValue(); }
+
 	private static Pref cacheGDSColapseVddGndPinNames = Pref.makeBooleanPref("cacheGDSColapseVddGndPinNames", IOTool.tool.prefs, false);
 	/**
 	 * Method to tell whether Vdd_* and Gnd_* export pins must be collapsed. This is for extraction in Fire/Ice.
@@ -26,6 +26,7 @@
  */
 package com.sun.electric.tool.io.input;
 
+import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.ImmutableExport;
 import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.geometry.EPoint;
@@ -64,6 +65,7 @@ import com.sun.electric.tool.io.GDSLayers;
 import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.GenMath;
 import com.sun.electric.util.math.GenMath.MutableInteger;
@@ -72,8 +74,13 @@ import com.sun.electric.util.math.Orientation;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -87,6 +94,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class reads files in GDS files.
@@ -169,6 +180,8 @@ public class GDS extends Input<Object>
 	private PolyMerge        merge;
 	private static boolean   arraySimplificationUseful;
 	private Set<Cell>        missingCells;
+	private MappedInput      mappedInput;
+	private Map<String,Cell> prototypes;
 
 	private static class GSymbol
 	{
@@ -276,6 +289,7 @@ public class GDS extends Input<Object>
 		public boolean includeText;
 		public int unknownLayerHandling;
 		public boolean cadenceCompatibility;
+		public int readThreads;
 
 		public GDSPreferences(boolean factory)
 		{
@@ -291,6 +305,7 @@ public class GDS extends Input<Object>
 				includeText = IOTool.isFactoryGDSInIncludesText();
 				unknownLayerHandling = IOTool.getFactoryGDSInUnknownLayerHandling();
 				cadenceCompatibility = IOTool.isFactoryGDSCadenceCompatibility();
+				readThreads = IOTool.getFactoryGDSInReadThreads();
 			} else
             {
                 inputScale = IOTool.getGDSInputScale();
@@ -302,6 +317,7 @@ public class GDS extends Input<Object>
                 includeText = IOTool.isGDSInIncludesText();
                 unknownLayerHandling = IOTool.getGDSInUnknownLayerHandling();
                 cadenceCompatibility = IOTool.isGDSCadenceCompatibility();
+                readThreads = IOTool.getGDSInReadThreads();
             }
 		}
 
@@ -309,7 +325,10 @@ public class GDS extends Input<Object>
         public Library doInput(URL fileURL, Library lib, Technology tech, Map<Library,Cell> currentCells, Map<CellId,BitSet> nodesToExpand, Job job)
         {
         	GDS in = new GDS(this);
-			if (in.openBinaryInput(fileURL)) return null;
+			if (readThreads == 1 || !in.openMappedInput(fileURL))
+			{
+				if (in.openBinaryInput(fileURL)) return null;
+			}
 
             // Libraries before loading
             Set<Library> oldLibs = new HashSet<Library>();
@@ -346,6 +365,29 @@ public class GDS extends Input<Object>
 	 */
 	GDS(GDSPreferences ap) { localPrefs = ap; }
 
+	/**
+	 * Creates a reader of structures which shares the file and the layer tables with its parent.
+	 * It has its own parsing state and mapped window, so it can run in another thread.
+	 * A reader is reused for all structures read by one worker.
+	 */
+	private GDS(GDS parent)
+	{
+		localPrefs = parent.localPrefs;
+		filePath = parent.filePath;
+		fileLength = parent.fileLength;
+		theLibrary = parent.theLibrary;
+		curTech = parent.curTech;
+		theScale = parent.theScale;
+		layerNodeProto = parent.layerNodeProto;
+		layerNames = parent.layerNames;
+		layerErrorMessages = parent.layerErrorMessages;
+		pinLayers = parent.pinLayers;
+		prototypes = parent.prototypes;
+		mappedInput = new MappedInput(parent.mappedInput);
+		theVertices = new Point2D[MAXPOINTS];
+		for(int i=0; i<MAXPOINTS; i++) theVertices[i] = new Point2D.Double();
+	}
+
 	/**
 	 * Method to import a library from disk.
 	 * @param lib the library to fill
@@ -365,7 +407,8 @@ public class GDS extends Input<Object>
 
 		try
 		{
-			loadFile();
+			if (mappedInput != null) loadMappedFile(); else
+				loadFile();
         } catch (IllegalArgumentException e)
         {
             System.out.println("ERROR reading GDS file: " + e.getMessage());
@@ -381,27 +424,13 @@ public class GDS extends Input<Object>
             return null;
         }
 
-        // fix references to unknown cells that may be in other libraries
-        Map<Cell,Cell> foundCellMap = CellBuilder.substituteExternalCells(missingCells, theLibrary);
-        if (foundCellMap.size() > 0)
-        {
-        	System.out.println("Note: these cells from other libraries were referenced in the GDS:");
-        	for(Cell mCell : foundCellMap.keySet())
-        	{
-        		Cell found = foundCellMap.get(mCell);
-        		System.out.println("    " + found.libDescribe());
-        		missingCells.remove(mCell);
-        	}
-        }
-        if (missingCells.size() > 0)
-        {
-        	System.out.println("Note: these cells are missing in the GDS and were created with no contents:");
-        	for(Cell cell : missingCells)
-        		System.out.println("    " + cell.noLibDescribe());
-        }
+		if (mappedInput == null)
+		{
+			substituteMissingCells();
 
-		// now build all instances recursively
-		CellBuilder.buildInstances();
+			// now build all instances recursively
+			CellBuilder.buildInstances();
+		}
 		CellBuilder.term();
 
 		// show unknown error messages
@@ -434,6 +463,32 @@ public class GDS extends Input<Object>
 		return lib;
 	}
 
+	/**
+	 * Method to fix references to unknown cells that may be in other libraries.
+	 * @return a map from missing cells to the cells found in other libraries.
+	 */
+	private Map<Cell,Cell> substituteMissingCells()
+	{
+        Map<Cell,Cell> foundCellMap = CellBuilder.substituteExternalCells(missingCells, theLibrary);
+        if (foundCellMap.size() > 0)
+        {
+        	System.out.println("Note: these cells from other libraries were referenced in the GDS:");
+        	for(Cell mCell : foundCellMap.keySet())
+        	{
+        		Cell found = foundCellMap.get(mCell);
+        		System.out.println("    " + found.libDescribe());
+        		missingCells.remove(mCell);
+        	}
+        }
+        if (missingCells.size() > 0)
+        {
+        	System.out.println("Note: these cells are missing in the GDS and were created with no contents:");
+        	for(Cell cell : missingCells)
+        		System.out.println("    " + cell.noLibDescribe());
+        }
+        return foundCellMap;
+	}
+
 	private void initialize()
 	{
 		layerNodeProto = Generic.tech().drcNode;
@@ -499,12 +554,17 @@ public class GDS extends Input<Object>
         private Set<String> userNames = new HashSet<String>();
         private MutableInteger count = new MutableInteger(0);
 
-        private CellBuilder(Cell cell, Technology tech, GDSPreferences localPrefs) {
+        private CellBuilder(Cell cell, Technology tech, GDSPreferences localPrefs, EditingPreferences ep) {
             this.cell = cell;
             this.tech = tech;
             this.localPrefs = localPrefs;
-            traceDescriptor = cell.getEditingPreferences().getTextDescriptor(TextDescriptor.TextType.NODE, false);
-            allBuilders.put(cell.getId(), this);
+            traceDescriptor = ep.getTextDescriptor(TextDescriptor.TextType.NODE, false);
+        }
+
+        /**
+         * Method to remove old exports of the Cell before it is filled.
+         */
+        private void clearExports() {
             // sanity
             Set<Export> exportsToKill = new HashSet<Export>();
             for (Iterator<Export> it = cell.getExports(); it.hasNext(); )
@@ -1376,6 +1436,18 @@ public class GDS extends Input<Object>
 
 	private void loadFile()
 		throws IOException
+	{
+		readLibraryHeader();
+		getToken();
+		while (theToken != GDS_ENDLIB)
+		{
+			readStructure();
+			getToken();
+		}
+	}
+
+	private void readLibraryHeader()
+		throws IOException
 	{
 		getToken();
 		readHeader();
@@ -1392,14 +1464,432 @@ public class GDS extends Input<Object>
 		while (theToken != GDS_UNITS)
 			getToken();
 		readUnits();
-		getToken();
-		while (theToken != GDS_ENDLIB)
+	}
+
+	/****************************** MEMORY-MAPPED READING ******************************/
+
+	/** size of the mapped windows of the file */					private static final long MAPPED_WINDOW_SIZE = 1L << 26;
+	/** number of bytes of structures which are read at once */	private static final long STRUCTURE_BATCH_SIZE = 1L << 26;
+	/** tests lower these so that records cross the edges of windows and batches */
+	static long mappedWindowSize = MAPPED_WINDOW_SIZE;
+	static long structureBatchSize = STRUCTURE_BATCH_SIZE;
+
+	/**
+	 * Class to read a memory-mapped file through a window which slides over it,
+	 * so files larger than 2 GB can be read and the heap doesn't hold the file.
+	 * Reading can be limited to a range of the file, and mapping to a larger range,
+	 * so that the structures of one worker share its windows but the windows
+	 * don't map the structures of other workers.
+	 */
+	private static class MappedInput
+	{
+		private final FileChannel channel;
+		private final long size;
+		private MappedByteBuffer window;
+		private long windowStart;
+		private long position;
+		private long end;
+		private long mapEnd;
+
+		private MappedInput(FileChannel channel)
+			throws IOException
 		{
-			readStructure();
-			getToken();
+			this.channel = channel;
+			size = channel.size();
+			end = mapEnd = size;
+		}
+
+		/**
+		 * Creates a reader of the same file with its own window.
+		 */
+		private MappedInput(MappedInput parent)
+		{
+			channel = parent.channel;
+			size = parent.size;
+			end = mapEnd = size;
+		}
+
+		private long getPosition() { return position; }
+
+		private void seek(long position) { this.position = position; }
+
+		/**
+		 * Method to limit reading to a range of the file.
+		 * @param start the first byte to read.
+		 * @param end the byte after the last one to read.
+		 */
+		private void setRange(long start, long end)
+		{
+			position = start;
+			this.end = Math.min(end, mapEnd);
+			if (window != null && (start < windowStart || start >= windowStart + window.limit()))
+				release();
+		}
+
+		/**
+		 * Method to limit mapping to a range of the file.
+		 * @param start the first byte to map.
+		 * @param end the byte after the last one to map.
+		 */
+		private void setMapRange(long start, long end)
+		{
+			mapEnd = Math.min(end, size);
+			if (window != null && (windowStart < start || windowStart + window.limit() > mapEnd))
+				release();
+		}
+
+		/**
+		 * Method to drop the window. The mapping is removed by the garbage collector
+		 * when no buffer refers to it any more, so a buffer which is still in use stays valid.
+		 */
+		private void release()
+		{
+			window = null;
+		}
+
+		private byte readByte()
+			throws IOException
+		{
+			if (position >= end) throw new EOFException();
+			long offset = position - windowStart;
+			if (window == null || offset < 0 || offset >= window.limit())
+			{
+				windowStart = position;
+				release();
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(mappedWindowSize, mapEnd - windowStart));
+				offset = 0;
+			}
+			position++;
+			return window.get((int)offset);
+		}
+	}
+
+	/**
+	 * Class to describe a structure found when a memory-mapped file is indexed.
+	 */
+	private static class StructureIndex
+	{
+		private final long start;
+		private long end;
+		private String name;
+		private final List<String> references = new ArrayList<String>();
+		private CellBuilder builder;
+		private Throwable exception;
+
+		private StructureIndex(long start) { this.start = start; }
+	}
+
+	/**
+	 * Method to open a local GDS file for memory-mapped reading.
+	 * @param fileURL the file to open.
+	 * @return true if the file is memory-mapped.
+	 */
+	private boolean openMappedInput(URL fileURL)
+	{
+		if (!fileURL.getProtocol().equals("file")) return false;
+		filePath = fileURL.getFile();
+		try
+		{
+			File file = new File(fileURL.toURI());
+			FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+			mappedInput = new MappedInput(channel);
+			fileLength = mappedInput.size;
+		} catch (Exception e)
+		{
+			return false;
+		}
+		byteCount = 0;
+		return true;
+	}
+
+	@Override
+	protected void closeInput()
+	{
+		if (mappedInput != null)
+		{
+			mappedInput.release();
+			try
+			{
+				mappedInput.channel.close();
+			} catch (IOException e) {}
+			mappedInput = null;
+		}
+		super.closeInput();
+	}
+
+	/**
+	 * Method to read a memory-mapped file.
+	 * The file is indexed first, then the structures are read by a thread pool in batches,
+	 * and each batch is built bottom-up while the next one is read.
+	 * Structures are released when they are built, so only two batches are in memory.
+	 */
+	private void loadMappedFile()
+		throws IOException
+	{
+		readLibraryHeader();
+
+		// index the structures and create their cells
+		List<StructureIndex> structures = indexStructures();
+		prototypes = new HashMap<String,Cell>();
+		for(StructureIndex si : structures)
+		{
+			Cell cell = findCell(si.name);
+			if (cell == null)
+			{
+				cell = Cell.newInstance(theLibrary, si.name);
+				if (cell == null) handleError("Failed to create structure");
+				System.out.println("Reading " + si.name);
+				if (!currentCells.containsKey(theLibrary))
+					currentCells.put(theLibrary, cell);
+			}
+			prototypes.put(si.name, cell);
+		}
+		for(StructureIndex si : structures)
+		{
+			for(String name : si.references)
+			{
+				if (prototypes.containsKey(name)) continue;
+				Cell np = findCell(name);
+				if (np == null)
+				{
+					np = Cell.newInstance(theLibrary, name);
+					if (np == null) handleError("Failed to create SREF proto");
+					missingCells.add(np);
+				}
+				prototypes.put(name, np);
+			}
+		}
+		Map<Cell,Cell> foundCellMap = substituteMissingCells();
+		for(Map.Entry<Cell,Cell> e : foundCellMap.entrySet())
+			prototypes.put(e.getKey().getName(), e.getValue());
+
+		// order the structures so that subcells are built before their parents
+		Map<String,StructureIndex> structureMap = new HashMap<String,StructureIndex>();
+		for(StructureIndex si : structures) structureMap.put(si.name, si);
+		List<StructureIndex> order = new ArrayList<StructureIndex>();
+		Set<StructureIndex> visited = new HashSet<StructureIndex>();
+		for(StructureIndex si : structures)
+			orderStructure(si, structureMap, visited, order);
+
+		// read and build the structures
+		int numThreads = localPrefs.readThreads > 0 ? localPrefs.readThreads : Runtime.getRuntime().availableProcessors();
+		ExecutorService threadPool = numThreads > 1 ?
+			Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("GDS reader")) : null;
+		GDS[] readers = new GDS[numThreads];
+		for(int i=0; i<readers.length; i++) readers[i] = new GDS(this);
+		try
+		{
+			long bytesBuilt = 0;
+			List<StructureIndex> readBatch = null;
+			for(int next = 0; readBatch != null || next < order.size(); )
+			{
+				List<StructureIndex> batch = new ArrayList<StructureIndex>();
+				long batchSize = 0;
+				while (next < order.size() && (batch.isEmpty() || batchSize < structureBatchSize))
+				{
+					StructureIndex si = order.get(next++);
+					batch.add(si);
+					batchSize += si.end - si.start;
+				}
+				List<Future<?>> job = startStructures(batch, threadPool, readers);
+				if (readBatch != null)
+				{
+					for(StructureIndex si : readBatch)
+					{
+						si.builder.clearExports();
+						si.builder.makeInstances();
+						si.builder = null;
+						bytesBuilt += si.end - si.start;
+					}
+					if (fileLength > 0) setProgressValue((int)(bytesBuilt * 100L / fileLength));
+				}
+				joinStructures(job, batch, readers);
+				readBatch = batch.isEmpty() ? null : batch;
+			}
+		} finally
+		{
+			if (threadPool != null) threadPool.shutdownNow();
 		}
 	}
 
+	/**
+	 * Method to scan the record headers of a memory-mapped file from the current position.
+	 * @return the structures of the file; a structure which is defined twice is described by its last definition.
+	 */
+	private List<StructureIndex> indexStructures()
+		throws IOException
+	{
+		Map<String,StructureIndex> structureMap = new LinkedHashMap<String,StructureIndex>();
+		StructureIndex si = null;
+		for(;;)
+		{
+			long start = mappedInput.getPosition();
+			byteCount = start;
+			recordCount = 4;
+			int length = getWord();
+			GSymbol token = GSymbol.findSymbol(getByte() & 0xFF);
+			getByte();
+			if (length < 4) handleError("Invalid record length");
+			if (token == GDS_ENDLIB) break;
+			if (token == GDS_BGNSTR)
+			{
+				si = new StructureIndex(start);
+			} else if (si != null && (token == GDS_STRNAME || token == GDS_SNAME))
+			{
+				recordCount = length - 4;
+				String name = getString() + "{lay}";
+				if (token == GDS_STRNAME) si.name = name; else
+					si.references.add(name);
+			} else if (si != null && token == GDS_ENDSTR)
+			{
+				if (si.name == null) handleError("Strname statement is missing");
+				si.end = start + length;
+				structureMap.remove(si.name);
+				structureMap.put(si.name, si);
+				si = null;
+			}
+			mappedInput.seek(start + length);
+		}
+		recordCount = 0;
+		return new ArrayList<StructureIndex>(structureMap.values());
+	}
+
+	private static void orderStructure(StructureIndex si, Map<String,StructureIndex> structureMap,
+		Set<StructureIndex> visited, List<StructureIndex> order)
+	{
+		if (!visited.add(si)) return;
+		for(String name : si.references)
+		{
+			StructureIndex sub = structureMap.get(name);
+			if (sub != null) orderStructure(sub, structureMap, visited, order);
+		}
+		order.add(si);
+	}
+
+	/**
+	 * Method to start reading a batch of structures.
+	 * The structures are split in file order into one chunk of about the same size per reader,
+	 * so that the structures of a chunk share the mapped windows of its reader.
+	 * @param readers the readers of the structures, one per thread.
+	 * @param threadPool the threads which read the structures, or null to read them in this thread.
+	 * @return the tasks which read the structures, or null if they were read in this thread.
+	 */
+	private List<Future<?>> startStructures(List<StructureIndex> batch, ExecutorService threadPool, GDS[] readers)
+		throws IOException
+	{
+		if (batch.isEmpty()) return null;
+		List<StructureIndex> sorted = new ArrayList<StructureIndex>(batch);
+		Collections.sort(sorted, new Comparator<StructureIndex>()
+		{
+			public int compare(StructureIndex si1, StructureIndex si2)
+			{
+				return si1.start < si2.start ? -1 : si1.start > si2.start ? 1 : 0;
+			}
+		});
+		if (threadPool == null)
+		{
+			readers[0].readIndexedStructures(sorted);
+			return null;
+		}
+		long batchSize = 0;
+		for(StructureIndex si : sorted) batchSize += si.end - si.start;
+		List<Future<?>> job = new ArrayList<Future<?>>();
+		int numChunks = 0;
+		long chunkSize = 0;
+		int chunkStart = 0;
+		for(int i=0; i<sorted.size(); i++)
+		{
+			StructureIndex si = sorted.get(i);
+			chunkSize += si.end - si.start;
+			if (i == sorted.size() - 1 || chunkSize * readers.length >= batchSize && numChunks < readers.length - 1)
+			{
+				final GDS reader = readers[numChunks++];
+				final List<StructureIndex> chunk = sorted.subList(chunkStart, i + 1);
+				job.add(threadPool.submit(new Runnable()
+				{
+					public void run() { reader.readIndexedStructures(chunk); }
+				}));
+				chunkStart = i + 1;
+				chunkSize = 0;
+			}
+		}
+		return job;
+	}
+
+	/**
+	 * Method to wait until a batch of structures is read.
+	 * The mapped windows of the readers are dropped.
+	 */
+	private void joinStructures(List<Future<?>> job, List<StructureIndex> batch, GDS[] readers)
+		throws IOException
+	{
+		if (job != null)
+		{
+			for(Future<?> task : job)
+			{
+				try
+				{
+					task.get();
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while reading structures");
+				} catch (ExecutionException e)
+				{
+					// readIndexedStructures records its exceptions in the structures
+					throw new IOException(e.getCause().getMessage());
+				}
+			}
+		}
+		for(GDS reader : readers)
+			reader.mappedInput.release();
+		for(StructureIndex si : batch)
+		{
+			Throwable e = si.exception;
+			if (e == null) continue;
+			if (e instanceof IOException) throw (IOException)e;
+			if (e instanceof RuntimeException) throw (RuntimeException)e;
+			if (e instanceof Error) throw (Error)e;
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to read a chunk of indexed structures of a memory-mapped file sorted by their position.
+	 * Exceptions are recorded in the structure which failed, and the rest of the chunk is not read.
+	 */
+	private void readIndexedStructures(List<StructureIndex> chunk)
+	{
+		mappedInput.setMapRange(chunk.get(0).start, chunk.get(chunk.size() - 1).end);
+		for(StructureIndex si : chunk)
+		{
+			try
+			{
+				readIndexedStructure(si);
+			} catch (Throwable e)
+			{
+				si.exception = e;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Method to read an indexed structure of a memory-mapped file.
+	 */
+	private void readIndexedStructure(StructureIndex si)
+		throws IOException
+	{
+		mappedInput.setRange(si.start, si.end);
+		byteCount = si.start;
+		recordCount = 0;
+		getToken();
+		readStructure();
+		si.builder = theCell;
+		theCell = null;
+		merge = null;
+	}
+
 	private void readHeader()
 		throws IOException
 	{
@@ -1579,8 +2069,13 @@ public class GDS extends Input<Object>
 
 		// look for this nodeproto
 		String name = tokenString + "{lay}";
-		Cell cell = findCell(name);
-		if (cell == null)
+		Cell cell;
+		if (prototypes != null)
+		{
+			// the cells of memory-mapped files are created when the file is indexed
+			cell = prototypes.get(name);
+			if (cell == null) handleError("Structure " + name + " is not indexed");
+		} else if ((cell = findCell(name)) == null)
 		{
 			// create the prototype
 			cell = Cell.newInstance(theLibrary, name);
@@ -1592,7 +2087,12 @@ public class GDS extends Input<Object>
 		{
 			missingCells.remove(cell);
 		}
-        theCell = new CellBuilder(cell, curTech, localPrefs);
+        theCell = new CellBuilder(cell, curTech, localPrefs, ep);
+        if (prototypes == null)
+        {
+        	CellBuilder.allBuilders.put(cell.getId(), theCell);
+        	theCell.clearExports();
+        }
 	}
 
 	private Cell findCell(String name)
@@ -2309,6 +2809,15 @@ public class GDS extends Input<Object>
 	}
 
 	private void setLayer(int layerNum, int layerType)
+	{
+		// the layer tables are shared by all readers of a memory-mapped file
+		synchronized (layerNames)
+		{
+			setLayerLocked(layerNum, layerType);
+		}
+	}
+
+	private void setLayerLocked(int layerNum, int layerType)
 	{
 		curLayerNum = layerNum;
 		curLayerType = layerType;
@@ -2445,8 +2954,13 @@ public class GDS extends Input<Object>
 	{
 		// scan for this prototype
 		name = name + "{lay}";
-		Cell np = findCell(name);
-		if (np == null)
+		Cell np;
+		if (prototypes != null)
+		{
+			// the cells of memory-mapped files are created when the file is indexed
+			np = prototypes.get(name);
+			if (np == null) handleError("Reference to " + name + " is not indexed");
+		} else if ((np = findCell(name)) == null)
 		{
 			// FILO order, create this nodeproto
 			np = Cell.newInstance(theLibrary, name);
@@ -2552,8 +3066,11 @@ public class GDS extends Input<Object>
             " in '" + filePath + "'";
         Cell cell = theCell != null ? theCell.cell : null;
         System.out.println(message);
-        errorLogger.logError(message, cell, 0);
-		throw new IOException();
+        synchronized (errorLogger)
+        {
+        	errorLogger.logError(message, cell, 0);
+        }
+		throw new IOException(message);
 	}
 
 	private void readUnsupported(GSymbol bad_op_set[])
@@ -2748,8 +3265,17 @@ public class GDS extends Input<Object>
 	private byte getByte()
 		throws IOException
 	{
-		byte b = dataInputStream.readByte();
-		updateProgressDialog(1);
+		byte b;
+		if (mappedInput != null)
+		{
+			// progress of memory-mapped files is shown when structures are built
+			b = mappedInput.readByte();
+			byteCount++;
+		} else
+		{
+			b = dataInputStream.readByte();
+			updateProgressDialog(1);
+		}
 		recordCount--;
 		return b;
 	}
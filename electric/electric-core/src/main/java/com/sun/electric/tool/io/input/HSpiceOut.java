@@ -27,6 +27,7 @@ package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.simulation.ComplexSample;
+import com.sun.electric.tool.simulation.MappedWaveformStore;
 import com.sun.electric.tool.simulation.MutableSignal;
 import com.sun.electric.tool.simulation.ScalarSample;
 import com.sun.electric.tool.simulation.Signal;
@@ -786,6 +787,18 @@ public class HSpiceOut extends Input<Stimuli>
 	        sweepNames = new String[sweepUpper];
 		}
 
+		// large transient runs are written to a memory-mapped store instead of the signals
+		MappedWaveformStore.Writer mapped = null;
+		String[] mappedNames = null, mappedContexts = null;
+		double[] mappedRow = null;
+		if (sweepcnt == 0 && numFiles == 1 && !isComplex && SimulationData.isMappedWaveforms(fileLength))
+		{
+			mapped = new MappedWaveformStore.Writer(numSignals);
+			mappedNames = new String[numSignals];
+			mappedContexts = new String[numSignals];
+			mappedRow = new double[numSignals];
+		}
+
 		// setup the simulation information
 		int sweepCounter = sweepcnt;
         int sweepIndex = 0;
@@ -822,6 +835,12 @@ public class HSpiceOut extends Input<Stimuli>
 					name = name.substring(lastDotPos+1);
 				}
 				if (sweepcnt > 0) name += "[" + sweepName + "]";
+				if (mapped != null)
+				{
+					mappedNames[k] = name;
+					mappedContexts[k] = context;
+					continue;
+				}
 				SignalCollection scToUse = sc;
 				if (sweepcnt > 0) scToUse = null;
 				allSignals[k][fileNum + sweepIndex] = isComplex
@@ -845,6 +864,9 @@ public class HSpiceOut extends Input<Stimuli>
 						float imagPart = getHSpiceFloat(false);
                         if (signal.getSample(time) == null)
                             signal.addSample(time, new ComplexSample(realPart, imagPart));
+					} else if (mapped != null)
+					{
+						mappedRow[(k + numnoi) % numSignals] = getHSpiceFloat(false);
 					} else
 					{
                         MutableSignal<ScalarSample> signal = (MutableSignal<ScalarSample>)allSignals[(k + numnoi) % numSignals][fileNum + sweepIndex];
@@ -859,12 +881,23 @@ public class HSpiceOut extends Input<Stimuli>
 					}
 				}
 				if (eofReached) { System.out.println("EOF before the end of the data");   break; }
+				if (mapped != null) mapped.addRow(time, mappedRow);
 			}
 			sweepCounter--;
 			if (sweepCounter <= 0) break;
 			sweepIndex++;
 			eofReached = false;
 		}
+		if (mapped != null)
+		{
+			MappedWaveformStore store = mapped.finish();
+			for(int k=0; k<numSignals; k++)
+			{
+				allSignals[k][0] = store == null
+					? ScalarSample.createSignal(sc, sd, mappedNames[k], mappedContexts[k])
+					: ScalarSample.createSignal(sc, sd, mappedNames[k], mappedContexts[k], store, k);
+			}
+		}
 		if (sweepcnt > 0 || (numFiles > 1 && fileNum == numFiles-1))
 		{
 			for(int k=0; k<numSignals; k++)
@@ -53,6 +53,7 @@ import com.sun.electric.technology.technologies.Artwork;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Tool;
 import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.user.ErrorLogger;
 import com.sun.electric.util.TextUtils;
 
@@ -73,7 +74,7 @@ public class JELIB extends LibraryFiles
     JELIB(LibId libId, URL fileURL, FileType type) throws IOException
 	{
         fileType = type;
-        parser = JelibParser.parse(libId, fileURL, fileType, false, Input.errorLogger);
+        parser = JelibParser.parse(libId, fileURL, fileType, false, Input.errorLogger, IOTool.getLibraryReadThreads());
     }
 
     public static Map<Setting,Object> readProjectSettings(URL fileURL, FileType fileType, TechPool techPool, ErrorLogger errorLogger) {
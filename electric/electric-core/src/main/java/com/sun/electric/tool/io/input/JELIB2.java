@@ -171,8 +171,8 @@ public class JELIB2 {
             for (int arcId = 0; arcId < arcs.length; arcId++) {
                 JelibParser.ArcContents ac = cc.arcs.get(arcId);
                 ImmutableArcInst a = ImmutableArcInst.newInstance(arcId, ac.arcProtoId, Name.findName(ac.arcName), ac.nameTextDescriptor,
-                        ac.tailNode.n.nodeId, ac.tailPort, ac.tailPoint,
-                        ac.headNode.n.nodeId, ac.headPort, ac.headPoint,
+                        ac.tailNode.n.nodeId, ac.tailPort, ImmutableArcInst.shareLocation(ac.tailPoint, ac.tailNode.n),
+                        ac.headNode.n.nodeId, ac.headPort, ImmutableArcInst.shareLocation(ac.headPoint, ac.headNode.n),
                         DBMath.lambdaToGrid(0.5 * ac.diskWidth), ac.angle, ac.flags);
                 for (Variable var : ac.vars) {
                     a = a.withVariable(var);
@@ -468,7 +468,9 @@ public class JELIB2 {
             if (doDatabase) {
                 Snapshot oldSnapshot = getDatabase().backup();
                 libBackups.addAll(oldSnapshot.libBackups);
-                cellBackups.addAll(oldSnapshot.cellBackups);
+                for (int cellIndex = 0; cellIndex < oldSnapshot.getNumCells(); cellIndex++) {
+                    cellBackups.add(oldSnapshot.getCell(cellIndex));
+                }
             }
             for (JELIB2 jelib2 : taskResults.values()) {
                 LibraryBackup libBackup = jelib2.libBackup;
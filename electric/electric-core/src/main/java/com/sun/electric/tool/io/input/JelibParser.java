@@ -54,6 +54,7 @@ import com.sun.electric.tool.Tool;
 import com.sun.electric.tool.io.FileType;
 import com.sun.electric.tool.ncc.basic.TransitiveRelation;
 import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 import com.sun.electric.util.math.Orientation;
 
 import java.awt.geom.Point2D;
@@ -73,6 +74,10 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class reads files in new library file (.jelib) format.
@@ -227,6 +232,75 @@ public class JelibParser
 	private String curLibName;
     private String curReadFile;
 
+    // parallel parsing of cell contents
+    /** default number of lines of cell contents submitted to the thread pool at once */
+    private static final int CELL_BODIES_BATCH_LINES = 1 << 16;
+    private final int numThreads;
+    private final int batchLines;
+    private ArrayList<CellBody> pendingBodies;
+    private int pendingLines;
+    private ExecutorService threadPool;
+    private List<Future<?>> bodiesTasks;
+    private Throwable bodiesException;
+    /** line number of cell contents when parsed out of the line reader */
+    private int bodyLineNumber;
+
+    /**
+     * Lines of cell contents together with the parser state needed to parse them later.
+     */
+    private static class CellBody {
+        private final CellContents cc;
+        private final String fileName;
+        private final int revision;
+        private final char escapeChar;
+        private final String curLibName;
+        private final ArrayList<String> lines = new ArrayList<String>();
+        private int[] lineNumbers = new int[16];
+
+        private CellBody(JelibParser parser, CellContents cc) {
+            this.cc = cc;
+            fileName = parser.curReadFile;
+            revision = parser.revision;
+            escapeChar = parser.escapeChar;
+            curLibName = parser.curLibName;
+        }
+
+        private void add(String line, int lineNumber) {
+            int n = lines.size();
+            if (n == lineNumbers.length) {
+                int[] newLineNumbers = new int[n*2];
+                System.arraycopy(lineNumbers, 0, newLineNumbers, 0, n);
+                lineNumbers = newLineNumbers;
+            }
+            lines.add(line);
+            lineNumbers[n] = lineNumber;
+        }
+    }
+
+    /**
+     * Task which parses a chunk of cell contents in a thread pool.
+     */
+    private class CellBodiesTask implements Runnable {
+        private final List<CellBody> bodies;
+
+        private CellBodiesTask(List<CellBody> bodies) {
+            this.bodies = bodies;
+        }
+
+        public void run() {
+            try {
+                JelibParser parser = new JelibParser(JelibParser.this);
+                for (CellBody body: bodies)
+                    parser.parseCellBody(body);
+            } catch (Throwable e) {
+                synchronized (JelibParser.this) {
+                    if (bodiesException == null)
+                        bodiesException = e;
+                }
+            }
+        }
+    }
+
     private static class TextDescriptorAndCode {
         private final TextDescriptor td;
         private final CodeExpression.Code code;
@@ -241,7 +315,8 @@ public class JelibParser
     private TechId curTechId = null;
     private PrimitiveNodeId curPrimId = null;
 
-	private JelibParser(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger) throws IOException
+	private JelibParser(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger,
+        int numThreads, int batchLines) throws IOException
 	{
         idManager = libId.idManager;
         this.libId = libId;
@@ -249,6 +324,10 @@ public class JelibParser
         this.fileType = fileType;
         filePath = fileURL.getFile();
         this.errorLogger = errorLogger;
+        if (numThreads <= 0)
+            numThreads = Runtime.getRuntime().availableProcessors();
+        this.numThreads = numThreads;
+        this.batchLines = batchLines;
 
         InputStream inputStream;
         if (fileType == FileType.JELIB) {
@@ -275,14 +354,33 @@ public class JelibParser
         delibHeaderReader = fileType == FileType.DELIB ? lineReader : null;
         try {
             readFromFile(onlyProjectSettings);
+            finishCellBodies();
             collectCellGroups();
         } catch (Exception e) {
             logError("Exception " + e.getMessage());
         } finally {
             lineReader.close();
+            shutdownThreadPool();
         }
 	}
 
+    /**
+     * Constructs a parser of cell contents which shares ids and error logger with its parent.
+     * It has its own text descriptor caches and variable buffers, so it can run in other thread.
+     * @param parent parent parser
+     */
+    private JelibParser(JelibParser parent) {
+        idManager = parent.idManager;
+        libId = parent.libId;
+        fileURL = parent.fileURL;
+        fileType = parent.fileType;
+        filePath = parent.filePath;
+        errorLogger = parent.errorLogger;
+        delibHeaderReader = null;
+        numThreads = 1;
+        batchLines = parent.batchLines;
+    }
+
     private void collectCellGroups() {
         for (Iterator<Set<String>> git = transitiveProtoNames.getSetsOfRelatives(); git.hasNext(); ) {
             Set<String> protoNames = git.next();
@@ -311,7 +409,40 @@ public class JelibParser
     }
 
     public static JelibParser parse(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger) throws IOException {
-        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger);
+        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger, 1, CELL_BODIES_BATCH_LINES);
+    }
+
+    /**
+     * Parses JELIB or DELIB library.
+     * Contents of cells are parsed in parallel by a thread pool when numThreads is not 1.
+     * @param libId LibId of the library
+     * @param fileURL URL of the library file
+     * @param fileType JELIB or DELIB
+     * @param onlyProjectSettings true to parse only project settings
+     * @param errorLogger logger of parse errors
+     * @param numThreads number of threads to parse cell contents, 0 for all available processors.
+     * @return parsed library
+     * @throws IOException on I/O error
+     */
+    public static JelibParser parse(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger, int numThreads) throws IOException {
+        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger, numThreads, CELL_BODIES_BATCH_LINES);
+    }
+
+    /**
+     * Parses JELIB or DELIB library submitting cell contents to the thread pool in batches of given size.
+     * @param libId LibId of the library
+     * @param fileURL URL of the library file
+     * @param fileType JELIB or DELIB
+     * @param onlyProjectSettings true to parse only project settings
+     * @param errorLogger logger of parse errors
+     * @param numThreads number of threads to parse cell contents, 0 for all available processors.
+     * @param batchLines number of lines of cell contents submitted to the thread pool at once.
+     * @return parsed library
+     * @throws IOException on I/O error
+     */
+    static JelibParser parse(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger,
+        int numThreads, int batchLines) throws IOException {
+        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger, numThreads, batchLines);
     }
 
     private void readFromFile(boolean onlyProjectSettings) throws IOException {
@@ -688,6 +819,7 @@ public class JelibParser
         cc.vars = readVariables(pieces, numPieces);
 
         // gather the contents of the cell
+        CellBody body = numThreads > 1 ? new CellBody(this, cc) : null;
         for(;;)
         {
             String nextLine = lineReader.readLine();
@@ -700,13 +832,13 @@ public class JelibParser
                     break;
                 case 'N':
                 case 'I':
-                    parseNode(nextLine, cc);
-                    break;
                 case 'E':
-                    parseExport(nextLine, cc);
-                    break;
                 case 'A':
-                    parseArc(nextLine, cc);
+                    if (body != null) {
+                        findPrototype(nextLine, cc);
+                        body.add(nextLine, lineReader.getLineNumber());
+                    } else
+                        parseCellLine(nextLine, cc);
                     break;
                 default:
             }
@@ -724,6 +856,8 @@ public class JelibParser
             logError("Duplicate cell " + cc.cellId);
             return;
         }
+        if (body != null)
+            deferCellBody(body);
         String protoName = cellName.getName();
         if (groupName == null)
             groupName = protoName;
@@ -738,9 +872,211 @@ public class JelibParser
         return;
     }
 
+    private void parseCellLine(String cellString, CellContents cc) {
+        switch (cellString.charAt(0)) {
+            case 'N':
+            case 'I':
+                parseNode(cellString, cc);
+                break;
+            case 'E':
+                parseExport(cellString, cc);
+                break;
+            case 'A':
+                parseArc(cellString, cc);
+                break;
+        }
+    }
+
+    /**
+     * Finds the prototype of a node or arc line whose parsing is deferred.
+     * The ids of the prototypes are created in this thread in file order,
+     * as a serial parse creates them, so they don't depend on the number of threads.
+     * Lines with too few fields create no ids, as in parseNode() and parseArc().
+     */
+    private void findPrototype(String cellString, CellContents cc) {
+        char firstChar = cellString.charAt(0);
+        if (firstChar == 'N' || firstChar == 'I') {
+            String protoName = getFirstPiece(cellString, revision < 1 ? 10 : firstChar == 'N' ? 9 : 8);
+            if (protoName != null)
+                findNodeProtoId(firstChar, unQuote(protoName), cc);
+        } else if (firstChar == 'A') {
+            String protoName = getFirstPiece(cellString, 13);
+            if (protoName != null)
+                findArcProtoId(unQuote(protoName), cc);
+        }
+    }
+
+    /**
+     * Returns the first piece of a line as parseLine() splits it.
+     * @param line the line
+     * @param numPieces the number of pieces the line must have
+     * @return the first piece, or null if the line has fewer pieces
+     */
+    private String getFirstPiece(String line, int numPieces) {
+        int len = line.length();
+        int pos = 1;
+        int firstEnd = -1;
+        int count = 1;
+        boolean inQuote = false;
+        while (pos < len && count < numPieces) {
+            char chr = line.charAt(pos++);
+            if (chr == escapeChar) {
+                pos++;
+                continue;
+            }
+            if (chr == '"') inQuote = !inQuote;
+            if (chr == '|' && !inQuote) {
+                if (firstEnd < 0)
+                    firstEnd = pos - 1;
+                count++;
+            }
+        }
+        if (count < numPieces)
+            return null;
+        return numPieces > 1 ? line.substring(1, firstEnd) : line.substring(1);
+    }
+
+    private void parseCellBody(CellBody body) {
+        curReadFile = body.fileName;
+        revision = body.revision;
+        escapeChar = body.escapeChar;
+        curLibName = body.curLibName;
+        for (int i = 0; i < body.lines.size(); i++) {
+            bodyLineNumber = body.lineNumbers[i];
+            parseCellLine(body.lines.get(i), body.cc);
+        }
+    }
+
+    /**
+     * Queues contents of a cell for parallel parsing.
+     * Queued contents are submitted to the thread pool in batches, so that
+     * the file is read while previous batch is being parsed.
+     */
+    private void deferCellBody(CellBody body) {
+        if (pendingBodies == null)
+            pendingBodies = new ArrayList<CellBody>();
+        pendingBodies.add(body);
+        pendingLines += body.lines.size();
+        if (pendingLines >= batchLines)
+            startCellBodies();
+    }
+
+    private void startCellBodies() {
+        joinCellBodies();
+        if (threadPool == null)
+            threadPool = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("JELIB parser"));
+        bodiesTasks = new ArrayList<Future<?>>();
+        int linesPerTask = (pendingLines + numThreads - 1) / numThreads;
+        ArrayList<CellBody> chunk = new ArrayList<CellBody>();
+        int chunkLines = 0;
+        for (CellBody body: pendingBodies) {
+            chunk.add(body);
+            chunkLines += body.lines.size();
+            if (chunkLines >= linesPerTask) {
+                bodiesTasks.add(threadPool.submit(new CellBodiesTask(chunk)));
+                chunk = new ArrayList<CellBody>();
+                chunkLines = 0;
+            }
+        }
+        if (!chunk.isEmpty())
+            bodiesTasks.add(threadPool.submit(new CellBodiesTask(chunk)));
+        pendingBodies = null;
+        pendingLines = 0;
+    }
+
+    private void joinCellBodies() {
+        if (bodiesTasks == null) return;
+        waitForCellBodies();
+        bodiesTasks = null;
+        Throwable e;
+        synchronized (this) {
+            e = bodiesException;
+        }
+        if (e instanceof RuntimeException) throw (RuntimeException)e;
+        if (e instanceof Error) throw (Error)e;
+    }
+
+    /**
+     * Waits until the submitted cell contents are parsed.
+     * CellBodiesTask records its exceptions in bodiesException.
+     */
+    private void waitForCellBodies() {
+        for (Future<?> task: bodiesTasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Parses remaining cell contents and waits for the thread pool.
+     * Small libraries which don't fill a batch are parsed in this thread.
+     */
+    private void finishCellBodies() {
+        if (pendingBodies != null) {
+            if (threadPool != null)
+                startCellBodies();
+            else
+                parsePendingBodies();
+        }
+        joinCellBodies();
+    }
+
+    private void parsePendingBodies() {
+        JelibParser parser = new JelibParser(this);
+        for (CellBody body: pendingBodies)
+            parser.parseCellBody(body);
+        pendingBodies = null;
+        pendingLines = 0;
+    }
+
+    private void shutdownThreadPool() {
+        if (threadPool == null) return;
+        threadPool.shutdownNow();
+        threadPool = null;
+    }
+
+    private int getLineNumber() {
+        return lineReader != null ? lineReader.getLineNumber() : bodyLineNumber;
+    }
+
+    private NodeProtoId findNodeProtoId(char firstChar, String protoName, CellContents cc) {
+        LibId libId = cc.cellId.libId;
+        int colonPos = protoName.indexOf(':');
+        if (colonPos < 0)
+        {
+            if (firstChar == 'I' || revision < 1)
+                return libId.newCellId(CellName.parseName(protoName));
+            return cc.techId.newPrimitiveNodeId(protoName);
+        }
+        String prefixName = protoName.substring(0, colonPos);
+        protoName = protoName.substring(colonPos+1);
+        if (firstChar == 'I' || revision < 1 && protoName.indexOf('{') >= 0) {
+            if (!prefixName.equals(curLibName))
+                libId = idManager.newLibId(prefixName);
+            return libId.newCellId(CellName.parseName(protoName));
+        }
+        return idManager.newTechId(prefixName).newPrimitiveNodeId(protoName);
+    }
+
+    private ArcProtoId findArcProtoId(String protoName, CellContents cc) {
+        TechId techId = cc.techId;
+        int indexOfColon = protoName.indexOf(':');
+        if (indexOfColon >= 0) {
+            techId = idManager.newTechId(protoName.substring(0, indexOfColon));
+            protoName = protoName.substring(indexOfColon + 1);
+        }
+        return techId.newArcProtoId(protoName);
+    }
+
     private void parseNode(String cellString, CellContents cc) {
         NodeContents n = new NodeContents();
-        n.line = lineReader.getLineNumber();
+        n.line = getLineNumber();
 
         // parse the node line
         List<String> pieces = parseLine(cellString);
@@ -769,27 +1105,7 @@ public class JelibParser
         double x = readDouble(pieces.get(3));
         double y = readDouble(pieces.get(4));
 
-        LibId libId = cc.cellId.libId;
-        String prefixName = libId.libName;
-        int colonPos = protoName.indexOf(':');
-        if (colonPos < 0)
-        {
-            if (firstChar == 'I' || revision < 1)
-                n.protoId = libId.newCellId(CellName.parseName(protoName));
-            else
-                n.protoId = cc.techId.newPrimitiveNodeId(protoName);
-        } else
-        {
-            prefixName = protoName.substring(0, colonPos);
-            protoName = protoName.substring(colonPos+1);
-            if (firstChar == 'I' || revision < 1 && protoName.indexOf('{') >= 0) {
-                if (!prefixName.equals(curLibName))
-                    libId = idManager.newLibId(prefixName);
-                n.protoId = libId.newCellId(CellName.parseName(protoName));
-            } else {
-                n.protoId = idManager.newTechId(prefixName).newPrimitiveNodeId(protoName);
-            }
-        }
+        n.protoId = findNodeProtoId(firstChar, protoName, cc);
 
         n.size = EPoint.ORIGIN;
         boolean flipX = false, flipY = false;
@@ -879,7 +1195,7 @@ public class JelibParser
 
     private void parseExport(String cellString, CellContents cc) {
         ExportContents e = new ExportContents();
-        e.line = lineReader.getLineNumber();
+        e.line = getLineNumber();
 
         // parse the export line
         List<String> pieces = parseLine(cellString);
@@ -911,6 +1227,11 @@ public class JelibParser
         String textDescriptorInfo = pieces.get(fieldIndex++);
         String nodeName = revision >= 1 ? pieces.get(fieldIndex++) : unQuote(pieces.get(fieldIndex++));
         e.originalNode = cc.diskName.get(nodeName);
+        if (e.originalNode == null)
+        {
+            logError("Export on unknown node " + nodeName + ": " + cellString, cc.cellId);
+            return;
+        }
         String portName = unQuote(pieces.get(fieldIndex++));
         e.originalPort = e.originalNode.protoId.newPortId(portName);
         Point2D pos = null;
@@ -950,7 +1271,7 @@ public class JelibParser
 
     private void parseArc(String cellString, CellContents cc) {
         ArcContents a = new ArcContents();
-        a.line = lineReader.getLineNumber();
+        a.line = getLineNumber();
 
         // parse the arc line
         List<String> pieces = parseLine(cellString);
@@ -959,14 +1280,7 @@ public class JelibParser
             logError("Arc instance needs 13 fields: " + cellString, cc.cellId);
             return;
         }
-        TechId techId = cc.techId;
-        String protoName = unQuote(pieces.get(0));
-        int indexOfColon = protoName.indexOf(':');
-        if (indexOfColon >= 0) {
-            techId = idManager.newTechId(protoName.substring(0, indexOfColon));
-            protoName = protoName.substring(indexOfColon + 1);
-        }
-        a.arcProtoId = techId.newArcProtoId(protoName);
+        a.arcProtoId = findArcProtoId(unQuote(pieces.get(0)), cc);
         String diskArcName = revision >= 1 ? pieces.get(1) : unQuote(pieces.get(1));
         String arcName = diskArcName;
         if (arcName.charAt(0) == '"')
@@ -986,6 +1300,11 @@ public class JelibParser
         double headX = readDouble(pieces.get(7));
         double headY = readDouble(pieces.get(8));
         a.headNode = cc.diskName.get(headNodeName);
+        if (a.headNode == null)
+        {
+            logError("Arc on unknown node " + headNodeName + ": " + cellString, cc.cellId);
+            return;
+        }
         a.headPort = a.headNode.protoId.newPortId(headPortName);
         a.headPoint = EPoint.fromLambda(headX, headY);
 
@@ -994,6 +1313,11 @@ public class JelibParser
         double tailX = readDouble(pieces.get(11));
         double tailY = readDouble(pieces.get(12));
         a.tailNode = cc.diskName.get(tailNodeName);
+        if (a.tailNode == null)
+        {
+            logError("Arc on unknown node " + tailNodeName + ": " + cellString, cc.cellId);
+            return;
+        }
         a.tailPort = a.tailNode.protoId.newPortId(tailPortName);
         a.tailPoint = EPoint.fromLambda(tailX, tailY);
 
@@ -1663,17 +1987,17 @@ public class JelibParser
     }
 
     private void logError(String message) {
-        String s = curReadFile + ", line " + lineReader.getLineNumber() + ", " + message;
+        String s = curReadFile + ", line " + getLineNumber() + ", " + message;
         errorLogger.logError(s, -1);
     }
 
     private void logWarning(String message) {
-        String s = curReadFile + ", line " + lineReader.getLineNumber() + ", " + message;
+        String s = curReadFile + ", line " + getLineNumber() + ", " + message;
         errorLogger.logWarning(s, null, -1);
     }
 
     private void logError(String message, CellId cellId) {
-        String s = curReadFile + ", line " + lineReader.getLineNumber() + ", " + message;
+        String s = curReadFile + ", line " + getLineNumber() + ", " + message;
         errorLogger.logError(s, cellId, -1);
     }
 }
@@ -26,6 +26,7 @@
 package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.simulation.MappedWaveformStore;
 import com.sun.electric.tool.simulation.MutableSignal;
 import com.sun.electric.tool.simulation.ScalarSample;
 import com.sun.electric.tool.simulation.Signal;
@@ -245,7 +246,10 @@ public class RawSpiceOut extends Input<Stimuli>
                         System.out.println("Missing point count in file");
                         return;
                     }
-                    double[][] values = new double[signalCount][rowCount];
+                    MappedWaveformStore.Writer mapped = SimulationData.isMappedWaveforms(fileLength) ?
+                    	new MappedWaveformStore.Writer(signalCount) : null;
+                    double[][] values = mapped != null ? null : new double[signalCount][rowCount];
+                    double[] row = new double[signalCount];
                     for(int j=0; j<rowCount; j++)
                     {
                     	int valueFill = 0;
@@ -279,12 +283,19 @@ public class RawSpiceOut extends Input<Stimuli>
                                 {
                                     double val = TextUtils.atof(field);
                                     if (i == 0 && firstFieldIsTime) time[j] = val; else
+                                    if (mapped != null) row[valueFill++] = val; else
                                         values[valueFill++][j] = val;
                                 }
                                 i++;
                                 if (i >= valuesToRead) break;
                             }
                         }
+                        if (mapped != null) mapped.addRow(time[j], row);
+                    }
+                    if (mapped != null)
+                    {
+                        createMappedSignals(sc, sd, signalNames, signalCount, mapped);
+                        continue;
                     }
                     for (int i = 0; i < signalCount; i++)
                         ScalarSample.createSignal(sc, sd, signalNames[i], null, time, values[i]);
@@ -304,6 +315,20 @@ public class RawSpiceOut extends Input<Stimuli>
                     }
 
                     // read the data
+                    if (SimulationData.isMappedWaveforms(fileLength))
+                    {
+                        MappedWaveformStore.Writer mapped = new MappedWaveformStore.Writer(signalCount);
+                        double[] row = new double[signalCount];
+                        for(int j=0; j<rowCount; j++)
+                        {
+                            double t = dataInputStream.readDouble();
+                            for(int i=0; i<signalCount; i++)
+                                row[i] = dataInputStream.readDouble();
+                            mapped.addRow(t, row);
+                        }
+                        createMappedSignals(sc, sd, signalNames, signalCount, mapped);
+                        continue;
+                    }
                     double[][] values = new double[signalCount][rowCount];
                     for(int j=0; j<rowCount; j++)
                     {
@@ -381,6 +406,13 @@ if (OLD) continue;
                             System.out.println("VARIABLE "+i+" IS "+signalNames[i]);
                     }
 
+                    // large files go to one memory-mapped store per sweep
+                    if (SimulationData.isMappedWaveforms(fileLength))
+                    {
+                        readMappedSweeps(sc, sd, signalNames, signalCount, rowCount, firstFieldIsTime, realValues);
+                        return;
+                    }
+
                     // read all of the data in the RAW file
                     double[][] values = new double[signalCount][rowCount];
                     time = new double[rowCount];
@@ -467,6 +499,72 @@ if (OLD) continue;
         }
 	}
 
+	/**
+	 * Method to create the signals of an analysis from a memory-mapped store.
+	 */
+	private void createMappedSignals(SignalCollection sc, Stimuli sd, String[] signalNames, int signalCount,
+		MappedWaveformStore.Writer mapped)
+		throws IOException
+	{
+		MappedWaveformStore store = mapped.finish();
+		if (store == null) return;
+		for (int i = 0; i < signalCount; i++)
+			ScalarSample.createSignal(sc, sd, signalNames[i], null, store, i);
+	}
+
+	/**
+	 * Method to read the binary data of a RAW file into memory-mapped stores.
+	 * A new sweep starts whenever the time decreases, and each sweep gets its own store.
+	 */
+	private void readMappedSweeps(SignalCollection sc, Stimuli sd, String[] signalNames, int signalCount, int rowCount,
+		boolean firstFieldIsTime, boolean realValues)
+		throws IOException
+	{
+		List<MappedWaveformStore> stores = new ArrayList<MappedWaveformStore>();
+		MappedWaveformStore.Writer mapped = new MappedWaveformStore.Writer(signalCount);
+		double[] row = new double[signalCount];
+		double lastTime = 0;
+		for(int j=0; j<rowCount; j++)
+		{
+			double t = j;
+			if (firstFieldIsTime) t = getNextDouble();
+			t = Math.abs(t);
+			if (j > 0 && t < lastTime)
+			{
+				stores.add(mapped.finish());
+				mapped = new MappedWaveformStore.Writer(signalCount);
+			}
+			lastTime = t;
+			for(int i=0; i<signalCount; i++)
+				row[i] = realValues ? getNextFloat() : getNextDouble();
+			mapped.addRow(t, row);
+		}
+		MappedWaveformStore last = mapped.finish();
+		if (last != null) stores.add(last);
+
+		int sweepCount = stores.size();
+		String[] sweepNames = new String[sweepCount];
+		for(int s=0; s<sweepCount; s++) sweepNames[s] = "" + (s+1);
+		for(int i=0; i<signalCount; i++)
+		{
+			String name = signalNames[i];
+			int lastDotPos = name.lastIndexOf('.');
+			String context = null;
+			if (lastDotPos >= 0)
+			{
+				context = name.substring(0, lastDotPos);
+				name = name.substring(lastDotPos + 1);
+			}
+			Signal<?>[] signals = new Signal<?>[sweepCount];
+			for(int s=0; s<sweepCount; s++)
+				signals[s] = ScalarSample.createSignal(sc, sd, name, context, stores.get(s), i);
+			@SuppressWarnings("unchecked")
+			Signal<ScalarSample>[] sweepSignals = (Signal<ScalarSample>[])signals;
+			SweptSample.createSignal(sc, sd, name, context, false, sweepSignals);
+		}
+		sc.setSweepNames(sweepNames);
+	}
+
 	private double getNextDouble()
 		throws IOException
 	{
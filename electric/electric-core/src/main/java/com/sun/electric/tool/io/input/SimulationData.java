@@ -69,6 +69,17 @@ public final class SimulationData {
         return getInputForExtension(extension)!=null;
     }
 
+    /**
+     * Method to tell whether the analog waveforms of a result file should be read
+     * into a MappedWaveformStore rather than into memory.
+     * @param fileLength the length of the result file in bytes (negative if unknown).
+     * @return true if the file is larger than the threshold in the Simulation preferences.
+     */
+    static boolean isMappedWaveforms(long fileLength) {
+        int threshold = SimulationTool.getWaveformMappingThreshold();
+        return threshold > 0 && fileLength >= threshold * 1024L * 1024L;
+    }
+
 	/**
 	 * Based on the provided cell, make an educated guess
 	 * about which simulation file the user has in mind, and plot
@@ -26,6 +26,7 @@
 package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.simulation.MappedWaveformStore;
 import com.sun.electric.tool.simulation.ScalarSample;
 import com.sun.electric.tool.simulation.Signal;
 import com.sun.electric.tool.simulation.SignalCollection;
@@ -77,6 +78,8 @@ public class SmartSpiceOut extends Input<Stimuli>
 		SignalCollection sc = null;
 		double[][] values = null;
         double[] time = null;
+		MappedWaveformStore.Writer mapped = null;
+		double[] row = null;
 		for(;;)
 		{
 			String line = getLineFromBinary();
@@ -126,7 +129,12 @@ public class SmartSpiceOut extends Input<Stimuli>
 				sc = Stimuli.newSignalCollection(sd, "SIGNALS");
 				sd.setCell(cell);
 				signalNames = new String[signalCount];
-				values = new double[signalCount][rowCount];
+				if (SimulationData.isMappedWaveforms(fileLength))
+				{
+					mapped = new MappedWaveformStore.Writer(signalCount);
+					row = new double[signalCount];
+				} else
+					values = new double[signalCount][rowCount];
 				for(int i=0; i<=signalCount; i++)
 				{
 					if (i != 0)
@@ -191,8 +199,10 @@ public class SmartSpiceOut extends Input<Stimuli>
 						line = getLineFromBinary();
 						if (line == null) break;
 						double value = TextUtils.atof(line.trim());
-						values[i][j] = value;
+						if (mapped != null) row[i] = value; else
+							values[i][j] = value;
 					}
+					if (mapped != null) mapped.addRow(time[j], row);
 				}
 			}
 			if (keyWord.equals("Binary"))
@@ -228,11 +238,14 @@ public class SmartSpiceOut extends Input<Stimuli>
 							// do smartspice output files on other OS's have this byte order?
 							value = dataInputStream.readDouble();
 						}
-						values[i][j] = value;
+						if (mapped != null) row[i] = value; else
+							values[i][j] = value;
 					}
+					if (mapped != null) mapped.addRow(time[j], row);
 				}
 			}
 		}
+		MappedWaveformStore store = mapped != null ? mapped.finish() : null;
 		for (int i = 0; i < signalCount; i++)
 		{
 			String name = signalNames[i];
@@ -243,7 +256,12 @@ public class SmartSpiceOut extends Input<Stimuli>
 				context = name.substring(0, lastDotPos);
 				name = name.substring(lastDotPos + 1);
 			}
-			ScalarSample.createSignal(sc, sd, signalNames[i], context, time, values[i]);
+			if (mapped == null)
+				ScalarSample.createSignal(sc, sd, signalNames[i], context, time, values[i]);
+			else if (store == null)
+				ScalarSample.createSignal(sc, sd, signalNames[i], context);
+			else
+				ScalarSample.createSignal(sc, sd, signalNames[i], context, store, i);
 		}
 	}
 }
@@ -89,7 +89,8 @@ public class DELIB extends JELIB {
         }
 
         // decide what files should be written
-        for (CellBackup cellBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) continue;
             CellRevision cellRevision = cellBackup.cellRevision;
             if (cellRevision.d.getLibId() != libId) continue;
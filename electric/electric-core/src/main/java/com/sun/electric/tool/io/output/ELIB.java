@@ -158,7 +158,8 @@ public class ELIB extends Output {
         // Gather objects referenced from Cells
         objInfo = new HashMap<Object, Integer>();
         nameSpace = new TreeMap<String, Short>(TextUtils.STRING_NUMBER_ORDER);
-        for (CellBackup cellBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
@@ -245,7 +246,8 @@ public class ELIB extends Output {
         // Sort CellIds
         TreeMap<String, LibId> sortedLibIds = new TreeMap<String, LibId>(TextUtils.STRING_NUMBER_ORDER);
         HashMap<LibId, TreeMap<CellName, CellId>> sortedCellIds = new HashMap<LibId, TreeMap<CellName, CellId>>();
-        for (CellBackup cellBackup : snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) {
                 continue;
             }
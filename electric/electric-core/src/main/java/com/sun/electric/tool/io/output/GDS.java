@@ -47,6 +47,7 @@ import com.sun.electric.tool.io.GDSLayers;
 import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 
 import java.awt.Point;
 import java.awt.geom.AffineTransform;
@@ -55,6 +56,8 @@ import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -66,6 +69,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class writes files in GDS format.
@@ -123,11 +133,18 @@ public class GDS extends Geometry
 	//private static final int HDR_M_STRNAME     =     32; // replace by preference IOTool.getGDSCellNameMaxLen
 	private static final int HDR_M_ASCII       =    256;
 
-	/** for buffering output data */			private static byte [] dataBufferGDS = new byte[DSIZE];
-	/** for buffering output data */			private static byte [] emptyBuffer = new byte[DSIZE];
-	/** Current layer for gds output */			private static GDSLayers currentLayerNumbers;
-	/** Position of next byte in the buffer */	private static int bufferPosition;
-	/** Number data buffers output so far */	private static int blockCount;
+	/** size of the buffer of the FileChannel */	private static final int CHANNEL_BUFFER_SIZE = 4 << 20;
+	/** bytes of queued output before the traversal waits */	private static final long MAX_PENDING_BYTES = 64 << 20;
+	/** structures queued per thread before the traversal waits */	private static final int MAX_PENDING_PER_THREAD = 4;
+	/** for buffering output data */			private byte [] dataBufferGDS = new byte[DSIZE*128];
+	/** Current layer for gds output */			private GDSLayers currentLayerNumbers;
+	/** Position of next byte in the buffer */	private int bufferPosition;
+	/** Number of bytes output so far */		private long bytesWritten;
+	/** threads that encode structures */		private ExecutorService structPool;
+	/** output in file order, being encoded */	private ArrayDeque<Future<byte[]>> pendingOutput;
+	/** bytes of the encoded queued output */	private final AtomicLong pendingBytes = new AtomicLong();
+	/** maximum number of queued outputs */		private int maxPendingOutput;
+	/** buffer of the FileChannel */			private ByteBuffer channelBuffer;
 	/** constant for GDS units */				private double scaleFactor;
 	/** cell naming map */						private Map<Cell,String> cellNames;
 	/** layer number map */						private Map<Layer,GDSLayers> layerNumbers;
@@ -150,6 +167,11 @@ public class GDS extends Geometry
 		public boolean outUpperCase = IOTool.isGDSOutUpperCase();
         boolean includeText = IOTool.isGDSInIncludesText();
         double outputScale =  IOTool.getGDSOutputScale();
+        int writeThreads = IOTool.getGDSOutWriteThreads();
+        /** bytes of queued output before the traversal waits */
+        long maxPendingBytes = MAX_PENDING_BYTES;
+        /** structures queued per thread before the traversal waits */
+        int maxPendingPerThread = MAX_PENDING_PER_THREAD;
 
         public GDSPreferences(boolean factory)
 		{
@@ -165,10 +187,17 @@ public class GDS extends Geometry
 				return null;
 			}
 			GDS out = new GDS(this);
-			if (out.openBinaryOutputStream(filePath)) return null;
+			boolean parallel = out.getNumWriterThreads() > 1;
+			if (parallel ? out.openBinaryOutputChannel(filePath) : out.openBinaryOutputStream(filePath)) return null;
 			BloatVisitor visitor = out.makeBloatVisitor(getMaxHierDepth(cell));
-			if (out.writeCell(cell, context, visitor)) return null;
-			if (out.closeBinaryOutputStream()) return null;
+			try
+			{
+				if (out.writeCell(cell, context, visitor)) return null;
+			} finally
+			{
+				out.stopStructPool();
+			}
+			if (parallel ? out.closeBinaryOutputChannel() : out.closeBinaryOutputStream()) return null;
 			System.out.println(filePath + " written");
 
 			// warn if library name was changed
@@ -186,9 +215,44 @@ public class GDS extends Geometry
 		localPrefs = gp;
 	}
 
+	/**
+	 * Creates an encoder of structures for a GDS writer.
+	 * It shares the cell names and layer numbers of the writer,
+	 * and collects its output in its own buffer.
+	 */
+	private GDS(GDS writer)
+	{
+		localPrefs = writer.localPrefs;
+		errorLogger = writer.errorLogger;
+		topCell = writer.topCell;
+		scaleFactor = writer.scaleFactor;
+		cellNames = writer.cellNames;
+		layerNumbers = writer.layerNumbers;
+		nameRemapping = new HashMap<String,Set<String>>();
+	}
+
+	/**
+	 * Method to tell how many threads merge and encode the structures.
+	 * With one thread, structures are written by the traversal as it goes.
+	 */
+	private int getNumWriterThreads()
+	{
+		int numThreads = localPrefs.writeThreads;
+		if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+		return numThreads;
+	}
+
 	protected void start()
 	{
 		initOutput();
+		int numThreads = getNumWriterThreads();
+		if (numThreads > 1)
+		{
+			structPool = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("GDS writer"));
+			pendingOutput = new ArrayDeque<Future<byte[]>>();
+			maxPendingOutput = numThreads * localPrefs.maxPendingPerThread;
+			channelBuffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+		}
 		outputBeginLibrary(topCell);
 	}
 
@@ -198,6 +262,47 @@ public class GDS extends Geometry
 		doneWritingOutput();
 	}
 
+	private void stopStructPool()
+	{
+		if (structPool == null) return;
+		structPool.shutdownNow();
+		structPool = null;
+	}
+
+	/**
+	 * Method to merge and write a cell.
+	 * When there are several threads, the cell is merged and encoded by one of them,
+	 * and the output of the traversal so far is queued in front of it, so the file
+	 * is the same as one written by a single thread.
+	 * The traversal waits while too much output is queued, so the geometry and the encoded
+	 * structures in memory stay bounded when the file is written slower than it is encoded.
+	 */
+	protected void writeCellGeom(final CellGeom cellGeom, final boolean merge)
+	{
+		if (structPool == null)
+		{
+			super.writeCellGeom(cellGeom, merge);
+			return;
+		}
+
+		// name the cell now, so that names are chosen in the order of a single thread
+		getStructName(cellGeom.cell);
+		queueBuffer();
+		final GDS encoder = new GDS(this);
+		pendingOutput.add(structPool.submit(new Callable<byte[]>()
+		{
+			public byte[] call()
+			{
+				if (merge) mergeCellGeom(cellGeom);
+				encoder.writeCellGeom(cellGeom);
+				byte [] bytes = encoder.takeBuffer();
+				pendingBytes.addAndGet(bytes.length);
+				return bytes;
+			}
+		}));
+		writeEncodedOutput(false);
+	}
+
 	/** Method to write cellGeom */
 	protected void writeCellGeom(CellGeom cellGeom)
 	{
@@ -481,22 +586,26 @@ public class GDS extends Geometry
 
 	private boolean selectLayer(Layer layer)
 	{
-		GDSLayers numbers = layerNumbers.get(layer);
-		if (numbers == null)
+		GDSLayers numbers;
+		synchronized (layerNumbers)
 		{
-			Technology tech = layer.getTechnology();
-			for (Iterator<Layer> it = tech.getLayers(); it.hasNext(); )
-			{
-				Layer l = it.next();
-				layerNumbers.put(l, GDSLayers.EMPTY);
-			}
-			for (Map.Entry<Layer,String> e: tech.getGDSLayers().entrySet())
+			numbers = layerNumbers.get(layer);
+			if (numbers == null)
 			{
-				Layer l = e.getKey();
-				String gdsLayer = e.getValue();
-				layerNumbers.put(l, GDSLayers.parseLayerString(gdsLayer));
+				Technology tech = layer.getTechnology();
+				for (Iterator<Layer> it = tech.getLayers(); it.hasNext(); )
+				{
+					Layer l = it.next();
+					layerNumbers.put(l, GDSLayers.EMPTY);
+				}
+				for (Map.Entry<Layer,String> e: tech.getGDSLayers().entrySet())
+				{
+					Layer l = e.getKey();
+					String gdsLayer = e.getValue();
+					layerNumbers.put(l, GDSLayers.parseLayerString(gdsLayer));
+				}
+				numbers = layerNumbers.get(layer);
 			}
-			numbers = layerNumbers.get(layer);
 		}
 
 		// might be null because Artwork layers are auto-generated and not in the Technology list
@@ -563,7 +672,8 @@ public class GDS extends Geometry
 
 		// write a call to a cell
 		outputHeader(HDR_SREF, 0);
-		String name = cellNames.get(subCell);
+		String name;
+		synchronized (cellNames) { name = cellNames.get(subCell); }
 		outputName(HDR_SNAME, name, HDR_M_SNAME);
 		outputHeader(HDR_STRANS, transValue);
 		outputAngle(angle);
@@ -658,12 +768,9 @@ public class GDS extends Geometry
 	 */
 	private void initOutput()
 	{
-		blockCount = 0;
+		bytesWritten = 0;
 		bufferPosition = 0;
 
-		// all zeroes
-		for (int i=0; i<DSIZE; i++) emptyBuffer[i] = 0;
-
 		Technology tech = topCell.getTechnology();
 		scaleFactor = tech.getScale() * localPrefs.outputScale;
 		layerNumbers = new HashMap<Layer,GDSLayers>();
@@ -789,27 +896,116 @@ public class GDS extends Geometry
 	 */
 	private void doneWritingOutput()
 	{
-		try
+		if (pendingOutput != null)
+		{
+			queueBuffer();
+			writeEncodedOutput(true);
+		}
+
+		//  Pad with zeroes to 2048
+		for (long length = bytesWritten + bufferPosition; length%(DSIZE*4) != 0; length++)
+			outputByte((byte)0);
+
+		if (pendingOutput != null)
 		{
-			// Write out the current buffer
-			if (bufferPosition > 0)
+			byte [] bytes = takeBuffer();
+			writeChannel(bytes);
+			channelBuffer.flip();
+			try
+			{
+				writeBinaryOutputChannel(channelBuffer);
+			} catch (IOException e)
 			{
-				// Pack with zeroes
-				for (int i = bufferPosition; i < DSIZE; i++) dataBufferGDS[i] = 0;
-				dataOutputStream.write(dataBufferGDS, 0, DSIZE);
-				blockCount++;
+				reportError("End of file reached while finishing GDS");
 			}
+			channelBuffer.clear();
+		} else
+		{
+			flushBuffer();
+		}
+	}
 
-			//  Pad to 2048
-			while (blockCount%4 != 0)
+	/**
+	 * Method to take the output collected in the buffer.
+	 * @return the bytes of the buffer, which is left empty.
+	 */
+	private byte [] takeBuffer()
+	{
+		byte [] bytes = new byte[bufferPosition];
+		System.arraycopy(dataBufferGDS, 0, bytes, 0, bufferPosition);
+		bufferPosition = 0;
+		return bytes;
+	}
+
+	/**
+	 * Method to queue the output collected in the buffer behind the structures being encoded.
+	 */
+	private void queueBuffer()
+	{
+		if (bufferPosition == 0) return;
+		final byte [] bytes = takeBuffer();
+		FutureTask<byte[]> done = new FutureTask<byte[]>(new Callable<byte[]>()
+		{
+			public byte[] call() { return bytes; }
+		});
+		done.run();
+		pendingBytes.addAndGet(bytes.length);
+		pendingOutput.add(done);
+	}
+
+	/**
+	 * Method to write the queued output to the file in order.
+	 * @param wait true to wait for all structures, false to stop at the first one still being encoded
+	 * once the queue is small enough.
+	 */
+	private void writeEncodedOutput(boolean wait)
+	{
+		try
+		{
+			while (!pendingOutput.isEmpty() && (wait || pendingOutput.peek().isDone() ||
+				pendingOutput.size() > maxPendingOutput || pendingBytes.get() > localPrefs.maxPendingBytes))
 			{
-				dataOutputStream.write(emptyBuffer, 0, DSIZE);
-				blockCount++;
+				byte [] bytes = pendingOutput.poll().get();
+				pendingBytes.addAndGet(-bytes.length);
+				writeChannel(bytes);
 			}
-		} catch (IOException e)
+		} catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Method to write bytes to the FileChannel through its direct buffer.
+	 */
+	private void writeChannel(byte [] bytes)
+	{
+		int pos = 0;
+		while (pos < bytes.length)
 		{
-			reportError("End of file reached while finishing GDS");
+			int len = Math.min(bytes.length - pos, channelBuffer.remaining());
+			channelBuffer.put(bytes, pos, len);
+			pos += len;
+			if (!channelBuffer.hasRemaining())
+			{
+				channelBuffer.flip();
+				try
+				{
+					writeBinaryOutputChannel(channelBuffer);
+				} catch (IOException e)
+				{
+					reportError("End of file reached while writing GDS");
+				}
+				channelBuffer.clear();
+			}
 		}
+		bytesWritten += bytes.length;
 	}
 
 	/**
@@ -843,15 +1039,28 @@ public class GDS extends Geometry
 		outputDate(cell.getCreationDate());
 		outputDate(cell.getRevisionDate());
 
-		String name = cellNames.get(cell);
-		if (name == null)
+		String name = getStructName(cell);
+		outputName(HDR_STRNAME, name, localPrefs.cellNameLenMax);
+	}
+
+	/**
+	 * Method to find the structure name of a cell.
+	 * Cells that are not in the hierarchy of the top cell are given a new unique name.
+	 */
+	private String getStructName(Cell cell)
+	{
+		synchronized (cellNames)
 		{
-			reportWarning("Warning, sub"+cell+" in hierarchy is not the same view" +
-				" as top level cell");
-			name = makeUniqueName(cell, cellNames, localPrefs.cellNameLenMax, localPrefs.outUpperCase);
-			cellNames.put(cell, name);
+			String name = cellNames.get(cell);
+			if (name == null)
+			{
+				reportWarning("Warning, sub"+cell+" in hierarchy is not the same view" +
+					" as top level cell");
+				name = makeUniqueName(cell, cellNames, localPrefs.cellNameLenMax, localPrefs.outUpperCase);
+				cellNames.put(cell, name);
+			}
+			return name;
 		}
-		outputName(HDR_STRNAME, name, localPrefs.cellNameLenMax);
 	}
 
 	/**
@@ -1033,18 +1242,33 @@ public class GDS extends Geometry
 	 */
 	private void outputByte(byte val)
 	{
+		if (bufferPosition >= dataBufferGDS.length) flushBuffer();
 		dataBufferGDS[bufferPosition++] = val;
-		if (bufferPosition >= DSIZE)
+	}
+
+	/**
+	 * Method to make room in the buffer.
+	 * The buffer is written to the output stream if there is one,
+	 * otherwise it is enlarged, as when structures are encoded for the FileChannel.
+	 */
+	private void flushBuffer()
+	{
+		if (dataOutputStream != null)
 		{
 			try
 			{
-				dataOutputStream.write(dataBufferGDS, 0, DSIZE);
+				dataOutputStream.write(dataBufferGDS, 0, bufferPosition);
 			} catch (IOException e)
 			{
 				reportError("End of file reached while writing GDS");
 			}
-			blockCount++;
+			bytesWritten += bufferPosition;
 			bufferPosition = 0;
+		} else
+		{
+			byte [] newBuffer = new byte[dataBufferGDS.length*2];
+			System.arraycopy(dataBufferGDS, 0, newBuffer, 0, bufferPosition);
+			dataBufferGDS = newBuffer;
 		}
 	}
 
@@ -1065,8 +1289,9 @@ public class GDS extends Geometry
 	 */
 	private void outputShort(short val)
 	{
-		outputByte((byte)((val>>8)&BYTEMASK));
-		outputByte((byte)(val&BYTEMASK));
+		if (bufferPosition + 2 > dataBufferGDS.length) flushBuffer();
+		dataBufferGDS[bufferPosition++] = (byte)((val>>8)&BYTEMASK);
+		dataBufferGDS[bufferPosition++] = (byte)(val&BYTEMASK);
 	}
 
 	/**
@@ -1074,8 +1299,11 @@ public class GDS extends Geometry
 	 */
 	private void outputInt(int val)
 	{
-		outputShort((short)(val>>16));
-		outputShort((short)val);
+		if (bufferPosition + 4 > dataBufferGDS.length) flushBuffer();
+		dataBufferGDS[bufferPosition++] = (byte)((val>>24)&BYTEMASK);
+		dataBufferGDS[bufferPosition++] = (byte)((val>>16)&BYTEMASK);
+		dataBufferGDS[bufferPosition++] = (byte)((val>>8)&BYTEMASK);
+		dataBufferGDS[bufferPosition++] = (byte)(val&BYTEMASK);
 	}
 
 	/**
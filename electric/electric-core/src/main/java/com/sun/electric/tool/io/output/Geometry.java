@@ -125,6 +125,49 @@ public abstract class Geometry extends Output
     /** Abstract method to write CellGeom to disk */
     protected abstract void writeCellGeom(CellGeom cellGeom);
 
+    /**
+     * Method called when the traversal leaves a Cell, to merge and write its CellGeom.
+     * Writers that merge and write Cells on other threads override it.
+     * @param cellGeom the geometry of the Cell.
+     * @param merge true to merge the polygons of the Cell first.
+     */
+    protected void writeCellGeom(CellGeom cellGeom, boolean merge)
+    {
+        if (merge) mergeCellGeom(cellGeom);
+        writeCellGeom(cellGeom);
+    }
+
+    /**
+     * Method to replace the polygons of a CellGeom by their merged outlines.
+     * It only touches the CellGeom, so different Cells can be merged concurrently.
+     * @param cellGeom the geometry of the Cell.
+     */
+    protected void mergeCellGeom(CellGeom cellGeom)
+    {
+        GeometryHandler gMerge = GeometryHandler.createGeometryHandler(GHMode.ALGO_SWEEP, 1000);
+//        PolyMerge pMerge = new PolyMerge();
+        Set<Layer> layers = cellGeom.polyMap.keySet();
+        for (Layer layer : layers)
+        {
+            List<Object> polyList = cellGeom.polyMap.get(layer);
+            for (Object polyObj : polyList)
+            {
+                Poly poly = (Poly)polyObj;
+//                pMerge.addPolygon(layer, poly);
+                gMerge.add(layer, poly);
+            }
+        }
+        gMerge.postProcess(true);
+        for (Layer layer : layers)
+        {
+//            List polys = pMerge.getMergedPoints(layer, true);
+            Collection<PolyBase> polysC = gMerge.getObjects(layer, false, false);
+            List<Object> polys = new ArrayList<Object>();
+            for(PolyBase pb : polysC) polys.add(pb);
+            cellGeom.polyMap.put(layer, polys);
+        }
+    }
+
     /** Overridable method to determine whether or not to merge geometry */
     protected boolean mergeGeom(int hierLevelsFromBottom) { return false; }
 
@@ -260,34 +303,9 @@ public abstract class Geometry extends Output
             }
 
             boolean merge = outGeom.mergeGeom(maxHierDepth - curHierDepth);
-			if (merge)
-			{
-				GeometryHandler gMerge = GeometryHandler.createGeometryHandler(GHMode.ALGO_SWEEP, 1000);
-//				PolyMerge pMerge = new PolyMerge();
-				Set<Layer> layers = cellGeom.polyMap.keySet();
-				for (Layer layer : layers)
-				{
-					List<Object> polyList = cellGeom.polyMap.get(layer);
-					for (Object polyObj : polyList)
-					{
-						Poly poly = (Poly)polyObj;
-//						pMerge.addPolygon(layer, poly);
-						gMerge.add(layer, poly);
-					}
-				}
-                gMerge.postProcess(true);
-				for (Layer layer : layers)
-				{
-//					List polys = pMerge.getMergedPoints(layer, true);
-					Collection<PolyBase> polysC = gMerge.getObjects(layer, false, false);
-					List<Object> polys = new ArrayList<Object>();
-					for(PolyBase pb : polysC) polys.add(pb);
-					cellGeom.polyMap.put(layer, polys);
-				}
-			}
 
             // write cell
-            outGeom.writeCellGeom(cellGeom);
+            outGeom.writeCellGeom(cellGeom, merge);
 
             curHierDepth--;
             cellGeom = outGeomStack[curHierDepth];
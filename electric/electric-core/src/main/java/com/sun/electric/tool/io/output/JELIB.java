@@ -110,7 +110,8 @@ public class JELIB extends Output {
         LibraryBackup libBackup = snapshot.getLib(libId);
         HashSet<CellId> usedCells = new HashSet<CellId>();
         TreeMap<CellName,CellRevision> sortedCells = new TreeMap<CellName,CellRevision>();
-        for (CellBackup cellBackup: snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) continue;
             CellRevision cellRevision = cellBackup.cellRevision;
             if (cellRevision.d.getLibId() != libId) continue;
@@ -136,7 +137,8 @@ public class JELIB extends Output {
         // write view information
         boolean viewHeaderPrinted = false;
         HashSet<View> usedViews = new HashSet<View>();
-        for (CellBackup cellBackup: snapshot.cellBackups) {
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
             if (cellBackup == null) continue;
             CellRevision cellRevision = cellBackup.cellRevision;
             if (cellRevision.d.getLibId() != libId && !usedCells.contains(cellRevision.d.cellId)) continue;
@@ -65,6 +65,12 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -216,6 +222,7 @@ public class Output
 	/** for writing text files */						protected PrintWriter printWriter;
 	/** for writing text arrays */						protected StringWriter stringWriter;
 	/** for writing binary files */						protected DataOutputStream dataOutputStream;
+	/** for writing large binary files */				protected FileChannel outputChannel;
 	/** True to write with less information displayed */protected boolean quiet;
 	/** for storing generated errors */					protected ErrorLogger errorLogger;
 
@@ -633,6 +640,55 @@ public class Output
         return false;
     }
 
+    /**
+     * Opens output for writing binary files through a FileChannel.
+     * The caller collects the data in its own buffers and passes them to writeBinaryOutputChannel().
+     * @param filePath the name of the file.
+     * @return true on error.
+     */
+    protected boolean openBinaryOutputChannel(String filePath)
+    {
+		this.filePath = filePath;
+		try
+		{
+			outputChannel = new FileOutputStream(filePath).getChannel();
+		} catch (FileNotFoundException e)
+		{
+			System.out.println("Could not write file " + filePath);
+			System.out.println("Reason: " + e.getMessage());
+			return true;
+		}
+        return false;
+    }
+
+    /**
+     * Write the remaining bytes of a buffer to the output FileChannel.
+     * @param buf the buffer, ready to be read.
+     * @throws IOException if the bytes can't be written.
+     */
+    protected void writeBinaryOutputChannel(ByteBuffer buf) throws IOException
+    {
+		while (buf.hasRemaining())
+			outputChannel.write(buf);
+    }
+
+    /**
+     * Close output for writing binary to a FileChannel.
+     * @return true on error.
+     */
+    protected boolean closeBinaryOutputChannel()
+    {
+		try
+		{
+			outputChannel.close();
+		} catch (IOException e)
+		{
+			System.out.println("Error closing " + filePath);
+			return true;
+		}
+        return false;
+    }
+
     /**
      * Open output for writing text to a file.
      * @param fileP the name of the file.
@@ -655,6 +711,34 @@ public class Output
         return false;
     }
 
+    /**
+     * Open output for writing text to a file through its FileChannel.
+     * The characters are encoded as by openTextOutputStream(), but they are
+     * collected in buffers of the given size before they reach the channel,
+     * which suits netlists of many megabytes.
+     * @param fileP the name of the file.
+     * @param bufferSize the size of the character and byte buffers.
+     * @return true on error.
+     */
+    protected boolean openTextOutputChannel(String fileP, int bufferSize)
+    {
+		this.filePath = fileP;
+        try
+		{
+            URL fileURL = TextUtils.makeURLToFile(fileP);
+            FileOutputStream fileStream = new FileOutputStream(TextUtils.getFile(fileURL));
+            CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            printWriter = new PrintWriter(new BufferedWriter(Channels.newWriter(fileStream.getChannel(), encoder, bufferSize), bufferSize));
+        } catch (IOException e)
+		{
+            reportError("Error opening " + fileP+": "+e.getMessage());
+            return true;
+        }
+        return false;
+    }
+
 	/**
      * Close output for writing text to a file.
      * @return true on error.
@@ -143,6 +143,7 @@ public class Spice extends Topology
     /** Networks exempted during parasitic ext */				private SpiceExemptedNets exemptedNets;
     /** Whether or not to write empty subcircuits */			private boolean writeEmptySubckts = true;
     /** max length per line */									private int spiceMaxLenLine = SPICEMAXLENLINE;
+    /** size of the output buffers */							private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
 
     /** Flat measurements file */								private FlatSpiceCodeVisitor spiceCodeFlat = null;
 
@@ -188,6 +189,7 @@ public class Spice extends Topology
         public boolean                      ignoreParasiticResistors = false;
         public String                       extractedNetDelimiter = SimulationTool.getFactorySpiceExtractedNetDelimiter();
         public boolean                      ignoreModelFiles = SimulationTool.isFactorySpiceIgnoreModelFiles();
+        public int                          numThreads = SimulationTool.getFactorySpiceNumThreads();
 
         public String                       cdlLibName = SimulationTool.getFactoryCDLLibName();
         public String                       cdlLibPath = SimulationTool.getFactoryCDLLibPath();
@@ -242,6 +244,7 @@ public class Spice extends Topology
             ignoreParasiticResistors        = SimulationTool.isSpiceIgnoreParasiticResistors();
             extractedNetDelimiter           = SimulationTool.getSpiceExtractedNetDelimiter();
             ignoreModelFiles                = SimulationTool.isSpiceIgnoreModelFiles();
+            numThreads                      = SimulationTool.getSpiceNumThreads();
 
             cdlLibName                      = SimulationTool.getCDLLibName();
             cdlLibPath                      = SimulationTool.getCDLLibPath();
@@ -260,7 +263,7 @@ public class Spice extends Topology
     		out.useCDL = cdl;
             out.spiceEngine = engine;
             out.curTech = cell.getTechnology();
-    		if (out.openTextOutputStream(filePath)) return out.finishWrite();
+    		if (out.openTextOutputChannel(filePath, OUTPUT_BUFFER_SIZE)) return out.finishWrite();
     		if (out.writeCell(cell, context)) return out.finishWrite();
     		if (out.closeTextOutputStream()) return out.finishWrite();
     		System.out.println(filePath + " written");
@@ -451,6 +454,19 @@ public class Spice extends Topology
         }
 	}
 
+	/**
+	 * Method to tell how many threads write subcircuits.
+	 * RC parasitics are extracted into state that the subcircuits of parent cells read,
+	 * so they are written one after another.
+	 */
+	protected int getNumWriterThreads()
+	{
+		if (!useCDL && localPrefs.parasiticsLevel != SimulationTool.SpiceParasitics.SIMPLE) return 1;
+		int numThreads = localPrefs.numThreads;
+		if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+		return numThreads;
+	}
+
 	/**
 	 * Method called once at the end of netlisting.
 	 */
@@ -1622,11 +1638,14 @@ public class Spice extends Topology
         int limit = maxNameLength();
         if (limit > 0 && uniqueCellName.length() > limit)
         {
-            Integer i = uniqueNames.get(uniqueCellName.toString());
-            if (i == null) {
-                i = new Integer(uniqueID);
-                uniqueID++;
-                uniqueNames.put(uniqueCellName.toString(), i);
+            Integer i;
+            synchronized (uniqueNames) {
+                i = uniqueNames.get(uniqueCellName.toString());
+                if (i == null) {
+                    i = new Integer(uniqueID);
+                    uniqueID++;
+                    uniqueNames.put(uniqueCellName.toString(), i);
+                }
             }
             uniqueCellName = uniqueCellName.delete(limit-10, uniqueCellName.length());
             uniqueCellName.append("-ID"+i);
@@ -1699,7 +1718,7 @@ public class Spice extends Topology
         return formatParam(String.valueOf(obj), instParam.getUnit(), wrapped);
     }
 
-    private Set<Variable.Key> detectSpiceParams(NodeProto np)
+    private synchronized Set<Variable.Key> detectSpiceParams(NodeProto np)
     {
         Set<Variable.Key> params = allSpiceParams.get(np);
         if (params != null) return params;
@@ -2879,7 +2898,7 @@ public class Spice extends Topology
     private static final boolean CELLISEMPTYDEBUG = false;
     private Map<Cell,Boolean> checkedCells = new HashMap<Cell,Boolean>();
 
-    public boolean cellIsEmpty(Cell cell)
+    public synchronized boolean cellIsEmpty(Cell cell)
     {
         Boolean b = checkedCells.get(cell);
         if (b != null) return b.booleanValue();
@@ -3129,7 +3148,7 @@ public class Spice extends Topology
 			char chr = str.charAt(pt);
 			if (chr == '\n')
 			{
-				printWriter.print(str.substring(lineStart, pt+1));
+				printCellText(str.substring(lineStart, pt+1));
 				count = 0;
 				lastSpace = -1;
 				lineStart = pt+1;
@@ -3141,7 +3160,7 @@ public class Spice extends Topology
 				if (count >= spiceMaxLenLine && !insideQuotes && lastSpace > -1)
 				{
 					String partial = str.substring(lineStart, lastSpace+1);
-					printWriter.print(partial + "\n" + contChar);
+					printCellText(partial + "\n" + contChar);
 					count = count - partial.length();
 					lineStart = lastSpace+1;
 					lastSpace = -1;
@@ -3151,7 +3170,7 @@ public class Spice extends Topology
 		if (lineStart < str.length())
 		{
 			String partial = str.substring(lineStart);
-			printWriter.print(partial);
+			printCellText(partial);
 		}
 	}
 
@@ -46,6 +46,7 @@ import com.sun.electric.technology.PrimitiveNode;
 import com.sun.electric.technology.PrimitivePort;
 import com.sun.electric.tool.generator.sclibrary.SCLibraryGen;
 import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -54,6 +55,12 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * This is the Simulation Interface tool.
@@ -67,6 +74,8 @@ public abstract class Topology extends Output
 	/** Map of all CellTopologies */				private Map<String,CellNetInfo> cellTopos;
 	/** Map of all Cell names */					private Map<Cell,String> cellNameMap;
 													private HierarchyEnumerator.CellInfo lastInfo;
+	/** Cells to write after the traversal, or null */	private List<CellTopology> cellsToWrite;
+	/** text of the Cell written by this thread */		private final ThreadLocal<StringBuilder> cellText = new ThreadLocal<StringBuilder>();
 
 	/** Creates a new instance of Topology */
 	public Topology() {}
@@ -98,11 +107,157 @@ public abstract class Topology extends Output
 
 		// write out cells
 		start();
+		int numThreads = getNumWriterThreads();
+		if (numThreads > 1) cellsToWrite = new ArrayList<CellTopology>();
 		HierarchyEnumerator.enumerateCell(cell, context, visitor, getShortResistors());
+		if (cellsToWrite != null)
+		{
+			List<CellTopology> cells = cellsToWrite;
+			cellsToWrite = null;
+			writeCellTopologies(cells, numThreads);
+		}
 		done();
 		return false;
 	}
 
+	/**
+	 * Method to tell how many threads write the topology of Cells.
+	 * With one thread, each Cell is written as soon as the traversal leaves it.
+	 * With more, the traversal only computes the CellNetInfo of each Cell, then the
+	 * writeCellTopology calls run concurrently and their text is written in traversal order.
+	 * A netlister that returns more than one must print through printCellText()
+	 * and must not let the writing of one Cell depend on the writing of another.
+	 * The default is 1.
+	 */
+	protected int getNumWriterThreads() { return 1; }
+
+	/**
+	 * Method to print text of the Cell being written.
+	 * When Cells are written concurrently, the text is kept with the Cell until all the Cells
+	 * before it are written, and text printed by the traversal is queued between the Cells
+	 * in traversal order. Otherwise it goes straight to the output.
+	 * @param str the text to print.
+	 */
+	protected void printCellText(String str)
+	{
+		StringBuilder sb = cellText.get();
+		if (sb != null) sb.append(str); else
+			if (cellsToWrite != null) queueText(str); else
+				printWriter.print(str);
+	}
+
+	/** Queue text of the traversal behind the Cells that are queued so far */
+	private void queueText(String str)
+	{
+		CellTopology last = cellsToWrite.isEmpty() ? null : cellsToWrite.get(cellsToWrite.size() - 1);
+		if (last == null || last.text == null)
+		{
+			last = new CellTopology(new StringBuilder());
+			cellsToWrite.add(last);
+		}
+		last.text.append(str);
+	}
+
+	/** Arguments of one writeCellTopology call that is made after the traversal, or text printed by the traversal. */
+	private static class CellTopology
+	{
+		private final Cell cell;
+		private final String cellName;
+		private final CellNetInfo cni;
+		private final VarContext context;
+		private final MyCellInfo info;
+		private final StringBuilder text;
+
+		private CellTopology(Cell cell, String cellName, CellNetInfo cni, VarContext context, MyCellInfo info)
+		{
+			this.cell = cell;
+			this.cellName = cellName;
+			this.cni = cni;
+			this.context = context;
+			this.info = info;
+			text = null;
+		}
+
+		private CellTopology(StringBuilder text)
+		{
+			cell = null;
+			cellName = null;
+			cni = null;
+			context = null;
+			info = null;
+			this.text = text;
+		}
+	}
+
+	/** Write the Cell now, or remember it for writeCellTopologies() */
+	private void writeOrQueueCellTopology(Cell cell, String cellName, CellNetInfo cni, VarContext context, MyCellInfo info)
+	{
+		if (cellsToWrite != null)
+			cellsToWrite.add(new CellTopology(cell, cellName, cni, context, info)); else
+				writeCellTopology(cell, cellName, cni, context, info);
+	}
+
+	/**
+	 * Write the topology of the Cells on a pool of threads.
+	 * Each Cell is written into its own buffer, and the buffers are printed in the
+	 * order of the list as soon as they are complete, so the output is the same as
+	 * when the Cells are written one after another.
+	 */
+	private void writeCellTopologies(List<CellTopology> cells, int numThreads)
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("Netlist writer"));
+		try
+		{
+			List<Future<StringBuilder>> texts = new ArrayList<Future<StringBuilder>>();
+			for(final CellTopology ct : cells)
+			{
+				if (ct.text != null)
+				{
+					FutureTask<StringBuilder> done = new FutureTask<StringBuilder>(new Callable<StringBuilder>() {
+						public StringBuilder call() { return ct.text; }
+					});
+					done.run();
+					texts.add(done);
+					continue;
+				}
+				texts.add(pool.submit(new Callable<StringBuilder>() {
+					public StringBuilder call()
+					{
+						StringBuilder sb = new StringBuilder();
+						cellText.set(sb);
+						try
+						{
+							writeCellTopology(ct.cell, ct.cellName, ct.cni, ct.context, ct.info);
+						} finally
+						{
+							cellText.remove();
+						}
+						return sb;
+					}
+				}));
+			}
+			for(int i=0; i<texts.size(); i++)
+			{
+				StringBuilder sb = texts.get(i).get();
+				texts.set(i, null);
+				printWriter.append(sb);
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
 	/** Abstract method called before hierarchy traversal */
 	protected abstract void start();
 
@@ -271,7 +426,7 @@ public abstract class Topology extends Output
 				cellTopos.put(parameterizedName, cni);
 			}
 			String cellName = cni.getParameterizedName();
-			outGeom.writeCellTopology(cell, cellName, cni, info.getContext(), (MyCellInfo)info);
+			outGeom.writeOrQueueCellTopology(cell, cellName, cni, info.getContext(), (MyCellInfo)info);
 
 			// see if there are alternate icons with different names
 			if (isWriteCopyForEachIcon() && cell != topCell)
@@ -289,7 +444,7 @@ public abstract class Topology extends Output
 						otherCellName = otherCell.getLibrary().getName() + otherCellName;
 					}
 					if (otherCellName.equals(cellName)) continue;
-					outGeom.writeCellTopology(cell, otherCellName, cni, info.getContext(), (MyCellInfo)info);			
+					outGeom.writeOrQueueCellTopology(cell, otherCellName, cni, info.getContext(), (MyCellInfo)info);			
 				}
 			}
 
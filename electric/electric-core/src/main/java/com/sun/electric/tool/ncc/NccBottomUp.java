@@ -24,21 +24,34 @@
 package com.sun.electric.tool.ncc;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Nodable;
+import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.tool.ncc.basic.CellContext;
 import com.sun.electric.tool.ncc.basic.CompareList;
 import com.sun.electric.tool.ncc.basic.CompareLists;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.tool.ncc.basic.NccUtils;
+import com.sun.electric.tool.ncc.netlist.NccNetlist;
 import com.sun.electric.tool.ncc.processing.HierarchyInfo;
 import com.sun.electric.tool.ncc.result.NccResult;
 import com.sun.electric.tool.ncc.result.NccResults;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 
 
 /** Run NCC hierarchically. By default, treat every Cell with both a layout and
@@ -109,6 +122,7 @@ public class NccBottomUp {
 	private boolean compareCellsInCompareList(NccResults results,
 			                                  CompareList compareList, 
 			                                  HierarchyInfo hierInfo,
+			                                  int compareListID,
 			                                  boolean blackBoxAnn,
 			                                  PassedNcc passed,
 			                                  NccOptions options,
@@ -126,7 +140,7 @@ public class NccBottomUp {
 		Cell cell = cellCntxts.iterator().next().cell;
 		String grpNm = cell.getLibrary().getName()+":"+cell.getName();
 
-		hierInfo.beginNextCompareList(grpNm);
+		hierInfo.beginCompareList(grpNm, compareListID);
 
 		// notSubcircuit means check it but don't use it as a subcircuit
 		if (hasNotSubcircuitAnnotation(cellCntxts))  
@@ -181,12 +195,51 @@ public class NccBottomUp {
 		return false;
 	}
 	
+	/** @return true if error building black box */
+	private boolean processCompareList(NccResults results,
+			                           CompareList compareList,
+			                           HierarchyInfo hierInfo,
+			                           int compareListID,
+			                           boolean blackBoxAnn,
+			                           PassedNcc passed,
+			                           NccOptions options,
+			                           Aborter aborter) {
+		if (!compareList.isSafeToCheckSizes() &&
+		    options.operation!=NccOptions.FLAT_TOP_CELL &&
+		    !blackBoxAnn) {
+			// This cell isn't safe to compare with size 
+			// checking because it is parameterized and it is instantiated 
+			// more than once. Just compare without size checking but purge
+			// any record of the fact that unsized comparison took place.
+			// This guarantees that when NCC checks this cell's parent,
+			// this cell will get flattened and therefore size checked.
+			// Subtle: we purge this cell even if we aren't size checking
+			// because want NCC to report the same errors with or without
+			// size checking.
+			NccOptions tmpOptions = new NccOptions(options);
+			tmpOptions.checkSizes = false;
+
+			boolean blackBoxErr = 
+				compareCellsInCompareList(results, compareList, hierInfo, 
+					                      compareListID, blackBoxAnn, passed, 
+					                      tmpOptions, aborter); 
+
+			hierInfo.purgeCurrentCompareList();
+			return blackBoxErr;
+		} else {
+			return compareCellsInCompareList(results, compareList, hierInfo, 
+				                             compareListID, blackBoxAnn, passed,
+				                             options, aborter); 
+		}
+	}
+
 	private NccResults processCompareLists(List<CompareList> compareLists,
 			                               PassedNcc passed,
 	                                       NccOptions options, 
 										   Aborter aborter) {
 		NccResults results = new NccResults();
 		HierarchyInfo hierInfo = new HierarchyInfo();
+		int compareListID = 0;
 		for (Iterator<CompareList> it=compareLists.iterator(); it.hasNext();) {
 			CompareList compareList = it.next();
 
@@ -200,34 +253,10 @@ public class NccBottomUp {
 			if (options.operation==NccOptions.FLAT_EACH_CELL) 
 				results.abandonPriorResults();
 			
-			boolean blackBoxErr;
-			if (!compareList.isSafeToCheckSizes() &&
-			    options.operation!=NccOptions.FLAT_TOP_CELL &&
-			    !blackBoxAnn) {
-				// This cell isn't safe to compare with size 
-				// checking because it is parameterized and it is instantiated 
-				// more than once. Just compare without size checking but purge
-				// any record of the fact that unsized comparison took place.
-				// This guarantees that when NCC checks this cell's parent,
-				// this cell will get flattened and therefore size checked.
-				// Subtle: we purge this cell even if we aren't size checking
-				// because want NCC to report the same errors with or without
-				// size checking.
-				NccOptions tmpOptions = new NccOptions(options);
-				tmpOptions.checkSizes = false;
-
-				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
-						                      blackBoxAnn, passed, tmpOptions, 
-						                      aborter); 
-
-				hierInfo.purgeCurrentCompareList();
-			} else {
-				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
-						                      blackBoxAnn, passed, options, 
-						                      aborter); 
-			}
+			boolean blackBoxErr = 
+				processCompareList(results, compareList, hierInfo, 
+					               ++compareListID, blackBoxAnn, passed, 
+					               options, aborter);
 			
 			if (blackBoxErr) {
 				prln(
@@ -249,10 +278,177 @@ public class NccBottomUp {
 		return results;
 	}
 
+	// ------------------- comparing compareLists in parallel ------------------
+	/** Cells instantiated by Cell c. An icon stands for its schematic. */
+	private Set<Cell> getChildCells(Cell c) {
+		Set<Cell> children = new HashSet<Cell>();
+		for (Iterator<Nodable> it=c.getNetlist(NccNetlist.SHORT_RESISTORS).getNodables(); it.hasNext();) {
+			NodeProto np = it.next().getProto();
+			if (!(np instanceof Cell)) continue;
+			Cell child = (Cell) np;
+			children.add(child);
+			Cell contents = child.contentsView();
+			if (contents!=null) children.add(contents);
+		}
+		return children;
+	}
+
+	/** Add to usedLists the indices of the compareLists whose Cells are 
+	 * instantiated by Cell c. Stop at Cells in compareLists. Flatten through 
+	 * the other Cells the same way the comparison does. */
+	private void findUsedCompareLists(Cell c, Map<Cell,Integer> cellToList,
+			                          Map<Cell,Set<Integer>> flatCellToLists,
+			                          Set<Integer> usedLists) {
+		Integer list = cellToList.get(c);
+		if (list!=null) {
+			usedLists.add(list);
+			return;
+		}
+		Set<Integer> lists = flatCellToLists.get(c);
+		if (lists==null) {
+			lists = new HashSet<Integer>();
+			flatCellToLists.put(c, lists);
+			for (Cell child : getChildCells(c)) 
+				findUsedCompareLists(child, cellToList, flatCellToLists, lists);
+		}
+		usedLists.addAll(lists);
+	}
+
+	/** @return for each compareList, the indices of the later compareLists
+	 * that instantiate it. A compareList may be compared only after all the
+	 * compareLists it instantiates because their comparisons tell it which 
+	 * Cells to treat as subcircuits. */
+	private List<List<Integer>> findUsers(List<CompareList> compareLists) {
+		Map<Cell,Integer> cellToList = new HashMap<Cell,Integer>();
+		List<List<Integer>> users = new ArrayList<List<Integer>>();
+		for (int i=0; i<compareLists.size(); i++) {
+			for (CellContext cc : compareLists.get(i))  cellToList.put(cc.cell, i);
+			users.add(new ArrayList<Integer>());
+		}
+		Map<Cell,Set<Integer>> flatCellToLists = new HashMap<Cell,Set<Integer>>();
+		for (int j=0; j<compareLists.size(); j++) {
+			Set<Integer> usedLists = new TreeSet<Integer>();
+			for (CellContext cc : compareLists.get(j)) {
+				for (Cell child : getChildCells(cc.cell)) 
+					findUsedCompareLists(child, cellToList, flatCellToLists, usedLists);
+			}
+			for (Integer i : usedLists) 
+				if (i<j) users.get(i).add(j);
+		}
+		return users;
+	}
+
+	private static boolean mismatch(NccResults results) {
+		return !results.exportMatch() || !results.topologyMatch();
+	}
+
+	/** Compare up to options.numThreads compareLists at the same time. 
+	 * A compareList is compared after all the compareLists it instantiates.
+	 * The results are reported in compareList order and NCC halts at the 
+	 * same compareList as processCompareLists() does. Only the progress 
+	 * messages of different compareLists may interleave. Each compareList 
+	 * computes its hash codes on its own thread, so NCC uses no more than 
+	 * options.numThreads threads. */
+	private NccResults processCompareListsConcurrently(
+			                               final List<CompareList> compareLists,
+			                               final PassedNcc passed,
+	                                       final NccOptions options, 
+										   final Aborter aborter) {
+		final int numLists = compareLists.size();
+		final HierarchyInfo hierInfo = new HierarchyInfo();
+		final boolean[] blackBoxAnns = new boolean[numLists];
+		for (int i=0; i<numLists; i++) 
+			blackBoxAnns[i] = hasBlackBoxAnnotation(compareLists.get(i));
+		List<List<Integer>> users = findUsers(compareLists);
+		int[] numUnfinished = new int[numLists];
+		for (List<Integer> listUsers : users) 
+			for (Integer user : listUsers)  numUnfinished[user]++;
+
+		final NccResults[] listResults = new NccResults[numLists];
+		final boolean[] blackBoxErrs = new boolean[numLists];
+		final NccOptions listOptions = new NccOptions(options);
+		listOptions.numThreads = 1;
+		ExecutorService pool = 
+			Executors.newFixedThreadPool(options.numThreads, new ElectricThreadFactory("NCC worker"));
+		CompletionService<Integer> finished = 
+			new ExecutorCompletionService<Integer>(pool);
+
+		// don't begin comparing compareLists after the one that halts NCC
+		int haltIndex = numLists;
+		int numRunning = 0;
+		List<Integer> ready = new ArrayList<Integer>();
+		for (int i=0; i<numLists; i++)  if (numUnfinished[i]==0) ready.add(i);
+		try {
+			while (true) {
+				for (final Integer i : ready) {
+					if (i>=haltIndex || aborter.userWantsToAbort()) continue;
+					finished.submit(new Callable<Integer>() {
+						public Integer call() {
+							NccResults results = new NccResults();
+							blackBoxErrs[i] = 
+								processCompareList(results, compareLists.get(i),
+									               hierInfo.newCompareListInfo(), 
+									               i+1, blackBoxAnns[i], passed, 
+									               listOptions, aborter);
+							listResults[i] = results;
+							return i;
+						}
+					});
+					numRunning++;
+				}
+				ready.clear();
+				if (numRunning==0) break;
+
+				int i = finished.take().get();
+				numRunning--;
+				if (blackBoxErrs[i] || aborter.userWantsToAbort() ||
+					(mismatch(listResults[i]) && options.haltAfterFirstMismatch)) {
+					haltIndex = Math.min(haltIndex, i);
+				}
+				for (Integer user : users.get(i)) 
+					if (--numUnfinished[user]==0)  ready.add(user);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// report the results in compareList order
+		NccResults results = new NccResults();
+		for (int i=0; i<numLists && i<=haltIndex; i++) {
+			// compareList not compared because the user aborted
+			if (listResults[i]==null) break;
+			for (NccResult r : listResults[i])  results.add(r);
+			if (i<haltIndex) continue;
+			if (blackBoxErrs[i]) {
+				prln(
+					"Halting multiple cell NCC because of failure to build " +
+					"a black box"
+				);
+			} else if (!aborter.userWantsToAbort()) {
+				// Don't stop for size mismatches
+				prln("Halting NCC after finding first mismatch");
+			}
+		}
+		return results;
+	}
+
 	private NccResults compareCells(CellContext cc1, CellContext cc2, 
 								    PassedNcc passed, NccOptions options, 
 								    Aborter aborter) {
 		List<CompareList> compareLists = CompareLists.getCompareLists(cc1, cc2);
+		// FLAT_TOP_CELL compares only the root Cells so there's nothing to 
+		// compare in parallel
+		if (options.numThreads>1 && compareLists.size()>1 &&
+		    (options.operation==NccOptions.HIER_EACH_CELL || 
+		     options.operation==NccOptions.FLAT_EACH_CELL))
+			return processCompareListsConcurrently(compareLists, passed, options, aborter);
 		return processCompareLists(compareLists, passed, options, aborter);
 	}
 
@@ -84,6 +84,13 @@ public class NccOptions implements Serializable {
 	/** Check the body connections of MOS transistors. */
 	public boolean checkBody = false;
 	
+	/** How many threads NCC may use. For hierarchical comparisons, how many 
+	 * pairs of Cells to compare at the same time. A pair is compared only 
+	 * after all the pairs of Cells it instantiates. Also, when pairs are 
+	 * compared one at a time, how many threads compute the hash codes of 
+	 * large equivalence classes. 1 means do everything on one thread. */
+	public int numThreads = 1;
+	
 	/** Construct an NccOptions with the default options */
 	public NccOptions() {}
 	
@@ -103,6 +110,7 @@ public class NccOptions implements Serializable {
 		maxEquivRecMembersToPrint = o.maxEquivRecMembersToPrint;
 		oneNamePerPort = o.oneNamePerPort;
 		checkBody = o.checkBody;
+		numThreads = o.numThreads;
 	}
 	
 	/** Look at the NCC user preferences and construct an NccOptions object
@@ -126,6 +134,7 @@ public class NccOptions implements Serializable {
 		options.maxMismatchedEquivRecsToPrint = NccPreferences.getMaxMismatchedClasses();
 		options.maxMatchedEquivRecsToPrint = NccPreferences.getMaxMatchedClasses();
 		options.maxEquivRecMembersToPrint = NccPreferences.getMaxClassMembers();
+		options.numThreads = NccPreferences.getNumThreads();
 		
 		/** Subtle!!!!!
 		 * NCC used to have a more flexible Export matching algorithm. If
@@ -190,5 +190,17 @@ public class NccPreferences {
 	public static int getFactoryHowMuchStatus() {
 		return boundStatus(howMuchStatus.getIntFactoryValue());
 	}
-	
+
+	private static Pref numThreads =
+		Pref.makeIntPref("NumThreads", NccPreferences.tool.prefs, 1);
+	public static int getNumThreads() {
+		return Math.max(numThreads.getInt(), 1);
+	}
+	public static void setNumThreads(int i) {
+		numThreads.setInt(Math.max(i, 1));
+	}
+	public static int getFactoryNumThreads() {
+		return Math.max(numThreads.getIntFactoryValue(), 1);
+	}
+
 }
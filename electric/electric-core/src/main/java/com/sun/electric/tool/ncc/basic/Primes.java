@@ -52,7 +52,7 @@ public class Primes {
 			trial += 2;
 		}
 	}
-	public static int get(int nth) {
+	public static synchronized int get(int nth) {
 		while (primes.size()-1<nth) findNextPrime();
 
 		return ((Integer) primes.get(nth)).intValue();
@@ -24,12 +24,15 @@
 package com.sun.electric.tool.ncc.processing;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 import com.sun.electric.tool.ncc.trees.LeafEquivRecords;
@@ -38,6 +41,7 @@ import com.sun.electric.tool.ncc.basic.NccUtils;
 import com.sun.electric.tool.ncc.lists.LeafList;
 import com.sun.electric.tool.ncc.netlist.NetObject;
 import com.sun.electric.tool.ncc.result.BenchmarkResults.BenchIdx;
+import com.sun.electric.tool.ncc.strategy.StratHashParallel;
 import com.sun.electric.tool.ncc.strategy.StratHashParts;
 import com.sun.electric.tool.ncc.strategy.StratHashWires;
 import com.sun.electric.tool.ncc.strategy.StratPortName;
@@ -46,12 +50,21 @@ import com.sun.electric.tool.ncc.strategy.StratSizes;
 import com.sun.electric.tool.ncc.trees.Circuit;
 import com.sun.electric.tool.ncc.trees.EquivRecord;
 import com.sun.electric.tool.Job;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 
 /** HashCodePartitioning implements Carl Ebeling's classic
  * Gemini II algorithm. 
  */
 public class HashCodePartitioning {
+	/** Use several threads to hash EquivRecords with at least this many 
+	 * NetObjects */
+	private static final int MIN_PARALLEL_NET_OBJS = 10000;
+	/** tests lower this so that small designs take the parallel path */
+	static int minParallelNetObjs = MIN_PARALLEL_NET_OBJS;
+
 	NccGlobals globals;
+	/** threads that compute hash codes, null to compute them on this thread */
+	private final ExecutorService hashThreads;
 	
 	/* The NetObjects contained by newly born EquivRecords
 	 * have new hash codes. Therefore it's only necessary to 
@@ -78,6 +91,7 @@ public class HashCodePartitioning {
 	 * the frontier.	 */
 	private static class HashCodePropagator {
 		NccGlobals globals;
+		private final ExecutorService hashThreads;
 		
 		// maximum number of EquivRecords for which we will save birthdays
 		private final int MAX_REC_BIRTHDAYS = 5000;
@@ -183,7 +197,32 @@ public class HashCodePartitioning {
 			}
 		}
 		
-		public HashCodePropagator(NccGlobals glob) {globals=glob;}
+		// Compute the new hash codes of large EquivRecords in parallel. 
+		// Return null if the records are too small to be worth it.
+		private StratHashParallel hashInParallel(List<EquivRecord> records) {
+			if (hashThreads==null) return null;
+			int numNetObjs = 0;
+			for (EquivRecord er : records)  numNetObjs += er.numNetObjs();
+			if (numNetObjs<minParallelNetObjs) return null;
+			return StratHashParallel.computeHashCodes(records, hashThreads, globals);
+		}
+
+		public HashCodePropagator(NccGlobals glob, ExecutorService hashThreads) {
+			globals=glob;
+			this.hashThreads = hashThreads;
+		}
+		
+		/** Divide a leaf EquivRecord by the hash codes of its NetObjects */
+		public LeafList hash(EquivRecord er) {
+			StratHashParallel hashed = hashInParallel(Collections.singletonList(er));
+			if (hashed!=null) {
+				return hashed.doFor(er);
+			} else if (er.getNetObjType()==NetObject.Type.PART) {
+				return StratHashParts.doYourJob(er, globals);
+			} else {
+				return StratHashWires.doYourJob(er, globals);
+			}
+		}
 		
 		public void propagateFromNewBorns(LeafList newBornList) {
 			addAll(newBornList);
@@ -192,10 +231,15 @@ public class HashCodePartitioning {
 				List<EquivRecord> adjacent = findStaleAdjacentToHighestPriorityNewBorn();
 				if (adjacent.isEmpty()) break;
 				
+				// All the adjacent EquivRecords hold Parts or all hold Wires,
+				// so dividing one doesn't change the hash codes of the others.
+				StratHashParallel hashed = hashInParallel(adjacent);
 				for (EquivRecord er : adjacent) {
 					if (!er.isLeaf()) continue;
 					NccUtils.incrementBenchmarkCount(BenchIdx.NEWBORNS_PROCESSED,globals);
-					if (er.getNetObjType()==NetObject.Type.PART) {
+					if (hashed!=null) {
+						addAll(hashed.doFor(er));
+					} else if (er.getNetObjType()==NetObject.Type.PART) {
 						addAll(StratHashParts.doYourJob(er, globals));
 					} else {
 						addAll(StratHashWires.doYourJob(er, globals));
@@ -206,7 +250,7 @@ public class HashCodePartitioning {
 	}
 	
 	private void hashAllParts(NccGlobals globals) {
-		HashCodePropagator hashProp = new HashCodePropagator(globals);
+		HashCodePropagator hashProp = new HashCodePropagator(globals, hashThreads);
 		if (globals.getParts()==null)  return;
 		globals.status2("----- hash all Parts");
 		for (Iterator<EquivRecord> eIt=globals.getPartLeafEquivRecs().getNotMatched(); eIt.hasNext();) {
@@ -215,7 +259,7 @@ public class HashCodePartitioning {
 			if (er.isMismatched()) continue;
 			// must be active
 			
-			LeafList newBornList = StratHashParts.doYourJob(er, globals);
+			LeafList newBornList = hashProp.hash(er);
 			hashProp.propagateFromNewBorns(newBornList);
 		}
 		for (Iterator<EquivRecord> eIt=globals.getPartLeafEquivRecs().getMatched(); eIt.hasNext();) {
@@ -224,7 +268,7 @@ public class HashCodePartitioning {
 			if (er.isMismatched()) continue;
 			// must be active
 			
-			LeafList newBornList = StratHashParts.doYourJob(er, globals);
+			LeafList newBornList = hashProp.hash(er);
 			hashProp.propagateFromNewBorns(newBornList);
 		}
 		globals.initLeafLists();
@@ -239,7 +283,7 @@ public class HashCodePartitioning {
 			if (er.isMismatched()) continue;
 			// must be active
 			
-			LeafList newBornList = StratHashParts.doYourJob(er, globals);
+			LeafList newBornList = hashProp.hash(er);
 			hashProp.propagateFromNewBorns(newBornList);
 		}
 	}
@@ -253,7 +297,7 @@ public class HashCodePartitioning {
 			if (er.isMismatched()) continue;
 			// must be active
 			
-			LeafList newBornList = StratHashWires.doYourJob(er, globals);
+			LeafList newBornList = hashProp.hash(er);
 			hashProp.propagateFromNewBorns(newBornList);
 		}
 	}
@@ -302,14 +346,14 @@ public class HashCodePartitioning {
 		// Initially, we should hash all parts because local partitioning 
 		// could have left us with matched records NMOS stack records that
 		// were never hashed to verify gate interchanges.
-		HashCodePropagator hashProp = new HashCodePropagator(globals);
+		HashCodePropagator hashProp = new HashCodePropagator(globals, hashThreads);
 		hashAllParts(globals);
 
 		if (done())	return;
 		
 		Date d1 = new Date();
 
-		hashProp = new HashCodePropagator(globals);
+		hashProp = new HashCodePropagator(globals, hashThreads);
 		hashFrontier(hashProp);
 		
 		start = NccUtils.registerTiming("  Hashing frontier took: ",start,BenchIdx.HASH_CODE_PASS1_TIME,globals);
@@ -321,7 +365,7 @@ public class HashCodePartitioning {
 		useExportNames(hashProp);
 		
 		// Maybe not neccessary, but included to be safe.
-		hashProp = new HashCodePropagator(globals);
+		hashProp = new HashCodePropagator(globals, hashThreads);
 		hashAllParts(globals);
 		
 		start = NccUtils.registerTiming("  Using export names took: ",start,BenchIdx.EXPORT_MATCHING_TIME,globals);
@@ -332,7 +376,7 @@ public class HashCodePartitioning {
 		useTransistorSizes(hashProp);
 
 		// Maybe not neccessary, but included to be safe.
-		hashProp = new HashCodePropagator(globals);
+		hashProp = new HashCodePropagator(globals, hashThreads);
 		hashAllParts(globals);
 		
 		start = NccUtils.registerTiming("  Using transistor sizes took: ",start,BenchIdx.SIZE_MATCHING_TIME,globals);
@@ -345,7 +389,7 @@ public class HashCodePartitioning {
 		randomMatch(hashProp);
 
 		// Maybe not neccessary, but included to be safe.
-		hashProp = new HashCodePropagator(globals);
+		hashProp = new HashCodePropagator(globals, hashThreads);
 		hashAllParts(globals);
 		
 		start = NccUtils.registerTiming("  Random match took: ",start,BenchIdx.RANDOM_MATCHING_TIME,globals);
@@ -376,8 +420,15 @@ public class HashCodePartitioning {
 	// contructor does all the work
 	private HashCodePartitioning(NccGlobals globals){
 		this.globals = globals;
+		int numThreads = globals.getOptions().numThreads;
+		hashThreads = numThreads>1 ? 
+			Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("NCC hash")) : null;
 		globals.status2("----- starting HashCodePartitioningNew");
-		doWork();
+		try {
+			doWork();
+		} finally {
+			if (hashThreads!=null)  hashThreads.shutdown();
+		}
 		globals.status2("----- done HashCodePartitioningNew");
 	}
 	
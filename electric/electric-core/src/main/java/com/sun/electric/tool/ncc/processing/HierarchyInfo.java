@@ -23,6 +23,7 @@
 */
 package com.sun.electric.tool.ncc.processing;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -54,19 +55,39 @@ public class HierarchyInfo {
 	 * current Cell Group. */
 	private boolean purgeCurrentCompareList;
 	/** information for all Cells in all the compareLists we've encountered 
-	 * so far */
-	private Map<Cell,SubcircuitInfo> cellToSubcktInfo = new HashMap<Cell,SubcircuitInfo>();
+	 * so far. It is shared by all the HierarchyInfos made by 
+	 * newCompareListInfo() */
+	private final Map<Cell,SubcircuitInfo> cellToSubcktInfo;
 	private Set<Cell> cellsInSharedCellGroups;
 
+	private HierarchyInfo(Map<Cell,SubcircuitInfo> cellToSubcktInfo) {
+		this.cellToSubcktInfo = cellToSubcktInfo;
+	}
+
 	// ----------------------------- public methods ---------------------------
+	public HierarchyInfo() {
+		this(Collections.synchronizedMap(new HashMap<Cell,SubcircuitInfo>()));
+	}
+	/** Make a HierarchyInfo that shares the information for all Cells with
+	 * this one but has its own current compareList. Use one for each 
+	 * compareList when different threads compare compareLists that don't
+	 * instantiate one another. */
+	public HierarchyInfo newCompareListInfo() {
+		return new HierarchyInfo(cellToSubcktInfo);
+	}
 	/** You must call this before you begin comparing Cells in a new 
 	 * compareList. Then for each Cell in the compareList you must call 
 	 * addSubcircuitInfo(). However, if a comparison reveals an Export name 
 	 * mismatch then you must call purgeCompareList() after which it 
 	 * doesn't matter what you do for the rest of the compareList. */
 	public void beginNextCompareList(String subcktName) {
+		beginCompareList(subcktName, compareListID+1);
+	}
+	/** Like beginNextCompareList() but the caller chooses the unique int 
+	 * assigned to the compareList. */
+	public void beginCompareList(String subcktName, int compareListID) {
 		this.subcktName = subcktName;
-		compareListID++;
+		this.compareListID = compareListID;
 		purgeCurrentCompareList = false;
 		cellsInCompareList.clear();
 		cellsInSharedCellGroups = null;
@@ -111,10 +132,9 @@ public class HierarchyInfo {
 	 * you do. */
 	public void addSubcircuitInfo(Cell c, SubcircuitInfo subcktInfo) {
 		if (purgeCurrentCompareList) return;
-		Job.error(cellToSubcktInfo.containsKey(c),
+		Job.error(cellToSubcktInfo.put(c, subcktInfo)!=null,
 						"SubcircuitInfo already exists for Cell");
 		cellsInCompareList.add(c);
-		cellToSubcktInfo.put(c, subcktInfo);
 	}
 	/** You must call this method if a Cell comparison reveals an Export name 
 	 * mismatch. In that case we can no longer treat cells in compareList as a 
@@ -124,8 +144,7 @@ public class HierarchyInfo {
 	public void purgeCurrentCompareList() {
 		purgeCurrentCompareList = true;
 		for (Cell c : cellsInCompareList) {
-			Job.error(!cellToSubcktInfo.containsKey(c), "Cell not in map?");
-			cellToSubcktInfo.remove(c);
+			Job.error(cellToSubcktInfo.remove(c)==null, "Cell not in map?");
 		}
 		cellsInCompareList.clear();
 	}
@@ -0,0 +1,120 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: StratHashParallel.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.ncc.strategy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.sun.electric.tool.ncc.NccGlobals;
+import com.sun.electric.tool.ncc.netlist.NetObject;
+import com.sun.electric.tool.ncc.netlist.Part;
+import com.sun.electric.tool.ncc.netlist.Wire;
+import com.sun.electric.tool.ncc.trees.Circuit;
+import com.sun.electric.tool.ncc.trees.EquivRecord;
+
+/** Perform a Gemini II style hash code partitioning of large EquivRecords
+ * using several threads. The new hash codes of Parts depend only upon the
+ * codes of Wires and vice versa. Therefore, as long as all the EquivRecords
+ * hold the same type of NetObject, all the new hash codes can be computed in 
+ * parallel before any EquivRecord is divided. Then the EquivRecords are 
+ * divided one at a time, exactly as StratHashParts and StratHashWires 
+ * would have divided them. */
+public class StratHashParallel extends Strategy {
+	/** number of NetObjects hashed by one task */
+	private static final int CHUNK_SIZE = 4096;
+
+	private final NetObject[] netObjs;
+	private final int[] codes;
+	private int next = 0;
+
+	private StratHashParallel(NetObject[] netObjs, int[] codes, NccGlobals globals) {
+		super(globals);
+		this.netObjs = netObjs;
+		this.codes = codes;
+	}
+
+	private static int computeHashCode(NetObject n) {
+		if (n instanceof Part)  return ((Part)n).computeHashCode();
+		return ((Wire)n).computeHashCode();
+	}
+
+	public Integer doFor(NetObject n) {
+		error(next>=netObjs.length || netObjs[next]!=n, 
+			  "EquivRecords divided in a different order than they were hashed");
+		assert codes[next]==computeHashCode(n) : "hash code computed in parallel differs";
+		return codes[next++];
+	}
+
+	// ------------------ intended interface -----------------
+	/** Compute the new hash codes of all the NetObjects of records. 
+	 * @param records leaf EquivRecords that all hold Parts or all hold Wires
+	 * @param threads the threads that compute hash codes
+	 * @param globals variables shared by all parts of NCC
+	 * @return a Strategy that must be applied to each EquivRecord of 
+	 * records, in order, to divide it by the new hash codes. */
+	public static StratHashParallel computeHashCodes(List<EquivRecord> records,
+			                                         ExecutorService threads,
+			                                         NccGlobals globals) {
+		int numNetObjs = 0;
+		for (EquivRecord er : records)  numNetObjs += er.numNetObjs();
+		final NetObject[] netObjs = new NetObject[numNetObjs];
+		final int[] codes = new int[numNetObjs];
+		int i = 0;
+		for (EquivRecord er : records) {
+			for (Iterator<Circuit> ci=er.getCircuits(); ci.hasNext();) {
+				for (Iterator<NetObject> ni=ci.next().getNetObjs(); ni.hasNext();) 
+					netObjs[i++] = ni.next();
+			}
+		}
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int start=0; start<numNetObjs; start+=CHUNK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start+CHUNK_SIZE, numNetObjs);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for (int j=from; j<to; j++)  codes[j] = computeHashCode(netObjs[j]);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> f : threads.invokeAll(tasks))  f.get();
+		} catch (InterruptedException e) {
+			// finish on this thread
+			Thread.currentThread().interrupt();
+			for (int j=0; j<numNetObjs; j++)  codes[j] = computeHashCode(netObjs[j]);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		return new StratHashParallel(netObjs, codes, globals);
+	}
+}
@@ -0,0 +1,219 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DoublePairMap.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import java.util.Arrays;
+
+/**
+ * Class to map pairs of doubles to doubles without boxing.
+ * The keys are compared like Double.equals() (bit by bit).
+ * It is an open-addressing hash table with linear probing.
+ * Slots are tagged with a generation number, so that clearing the map does not touch the arrays
+ * and a map can be reused for many searches.
+ */
+class DoublePairMap {
+    /** the smallest number of slots */
+    private static final int MIN_CAPACITY = 16;
+
+    /** the first key of each slot */
+    private long[] keysA;
+    /** the second key of each slot */
+    private long[] keysB;
+    /** the value of each slot */
+    private double[] values;
+    /** the generation in which each slot was filled, a slot is empty if it differs from "generation" */
+    private int[] stamps;
+    /** the current generation */
+    private int generation = 1;
+    /** the number of entries */
+    private int size;
+
+    DoublePairMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keysA = new long[capacity];
+        keysB = new long[capacity];
+        values = new double[capacity];
+        stamps = new int[capacity];
+    }
+
+    /**
+     * Method to remove all entries.
+     * This takes constant time, the arrays are kept for the next use.
+     */
+    void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Method to return the number of entries.
+     * @return the number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Method to tell whether a pair is in the map.
+     * @param a the first key.
+     * @param b the second key.
+     * @return true if the pair is in the map.
+     */
+    boolean contains(double a, double b) {
+        return find(Double.doubleToLongBits(a), Double.doubleToLongBits(b)) >= 0;
+    }
+
+    /**
+     * Method to get the value of a pair.
+     * @param a the first key.
+     * @param b the second key.
+     * @param missing the value to return if the pair is not in the map.
+     * @return the value of the pair, or "missing".
+     */
+    double get(double a, double b, double missing) {
+        int slot = find(Double.doubleToLongBits(a), Double.doubleToLongBits(b));
+        return slot >= 0 ? values[slot] : missing;
+    }
+
+    /**
+     * Method to add a pair to the map.
+     * A new pair has the value zero, the value of an existing pair is not changed.
+     * @param a the first key.
+     * @param b the second key.
+     * @return true if the pair was not in the map before.
+     */
+    boolean add(double a, double b) {
+        return insert(Double.doubleToLongBits(a), Double.doubleToLongBits(b), 0, false);
+    }
+
+    /**
+     * Method to set the value of a pair.
+     * @param a the first key.
+     * @param b the second key.
+     * @param value the new value.
+     */
+    void put(double a, double b, double value) {
+        insert(Double.doubleToLongBits(a), Double.doubleToLongBits(b), value, true);
+    }
+
+    /**
+     * Method to remove a pair from the map.
+     * @param a the first key.
+     * @param b the second key.
+     * @return true if the pair was in the map.
+     */
+    boolean remove(double a, double b) {
+        int slot = find(Double.doubleToLongBits(a), Double.doubleToLongBits(b));
+        if (slot < 0)
+            return false;
+
+        // backward-shift deletion keeps the probe sequences intact
+        int mask = stamps.length - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; stamps[i] == generation; i = (i + 1) & mask) {
+            int home = hash(keysA[i], keysB[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keysA[hole] = keysA[i];
+                keysB[hole] = keysB[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        stamps[hole] = generation - 1;
+        size--;
+        return true;
+    }
+
+    /**
+     * Method to return all pairs, for debugging.
+     * @return an array with the first and second key of every pair.
+     */
+    double[] toArray() {
+        double[] result = new double[size * 2];
+        int j = 0;
+        for (int i = 0; i < stamps.length; i++) {
+            if (stamps[i] != generation)
+                continue;
+            result[j++] = Double.longBitsToDouble(keysA[i]);
+            result[j++] = Double.longBitsToDouble(keysB[i]);
+        }
+        return result;
+    }
+
+    private int find(long a, long b) {
+        int mask = stamps.length - 1;
+        for (int i = hash(a, b) & mask; stamps[i] == generation; i = (i + 1) & mask) {
+            if (keysA[i] == a && keysB[i] == b)
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean insert(long a, long b, double value, boolean replace) {
+        int mask = stamps.length - 1;
+        int i = hash(a, b) & mask;
+        for (; stamps[i] == generation; i = (i + 1) & mask) {
+            if (keysA[i] == a && keysB[i] == b) {
+                if (replace)
+                    values[i] = value;
+                return false;
+            }
+        }
+        keysA[i] = a;
+        keysB[i] = b;
+        values[i] = value;
+        stamps[i] = generation;
+        size++;
+        if (size * 2 > stamps.length)
+            grow();
+        return true;
+    }
+
+    private void grow() {
+        long[] oldA = keysA, oldB = keysB;
+        double[] oldValues = values;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+        allocate(oldStamps.length * 2);
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldStamps.length; i++) {
+            if (oldStamps[i] == oldGeneration)
+                insert(oldA[i], oldB[i], oldValues[i], true);
+        }
+    }
+
+    private static int hash(long a, long b) {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+}
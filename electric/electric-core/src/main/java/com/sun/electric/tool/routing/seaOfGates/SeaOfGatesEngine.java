@@ -37,7 +37,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
 
 import com.sun.electric.database.EditingPreferences;
@@ -196,8 +195,8 @@ public abstract class SeaOfGatesEngine {
         NeededRoute nr;
         /** Wavefront name (for debugging). */
         String name;
-        /** List of active search vertices while running wavefront. */
-        private TreeSet<SearchVertex> active;
+        /** The first search vertex of the wavefront. */
+        private SearchVertex svStart;
         /** Resulting list of vertices found for this wavefront. */
         List<SearchVertex> vertices;
         /** Set true to abort this wavefront's search. */
@@ -217,14 +216,9 @@ public abstract class SeaOfGatesEngine {
         int toZ;
         /** debugging state */
         private final boolean debug;
-        /** Search vertices found while propagating the wavefront. */
-        Map<Integer, Set<Integer>>[] searchVertexPlanes;
-        /** Gridless search vertices found while propagating wavefront. */
-        private Map<Double, Set<Double>>[] searchVertexPlanesDBL;
-        /** minimum spacing between this metal and itself. */
-        private Map<Double, Map<Double, Double>>[] layerSurround;
-
-        @SuppressWarnings("unchecked")
+        /** Active and visited search vertices, and spacing rules (null until the search starts). */
+        private WavefrontSearchState searchState;
+
         Wavefront(NeededRoute nr, PortInst from, double fromX, double fromY, int fromZ, PortInst to,
                 double toX, double toY, int toZ, String name, boolean debug) {
             this.nr = nr;
@@ -238,14 +232,8 @@ public abstract class SeaOfGatesEngine {
             this.toZ = toZ;
             this.name = name;
             this.debug = debug;
-            active = new TreeSet<SearchVertex>();
             vertices = null;
             abort = false;
-            searchVertexPlanes = new Map[numMetalLayers];
-            searchVertexPlanesDBL = new Map[numMetalLayers];
-            layerSurround = new Map[numMetalLayers];
-            for (int i = 0; i < numMetalLayers; i++)
-                layerSurround[i] = new HashMap<Double, Map<Double, Double>>();
 
             if (debug)
                 System.out.println("----------- SEARCHING FROM (" + TextUtils.formatDouble(fromX) + ","
@@ -253,10 +241,55 @@ public abstract class SeaOfGatesEngine {
                         + TextUtils.formatDouble(toX) + "," + TextUtils.formatDouble(toY) + ",M" + (toZ + 1)
                         + ") -----------");
 
-            SearchVertex svStart = new SearchVertex(fromX, fromY, fromZ, 0, null, 0, this);
+            svStart = new SearchVertex(fromX, fromY, fromZ, 0, null, 0, this);
             svStart.cost = 0;
-            setVertex(fromX, fromY, fromZ);
-            active.add(svStart);
+        }
+
+        /**
+         * Method to get the memory of the search. All routes are created
+         * before the first one is searched, so the memory is taken from the
+         * pool when the search starts and returned by cleanSearchMemory().
+         * 
+         * @return the memory of the search.
+         */
+        private WavefrontSearchState getSearchState() {
+            if (searchState == null) {
+                searchState = WavefrontSearchState.acquire(numMetalLayers);
+                setVertex(fromX, fromY, fromZ);
+                addActive(svStart);
+            }
+            return searchState;
+        }
+
+        /**
+         * Method to release the memory of the search.
+         */
+        void releaseSearchState() {
+            if (searchState != null) {
+                WavefrontSearchState.release(searchState);
+                searchState = null;
+            }
+        }
+
+        /**
+         * Method to add a vertex to the list of active search vertices. The
+         * vertex is ignored if an active vertex has the same cost and distance
+         * to the goal.
+         * 
+         * @param sv
+         *            the SearchVertex to add.
+         */
+        void addActive(SearchVertex sv) {
+            getSearchState().active.add(sv, sv.cost, sv.getGoalDistance());
+        }
+
+        /**
+         * Method to remove the cheapest active search vertex.
+         * 
+         * @return the cheapest active search vertex (null if none).
+         */
+        SearchVertex removeFirstActive() {
+            return getSearchState().active.removeFirst();
         }
 
         /**
@@ -271,25 +304,12 @@ public abstract class SeaOfGatesEngine {
          * @return the SearchVertex at that point (null if none).
          */
         public boolean getVertex(double x, double y, int z) {
-            if (FULLGRAIN) {
-                Map<Double, Set<Double>> plane = searchVertexPlanesDBL[z];
-                if (plane == null)
-                    return false;
-                Set<Double> row = plane.get(new Double(y));
-                if (row == null)
-                    return false;
-                boolean found = row.contains(new Double(x));
-                return found;
-            }
-
-            Map<Integer, Set<Integer>> plane = searchVertexPlanes[z];
+            DoublePairMap plane = getSearchState().getPlane(z, false);
             if (plane == null)
                 return false;
-            Set<Integer> row = plane.get(new Integer((int) (y * GRANULARITY)));
-            if (row == null)
-                return false;
-            boolean found = row.contains(new Integer((int) (x * GRANULARITY)));
-            return found;
+            if (FULLGRAIN)
+                return plane.contains(y, x);
+            return plane.contains((int) (y * GRANULARITY), (int) (x * GRANULARITY));
         }
 
         /**
@@ -303,34 +323,33 @@ public abstract class SeaOfGatesEngine {
          *            the Z coordinate (metal layer) desired.
          */
         public void setVertex(double x, double y, int z) {
-            if (FULLGRAIN) {
-                Map<Double, Set<Double>> plane = searchVertexPlanesDBL[z];
-                if (plane == null) {
-                    plane = new HashMap<Double, Set<Double>>();
-                    searchVertexPlanesDBL[z] = plane;
-                }
-                Double iY = new Double(y);
-                Set<Double> row = plane.get(iY);
-                if (row == null) {
-                    row = new HashSet<Double>();
-                    plane.put(iY, row);
-                }
-                row.add(new Double(x));
-                return;
-            }
+            DoublePairMap plane = getSearchState().getPlane(z, true);
+            if (FULLGRAIN)
+                plane.add(y, x);
+            else
+                plane.add((int) (y * GRANULARITY), (int) (x * GRANULARITY));
+        }
 
-            Map<Integer, Set<Integer>> plane = searchVertexPlanes[z];
-            if (plane == null) {
-                plane = new HashMap<Integer, Set<Integer>>();
-                searchVertexPlanes[z] = plane;
-            }
-            Integer iY = new Integer((int) (y * GRANULARITY));
-            Set<Integer> row = plane.get(iY);
-            if (row == null) {
-                row = new HashSet<Integer>();
-                plane.put(iY, row);
+        /**
+         * Method to return the marked coordinates of a metal layer, for
+         * debugging.
+         * 
+         * @param z
+         *            the Z coordinate (metal layer) desired.
+         * @return an array with the X and Y coordinate of every mark (in units
+         *         of GRAINSIZE if not gridless).
+         */
+        double[] getVertices(int z) {
+            DoublePairMap plane = searchState != null ? searchState.getPlane(z, false) : null;
+            if (plane == null)
+                return new double[0];
+            double[] yx = plane.toArray();
+            for (int i = 0; i < yx.length; i += 2) {
+                double y = yx[i];
+                yx[i] = yx[i + 1];
+                yx[i + 1] = y;
             }
-            row.add(new Integer((int) (x * GRANULARITY)));
+            return yx;
         }
 
         /**
@@ -353,27 +372,22 @@ public abstract class SeaOfGatesEngine {
                 length = 50;
 
             // convert these to the next largest integers
-            Double wid = new Double(upToGrain(width));
-            Double len = new Double(upToGrain(length));
+            double wid = upToGrain(width);
+            double len = upToGrain(length);
 
-            // see if the rule is cached6
-            Map<Double, Double> widMap = layerSurround[layer].get(wid);
-            if (widMap == null) {
-                widMap = new HashMap<Double, Double>();
-                layerSurround[layer].put(wid, widMap);
-            }
-            Double value = widMap.get(len);
-            if (value == null) {
+            // see if the rule is cached
+            DoublePairMap layerSurround = getSearchState().getLayerSurround(layer);
+            double value = layerSurround.get(wid, len, Double.NaN);
+            if (Double.isNaN(value)) {
                 // rule not cached: compute it
                 Layer lay = metalLayers[layer];
                 DRCTemplate rule = DRC.getSpacingRule(lay, null, lay, null, false, -1, width, length);
-                double v = 0;
+                value = 0;
                 if (rule != null)
-                    v = rule.getValue(0);
-                value = new Double(v);
-                widMap.put(len, value);
+                    value = rule.getValue(0);
+                layerSurround.put(wid, len, value);
             }
-            return value.doubleValue();
+            return value;
         }
     }
 
@@ -433,17 +447,13 @@ public abstract class SeaOfGatesEngine {
         }
 
         public void cleanSearchMemory() {
-            dir1.searchVertexPlanes = null;
-            dir1.searchVertexPlanesDBL = null;
-            dir1.active = null;
+            dir1.releaseSearchState();
             if (dir1.vertices != null) {
                 for (SearchVertex sv : dir1.vertices)
                     sv.clearCuts();
             }
 
-            dir2.searchVertexPlanes = null;
-            dir2.searchVertexPlanesDBL = null;
-            dir2.active = null;
+            dir2.releaseSearchState();
             if (dir2.vertices != null) {
                 for (SearchVertex sv : dir2.vertices)
                     sv.clearCuts();
@@ -1569,7 +1579,7 @@ public abstract class SeaOfGatesEngine {
                 firstFailure = false;
                 EditWindow_ wnd = Job.getUserInterface().getCurrentEditWindow_();
                 wnd.clearHighlighting();
-                showSearchVertices(nr.dir1.searchVertexPlanes, false, cell);
+                showSearchVertices(nr.dir1, false, cell);
                 wnd.finishedHighlighting();
             }
         }
@@ -1668,10 +1678,9 @@ public abstract class SeaOfGatesEngine {
 
     SearchVertex advanceWavefront(Wavefront wf) {
         // get the lowest cost point
-        if (wf.active.size() == 0)
+        SearchVertex svCurrent = wf.removeFirstActive();
+        if (svCurrent == null)
             return svExhausted;
-        SearchVertex svCurrent = wf.active.first();
-        wf.active.remove(svCurrent);
         double curX = svCurrent.getX();
         double curY = svCurrent.getY();
         int curZ = svCurrent.getZ();
@@ -2095,7 +2104,7 @@ public abstract class SeaOfGatesEngine {
 
             // add this vertex into the data structures
             wf.setVertex(nX, nY, nZ);
-            wf.active.add(svNext);
+            wf.addActive(svNext);
             if (wf.debug)
                 System.out.print("(" + TextUtils.formatDouble(svNext.getX()) + ","
                         + TextUtils.formatDouble(svNext.getY()) + ",M" + (svNext.getZ() + 1) + ")C="
@@ -2117,7 +2126,7 @@ public abstract class SeaOfGatesEngine {
                             svIntermediate.last = svCurrent;
                             svIntermediate.cost = cost;
                             wf.setVertex(nowX, nY, nZ);
-                            wf.active.add(svIntermediate);
+                            wf.addActive(svIntermediate);
                         }
                         lessDX += inc;
                         if (inc < 0) {
@@ -2147,7 +2156,7 @@ public abstract class SeaOfGatesEngine {
                             svIntermediate.last = svCurrent;
                             svIntermediate.cost = cost;
                             wf.setVertex(nX, nowY, nZ);
-                            wf.active.add(svIntermediate);
+                            wf.addActive(svIntermediate);
                         }
                         lessDY += inc;
                         if (inc < 0) {
@@ -3170,6 +3179,14 @@ public abstract class SeaOfGatesEngine {
             return cutLayer;
         }
 
+        /**
+         * Method to return the distance to the goal of the wavefront, which
+         * orders vertices of equal cost.
+         */
+        private double getGoalDistance() {
+            return Math.abs(xv - w.toX) + Math.abs(yv - w.toY) + Math.abs(zv - w.toZ);
+        }
+
         /**
          * Method to sort SearchVertex objects by their cost.
          */
@@ -3261,31 +3278,25 @@ public abstract class SeaOfGatesEngine {
     // }
     // }
 
-    protected static void showSearchVertices(Map<Integer, Set<Integer>>[] planes, boolean horiz, Cell cell) {
+    protected static void showSearchVertices(Wavefront wf, boolean horiz, Cell cell) {
         EditWindow_ wnd = Job.getUserInterface().getCurrentEditWindow_();
         for (int i = 0; i < numMetalLayers; i++) {
             double offset = i;
             offset -= (numMetalLayers - 2) / 2.0;
             offset /= numMetalLayers + 2;
-            Map<Integer, Set<Integer>> plane = planes[i];
-            if (plane == null)
-                continue;
-            for (Integer y : plane.keySet()) {
-                double yv = y.doubleValue();
-                Set<Integer> row = plane.get(y);
-                for (Iterator<Integer> it = row.iterator(); it.hasNext();) {
-                    Integer x = it.next();
-                    double xv = x.doubleValue();
-                    Point2D pt1, pt2;
-                    if (horiz) {
-                        pt1 = new Point2D.Double(xv - 0.5, yv + offset);
-                        pt2 = new Point2D.Double(xv + 0.5, yv + offset);
-                    } else {
-                        pt1 = new Point2D.Double(xv + offset, yv - 0.5);
-                        pt2 = new Point2D.Double(xv + offset, yv + 0.5);
-                    }
-                    wnd.addHighlightLine(pt1, pt2, cell, false, false);
+            double[] xy = wf.getVertices(i);
+            for (int j = 0; j < xy.length; j += 2) {
+                double xv = xy[j];
+                double yv = xy[j + 1];
+                Point2D pt1, pt2;
+                if (horiz) {
+                    pt1 = new Point2D.Double(xv - 0.5, yv + offset);
+                    pt2 = new Point2D.Double(xv + 0.5, yv + offset);
+                } else {
+                    pt1 = new Point2D.Double(xv + offset, yv - 0.5);
+                    pt2 = new Point2D.Double(xv + offset, yv + 0.5);
                 }
+                wnd.addHighlightLine(pt1, pt2, cell, false, false);
             }
         }
     }
@@ -301,7 +301,7 @@ public class SeaOfGatesEngineNew extends SeaOfGatesEngine {
 			 * if (DEBUGFAILURE && firstFailure) { firstFailure = false;
 			 * EditWindow_ wnd = Job.getUserInterface().getCurrentEditWindow_();
 			 * wnd.clearHighlighting();
-			 * showSearchVertices(nr.dir1.searchVertexPlanes, false, cell);
+			 * showSearchVertices(nr.dir1, false, cell);
 			 * wnd.finishedHighlighting(); }
 			 */
 		}
@@ -306,7 +306,7 @@ public class SeaOfGatesEngineNew3 extends SeaOfGatesEngine {
                     firstFailure = false;
                     EditWindow_ wnd = Job.getUserInterface().getCurrentEditWindow_();
                     wnd.clearHighlighting();
-                    showSearchVertices(nr.dir1.searchVertexPlanes, false, cell);
+                    showSearchVertices(nr.dir1, false, cell);
                     wnd.finishedHighlighting();
                 }
             }
@@ -0,0 +1,142 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SearchVertexQueue.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import java.util.Arrays;
+
+/**
+ * Class to hold the active search vertices of a wavefront, ordered by cost and then by distance to the goal.
+ * It is a binary heap with the keys in primitive arrays.
+ * Like the TreeSet that it replaces, it ignores a vertex whose cost and distance equal those of
+ * a vertex already in the queue, so that searches find the same routes as before.
+ */
+class SearchVertexQueue<T> {
+    /** the initial number of entries */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** the vertices, in heap order */
+    private Object[] items = new Object[INITIAL_CAPACITY];
+    /** the cost of each vertex */
+    private int[] costs = new int[INITIAL_CAPACITY];
+    /** the distance to the goal of each vertex */
+    private double[] dists = new double[INITIAL_CAPACITY];
+    /** the number of vertices */
+    private int size;
+    /** the (cost, distance) pairs in the queue */
+    private final DoublePairMap keys = new DoublePairMap();
+
+    /**
+     * Method to return the number of vertices in the queue.
+     * @return the number of vertices in the queue.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Method to remove all vertices.
+     */
+    void clear() {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+        keys.clear();
+    }
+
+    /**
+     * Method to add a vertex.
+     * @param item the vertex.
+     * @param cost the cost of the vertex.
+     * @param dist the distance of the vertex to the goal.
+     * @return false if a vertex with the same cost and distance is already in the queue
+     * (the new vertex is not added).
+     */
+    boolean add(T item, int cost, double dist) {
+        dist += 0.0; // no negative zero in the keys
+        if (!keys.add(cost, dist))
+            return false;
+        if (size == items.length) {
+            int newCapacity = size * 2;
+            items = Arrays.copyOf(items, newCapacity);
+            costs = Arrays.copyOf(costs, newCapacity);
+            dists = Arrays.copyOf(dists, newCapacity);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!less(cost, dist, costs[parent], dists[parent]))
+                break;
+            items[i] = items[parent];
+            costs[i] = costs[parent];
+            dists[i] = dists[parent];
+            i = parent;
+        }
+        items[i] = item;
+        costs[i] = cost;
+        dists[i] = dist;
+        return true;
+    }
+
+    /**
+     * Method to remove the vertex with the lowest cost (and the lowest distance among those).
+     * @return the vertex, null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    T removeFirst() {
+        if (size == 0)
+            return null;
+        T first = (T) items[0];
+        keys.remove(costs[0], dists[0]);
+        int last = --size;
+        Object item = items[last];
+        int cost = costs[last];
+        double dist = dists[last];
+        items[last] = null;
+        if (last > 0) {
+            int i = 0;
+            for (;;) {
+                int child = 2 * i + 1;
+                if (child >= last)
+                    break;
+                if (child + 1 < last && less(costs[child + 1], dists[child + 1], costs[child], dists[child]))
+                    child++;
+                if (!less(costs[child], dists[child], cost, dist))
+                    break;
+                items[i] = items[child];
+                costs[i] = costs[child];
+                dists[i] = dists[child];
+                i = child;
+            }
+            items[i] = item;
+            costs[i] = cost;
+            dists[i] = dist;
+        }
+        return first;
+    }
+
+    private static boolean less(int cost1, double dist1, int cost2, double dist2) {
+        if (cost1 != cost2)
+            return cost1 < cost2;
+        return dist1 < dist2;
+    }
+}
@@ -0,0 +1,119 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: WavefrontSearchState.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to hold the memory of one wavefront search: the visited vertices of each metal layer,
+ * the active vertices, and the cached spacing rules.
+ * A finished wavefront returns its state to a pool, so that the next search reuses the tables
+ * instead of filling the heap with boxed coordinates.
+ */
+class WavefrontSearchState {
+    /** the largest number of states kept in the pool */
+    private static final int MAX_POOLED = 32;
+    /** the pool of unused states */
+    private static final List<WavefrontSearchState> pool = new ArrayList<WavefrontSearchState>();
+
+    /** the visited vertices of each metal layer, keyed by (y, x) */
+    private DoublePairMap[] planes;
+    /** the spacing rules of each metal layer, keyed by (width, length) */
+    private DoublePairMap[] layerSurround;
+    /** the active search vertices */
+    final SearchVertexQueue<SeaOfGatesEngine.SearchVertex> active = new SearchVertexQueue<SeaOfGatesEngine.SearchVertex>();
+
+    private WavefrontSearchState(int numMetalLayers) {
+        planes = new DoublePairMap[numMetalLayers];
+        layerSurround = new DoublePairMap[numMetalLayers];
+    }
+
+    /**
+     * Method to get an empty search state.
+     * @param numMetalLayers the number of metal layers.
+     * @return an empty search state.
+     */
+    static WavefrontSearchState acquire(int numMetalLayers) {
+        WavefrontSearchState state = null;
+        synchronized (pool) {
+            if (!pool.isEmpty())
+                state = pool.remove(pool.size() - 1);
+        }
+        if (state == null)
+            return new WavefrontSearchState(numMetalLayers);
+        if (state.planes.length < numMetalLayers) {
+            state.planes = new DoublePairMap[numMetalLayers];
+            state.layerSurround = new DoublePairMap[numMetalLayers];
+        }
+        return state;
+    }
+
+    /**
+     * Method to return a search state which is no longer used.
+     * @param state the state obtained with "acquire".
+     */
+    static void release(WavefrontSearchState state) {
+        state.active.clear();
+        for (int i = 0; i < state.planes.length; i++) {
+            if (state.planes[i] != null)
+                state.planes[i].clear();
+            if (state.layerSurround[i] != null)
+                state.layerSurround[i].clear();
+        }
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED)
+                pool.add(state);
+        }
+    }
+
+    /**
+     * Method to get the visited vertices of a metal layer.
+     * @param z the metal layer.
+     * @param create true to create the table if the layer has none.
+     * @return the table of visited vertices (null if none and "create" is false).
+     */
+    DoublePairMap getPlane(int z, boolean create) {
+        DoublePairMap plane = planes[z];
+        if (plane == null && create) {
+            plane = new DoublePairMap();
+            planes[z] = plane;
+        }
+        return plane;
+    }
+
+    /**
+     * Method to get the cached spacing rules of a metal layer.
+     * @param z the metal layer.
+     * @return the table of spacing rules.
+     */
+    DoublePairMap getLayerSurround(int z) {
+        DoublePairMap surround = layerSurround[z];
+        if (surround == null) {
+            surround = new DoublePairMap();
+            layerSurround[z] = surround;
+        }
+        return surround;
+    }
+}
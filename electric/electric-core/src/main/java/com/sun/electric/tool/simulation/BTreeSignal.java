@@ -24,7 +24,7 @@ package com.sun.electric.tool.simulation;
 import com.sun.electric.database.geometry.btree.BTree;
 import com.sun.electric.database.geometry.btree.CachingPageStorage;
 import com.sun.electric.database.geometry.btree.CachingPageStorageWrapper;
-import com.sun.electric.database.geometry.btree.FilePageStorage;
+import com.sun.electric.database.geometry.btree.MappedPageStorage;
 import com.sun.electric.database.geometry.btree.MemoryPageStorage;
 import com.sun.electric.database.geometry.btree.OverflowPageStorage;
 import com.sun.electric.database.geometry.btree.PageStorage;
@@ -41,6 +41,9 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 	private final BTree<Double,S,Pair<S,S>> tree;
 	private double minTime = Double.MAX_VALUE, maxTime = -Double.MAX_VALUE;
 	private double minValue = Double.MAX_VALUE, maxValue = -Double.MAX_VALUE;
+	/** min/max summaries of analog samples added in time order (null if unavailable) */
+	private MinMaxPyramid pyramid = new MinMaxPyramid();
+	private int modificationCount = 0;
 	public static int misses = 0;
 	public static int steps = 0;
 	public static int numLookups = 0;
@@ -78,6 +81,7 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 	public void addSample(double time, S sample)
 	{
 		tree.insert(new Double(time), sample);
+		addToPyramid(time, sample);
 		minTime = Math.min(minTime, time);
 		maxTime = Math.max(maxTime, time);
 		minValue = Math.min(minValue, sample.getMinValue());
@@ -87,12 +91,48 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 	public void replaceSample(double time, S sample)
 	{
 		tree.replace(new Double(time), sample);
+		modificationCount++;
+		pyramid = null;
 		minTime = Math.min(minTime, time);
 		maxTime = Math.max(maxTime, time);
 		minValue = Math.min(minValue, sample.getMinValue());
 		maxValue = Math.max(maxValue, sample.getMaxValue());
 	}
 
+	/**
+	 * Method to fill an empty signal with samples in order of strictly increasing time.
+	 * The samples are bulk-loaded into the tree in one pass instead of being inserted one at a time.
+	 * Samples must be added with Loader.addSample() and the load completed with Loader.finish().
+	 */
+	public Loader getLoader() { return new Loader(); }
+
+	public class Loader
+	{
+		private final BTree<Double,S,Pair<S,S>>.BulkLoader bulk = tree.bulkLoad();
+
+		public void addSample(double time, S sample)
+		{
+			bulk.append(new Double(time), sample);
+			addToPyramid(time, sample);
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+			minValue = Math.min(minValue, sample.getMinValue());
+			maxValue = Math.max(maxValue, sample.getMaxValue());
+		}
+
+		public void finish() { bulk.finish(); }
+	}
+
+	private void addToPyramid(double time, S sample)
+	{
+		modificationCount++;
+		if (pyramid == null) return;
+		if (!(sample instanceof ScalarSample) || !pyramid.add(time, sample.getMinValue(), sample.getMaxValue()))
+			pyramid = null;
+	}
+
+	public int getModificationCount() { return modificationCount; }
+
 	public Signal.View<S> getExactView() { return exactView; }
 
 	public Signal.View<RangeSample<S>> getRasterView(double t0, double t1, int numPixels)
@@ -129,6 +169,8 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 		private final int numRegions;
 		private final boolean exact;
 		private int t0_ord, t1_ord;
+		/** the range found in the pyramid */	private final double [] minMax = new double[2];
+		/** the times bounding that range */	private final double [] bounds = new double[2];
 
 		public BTreeRasterView(double t0, double t1, int numRegions)
 		{
@@ -203,12 +245,33 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 				return sample == null ? null : new RangeSample<S>(sample, sample);
 			} else
 			{
+				// long stretches of analog samples are summarized by the pyramid
+				MinMaxPyramid p = pyramid;
+				if (p != null && p.getRange(tfirst.doubleValue(), tsecond.doubleValue(), minMax, bounds))
+				{
+					// the samples on either side of the whole buckets come from the tree
+					addToRange(tree.getSummaryFromKeys(tfirst, new Double(bounds[0])));
+					if (bounds[1] <= tsecond.doubleValue())
+						addToRange(tree.getSummaryFromKeys(new Double(bounds[1]), tsecond));
+
+					// the pyramid is only kept for signals of ScalarSample
+					@SuppressWarnings("unchecked") S min = (S)new ScalarSample(minMax[0]);
+					@SuppressWarnings("unchecked") S max = (S)new ScalarSample(minMax[1]);
+					return new RangeSample<S>(min, max);
+				}
 				Pair<S,S> highlow = tree.getSummaryFromKeys(tfirst, tsecond);
 				return highlow == null
 					? null
 					: new RangeSample<S>(highlow.getKey(), highlow.getValue());
 			}
 		}
+
+		private void addToRange(Pair<S,S> highlow)
+		{
+			if (highlow == null) return;
+			minMax[0] = Math.min(minMax[0], highlow.getKey().getMinValue());
+			minMax[1] = Math.max(minMax[1], highlow.getValue().getMaxValue());
+		}
 	}
 
 	// Page Storage //////////////////////////////////////////////////////////////////////////////
@@ -219,10 +282,14 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 		if (ps == null)
 			try
 			{
+				// pages start on the heap and move off it, to a mapped file, past the high water mark;
+				// the wrapper keeps the most recently used ones on the heap
 				long highWaterMarkInBytes = 50 * 1024 * 1024;
-				PageStorage fps = FilePageStorage.create();
-				PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(fps.getPageSize()), fps, highWaterMarkInBytes);
-				ps = new CachingPageStorageWrapper(ops, 16 * 1024, false);
+				PageStorage mps = MappedPageStorage.create();
+				PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(mps.getPageSize()), mps, highWaterMarkInBytes);
+				long cacheBytes = SimulationTool.getWaveformPageCacheSize() * 1024L * 1024L;
+				int cachePages = (int)Math.max(16, cacheBytes / mps.getPageSize());
+				ps = new CachingPageStorageWrapper(ops, cachePages, false);
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
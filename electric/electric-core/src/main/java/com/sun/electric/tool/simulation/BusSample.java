@@ -150,6 +150,8 @@ public class BusSample<S extends Sample> implements Sample
         {
             public boolean isEmpty() { for(Signal<SS> sig : subsignals) if (!sig.isEmpty()) return false; return true; }
 
+            public int getModificationCount() { int count = 0; for(Signal<SS> sig : subsignals) count += sig.getModificationCount(); return count; }
+
             public Signal<?>[] getBusMembers() { return subsignals; }
 
             public Signal.View<RangeSample<BusSample<SS>>> getRasterView(final double t0, final double t1, final int numPixels)
@@ -51,6 +51,14 @@ public abstract class DerivedSignal<SNew extends Sample, SOld extends Sample> ex
         this.sources = sources;
     }
 
+    public int getModificationCount()
+    {
+        int count = 0;
+        for(int i=0; i<sources.length; i++)
+            count += sources[i].getModificationCount();
+        return count;
+    }
+
     public Signal.View<RangeSample<SNew>> getRasterView(double t0, double t1, int numPixels)
     {
         View<RangeSample<SOld>>[] views = new View[sources.length];
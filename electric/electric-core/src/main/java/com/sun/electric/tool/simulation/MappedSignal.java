@@ -0,0 +1,142 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedSignal.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.simulation;
+
+/**
+ * A read-only analog Signal whose samples are one column of a MappedWaveformStore.
+ * Nothing is read until a view asks for it.
+ */
+abstract class MappedSignal extends Signal<ScalarSample>
+{
+	private final MappedWaveformStore store;
+	private final int column;
+	private final Signal.View<ScalarSample> exactView;
+
+	public MappedSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext,
+		MappedWaveformStore store, int column)
+	{
+		super(sc, sd, signalName, signalContext, false);
+		this.store = store;
+		this.column = column;
+		if (sd != null) sd.addMappedWaveformStore(store);
+		this.exactView = new Signal.View<ScalarSample>()
+		{
+			public int getNumEvents() { return MappedSignal.this.store.getNumRows(); }
+			public double getTime(int index) { return MappedSignal.this.store.getTime(index); }
+			public ScalarSample getSample(int index)
+			{
+				return new ScalarSample(MappedSignal.this.store.getValue(MappedSignal.this.column, index));
+			}
+		};
+	}
+
+	public Signal.View<ScalarSample> getExactView() { return exactView; }
+
+	public Signal.View<RangeSample<ScalarSample>> getRasterView(double t0, double t1, int numPixels)
+	{
+		return new MappedRasterView(t0, t1, numPixels);
+	}
+
+	public boolean isEmpty() { return store.getNumRows() == 0; }
+
+	public double getMinTime() { return store.getTime(0); }
+
+	public double getMaxTime() { return store.getTime(store.getNumRows() - 1); }
+
+	public double getMinValue() { return store.getMinValue(column); }
+
+	public double getMaxValue() { return store.getMaxValue(column); }
+
+	/**
+	 * A raster view works like the one of BTreeSignal: if there are fewer samples than
+	 * regions between t0 and t1, the raster samples are the actual samples.
+	 * Otherwise each region is summarized by the min/max pyramid of the store.
+	 */
+	private class MappedRasterView implements Signal.View<RangeSample<ScalarSample>>
+	{
+		private final double t0, t1;
+		private final int numRegions;
+		private final boolean exact;
+		private final int t0_ord, t1_ord;
+
+		public MappedRasterView(double t0, double t1, int numRegions)
+		{
+			int numRows = store.getNumRows();
+
+			// "snap" t0 and t1 to the nearest actual sample outside the viewfinder
+			int lo = Math.max(store.findRowFloor(Math.min(t0, t1)), 0);
+			int hi = Math.min(store.findRowFloor(Math.max(t0, t1)) + 1, numRows - 1);
+			hi = Math.max(hi, lo);
+			t0_ord = lo;
+			t1_ord = hi;
+			this.t0 = store.getTime(lo);
+			this.t1 = store.getTime(hi);
+
+			int actualNumSamples = t1_ord - t0_ord + 1;
+			this.exact = numRegions > actualNumSamples;
+			this.numRegions = exact ? actualNumSamples : numRegions;
+		}
+
+		public int getNumEvents() { return numRegions; }
+
+		public double getTime(int index)
+		{
+			if (index < 0)
+				throw new RuntimeException("ERROR: getTime() called with negative number");
+			if (index >= getNumEvents())
+				throw new RuntimeException("ERROR: getTime() called with number greater than or equal to getNumEvents()");
+			if (!exact) return t0+(((t1-t0)*index)/numRegions);
+			return store.getTime(t0_ord + index);
+		}
+
+		public RangeSample<ScalarSample> getSample(int index)
+		{
+			if (index >= getNumEvents()-1)
+				return point(t1_ord);
+			if (exact)
+				return point(t0_ord + index);
+
+			// the rows between the two times, inclusive
+			double tFirst = getTime(index);
+			double tSecond = getTime(index+1);
+			int first = store.findRowFloor(tFirst);
+			int last = store.findRowFloor(tSecond);
+			if (first < 0 || store.getTime(first) < tFirst) first++;
+			if (first > last)
+			{
+				// no sample in this region: the signal holds its previous value
+				return point(Math.max(last, 0));
+			}
+			double [] minMax = new double[2];
+			store.getRange(column, first, last + 1, minMax);
+			return new RangeSample<ScalarSample>(new ScalarSample(minMax[0]), new ScalarSample(minMax[1]));
+		}
+
+		private RangeSample<ScalarSample> point(int row)
+		{
+			ScalarSample sample = new ScalarSample(store.getValue(column, row));
+			return new RangeSample<ScalarSample>(sample, sample);
+		}
+	}
+}
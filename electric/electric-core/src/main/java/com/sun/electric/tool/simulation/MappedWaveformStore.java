@@ -0,0 +1,515 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedWaveformStore.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class to hold the analog waveforms of one simulation run in a memory-mapped file.
+ * All signals share a time column.  The rows are grouped in blocks, and inside a block
+ * the time column is followed by one column per signal, so reading a signal touches
+ * consecutive memory.
+ * <P>
+ * Each signal also has a min/max pyramid: the bottom level summarizes every LEAF_ROWS rows,
+ * and every level above summarizes FANOUT entries of the level below.  The levels finer than
+ * a block are stored at the end of each block, the coarser levels at the end of the file.
+ * With the pyramid, the extremes of any range of rows are found with a logarithmic number of reads.
+ * <P>
+ * A store is written once with a Writer while a result file is parsed.  The file is then
+ * mapped read-only, so the waveform data never occupies the Java heap.  The Stimuli
+ * which owns the signals of a store closes it when it is finished.
+ * <P>
+ * The file is a temporary cache, not a saved format: it is rebuilt every time a result
+ * file is read, and it is deleted when its Stimuli is finished.
+ */
+public class MappedWaveformStore
+{
+	/** log2 of the rows in a bottom pyramid entry */			private static final int LEAF_SHIFT = 6;
+	/** rows in a bottom pyramid entry */						private static final int LEAF_ROWS = 1 << LEAF_SHIFT;
+	/** log2 of the pyramid fanout */							private static final int FANOUT_SHIFT = 2;
+	/** pyramid entries summarized by the level above */		private static final int FANOUT = 1 << FANOUT_SHIFT;
+	/** most doubles buffered by the Writer for one block */	private static final int MAX_BLOCK_DOUBLES = 1 << 22;
+	/** log2 of the size of a mapped segment */					private static final int SEGMENT_SHIFT = 30;
+
+	/** number of signals (not counting time) */				private final int numSignals;
+	/** number of rows */										private final int numRows;
+	/** rows in a block */										private final int blockRows;
+	/** bytes in a block */										private final long blockBytes;
+	/** pyramid levels stored in each block */					private final int blockLevels;
+	/** per signal, first in-block entry of each level */		private final int [] blockLevelStart;
+	/** pyramid entries per signal in a block */				private final int blockEntries;
+	/** start of the coarse levels in the file */				private final long trailerOffset;
+	/** per signal, first trailer entry of each level */		private final int [] trailerLevelStart;
+	/** pyramid entries per signal in the trailer */			private final int trailerEntries;
+	/** smallest and largest value of each signal */			private final double [] minValues, maxValues;
+	/** the mapped file, in segments of 2^SEGMENT_SHIFT bytes */	private final MappedByteBuffer [] segments;
+	/** the temporary file */									private final File file;
+
+	private MappedWaveformStore(Writer w, long trailerOffset, MappedByteBuffer [] segments)
+	{
+		numSignals = w.numSignals;
+		numRows = w.numRows;
+		blockRows = w.blockRows;
+		blockBytes = w.blockBytes;
+		blockLevels = w.blockLevels;
+		blockLevelStart = w.blockLevelStart;
+		blockEntries = w.blockEntries;
+		this.trailerOffset = trailerOffset;
+		trailerLevelStart = levelStarts(numBlocks(numRows, blockRows));
+		trailerEntries = trailerLevelStart[trailerLevelStart.length - 1];
+		minValues = w.minValues;
+		maxValues = w.maxValues;
+		this.segments = segments;
+		file = w.file;
+	}
+
+	/**
+	 * Method to delete the file of this store.
+	 * Systems which keep a mapped file alive (UNIX) delete it at once, and its space is
+	 * freed when the mapping is garbage-collected.  On other systems the file is deleted on exit.
+	 */
+	public void close()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Method to return the temporary file of this store.
+	 * @return the temporary file of this store.
+	 */
+	File getFile() { return file; }
+
+	/**
+	 * Method to return the number of signals in this store.
+	 * @return the number of signals in this store.
+	 */
+	public int getNumSignals() { return numSignals; }
+
+	/**
+	 * Method to return the number of rows (time steps) in this store.
+	 * @return the number of rows in this store.
+	 */
+	public int getNumRows() { return numRows; }
+
+	/**
+	 * Method to return the time of a row.
+	 * @param row the row index.
+	 * @return the time of that row.
+	 */
+	public double getTime(int row) { return getDouble(columnOffset(0, row)); }
+
+	/**
+	 * Method to return the value of a signal in a row.
+	 * @param signal the signal index.
+	 * @param row the row index.
+	 * @return the value of that signal in that row.
+	 */
+	public double getValue(int signal, int row) { return getDouble(columnOffset(signal + 1, row)); }
+
+	/**
+	 * Method to return the smallest value of a signal.
+	 * @param signal the signal index.
+	 * @return the smallest value of that signal.
+	 */
+	public double getMinValue(int signal) { return minValues[signal]; }
+
+	/**
+	 * Method to return the largest value of a signal.
+	 * @param signal the signal index.
+	 * @return the largest value of that signal.
+	 */
+	public double getMaxValue(int signal) { return maxValues[signal]; }
+
+	/**
+	 * Method to find the last row at or before a given time.
+	 * @param time the time to find.
+	 * @return the last row whose time is not larger than "time", or -1 if there is none.
+	 */
+	public int findRowFloor(double time)
+	{
+		int lo = 0, hi = numRows - 1, result = -1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (getTime(mid) <= time)
+			{
+				result = mid;
+				lo = mid + 1;
+			} else
+			{
+				hi = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Method to find the extremes of a signal over a range of rows.
+	 * @param signal the signal index.
+	 * @param lo the first row of the range.
+	 * @param hi the row after the last row of the range.
+	 * @param minMax array of 2 that receives the smallest and the largest value
+	 * (or infinities of the wrong sign if the range is empty).
+	 */
+	public void getRange(int signal, int lo, int hi, double [] minMax)
+	{
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+		// rows which are not on a leaf boundary
+		while (lo < hi && (lo & (LEAF_ROWS - 1)) != 0)
+		{
+			double v = getValue(signal, lo++);
+			if (v < min) min = v;
+			if (v > max) max = v;
+		}
+		while (hi > lo && (hi & (LEAF_ROWS - 1)) != 0)
+		{
+			double v = getValue(signal, --hi);
+			if (v < min) min = v;
+			if (v > max) max = v;
+		}
+
+		// climb the pyramid, using entries on the edges of the range at each level
+		int a = lo >> LEAF_SHIFT, b = hi >> LEAF_SHIFT;
+		int topLevel = blockLevels + trailerLevelStart.length - 2;
+		for (int level = 0; a < b; level++)
+		{
+			boolean top = level == topLevel;
+			while (a < b && (top || (a & (FANOUT - 1)) != 0))
+			{
+				long ofs = summaryOffset(signal, level, a++);
+				min = Math.min(min, getDouble(ofs));
+				max = Math.max(max, getDouble(ofs + 8));
+			}
+			while (b > a && (b & (FANOUT - 1)) != 0)
+			{
+				long ofs = summaryOffset(signal, level, --b);
+				min = Math.min(min, getDouble(ofs));
+				max = Math.max(max, getDouble(ofs + 8));
+			}
+			a >>= FANOUT_SHIFT;
+			b >>= FANOUT_SHIFT;
+		}
+		minMax[0] = min;
+		minMax[1] = max;
+	}
+
+	private double getDouble(long ofs)
+	{
+		return segments[(int)(ofs >>> SEGMENT_SHIFT)].getDouble((int)(ofs & ((1L << SEGMENT_SHIFT) - 1)));
+	}
+
+	/** column 0 is time, column i+1 is signal i */
+	private long columnOffset(int column, int row)
+	{
+		int block = row / blockRows;
+		return block * blockBytes + ((long)column * blockRows + (row - block * blockRows)) * 8;
+	}
+
+	private long summaryOffset(int signal, int level, int index)
+	{
+		if (level < blockLevels)
+		{
+			int perBlock = blockRows >> (LEAF_SHIFT + level * FANOUT_SHIFT);
+			int block = index / perBlock;
+			return block * blockBytes + (long)(numSignals + 1) * blockRows * 8 +
+				((long)signal * blockEntries + blockLevelStart[level] + index - block * perBlock) * 16;
+		}
+		return trailerOffset + ((long)signal * trailerEntries + trailerLevelStart[level - blockLevels] + index) * 16;
+	}
+
+	private static int numBlocks(int numRows, int blockRows)
+	{
+		return (numRows + blockRows - 1) / blockRows;
+	}
+
+	/**
+	 * Method to lay out a pyramid whose bottom level has "n" entries.
+	 * @return the first entry of each level, followed by the total number of entries.
+	 */
+	private static int [] levelStarts(int n)
+	{
+		int numLevels = 1;
+		for (int len = n; len > 1; len = (len + FANOUT - 1) >> FANOUT_SHIFT)
+			numLevels++;
+		int [] starts = new int[numLevels + 1];
+		int len = n;
+		for (int i = 0; i < numLevels; i++)
+		{
+			starts[i + 1] = starts[i] + len;
+			len = (len + FANOUT - 1) >> FANOUT_SHIFT;
+		}
+		return starts;
+	}
+
+	/**
+	 * Class to write a MappedWaveformStore, one row at a time.
+	 * Rows must be added in order of increasing time.
+	 */
+	public static class Writer
+	{
+		private final int numSignals;
+		private final int blockRows;
+		private final long blockBytes;
+		private final int blockLevels;
+		private final int [] blockLevelStart;
+		private final int blockEntries;
+		private final double [] minValues, maxValues;
+		private final File file;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+		/** the current block, column by column */				private final double [] block;
+		/** the pyramid of the current block */					private final double [] summary;
+		/** min/max of every block, signal by signal */			private double [] blockSummary;
+		private final ByteBuffer byteBuffer;
+		/** time of the last row in the blocks already written */	private double lastWrittenTime;
+		private int numRows;
+		private int rowInBlock;
+		private int numBlocks;
+
+		/**
+		 * Constructor to start writing a store in a temporary file.
+		 * @param numSignals the number of signals in each row (not counting time).
+		 * @throws IOException if the temporary file cannot be created.
+		 */
+		public Writer(int numSignals)
+			throws IOException
+		{
+			this.numSignals = numSignals;
+
+			// the block is the largest pyramid level that fits in the buffer
+			int rows = LEAF_ROWS, levels = 0;
+			while ((long)(rows << FANOUT_SHIFT) * (numSignals + 1) <= MAX_BLOCK_DOUBLES)
+			{
+				rows <<= FANOUT_SHIFT;
+				levels++;
+			}
+			blockRows = rows;
+			blockLevels = levels;
+			blockLevelStart = new int[levels];
+			int entries = 0;
+			for (int l = 0; l < levels; l++)
+			{
+				blockLevelStart[l] = entries;
+				entries += blockRows >> (LEAF_SHIFT + l * FANOUT_SHIFT);
+			}
+			blockEntries = entries;
+			blockBytes = ((long)(numSignals + 1) * blockRows + (long)numSignals * blockEntries * 2) * 8;
+
+			minValues = new double[numSignals];
+			maxValues = new double[numSignals];
+			for (int i = 0; i < numSignals; i++)
+			{
+				minValues[i] = Double.POSITIVE_INFINITY;
+				maxValues[i] = Double.NEGATIVE_INFINITY;
+			}
+			block = new double[(numSignals + 1) * blockRows];
+			summary = new double[numSignals * blockEntries * 2];
+			blockSummary = new double[numSignals * 2 * 16];
+			byteBuffer = ByteBuffer.allocate((int)blockBytes).order(ByteOrder.nativeOrder());
+
+			file = File.createTempFile("waveform", ".ewave");
+			file.deleteOnExit();
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+		}
+
+		/**
+		 * Method to return the number of rows written so far.
+		 * @return the number of rows written so far.
+		 */
+		public int getNumRows() { return numRows; }
+
+		/**
+		 * Method to add a row to the store.
+		 * Rows whose time is not larger than the time of the previous row are ignored,
+		 * just as signals ignore samples at times that are already present.
+		 * @param time the time of the row.
+		 * @param values the value of each signal at that time.
+		 * @throws IOException if the file cannot be written.
+		 */
+		public void addRow(double time, double [] values)
+			throws IOException
+		{
+			if (numRows > 0 && !(time > getLastTime())) return;
+			block[rowInBlock] = time;
+			for (int i = 0; i < numSignals; i++)
+				block[(i + 1) * blockRows + rowInBlock] = values[i];
+			numRows++;
+			if (++rowInBlock == blockRows) flushBlock();
+		}
+
+		private double getLastTime()
+		{
+			return rowInBlock > 0 ? block[rowInBlock - 1] : lastWrittenTime;
+		}
+
+		private void flushBlock()
+			throws IOException
+		{
+			if (rowInBlock == 0) return;
+			lastWrittenTime = block[rowInBlock - 1];
+			if (numBlocks * numSignals * 2 >= blockSummary.length)
+			{
+				double [] newSummary = new double[blockSummary.length * 2];
+				System.arraycopy(blockSummary, 0, newSummary, 0, blockSummary.length);
+				blockSummary = newSummary;
+			}
+			for (int i = 0; i < numSignals; i++)
+			{
+				int col = (i + 1) * blockRows;
+				int sum = i * blockEntries * 2;
+				double sigMin = Double.POSITIVE_INFINITY, sigMax = Double.NEGATIVE_INFINITY;
+
+				// bottom level from the values, upper levels from the level below
+				for (int leaf = 0; leaf < blockRows >> LEAF_SHIFT; leaf++)
+				{
+					double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+					int end = Math.min((leaf + 1) << LEAF_SHIFT, rowInBlock);
+					for (int r = leaf << LEAF_SHIFT; r < end; r++)
+					{
+						double v = block[col + r];
+						if (v < min) min = v;
+						if (v > max) max = v;
+					}
+					if (blockLevels > 0)
+					{
+						summary[sum + leaf * 2] = min;
+						summary[sum + leaf * 2 + 1] = max;
+					}
+					if (min < sigMin) sigMin = min;
+					if (max > sigMax) sigMax = max;
+				}
+				for (int l = 1; l < blockLevels; l++)
+				{
+					int below = sum + blockLevelStart[l - 1] * 2;
+					int here = sum + blockLevelStart[l] * 2;
+					int len = blockRows >> (LEAF_SHIFT + l * FANOUT_SHIFT);
+					for (int e = 0; e < len; e++)
+					{
+						double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+						for (int j = 0; j < FANOUT; j++)
+						{
+							min = Math.min(min, summary[below + (e * FANOUT + j) * 2]);
+							max = Math.max(max, summary[below + (e * FANOUT + j) * 2 + 1]);
+						}
+						summary[here + e * 2] = min;
+						summary[here + e * 2 + 1] = max;
+					}
+				}
+				blockSummary[(numBlocks * numSignals + i) * 2] = sigMin;
+				blockSummary[(numBlocks * numSignals + i) * 2 + 1] = sigMax;
+				if (sigMin < minValues[i]) minValues[i] = sigMin;
+				if (sigMax > maxValues[i]) maxValues[i] = sigMax;
+			}
+
+			byteBuffer.clear();
+			DoubleBuffer db = byteBuffer.asDoubleBuffer();
+			db.put(block);
+			db.put(summary);
+			write(byteBuffer, (long)numBlocks * blockBytes);
+			numBlocks++;
+			rowInBlock = 0;
+		}
+
+		private void write(ByteBuffer buf, long position)
+			throws IOException
+		{
+			buf.position(0);
+			while (buf.hasRemaining())
+				position += channel.write(buf, position);
+		}
+
+		/**
+		 * Method to finish writing and map the store.
+		 * @return the store with all rows written, or null if there are none.
+		 * @throws IOException if the file cannot be written or mapped.
+		 */
+		public MappedWaveformStore finish()
+			throws IOException
+		{
+			try
+			{
+				flushBlock();
+				if (numRows == 0) return null;
+
+				// the coarse levels, signal by signal
+				int [] starts = levelStarts(numBlocks);
+				int entries = starts[starts.length - 1];
+				long trailerOffset = (long)numBlocks * blockBytes;
+				double [] levels = new double[entries * 2];
+				ByteBuffer trailer = ByteBuffer.allocate(levels.length * 8).order(ByteOrder.nativeOrder());
+				for (int i = 0; i < numSignals; i++)
+				{
+					for (int b = 0; b < numBlocks; b++)
+					{
+						levels[b * 2] = blockSummary[(b * numSignals + i) * 2];
+						levels[b * 2 + 1] = blockSummary[(b * numSignals + i) * 2 + 1];
+					}
+					for (int l = 1; l < starts.length - 1; l++)
+					{
+						int below = starts[l - 1], belowLen = starts[l] - starts[l - 1];
+						for (int e = 0; e < starts[l + 1] - starts[l]; e++)
+						{
+							double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+							for (int j = e * FANOUT; j < Math.min((e + 1) * FANOUT, belowLen); j++)
+							{
+								min = Math.min(min, levels[(below + j) * 2]);
+								max = Math.max(max, levels[(below + j) * 2 + 1]);
+							}
+							levels[(starts[l] + e) * 2] = min;
+							levels[(starts[l] + e) * 2 + 1] = max;
+						}
+					}
+					trailer.clear();
+					trailer.asDoubleBuffer().put(levels);
+					write(trailer, trailerOffset + (long)i * entries * 16);
+				}
+				blockSummary = null;
+
+				// map the file in segments
+				long length = trailerOffset + (long)numSignals * entries * 16;
+				MappedByteBuffer [] segments = new MappedByteBuffer[(int)((length + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT)];
+				for (int s = 0; s < segments.length; s++)
+				{
+					long start = (long)s << SEGMENT_SHIFT;
+					segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << SEGMENT_SHIFT, length - start));
+					segments[s].order(ByteOrder.nativeOrder());
+				}
+				return new MappedWaveformStore(this, trailerOffset, segments);
+			} finally
+			{
+				raf.close();
+				if (numRows == 0) file.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MinMaxPyramid.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.simulation;
+
+/**
+ * Multi-resolution min/max summaries of an analog signal, built while samples are appended in time order.
+ * Level 0 summarizes buckets of LEAF_SIZE consecutive samples and each higher level summarizes FANOUT
+ * buckets of the level below, so the range of any run of buckets is found from a handful of entries.
+ * It answers range queries only when they span many buckets, and then only for the buckets that lie
+ * wholly inside the query; the caller summarizes the samples at either end.
+ */
+class MinMaxPyramid
+{
+	/** log2 of the number of samples in a level-0 bucket */	private static final int LEAF_SHIFT = 8;
+	/** log2 of the number of buckets merged at each level */	private static final int FANOUT_SHIFT = 2;
+	private static final int FANOUT_MASK = (1 << FANOUT_SHIFT) - 1;
+	/** fewest level-0 buckets a query must span */				private static final int MIN_BUCKETS = 8;
+
+	/** time of the first sample in each level-0 bucket */		private double [] starts = new double[16];
+	/** minimum of each bucket, per level */					private double [][] mins = new double[0][];
+	/** maximum of each bucket, per level */					private double [][] maxs = new double[0][];
+	/** number of buckets, per level */							private int [] counts = new int[0];
+	private long numSamples;
+	private double lastTime;
+
+	/**
+	 * Method to append a sample.
+	 * @return false if the sample is not later than the previous one (the pyramid must then be discarded).
+	 */
+	boolean add(double time, double min, double max)
+	{
+		if (numSamples > 0 && time <= lastTime) return false;
+		lastTime = time;
+		long bucket = numSamples >> LEAF_SHIFT;
+		if (bucket >= Integer.MAX_VALUE) return false;
+		if ((numSamples & ((1 << LEAF_SHIFT) - 1)) == 0)
+		{
+			int b = (int)bucket;
+			if (b >= starts.length)
+			{
+				double [] newStarts = new double[starts.length * 2];
+				System.arraycopy(starts, 0, newStarts, 0, starts.length);
+				starts = newStarts;
+			}
+			starts[b] = time;
+		}
+		numSamples++;
+
+		// merge the sample into the last bucket of each level, starting new buckets and levels as needed
+		int index = (int)bucket;
+		for(int level = 0; ; level++)
+		{
+			if (level == counts.length)
+			{
+				if (level > 0 && counts[level-1] < 2) break;
+				addLevel();
+			}
+			if (index >= counts[level])
+			{
+				ensureCapacity(level, index + 1);
+				mins[level][index] = min;
+				maxs[level][index] = max;
+				counts[level] = index + 1;
+			} else
+			{
+				if (min < mins[level][index]) mins[level][index] = min;
+				if (max > maxs[level][index]) maxs[level][index] = max;
+			}
+			index >>= FANOUT_SHIFT;
+		}
+		return true;
+	}
+
+	/**
+	 * Method to compute the range of the level-0 buckets that lie wholly between two times.
+	 * @param t0 the start time.
+	 * @param t1 the end time.
+	 * @param minMax set to the minimum and maximum of the whole buckets.
+	 * @param bounds set to the time of the first sample in the first whole bucket, and to the time of
+	 * the first sample after the last whole bucket (infinity if there is none).
+	 * The samples between t0 and bounds[0], and between bounds[1] and t1, are not included.
+	 * @return false if the interval is too short to be answered from the pyramid.
+	 */
+	boolean getRange(double t0, double t1, double [] minMax, double [] bounds)
+	{
+		int numBuckets = counts.length == 0 ? 0 : counts[0];
+
+		// the first bucket that starts at or after t0, and the first bucket that may end after t1
+		int lo = findBucket(t0);
+		if (lo < 0 || starts[lo] < t0) lo++;
+		int hi = t1 >= lastTime ? numBuckets : findBucket(t1);
+		if (hi - lo < MIN_BUCKETS) return false;
+		bounds[0] = starts[lo];
+		bounds[1] = hi < numBuckets ? starts[hi] : Double.POSITIVE_INFINITY;
+
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		int level = 0;
+		while (lo < hi)
+		{
+			if (level+1 < counts.length && hi - lo > FANOUT_MASK)
+			{
+				// consume unaligned buckets at both ends, then climb
+				for( ; (lo & FANOUT_MASK) != 0 && lo < hi; lo++)
+				{
+					if (mins[level][lo] < min) min = mins[level][lo];
+					if (maxs[level][lo] > max) max = maxs[level][lo];
+				}
+				for( ; (hi & FANOUT_MASK) != 0 && lo < hi; )
+				{
+					hi--;
+					if (mins[level][hi] < min) min = mins[level][hi];
+					if (maxs[level][hi] > max) max = maxs[level][hi];
+				}
+				lo >>= FANOUT_SHIFT;
+				hi >>= FANOUT_SHIFT;
+				level++;
+				continue;
+			}
+			for( ; lo < hi; lo++)
+			{
+				if (mins[level][lo] < min) min = mins[level][lo];
+				if (maxs[level][lo] > max) max = maxs[level][lo];
+			}
+		}
+		minMax[0] = min;
+		minMax[1] = max;
+		return true;
+	}
+
+	/** Returns the index of the last level-0 bucket that starts at or before a time (-1 if none). */
+	private int findBucket(double time)
+	{
+		int lo = 0, hi = counts.length == 0 ? 0 : counts[0];
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (starts[mid] <= time) lo = mid + 1; else hi = mid;
+		}
+		return lo - 1;
+	}
+
+	private void addLevel()
+	{
+		int level = counts.length;
+		double [][] newMins = new double[level+1][];
+		double [][] newMaxs = new double[level+1][];
+		int [] newCounts = new int[level+1];
+		System.arraycopy(mins, 0, newMins, 0, level);
+		System.arraycopy(maxs, 0, newMaxs, 0, level);
+		System.arraycopy(counts, 0, newCounts, 0, level);
+		newMins[level] = new double[4];
+		newMaxs[level] = new double[4];
+		mins = newMins;
+		maxs = newMaxs;
+		counts = newCounts;
+		if (level == 0) return;
+
+		// the new level starts with one bucket that covers everything below it
+		int below = counts[level-1];
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for(int i=0; i<below; i++)
+		{
+			min = Math.min(min, mins[level-1][i]);
+			max = Math.max(max, maxs[level-1][i]);
+		}
+		mins[level][0] = min;
+		maxs[level][0] = max;
+		counts[level] = 1;
+	}
+
+	private void ensureCapacity(int level, int size)
+	{
+		if (size <= mins[level].length) return;
+		int newSize = Math.max(size, mins[level].length * 2);
+		double [] newMins = new double[newSize];
+		double [] newMaxs = new double[newSize];
+		System.arraycopy(mins[level], 0, newMins, 0, counts[level]);
+		System.arraycopy(maxs[level], 0, newMaxs, 0, counts[level]);
+		mins[level] = newMins;
+		maxs[level] = newMaxs;
+	}
+}
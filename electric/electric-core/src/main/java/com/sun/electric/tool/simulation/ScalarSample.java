@@ -131,7 +131,7 @@ public class ScalarSample implements Sample, Comparable<Object>
         }
     };
 
-    public static void plotSig(MutableSignal<?> sig, Panel panel, Graphics g, WaveSignal ws, Color light,
+    public static void plotSig(Signal<?> sig, Panel panel, Graphics g, WaveSignal ws, Color light,
         List<PolyBase> forPs, Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
     {
 		int linePointMode = panel.getWaveWindow().getLinePointMode();
@@ -142,11 +142,11 @@ public class ScalarSample implements Sample, Comparable<Object>
 		int s = 0;
 		Signal<?> wave = as;
 		if (wave.isEmpty()) return;
-		Signal.View<RangeSample<ScalarSample>> waveform = ((Signal<ScalarSample>)wave).getRasterView(
+		Signal.View<RangeSample<ScalarSample>> waveform = panel.getRasterView((Signal<ScalarSample>)wave,
 			panel.convertXScreenToData(0), panel.convertXScreenToData(sz.width), sz.width);
 		Signal.View<RangeSample<ScalarSample>> xWaveform = null;
 	    if (xAxisSignal != null)
-	    	xWaveform = ((Signal<ScalarSample>)xAxisSignal).getRasterView(
+	    	xWaveform = panel.getRasterView((Signal<ScalarSample>)xAxisSignal,
 				panel.convertXScreenToData(0), panel.convertXScreenToData(sz.width), sz.width);
 		int lastX = 0, lastLY = 0, lastHY = 0;
 		boolean first = true;
@@ -206,6 +206,11 @@ public class ScalarSample implements Sample, Comparable<Object>
     }
 
     public static MutableSignal<ScalarSample> createSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext)
+    {
+        return createBTreeSignal(sc, sd, signalName, signalContext);
+    }
+
+    private static BTreeSignal<ScalarSample> createBTreeSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext)
     {
     	/**
     	 *  Adam says: This class is an _anonymous_ inner class for a reason.  Although XXXSample.createSignal() returns a
@@ -215,7 +220,7 @@ public class ScalarSample implements Sample, Comparable<Object>
     	 *  to do this.  So, by making the class anonymous, we intentionally deprive other code of the ability to do these
     	 *  instanceof checks.
     	 */
-        MutableSignal<ScalarSample> ret =
+        BTreeSignal<ScalarSample> ret =
             new BTreeSignal<ScalarSample>(sc, sd, signalName, signalContext, false, BTreeSignal.getTree(unboxer, latticeOp))
         {
             public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
@@ -227,11 +232,41 @@ public class ScalarSample implements Sample, Comparable<Object>
         return ret;
     }
 
+    /**
+     * Method to create a read-only signal from one column of a MappedWaveformStore.
+     * @param column the index of the signal in the store.
+     */
+    public static Signal<ScalarSample> createSignal(SignalCollection sc, Stimuli sd, String signalName,
+    	String signalContext, MappedWaveformStore store, int column)
+    {
+        return new MappedSignal(sc, sd, signalName, signalContext, store, column)
+        {
+            public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
+            	Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
+            {
+            	plotSig(this, panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
+            }
+        };
+    }
+
 	public static MutableSignal<ScalarSample> createSignal(SignalCollection sc, Stimuli sd, String signalName,
 		String signalContext, double[] time, double[] values)
     {
         if (values.length == 0) throw new RuntimeException("attempt to create an empty signal");
-        MutableSignal<ScalarSample> as = ScalarSample.createSignal(sc, sd, signalName, signalContext);
+        BTreeSignal<ScalarSample> as = createBTreeSignal(sc, sd, signalName, signalContext);
+
+        // the usual case of increasing time is bulk-loaded in one pass (the tree keeps times as floats)
+        boolean increasing = true;
+        for(int i=1; i<time.length && increasing; i++)
+            if ((float)time[i] <= (float)time[i-1]) increasing = false;
+        if (increasing)
+        {
+            BTreeSignal<ScalarSample>.Loader loader = as.getLoader();
+            for(int i=0; i<time.length; i++)
+                loader.addSample(time[i], new ScalarSample(values[i]));
+            loader.finish();
+            return as;
+        }
         for(int i=0; i<time.length; i++)
             if (as.getSample(time[i]) == null)
                 as.addSample(time[i], new ScalarSample(values[i]));
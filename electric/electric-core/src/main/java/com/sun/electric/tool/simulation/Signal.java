@@ -147,6 +147,13 @@ public abstract class Signal<SS extends Sample>
 	public abstract double getMinValue();
 	public abstract double getMaxValue();
 
+    /**
+     * Method to tell how often the samples of this signal have changed.
+     * Anything computed from a view of the signal stays valid as long as this value does not change.
+     * @return a number that changes whenever samples are added to or replaced in this signal.
+     */
+    public int getModificationCount() { return 0; }
+
     /**
      * There are a lot of methods which will return null only if the
      * signal has no samples in it whatsoever; this method can be used
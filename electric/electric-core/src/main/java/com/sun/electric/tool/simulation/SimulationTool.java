@@ -1030,6 +1030,46 @@ public class SimulationTool extends Tool
 	 */
 	public static boolean isFactoryWaveformDisplayMultiState() { return cacheWaveformDisplayMultiState.getBooleanFactoryValue(); }
 
+	private static Pref cacheWaveformMappingThreshold = Pref.makeIntPref("WaveformMappingThreshold", tool.prefs, 256);
+	/**
+	 * Method to tell the size (in megabytes) of simulation result files that are read into memory-mapped waveforms.
+	 * Analog waveforms of larger files are converted into a columnar file on disk and read from there
+	 * as they are displayed, instead of being held in memory.  Zero disables the conversion.
+	 * The default is 256.
+	 * @return the size of result files that are read into memory-mapped waveforms.
+	 */
+	public static int getWaveformMappingThreshold() { return cacheWaveformMappingThreshold.getInt(); }
+	/**
+	 * Method to set the size (in megabytes) of simulation result files that are read into memory-mapped waveforms.
+	 * @param mb the size of result files that are read into memory-mapped waveforms (0 to disable).
+	 */
+	public static void setWaveformMappingThreshold(int mb) { cacheWaveformMappingThreshold.setInt(mb); }
+	/**
+	 * Method to tell the size (in megabytes) of simulation result files that are read into memory-mapped waveforms, by default.
+	 * @return the size of result files that are read into memory-mapped waveforms, by default.
+	 */
+	public static int getFactoryWaveformMappingThreshold() { return cacheWaveformMappingThreshold.getIntFactoryValue(); }
+
+	private static Pref cacheWaveformPageCacheSize = Pref.makeIntPref("WaveformPageCacheSize", tool.prefs, 256);
+	/**
+	 * Method to tell the amount of memory (in megabytes) used to cache pages of in-memory waveforms.
+	 * Waveform pages beyond the first 50 megabytes are kept off the Java heap, and the most recently used ones are cached on the heap.
+	 * The default is 256.
+	 * @return the amount of memory used to cache pages of in-memory waveforms.
+	 */
+	public static int getWaveformPageCacheSize() { return cacheWaveformPageCacheSize.getInt(); }
+	/**
+	 * Method to set the amount of memory (in megabytes) used to cache pages of in-memory waveforms.
+	 * The new size applies the next time Electric starts.
+	 * @param mb the amount of memory used to cache pages of in-memory waveforms.
+	 */
+	public static void setWaveformPageCacheSize(int mb) { cacheWaveformPageCacheSize.setInt(mb); }
+	/**
+	 * Method to tell the amount of memory (in megabytes) used to cache pages of in-memory waveforms, by default.
+	 * @return the amount of memory used to cache pages of in-memory waveforms, by default.
+	 */
+	public static int getFactoryWaveformPageCacheSize() { return cacheWaveformPageCacheSize.getIntFactoryValue(); }
+
 	/****************************** IRSIM OPTIONS ******************************/
 
 	private static Pref cacheIRSIMShowsCommands = Pref.makeBooleanPref("IRSIMShowsCommands", tool.prefs, false);
@@ -1712,6 +1752,16 @@ public class SimulationTool extends Tool
     public static void setSpiceIgnoreModelFiles(boolean b) { cachedSpiceIgnoreModelFiles.setBoolean(b); }
     public static boolean isFactorySpiceIgnoreModelFiles() { return cachedSpiceIgnoreModelFiles.getBooleanFactoryValue(); }
 
+    private static Pref cacheSpiceNumThreads = Pref.makeIntPref("SpiceNumThreads", tool.prefs, 1);
+    /**
+     * Method to tell how many threads write the subcircuits of a Spice or CDL deck.
+     * The default is 1, which writes serially; 0 means one per available processor.
+     * @return the number of threads that write the subcircuits of a Spice or CDL deck.
+     */
+    public static int getSpiceNumThreads() { return cacheSpiceNumThreads.getInt(); }
+    public static void setSpiceNumThreads(int n) { cacheSpiceNumThreads.setInt(n); }
+    public static int getFactorySpiceNumThreads() { return cacheSpiceNumThreads.getIntFactoryValue(); }
+
     private static Pref cacheSpiceExtractedNetDelimiter = Pref.makeStringPref("SpiceExtractedNetDelimiter", tool.prefs, ":");
     public static String getSpiceExtractedNetDelimiter() { return cacheSpiceExtractedNetDelimiter.getString(); }
     public static void setSpiceExtractedNetDelimiter(String s) { cacheSpiceExtractedNetDelimiter.setString(s); }
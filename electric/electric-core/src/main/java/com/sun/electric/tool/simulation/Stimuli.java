@@ -32,8 +32,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *  This class represents a set of simulation *inputs* -- that is,
@@ -63,6 +65,7 @@ public class Stimuli
 	/** the list of SignalCollections in this Stimuli */		private List<SignalCollection> scList;
 	/** control points when signals are selected */				private Map<Signal<?>,Double[]> controlPointMap;
     /** Cached version of net delimiter**/                      private String delim;
+	/** the mapped files holding signals of this Stimuli */		private Set<MappedWaveformStore> mappedStores;
 
     /**
 	 * Constructor to build a new Simulation Data object.
@@ -73,6 +76,7 @@ public class Stimuli
 		scMap = new HashMap<String,SignalCollection>();
 		scList = new ArrayList<SignalCollection>();
 		controlPointMap = new HashMap<Signal<?>,Double[]>();
+		mappedStores = new LinkedHashSet<MappedWaveformStore>();
 		delim = " ";
 	}
 
@@ -83,6 +87,9 @@ public class Stimuli
 	{
 		controlPointMap.clear();
 		scMap.clear();
+		for (MappedWaveformStore store : mappedStores)
+			store.close();
+		mappedStores.clear();
 	}
 
 	public void addSignalCollection(SignalCollection an)
@@ -91,6 +98,16 @@ public class Stimuli
 		scList.add(an);
 	}
 
+	/**
+	 * Method to register a MappedWaveformStore which holds signals of this Stimuli.
+	 * Its file is deleted when this Stimuli is finished.
+	 * @param store the MappedWaveformStore.
+	 */
+	void addMappedWaveformStore(MappedWaveformStore store)
+	{
+		mappedStores.add(store);
+	}
+
 	/**
 	 * Method to find a SignalCollection with a given name.
 	 * @param type the stimulus type being queried.
@@ -175,6 +175,8 @@ public class SweptSample<S extends Sample> implements Sample
         {
             public boolean isEmpty() { for(Signal<SS> sig : subsignals) if (!sig.isEmpty()) return false; return true; }
 
+            public int getModificationCount() { int count = 0; for(Signal<SS> sig : subsignals) count += sig.getModificationCount(); return count; }
+
             public Signal.View<RangeSample<SweptSample<SS>>> getRasterView(final double t0, final double t1, final int numPixels)
             {
                 final Signal.View<RangeSample<SS>>[] subviews = new Signal.View[subsignals.length];
@@ -340,7 +342,7 @@ public class SweptSample<S extends Sample> implements Sample
             	for(int i=0; i<subsignals.length; i++)
             	{
             		if (!panel.getWaveWindow().isSweepSignalIncluded(scName, i)) continue;
-            		ScalarSample.plotSig((MutableSignal<ScalarSample>)subsignals[i], panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
+            		ScalarSample.plotSig(subsignals[i], panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
             	}
             }
         };
@@ -2271,6 +2271,24 @@ public class User extends Listener
 	 */
 	public static double getFactoryAlphaBlendingOvercolorLimit() { return cacheAlphaBlendingLimit.getDoubleFactoryValue(); }
 
+	private static Pref cacheCompositeThreads = Pref.makeIntPref("CompositeThreads", tool.prefs, 0);
+	/**
+	 * Method to tell the number of threads which composite the layers of EditWindow in LayerDrawing.
+	 * The default is 0, meaning that use one thread per processor.
+	 * @return the number of threads which composite the layers of EditWindow.
+	 */
+	public static int getCompositeThreads() { return cacheCompositeThreads.getInt(); }
+	/**
+	 * Method to set the number of threads which composite the layers of EditWindow in LayerDrawing.
+	 * @param n the number of threads which composite the layers of EditWindow (0 for one thread per processor).
+	 */
+	public static void setCompositeThreads(int n) { cacheCompositeThreads.setInt(n); }
+	/**
+	 * Method to tell the number of threads which composite the layers of EditWindow in LayerDrawing, by default.
+	 * @return the number of threads which composite the layers of EditWindow, by default.
+	 */
+	public static int getFactoryCompositeThreads() { return cacheCompositeThreads.getIntFactoryValue(); }
+
 	private static Pref cacheShowFileSelectionForNetlists = Pref.makeBooleanPref("ShowFileSelectionForNetlists", tool.prefs, true);
 	/**
 	 * Method to tell whether to display a file selection dialog before writing netlists.
@@ -108,6 +108,8 @@ public class DRCTab extends PreferencePanel
 
         // Setting the multi-threaded option
         drcMultiDRC.setSelected(dp.isMultiThreaded);
+        drcMultiDRCTiles.setSelected(dp.isTiled);
+        drcMultiDRCTiles.setEnabled(dp.isMultiThreaded);
     }
 
 	/**
@@ -148,6 +150,7 @@ public class DRCTab extends PreferencePanel
         // drcMultiDRC.setSelected(DRC.isMultiThreaded());
         // Setting MTDRC option
         dp.isMultiThreaded = drcMultiDRC.isSelected();
+        dp.isTiled = drcMultiDRCTiles.isSelected();
         putPrefs(dp);
         ClickZoomWireListener.theOne.readPrefs();
     }
@@ -166,6 +169,7 @@ public class DRCTab extends PreferencePanel
         dp.errorType = factoryDp.errorType;
         dp.errorLoggingType = factoryDp.errorLoggingType;
         dp.isMultiThreaded = factoryDp.isMultiThreaded;
+        dp.isTiled = factoryDp.isTiled;
 
 		dp.storeDatesInMemory = factoryDp.storeDatesInMemory;
         dp.ignoreCenterCuts = factoryDp.ignoreCenterCuts;
@@ -199,6 +203,7 @@ public class DRCTab extends PreferencePanel
         loggingLabel = new javax.swing.JLabel();
         loggingCombo = new javax.swing.JComboBox();
         drcMultiDRC = new javax.swing.JCheckBox();
+        drcMultiDRCTiles = new javax.swing.JCheckBox();
         BothPanel = new javax.swing.JPanel();
         drcIgnoreCenterCuts = new javax.swing.JCheckBox();
         drcIgnoreExtensionRules = new javax.swing.JCheckBox();
@@ -323,6 +328,15 @@ public class DRCTab extends PreferencePanel
         gridBagConstraints.insets = new java.awt.Insets(1, 4, 4, 4);
         HierPanel.add(drcMultiDRC, gridBagConstraints);
 
+        drcMultiDRCTiles.setText("Split cells into tiles instead of layers");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 6;
+        gridBagConstraints.gridwidth = 2;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(1, 24, 4, 4);
+        HierPanel.add(drcMultiDRCTiles, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 1;
@@ -434,7 +448,7 @@ public class DRCTab extends PreferencePanel
 	}//GEN-LAST:event_closeDialog
 
         private void drcMultiDRCActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_drcMultiDRCActionPerformed
-            // TODO add your handling code here:
+            drcMultiDRCTiles.setEnabled(drcMultiDRC.isSelected());
 }//GEN-LAST:event_drcMultiDRCActionPerformed
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -456,6 +470,7 @@ public class DRCTab extends PreferencePanel
     private javax.swing.JCheckBox drcInteractive;
     private javax.swing.JCheckBox drcInteractiveDrag;
     private javax.swing.JCheckBox drcMultiDRC;
+    private javax.swing.JCheckBox drcMultiDRCTiles;
     private javax.swing.ButtonGroup errorTypeGroup;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JComboBox loggingCombo;
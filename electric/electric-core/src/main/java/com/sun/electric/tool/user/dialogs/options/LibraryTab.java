@@ -24,6 +24,8 @@
 package com.sun.electric.tool.user.dialogs.options;
 
 import com.sun.electric.tool.io.IOTool;
+import com.sun.electric.tool.user.dialogs.EDialog;
+import com.sun.electric.util.TextUtils;
 
 import javax.swing.JPanel;
 
@@ -37,6 +39,9 @@ public class LibraryTab extends PreferencePanel
 	{
 		super(parent, modal);
 		initComponents();
+
+		// make all text fields select-all when entered
+	    EDialog.makeTextFieldSelectAllOnTab(readThreads);
 	}
 
 	/** return the panel to use for user preferences. */
@@ -57,6 +62,7 @@ public class LibraryTab extends PreferencePanel
 			case 1: backupOneLevel.setSelected(true);  break;
 			case 2: backupAll.setSelected(true);       break;
 		}
+		readThreads.setText(Integer.toString(IOTool.getLibraryReadThreads()));
 	}
 
 	/**
@@ -71,6 +77,10 @@ public class LibraryTab extends PreferencePanel
 				if (backupAll.isSelected()) currentBackupState = 2;
 		if (currentBackupState != IOTool.getBackupRedundancy())
 			IOTool.setBackupRedundancy(currentBackupState);
+
+		int currentReadThreads = TextUtils.atoi(readThreads.getText());
+		if (currentReadThreads != IOTool.getLibraryReadThreads())
+			IOTool.setLibraryReadThreads(currentReadThreads);
 	}
 
 	/**
@@ -80,6 +90,8 @@ public class LibraryTab extends PreferencePanel
 	{
 		if (IOTool.getFactoryBackupRedundancy() != IOTool.getBackupRedundancy())
 			IOTool.setBackupRedundancy(IOTool.getFactoryBackupRedundancy());
+		if (IOTool.getFactoryLibraryReadThreads() != IOTool.getLibraryReadThreads())
+			IOTool.setLibraryReadThreads(IOTool.getFactoryLibraryReadThreads());
 	}
 
 	/** This method is called from within the constructor to
@@ -96,6 +108,8 @@ public class LibraryTab extends PreferencePanel
         noBackup = new javax.swing.JRadioButton();
         backupOneLevel = new javax.swing.JRadioButton();
         backupAll = new javax.swing.JRadioButton();
+        readThreadsLabel = new javax.swing.JLabel();
+        readThreads = new javax.swing.JTextField();
 
         getContentPane().setLayout(new java.awt.GridBagLayout());
 
@@ -138,6 +152,22 @@ public class LibraryTab extends PreferencePanel
         gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
         library.add(backupAll, gridBagConstraints);
 
+        readThreadsLabel.setText("Threads for reading libraries (0 for all processors):");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        library.add(readThreadsLabel, gridBagConstraints);
+
+        readThreads.setColumns(4);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        library.add(readThreads, gridBagConstraints);
+
         getContentPane().add(library, new java.awt.GridBagConstraints());
 
         pack();
@@ -156,6 +186,8 @@ public class LibraryTab extends PreferencePanel
     private javax.swing.JRadioButton backupOneLevel;
     private javax.swing.JPanel library;
     private javax.swing.JRadioButton noBackup;
+    private javax.swing.JTextField readThreads;
+    private javax.swing.JLabel readThreadsLabel;
     // End of variables declaration//GEN-END:variables
 
 }
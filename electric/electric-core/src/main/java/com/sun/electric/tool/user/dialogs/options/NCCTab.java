@@ -49,6 +49,7 @@ public class NCCTab extends PreferencePanel
 	    EDialog.makeTextFieldSelectAllOnTab(maxMatched);
 	    EDialog.makeTextFieldSelectAllOnTab(maxMismatched);
 	    EDialog.makeTextFieldSelectAllOnTab(maxMembers);
+	    EDialog.makeTextFieldSelectAllOnTab(numThreads);
 	}
 
 	/** return the panel to use for user preferences. */
@@ -84,6 +85,7 @@ public class NCCTab extends PreferencePanel
 		enableBodyChecking.setSelected(NccPreferences.getCheckBody());
 		haltAfterFindingFirstMismatchedCell.setSelected(NccPreferences.getHaltAfterFirstMismatch());
         skipPassed.setSelected(NccPreferences.getSkipPassed());
+        numThreads.setText(Integer.toString(NccPreferences.getNumThreads()));
         maxMatched.setText(Integer.toString(NccPreferences.getMaxMatchedClasses()));
         maxMismatched.setText(Integer.toString(NccPreferences.getMaxMismatchedClasses()));
         maxMembers.setText(Integer.toString(NccPreferences.getMaxClassMembers()));
@@ -122,7 +124,11 @@ public class NCCTab extends PreferencePanel
         if (currBoolean!=NccPreferences.getSkipPassed()) {
             NccPreferences.setSkipPassed(currBoolean);
         }
-        int currInt = Integer.parseInt(maxMatched.getText());
+        int currInt = Integer.parseInt(numThreads.getText());
+        if (currInt!=NccPreferences.getNumThreads()) {
+            NccPreferences.setNumThreads(currInt);
+        }
+        currInt = Integer.parseInt(maxMatched.getText());
         if (currInt!=NccPreferences.getMaxMatchedClasses()) {
             NccPreferences.setMaxMatchedClasses(currInt);
         }
@@ -164,6 +170,8 @@ public class NCCTab extends PreferencePanel
 			NccPreferences.setHaltAfterFirstMismatch(NccPreferences.getFactoryHaltAfterFirstMismatch());
 		if (NccPreferences.getFactorySkipPassed() != NccPreferences.getSkipPassed())
 			NccPreferences.setSkipPassed(NccPreferences.getFactorySkipPassed());
+		if (NccPreferences.getFactoryNumThreads() != NccPreferences.getNumThreads())
+			NccPreferences.setNumThreads(NccPreferences.getFactoryNumThreads());
 
 		if (NccPreferences.getFactoryHowMuchStatus() != NccPreferences.getHowMuchStatus())
 			NccPreferences.setHowMuchStatus(NccPreferences.getFactoryHowMuchStatus());
@@ -202,6 +210,8 @@ public class NCCTab extends PreferencePanel
         checkingAllCells = new javax.swing.JPanel();
         haltAfterFindingFirstMismatchedCell = new javax.swing.JCheckBox();
         skipPassed = new javax.swing.JCheckBox();
+        jLabel5 = new javax.swing.JLabel();
+        numThreads = new javax.swing.JTextField();
         progressReport = new javax.swing.JPanel();
         jLabel4 = new javax.swing.JLabel();
         howMuchStatus = new javax.swing.JTextField();
@@ -347,6 +357,19 @@ public class NCCTab extends PreferencePanel
         gridBagConstraints.gridy = 1;
         checkingAllCells.add(skipPassed, gridBagConstraints);
 
+        jLabel5.setText("How many threads to use:");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 2;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        checkingAllCells.add(jLabel5, gridBagConstraints);
+
+        numThreads.setColumns(6);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 2;
+        checkingAllCells.add(numThreads, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 3;
@@ -466,6 +489,7 @@ public class NCCTab extends PreferencePanel
     private javax.swing.JLabel jLabel2;
     private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
+    private javax.swing.JLabel jLabel5;
     private javax.swing.JLabel jLabel75;
     private javax.swing.JLabel jLabel76;
     private javax.swing.JRadioButton listAnn;
@@ -473,6 +497,7 @@ public class NCCTab extends PreferencePanel
     private javax.swing.JTextField maxMembers;
     private javax.swing.JTextField maxMismatched;
     private javax.swing.JPanel ncc;
+    private javax.swing.JTextField numThreads;
     private javax.swing.JPanel operation;
     private javax.swing.ButtonGroup operationGroup;
     private javax.swing.JPanel progressReport;
@@ -85,6 +85,7 @@ public class NetworkTab extends PreferencePanel
 		extractCellPattern.setText(Extract.getCellExpandPattern());
 		extractFlattenPCells.setSelected(Extract.isFlattenPcells());
 		extractPureLayer.setSelected(Extract.isUsePureLayerNodes());
+		extractScanlineMerge.setSelected(Extract.isScanlineMerge());
 
 		// project preferences
 		netIgnoreResistors.setSelected(getBoolean(ignoreResistorsSetting));
@@ -124,6 +125,9 @@ public class NetworkTab extends PreferencePanel
 		nowBoolean = extractPureLayer.isSelected();
 		if (Extract.isUsePureLayerNodes() != nowBoolean) Extract.setUsePureLayerNodes(nowBoolean);
 
+		nowBoolean = extractScanlineMerge.isSelected();
+		if (Extract.isScanlineMerge() != nowBoolean) Extract.setScanlineMerge(nowBoolean);
+
 		// project preferences
         setBoolean(ignoreResistorsSetting, netIgnoreResistors.isSelected());
         setBoolean(includeDateAndVersionInOutputSetting, generalIncludeDateAndVersion.isSelected());
@@ -154,6 +158,8 @@ public class NetworkTab extends PreferencePanel
 			Extract.setFlattenPcells(Extract.isFactoryFlattenPcells());
 		if (Extract.isFactoryUsePureLayerNodes() != Extract.isUsePureLayerNodes())
 			Extract.setUsePureLayerNodes(Extract.isFactoryUsePureLayerNodes());
+		if (Extract.isFactoryScanlineMerge() != Extract.isScanlineMerge())
+			Extract.setScanlineMerge(Extract.isFactoryScanlineMerge());
 	}
 
 	/** This method is called from within the constructor to
@@ -185,6 +191,7 @@ public class NetworkTab extends PreferencePanel
         jLabel2 = new javax.swing.JLabel();
         extractFlattenPCells = new javax.swing.JCheckBox();
         extractPureLayer = new javax.swing.JCheckBox();
+        extractScanlineMerge = new javax.swing.JCheckBox();
         projectSettings = new javax.swing.JPanel();
         generalIncludeDateAndVersion = new javax.swing.JCheckBox();
         netIgnoreResistors = new javax.swing.JCheckBox();
@@ -347,6 +354,15 @@ public class NetworkTab extends PreferencePanel
         gridBagConstraints.insets = new java.awt.Insets(2, 4, 2, 4);
         nodeExtractionPreferences.add(extractPureLayer, gridBagConstraints);
 
+        extractScanlineMerge.setText("Merge Manhattan geometry by scanline (faster)");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 9;
+        gridBagConstraints.gridwidth = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(2, 4, 2, 4);
+        nodeExtractionPreferences.add(extractScanlineMerge, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 2;
@@ -408,6 +424,7 @@ public class NetworkTab extends PreferencePanel
     private javax.swing.JRadioButton extractIgnoreWellSelect;
     private javax.swing.JRadioButton extractNeedProperActive;
     private javax.swing.JCheckBox extractPureLayer;
+    private javax.swing.JCheckBox extractScanlineMerge;
     private javax.swing.JTextField extractSmallestPolygonSize;
     private javax.swing.JRadioButton extractUnifyNandP;
     private javax.swing.JCheckBox generalIncludeDateAndVersion;
@@ -26,7 +26,9 @@ package com.sun.electric.tool.user.dialogs.options;
 import com.sun.electric.tool.io.FileType;
 import com.sun.electric.tool.simulation.SimulationTool;
 import com.sun.electric.tool.simulation.irsim.IRSIM;
+import com.sun.electric.tool.user.dialogs.EDialog;
 import com.sun.electric.tool.user.dialogs.OpenFile;
+import com.sun.electric.util.TextUtils;
 
 import java.awt.Frame;
 
@@ -42,6 +44,9 @@ public class SimulatorsTab extends PreferencePanel
 	{
 		super(parent, modal);
 		initComponents();
+
+		// make all text fields select-all when entered
+	    EDialog.makeTextFieldSelectAllOnTab(pageCacheSize);
 	}
 
 	/** return the panel to use for user preferences. */
@@ -68,6 +73,7 @@ public class SimulatorsTab extends PreferencePanel
 		resimulateEachChange.setSelected(SimulationTool.isBuiltInResimulateEach());
 		autoAdvanceTime.setSelected(SimulationTool.isBuiltInAutoAdvance());
 		multistateDisplay.setSelected(SimulationTool.isWaveformDisplayMultiState());
+		pageCacheSize.setText(Integer.toString(SimulationTool.getWaveformPageCacheSize()));
 
 		// for IRSIM
 		showCommands.setSelected(SimulationTool.isIRSIMShowsCommands());
@@ -117,6 +123,10 @@ public class SimulatorsTab extends PreferencePanel
 		currBoolean = multistateDisplay.isSelected();
 		if (currBoolean != SimulationTool.isWaveformDisplayMultiState())
 			SimulationTool.setWaveformDisplayMultiState(currBoolean);
+
+		int currSize = TextUtils.atoi(pageCacheSize.getText());
+		if (currSize != SimulationTool.getWaveformPageCacheSize())
+			SimulationTool.setWaveformPageCacheSize(currSize);
 		
 		currBoolean = showCommands.isSelected();
 		if (currBoolean != SimulationTool.isIRSIMShowsCommands())
@@ -156,6 +166,8 @@ public class SimulatorsTab extends PreferencePanel
 			SimulationTool.setBuiltInAutoAdvance(SimulationTool.isFactoryBuiltInAutoAdvance());
 		if (SimulationTool.isFactoryWaveformDisplayMultiState() != SimulationTool.isWaveformDisplayMultiState())
 			SimulationTool.setWaveformDisplayMultiState(SimulationTool.isFactoryWaveformDisplayMultiState());
+		if (SimulationTool.getFactoryWaveformPageCacheSize() != SimulationTool.getWaveformPageCacheSize())
+			SimulationTool.setWaveformPageCacheSize(SimulationTool.getFactoryWaveformPageCacheSize());
 
 		// for IRSIM
 		if (!SimulationTool.getFactoryIRSIMParameterFile().equals(SimulationTool.getIRSIMParameterFile()))
@@ -184,6 +196,8 @@ public class SimulatorsTab extends PreferencePanel
         autoAdvanceTime = new javax.swing.JCheckBox();
         resimulateEachChange = new javax.swing.JCheckBox();
         multistateDisplay = new javax.swing.JCheckBox();
+        pageCacheSizeLabel = new javax.swing.JLabel();
+        pageCacheSize = new javax.swing.JTextField();
         jPanel2 = new javax.swing.JPanel();
         setParameterFile = new javax.swing.JButton();
         parameterFile = new javax.swing.JTextField();
@@ -241,6 +255,22 @@ public class SimulatorsTab extends PreferencePanel
         gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
         jPanel1.add(multistateDisplay, gridBagConstraints);
 
+        pageCacheSizeLabel.setText("Waveform page cache (MB, applies at restart):");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        jPanel1.add(pageCacheSizeLabel, gridBagConstraints);
+
+        pageCacheSize.setColumns(6);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        jPanel1.add(pageCacheSize, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 0;
@@ -417,6 +447,8 @@ public class SimulatorsTab extends PreferencePanel
     private javax.swing.JPanel jPanel3;
     private javax.swing.JPanel jPanel4;
     private javax.swing.JCheckBox multistateDisplay;
+    private javax.swing.JTextField pageCacheSize;
+    private javax.swing.JLabel pageCacheSizeLabel;
     private javax.swing.JTextField parameterFile;
     private javax.swing.JCheckBox resimulateEachChange;
     private javax.swing.JButton setParameterFile;
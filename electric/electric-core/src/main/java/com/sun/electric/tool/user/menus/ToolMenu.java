@@ -96,6 +96,7 @@ import com.sun.electric.tool.drc.AssuraDrcErrors;
 import com.sun.electric.tool.drc.CalibreDrcErrors;
 import com.sun.electric.tool.drc.DRC;
 import com.sun.electric.tool.drc.MTDRCLayoutTool;
+import com.sun.electric.tool.drc.MTDRCTileTool;
 import com.sun.electric.tool.erc.ERCAntenna;
 import com.sun.electric.tool.erc.ERCWellCheck;
 import com.sun.electric.tool.extract.Connectivity;
@@ -241,7 +242,10 @@ public class ToolMenu {
 						Cell cell = Job.getUserInterface().needCurrentCell();
 						// Multi-threaded code is only available for layout
 						if (dp.isMultiThreaded && cell.isLayout()) {
-							new MTDRCLayoutTool(dp, cell, true, null).startJob();
+							if (dp.isTiled)
+								new MTDRCTileTool(dp, cell, null).startJob();
+							else
+								new MTDRCLayoutTool(dp, cell, true, null).startJob();
 						} else {
 							DRC.checkDRCHierarchically(dp, cell, null, null,
 									GeometryHandler.GHMode.ALGO_SWEEP, false);
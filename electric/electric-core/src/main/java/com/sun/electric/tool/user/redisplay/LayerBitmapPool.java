@@ -0,0 +1,103 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LayerBitmapPool.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Class to recycle the layer bitmaps of LayerDrawing.
+ * Every zoom drops all cached cell expansions, and every resize drops the bitmaps of the window,
+ * so without recycling the redisplay allocates (and the garbage collector frees) a lot of memory.
+ * Bitmap sizes are rounded up to one of four sizes per power of two,
+ * so bitmaps of slightly different sizes share the same free list.
+ */
+class LayerBitmapPool {
+
+    /** maximum number of ints kept in the free lists (64 MBytes) */
+    private static final int MAX_POOLED_INTS = 1 << 24;
+    /** the smallest bitmap size */
+    private static final int MIN_SIZE = 16;
+    /** free lists of bitmaps, keyed by their length */
+    private static final HashMap<Integer, ArrayList<int[]>> freeBitmaps = new HashMap<Integer, ArrayList<int[]>>();
+    /** number of ints in the free lists */
+    private static int pooledInts;
+
+    private LayerBitmapPool() {
+    }
+
+    /**
+     * Method to obtain a cleared bitmap.
+     * @param size the number of ints requested.
+     * @return a bitmap of all zeroes with at least "size" ints.
+     */
+    static int[] alloc(int size) {
+        int len = roundUp(size);
+        synchronized (freeBitmaps) {
+            ArrayList<int[]> list = freeBitmaps.get(Integer.valueOf(len));
+            if (list != null && !list.isEmpty()) {
+                int[] bitmap = list.remove(list.size() - 1);
+                pooledInts -= len;
+                Arrays.fill(bitmap, 0);
+                return bitmap;
+            }
+        }
+        return new int[len];
+    }
+
+    /**
+     * Method to return a bitmap which is no longer used.
+     * @param bitmap the bitmap obtained with "alloc".
+     */
+    static void free(int[] bitmap) {
+        int len = bitmap.length;
+        if (len != roundUp(len)) {
+            return;
+        }
+        synchronized (freeBitmaps) {
+            if (pooledInts + len > MAX_POOLED_INTS) {
+                return;
+            }
+            ArrayList<int[]> list = freeBitmaps.get(Integer.valueOf(len));
+            if (list == null) {
+                list = new ArrayList<int[]>();
+                freeBitmaps.put(Integer.valueOf(len), list);
+            }
+            list.add(bitmap);
+            pooledInts += len;
+        }
+    }
+
+    /**
+     * Method to round the size of a bitmap up to the size class, which is 4, 5, 6 or 7 times a power of two.
+     */
+    static int roundUp(int size) {
+        if (size <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        int shift = 31 - Integer.numberOfLeadingZeros(size - 1) - 2;
+        return (((size - 1) >> shift) + 1) << shift;
+    }
+}
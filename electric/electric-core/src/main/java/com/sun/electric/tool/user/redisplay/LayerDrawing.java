@@ -23,6 +23,7 @@
  */
 package com.sun.electric.tool.user.redisplay;
 
+import com.sun.electric.database.Environment;
 import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.geometry.EGraphics;
 import com.sun.electric.database.geometry.EPoint;
@@ -48,6 +49,7 @@ import com.sun.electric.tool.user.ui.EditWindow;
 import com.sun.electric.tool.user.ui.LayerVisibility;
 import com.sun.electric.tool.user.ui.WindowFrame;
 import com.sun.electric.tool.util.concurrent.utils.ElapseTimer;
+import com.sun.electric.util.concurrent.ElectricThreadFactory;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.GenMath;
 import com.sun.electric.util.math.Orientation;
@@ -78,6 +80,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingUtilities;
 
@@ -193,6 +201,16 @@ class LayerDrawing {
     public static final int SINGLETONSTOADD = 5;
     /** Text size is limited by this. */
     public static final int MAXIMUMTEXTSIZE = 200;
+    /** Cells smaller than this (in pixels) are drawn with one box per layer. */
+    private static final int LOD_PIXELS = 3;
+    /** Shapes this close (in pixels) to the visible area are visited. */
+    private static final int GRID_MARGIN_PIXELS = 4;
+    /** How far (in pixels) shapes may be drawn outside of the bounds of their cell. */
+    private static final int BAND_MARGIN_PIXELS = 8;
+    /** Minimal number of rows in a band of the multi-threaded rendering */
+    private static final int BAND_HEIGHT = 32;
+    /** Number of bands per thread of the multi-threaded rendering */
+    private static final int BANDS_PER_THREAD = 2;
 
     private static class PolySeg {
 
@@ -253,6 +271,47 @@ class LayerDrawing {
             offscreen = null;
         }
     }
+    /**
+     * This class holds shapes which are recorded during the traversal of the hierarchy
+     * and are drawn later by each band of the multi-threaded rendering.
+     * It is either a list of shapes of a cell instance or the bits of an expanded cell cache.
+     */
+    private static class BandShapes {
+
+        /** the shapes, used when there is no grid */
+        private final List<VectorCache.VectorBase> shapes;
+        /** the grid of the shapes, searched for the shapes near the rows of a band */
+        private final VectorCache.VectorCellGrid grid;
+        /** the offset of the shapes (in database grid coordinates) */
+        private final int oX, oY;
+        /** the cell cache, and the center of the instance on the screen */
+        private final LayerDrawing offscreen;
+        private final int centerX, centerY;
+        /** the rows which may be touched by the shapes */
+        private final int lY, hY;
+
+        private BandShapes(List<VectorCache.VectorBase> shapes, VectorCache.VectorCellGrid grid, int oX, int oY, int lY, int hY) {
+            this.shapes = shapes;
+            this.grid = grid;
+            this.oX = oX;
+            this.oY = oY;
+            this.lY = lY;
+            this.hY = hY;
+            offscreen = null;
+            centerX = centerY = 0;
+        }
+
+        private BandShapes(LayerDrawing offscreen, int centerX, int centerY) {
+            this.offscreen = offscreen;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            lY = centerY - (int) offscreen.originY;
+            hY = lY + offscreen.sz.height - 1;
+            shapes = null;
+            grid = null;
+            oX = oY = 0;
+        }
+    }
     /** the size of the EditWindow */
     private final Dimension sz;
     /** the scale of the EditWindow */
@@ -340,6 +399,18 @@ class LayerDrawing {
     /** cache of port colors */
     private HashMap<PrimitivePort, Color> portColorsCache;
     private int clipLX, clipHX, clipLY, clipHY;
+    /** shapes recorded for the bands of the multi-threaded rendering, null to draw shapes at once */
+    private List<BandShapes> bandShapes;
+    /** the offscreen which owns the layer bitmaps, when this offscreen draws a band of it */
+    private LayerDrawing bandOwner;
+    /** rasters which pass only the rows of the band to the layer bitmaps of the owner */
+    private BandRaster bandLayerRaster, bandInstanceRaster;
+    /** threads of the multi-threaded rendering */
+    private static ExecutorService renderExecutor;
+    /** number of threads of the multi-threaded rendering */
+    private static int renderThreads;
+    /** Environment of the threads of the multi-threaded rendering */
+    private static Environment renderEnvironment;
     private final EditWindow0 dummyWnd = new EditWindow0()
     {
         public VarContext getVarContext() { return varContext; }
@@ -390,9 +461,22 @@ class LayerDrawing {
         private int[] smallOpaqueData;
         /** alpha blender of layer maps */
         private final AlphaBlender alphaBlender = new AlphaBlender();
+        /** number of rows in a tile of the multi-threaded composite */
+        private static final int TILE_HEIGHT = 32;
+        /** threads of the multi-threaded composite */
+        private static ExecutorService compositeExecutor;
+        /** number of threads of the multi-threaded composite */
+        private static int compositeThreads;
+        /** full-size image of the multi-threaded composite */
+        private BufferedImage tiledImg;
+        private int[] tiledOpaqueData;
+        /** alpha blenders of the threads of the multi-threaded composite */
+        private AlphaBlender[] tileBlenders = new AlphaBlender[0];
         // The following fields are produced by "render" method in Job thread.
         private volatile boolean needComposite;
         private volatile DrawingData drawingData;
+        /** the drawing data which was shown last, used only in AWT thread */
+        private DrawingData paintedData;
         /** whether any layers are highlighted/dimmed */
         boolean highlightingLayers;
         private final double patternedScaleLimit = User.getPatternedScaleLimit();
@@ -415,6 +499,12 @@ class LayerDrawing {
                 return false;
             }
 
+            // the rasters of a replaced offscreen are recycled only when they are no longer shown
+            if (paintedData != null && paintedData.offscreen != drawingData.offscreen) {
+                paintedData.offscreen.releaseRasters();
+            }
+            paintedData = drawingData;
+
             if (vImg == null || vImg.getWidth() != sz.width || vImg.getHeight() != sz.height) {
                 if (vImg != null) {
                     vImg.flush();
@@ -562,7 +652,19 @@ class LayerDrawing {
                 colors.add(new AbstractDrawing.LayerColor(gp.getColor(User.ColorPrefType.GRID)));
                 bits.add(dd.gridRaster.layerBitMap);
             }
-            alphaBlender.init(gp.getColor(User.ColorPrefType.BACKGROUND), colors, bits);
+            Color background = gp.getColor(User.ColorPrefType.BACKGROUND);
+            int numThreads = User.getCompositeThreads();
+            if (numThreads <= 0) {
+                numThreads = Runtime.getRuntime().availableProcessors();
+            }
+            numThreads = Math.min(numThreads, (dd.height + TILE_HEIGHT - 1) / TILE_HEIGHT);
+            if (numThreads > 1) {
+                if (!tiledLayerComposite(g, background, colors, bits, dd, numThreads)) {
+                    legacyLayerComposite(g, gp, lv, dd);
+                }
+                return;
+            }
+            alphaBlender.init(background, colors, bits);
 
             int width = dd.width;
             int height = dd.height;
@@ -582,6 +684,86 @@ class LayerDrawing {
             }
         }
 
+        /**
+         * Method to composite the layer bitmaps by several threads.
+         * The window is split into horizontal tiles of TILE_HEIGHT rows which the threads take in turn.
+         * Each thread has its own AlphaBlender and writes its tiles into a full-size image,
+         * which is then drawn at once.
+         * @return false if a thread failed and nothing was drawn.
+         */
+        private boolean tiledLayerComposite(Graphics2D g, final Color background, final ArrayList<AbstractDrawing.LayerColor> colors,
+                final ArrayList<int[]> bits, DrawingData dd, int numThreads) {
+            final int width = dd.width;
+            final int height = dd.height;
+            final int numIntsPerRow = dd.numIntsPerRow;
+            if (tiledImg == null || tiledImg.getWidth() != width || tiledImg.getHeight() != height) {
+                tiledImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                DataBufferInt tiledDbi = (DataBufferInt) tiledImg.getRaster().getDataBuffer();
+                tiledOpaqueData = tiledDbi.getData();
+            }
+            if (tileBlenders.length < numThreads) {
+                AlphaBlender[] newBlenders = new AlphaBlender[numThreads];
+                System.arraycopy(tileBlenders, 0, newBlenders, 0, tileBlenders.length);
+                for (int i = tileBlenders.length; i < numThreads; i++) {
+                    newBlenders[i] = new AlphaBlender();
+                }
+                tileBlenders = newBlenders;
+            }
+            final int[] opaqueData = tiledOpaqueData;
+            final AtomicInteger nextTile = new AtomicInteger();
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for (int i = 0; i < numThreads; i++) {
+                final AlphaBlender blender = tileBlenders[i];
+                tasks.add(new Callable<Object>() {
+                    public Object call() {
+                        blender.init(background, colors, bits);
+                        for (;;) {
+                            int lY = nextTile.getAndIncrement() * TILE_HEIGHT;
+                            if (lY >= height) {
+                                return null;
+                            }
+                            int hY = Math.min(lY + TILE_HEIGHT, height);
+                            int baseByteIndex = lY * numIntsPerRow;
+                            int baseIndex = lY * width;
+                            for (int y = lY; y < hY; y++) {
+                                blender.composeLine(baseByteIndex, 0, width - 1, opaqueData, baseIndex);
+                                baseByteIndex += numIntsPerRow;
+                                baseIndex += width;
+                            }
+                        }
+                    }
+                });
+            }
+            try {
+                for (Future<Object> f : getCompositeExecutor(numThreads).invokeAll(tasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                return false;
+            }
+            g.drawImage(tiledImg, 0, 0, null);
+            return true;
+        }
+
+        /**
+         * Method to return the threads which composite the windows, creating them if necessary.
+         * @param numThreads the number of threads requested.
+         */
+        private static synchronized ExecutorService getCompositeExecutor(int numThreads) {
+            if (compositeExecutor == null || compositeThreads != numThreads) {
+                if (compositeExecutor != null) {
+                    compositeExecutor.shutdown();
+                }
+                compositeExecutor = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("LayerComposite"));
+                compositeThreads = numThreads;
+            }
+            return compositeExecutor;
+        }
+
         /**
          * Method to complete rendering by combining the transparent and opaque imagery.
          * This is called after all rendering is done.
@@ -1271,6 +1453,7 @@ class LayerDrawing {
             textInfo.offY += imgY;
             textInfo.draw(g, null);
         }
+        offscreen.releaseRasters();
 //        needComposite = true;
 //        layerRasters = new HashMap<Layer,TransparentRaster>(offscreen.layerRasters);
 //        greekText = offscreen.greekTextList.toArray(new GreekTextInfo[offscreen.greekTextList.size()]);
@@ -1348,6 +1531,38 @@ class LayerDrawing {
         numIntsPerRow = (sz.width + Integer.SIZE - 1) / Integer.SIZE;
     }
 
+    /**
+     * Constructor creates an offscreen which draws a band of rows of another offscreen.
+     * It has the scale, the origin and the clipping of the other offscreen
+     * and it writes only the rows of the band into the layer bitmaps of the other offscreen.
+     * @param owner the offscreen which owns the layer bitmaps.
+     * @param lY the top row of the band.
+     * @param hY the bottom row of the band.
+     */
+    private LayerDrawing(LayerDrawing owner, int lY, int hY) {
+        bandOwner = owner;
+        bandLayerRaster = new BandRaster(lY, hY);
+        bandInstanceRaster = new BandRaster(lY, hY);
+        sz = owner.sz;
+        total = owner.total;
+        numIntsPerRow = owner.numIntsPerRow;
+        scale = owner.scale;
+        scale_ = owner.scale_;
+        originX = owner.originX;
+        originY = owner.originY;
+        factorX = owner.factorX;
+        factorY = owner.factorY;
+        clipLX = owner.clipLX;
+        clipHX = owner.clipHX;
+        clipLY = owner.clipLY;
+        clipHY = owner.clipHY;
+        renderedWindow = owner.renderedWindow;
+        patternedDisplay = owner.patternedDisplay;
+        gp = owner.gp;
+        dp = owner.dp;
+        textColor = owner.textColor;
+    }
+
     void initOrigin(double scale, Point2D offset) {
         this.scale = scale;
         scale_ = (float) (scale / DBMath.GRID);
@@ -1378,6 +1593,39 @@ class LayerDrawing {
         expandedCells = new HashMap<ExpandedCellKey, ExpandedCellInfo>();
     }
 
+    /**
+     * Method to clear the cache of expanded subcells and to recycle their layer bitmaps.
+     * It must be called only from the rendering thread, which is the only user of these bitmaps.
+     */
+    private static void releaseSubCellCache() {
+        if (expandedCells != null) {
+            for (ExpandedCellInfo expandedCellCount : expandedCells.values()) {
+                if (expandedCellCount.offscreen != null) {
+                    expandedCellCount.offscreen.releaseRasters();
+                }
+            }
+        }
+        clearSubCellCache();
+    }
+
+    /**
+     * Method to recycle the layer bitmaps of this offscreen when it is no longer used.
+     */
+    private void releaseRasters() {
+        for (TransparentRaster raster : layerRasters.values()) {
+            LayerBitmapPool.free(raster.layerBitMap);
+        }
+        layerRasters = new HashMap<Layer, TransparentRaster>();
+        if (instanceRaster != null) {
+            LayerBitmapPool.free(instanceRaster.layerBitMap);
+            instanceRaster = null;
+        }
+        if (gridRaster != null) {
+            LayerBitmapPool.free(gridRaster.layerBitMap);
+            gridRaster = null;
+        }
+    }
+
     /**
      * This is the entry point for rendering.
      * It displays a cell in this offscreen window.
@@ -1401,7 +1649,7 @@ class LayerDrawing {
         }
 
         if (fullInstantiate != lastFullInstantiate) {
-            clearSubCellCache();
+            releaseSubCellCache();
             lastFullInstantiate = fullInstantiate;
         }
 
@@ -1421,7 +1669,7 @@ class LayerDrawing {
 
         // initialize the cache of expanded cell displays
         if (expandedScale != drawing.da.scale) {
-            clearSubCellCache();
+            releaseSubCellCache();
             expandedScale = drawing.da.scale;
         }
         varContext = wnd.getVarContext();
@@ -1483,7 +1731,19 @@ class LayerDrawing {
         renderTextList.clear();
         greekTextList.clear();
         crossTextList.clear();
-        drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, 0, 0, true, wnd.getVarContext());
+        int numThreads = getRenderThreads();
+        int numBands = getNumBands(numThreads);
+        if (numBands > 1) {
+            bandShapes = new ArrayList<BandShapes>();
+            try {
+                drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, 0, 0, true, wnd.getVarContext());
+                drawBands(numBands, numThreads);
+            } finally {
+                bandShapes = null;
+            }
+        } else {
+            drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, 0, 0, true, wnd.getVarContext());
+        }
         // if a grid is requested, overlay it
         if (cell != null && wnd.isGrid()) {
             drawGrid(wnd, drawing.da);
@@ -1775,13 +2035,47 @@ class LayerDrawing {
      * Method to draw the contents of a cell, transformed through "prevTrans".
      */
     private void drawCell(Cell cell, Rectangle2D drawLimitBounds, boolean fullInstantiate, Orientation orient, int oX, int oY, boolean topLevel, VarContext context) {
-        renderedCells++;
+        if (TAKE_STATS) {
+            renderedCells++;
+        }
 
         VectorCache.VectorCell vc = VectorCache.theCache.drawCell(cell.getId(), orient, context, scale);
+        List<VectorCache.VectorBase> shapes = vc.shapes;
+        List<VectorCache.VectorSubCell> subCells = vc.subCells;
+
+        // see how much of the cell is on the screen
+        gridToScreen(vc.lX + oX, vc.hY + oY, tempPt1);
+        gridToScreen(vc.hX + oX, vc.lY + oY, tempPt2);
+        int cellLY = tempPt1.y;
+        int cellHY = tempPt2.y;
+        VectorCache.VectorCellGrid bandGrid = null;
+        if (!topLevel && tempPt2.x - tempPt1.x < LOD_PIXELS && tempPt2.y - tempPt1.y < LOD_PIXELS) {
+            // the cell is a few pixels big: draw the coverage of its layers, which includes its subcells
+            shapes = vc.getLayerCoverage(context);
+            subCells = Collections.emptyList();
+        } else if (tempPt1.x < clipLX || tempPt2.x > clipHX || tempPt1.y < clipLY || tempPt2.y > clipHY) {
+            // the cell is partially visible: visit only the shapes and subcells near the visible area
+            VectorCache.VectorCellGrid grid = vc.vcg.isParameterized ? null : vc.getGrid();
+            bandGrid = grid;
+            if (grid != null) {
+                shapes = new ArrayList<VectorCache.VectorBase>();
+                subCells = new ArrayList<VectorCache.VectorSubCell>();
+                int lX = screenToGridX(clipLX - GRID_MARGIN_PIXELS) - oX - 1;
+                int hX = screenToGridX(clipHX + GRID_MARGIN_PIXELS) - oX + 1;
+                int lY = screenToGridY(clipHY + GRID_MARGIN_PIXELS) - oY - 1;
+                int hY = screenToGridY(clipLY - GRID_MARGIN_PIXELS) - oY + 1;
+                grid.search(lX, lY, hX, hY, shapes, subCells);
+            }
+        } else if (bandShapes != null && !vc.vcg.isParameterized) {
+            // the bands will search the grid for the shapes near their rows
+            bandGrid = vc.getGrid();
+        }
 
         // draw all subcells
-        for (VectorCache.VectorSubCell vsc : vc.subCells) {
-            totalCells++;
+        for (VectorCache.VectorSubCell vsc : subCells) {
+            if (TAKE_STATS) {
+                totalCells++;
+            }
 
             // get instance location
             int soX = vsc.offsetX + oX;
@@ -1824,7 +2118,9 @@ class LayerDrawing {
                 int soY_ = vsc.offsetY + oY;
                 if (!expandedCellCached(subCell, subOrient, soX_, soY_, context, fullInstantiate)) {
                     // just draw it directly
-                    cellsRendered++;
+                    if (TAKE_STATS) {
+                        cellsRendered++;
+                    }
 //                    NodeInst ni = subCell.getNodeById(vsc.n.nodeId);
                     drawCell(subCell, drawLimitBounds, fullInstantiate, subOrient, soX_, soY_, false, context.push(cell, vsc.n));
                 }
@@ -1868,11 +2164,22 @@ class LayerDrawing {
         }
 
         // draw primitives
-        drawList(oX, oY, vc.shapes);
+        drawList(oX, oY, shapes);
+        if (bandShapes != null) {
+            if (vc.vcg.isParameterized) {
+                // shapes of a parameterized cell are replaced when it is drawn in another context
+                shapes = new ArrayList<VectorCache.VectorBase>(shapes);
+            }
+            bandShapes.add(new BandShapes(shapes, bandGrid, oX, oY,
+                    cellLY - BAND_MARGIN_PIXELS, cellHY + BAND_MARGIN_PIXELS));
+        }
 
         // show cell variables if at the top level
         if (topLevel) {
             drawList(oX, oY, vc.getTopOnlyShapes());
+            if (bandShapes != null) {
+                bandShapes.add(new BandShapes(vc.getTopOnlyShapes(), null, oX, oY, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            }
         }
     }
 
@@ -1940,8 +2247,10 @@ class LayerDrawing {
 
             expandedCellCount.offscreen = new LayerDrawing(scale, lX, hX, lY, hY);
             expandedCellCount.offscreen.drawCell(subCell, null, fullInstantiate, orient, 0, 0, false, context);
-            offscreensCreated++;
-            offscreenPixelsCreated += expandedCellCount.offscreen.total;
+            if (TAKE_STATS) {
+                offscreensCreated++;
+                offscreenPixelsCreated += expandedCellCount.offscreen.total;
+            }
             if (DEBUG) {
                 System.out.print(subCell + " " + orient + " rendered in " + expandedCellCount.offscreen.total + " pixels"
                         + " t=" + System.currentTimeMillis());
@@ -1958,15 +2267,171 @@ class LayerDrawing {
 
         // copy out of the offscreen buffer into the main buffer
         gridToScreen(oX, oY, tempPt1);
-        copyBits(expandedCellCount.offscreen, tempPt1.x, tempPt1.y);
-        offscreensUsed++;
+        if (bandShapes != null) {
+            bandShapes.add(new BandShapes(expandedCellCount.offscreen, tempPt1.x, tempPt1.y));
+        } else {
+            copyBits(expandedCellCount.offscreen, tempPt1.x, tempPt1.y);
+        }
         if (TAKE_STATS) {
+            offscreensUsed++;
             offscreensUsedSet.add(expansionKey);
+            offscreenPixelsUsed += expandedCellCount.offscreen.total;
         }
-        offscreenPixelsUsed += expandedCellCount.offscreen.total;
         return true;
     }
 
+    // ************************************* MULTI-THREADED RENDERING *************************************
+    /**
+     * Method to tell how many threads draw the window.
+     * It is the same as the number of threads which composite the layers.
+     * @return the number of threads.
+     */
+    private static int getRenderThreads() {
+        int numThreads = User.getCompositeThreads();
+        if (numThreads <= 0) {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        return numThreads;
+    }
+
+    /**
+     * Method to tell how many bands of rows are drawn in parallel.
+     * @param numThreads the number of threads which draw the window.
+     * @return the number of bands, or 1 to draw in this thread.
+     */
+    private int getNumBands(int numThreads) {
+        if (numThreads <= 1) {
+            return 1;
+        }
+        return Math.max(1, Math.min(numThreads * BANDS_PER_THREAD, (clipHY - clipLY + 1) / BAND_HEIGHT));
+    }
+
+    /**
+     * Method to draw the recorded shapes by several threads.
+     * The visible rows are split into bands. Each band is drawn by its own offscreen,
+     * which writes only its rows into the layer bitmaps of this offscreen.
+     * Text was drawn in this thread when the shapes were recorded, so it keeps its order.
+     * @param numBands the number of bands.
+     * @param numThreads the number of threads which draw the bands.
+     */
+    private void drawBands(int numBands, int numThreads) {
+        final List<BandShapes> recorded = bandShapes;
+        bandShapes = null;
+        int height = clipHY - clipLY + 1;
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < numBands; i++) {
+            int lY = clipLY + (int) ((long) height * i / numBands);
+            int hY = clipLY + (int) ((long) height * (i + 1) / numBands) - 1;
+            final LayerDrawing band = new LayerDrawing(this, lY, hY);
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    band.drawBandShapes(recorded);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Object> f : getRenderExecutor(numThreads).invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Method to draw shapes into the layer bitmaps of a new offscreen.
+     * With several bands, the shapes are drawn by several threads as in drawImage,
+     * so tests can compare the bitmaps with those drawn by one thread.
+     * @param gp the graphics preferences.
+     * @param sz the size of the offscreen.
+     * @param scale the scale of the offscreen.
+     * @param offset the database coordinates of the center of the offscreen.
+     * @param patterned true to draw patterned layers with their patterns.
+     * @param shapes the shapes to draw.
+     * @param numBands the number of bands, 1 to draw in this thread.
+     * @param numThreads the number of threads which draw the bands.
+     * @return copies of the layer bitmaps.
+     */
+    static Map<Layer, int[]> drawShapes(GraphicsPreferences gp, Dimension sz, double scale, Point2D offset, boolean patterned,
+            List<VectorCache.VectorBase> shapes, int numBands, int numThreads) {
+        LayerDrawing offscreen = new LayerDrawing(sz);
+        offscreen.gp = gp;
+        offscreen.textColor = gp.getColor(User.ColorPrefType.TEXT);
+        offscreen.initOrigin(scale, offset);
+        offscreen.patternedDisplay = patterned;
+        offscreen.clearImage(null);
+        if (numBands > 1) {
+            offscreen.bandShapes = new ArrayList<BandShapes>();
+            offscreen.bandShapes.add(new BandShapes(shapes, null, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            offscreen.drawBands(numBands, numThreads);
+        } else {
+            offscreen.drawList(0, 0, shapes);
+        }
+        Map<Layer, int[]> layerBits = new HashMap<Layer, int[]>();
+        for (Map.Entry<Layer, TransparentRaster> e : offscreen.layerRasters.entrySet()) {
+            layerBits.put(e.getKey(), e.getValue().layerBitMap.clone());
+        }
+        offscreen.releaseRasters();
+        return layerBits;
+    }
+
+    /**
+     * Method to draw the rows of this band.
+     * @param recorded the shapes recorded during the traversal of the hierarchy.
+     */
+    private void drawBandShapes(List<BandShapes> recorded) {
+        int bandLY = bandLayerRaster.bandLY;
+        int bandHY = bandLayerRaster.bandHY;
+        List<VectorCache.VectorBase> shapes = new ArrayList<VectorCache.VectorBase>();
+        List<VectorCache.VectorSubCell> subCells = new ArrayList<VectorCache.VectorSubCell>();
+        for (BandShapes bs : recorded) {
+            if (bs.hY < bandLY || bs.lY > bandHY) {
+                continue;
+            }
+            if (bs.offscreen != null) {
+                copyBits(bs.offscreen, bs.centerX, bs.centerY);
+            } else if (bs.grid != null) {
+                shapes.clear();
+                subCells.clear();
+                int lX = screenToGridX(clipLX - GRID_MARGIN_PIXELS) - bs.oX - 1;
+                int hX = screenToGridX(clipHX + GRID_MARGIN_PIXELS) - bs.oX + 1;
+                int lY = screenToGridY(bandHY + GRID_MARGIN_PIXELS) - bs.oY - 1;
+                int hY = screenToGridY(bandLY - GRID_MARGIN_PIXELS) - bs.oY + 1;
+                bs.grid.search(lX, lY, hX, hY, shapes, subCells);
+                drawList(bs.oX, bs.oY, shapes);
+            } else {
+                drawList(bs.oX, bs.oY, bs.shapes);
+            }
+        }
+    }
+
+    /**
+     * Method to return the threads which draw the bands of the windows, creating them if necessary.
+     * @param numThreads the number of threads requested.
+     */
+    private static synchronized ExecutorService getRenderExecutor(int numThreads) {
+        Environment env = Environment.getThreadEnvironment();
+        if (renderExecutor == null || renderThreads != numThreads || renderEnvironment != env) {
+            if (renderExecutor != null) {
+                renderExecutor.shutdown();
+            }
+            renderExecutor = Executors.newFixedThreadPool(numThreads, new ElectricThreadFactory("LayerDrawing"));
+            renderThreads = numThreads;
+            renderEnvironment = env;
+        }
+        return renderExecutor;
+    }
+
     // ************************************* CELL CACHING *************************************
     /**
      * Recursive method to count the number of times that a cell-transformation is used
@@ -2081,7 +2546,10 @@ class LayerDrawing {
         }
         for (ExpandedCellKey expansionKey : keys) {
             if (changedCells.contains(expansionKey.cellId)) {
-                expandedCells.remove(expansionKey);
+                ExpandedCellInfo expandedCellCount = expandedCells.remove(expansionKey);
+                if (expandedCellCount.offscreen != null) {
+                    expandedCellCount.offscreen.releaseRasters();
+                }
             }
         }
     }
@@ -2221,10 +2689,13 @@ class LayerDrawing {
             layer = Artwork.tech().defaultLayer;
         }
         assert !layer.isPseudoLayer();
-        TransparentRaster raster = layerRasters.get(layer);
-        if (raster == null) {
-            raster = new TransparentRaster(sz.height, numIntsPerRow);
-            layerRasters.put(layer, raster);
+        TransparentRaster raster;
+        if (bandOwner != null) {
+            synchronized (bandOwner) {
+                raster = bandOwner.getLayerRaster(layer);
+            }
+        } else {
+            raster = getLayerRaster(layer);
         }
         if (patternedDisplay && renderedWindow) {
             int[] pattern = null;
@@ -2243,10 +2714,26 @@ class LayerDrawing {
                 raster = currentPatternedTransparentRaster;
             }
         }
+        return bandOwner != null ? bandLayerRaster.init(raster) : raster;
+    }
+
+    private TransparentRaster getLayerRaster(Layer layer) {
+        TransparentRaster raster = layerRasters.get(layer);
+        if (raster == null) {
+            raster = new TransparentRaster(sz.height, numIntsPerRow);
+            layerRasters.put(layer, raster);
+        }
         return raster;
     }
 
     ERaster getInstanceRaster() {
+        if (bandOwner != null) {
+            ERaster raster;
+            synchronized (bandOwner) {
+                raster = bandOwner.getInstanceRaster();
+            }
+            return bandInstanceRaster.init(raster);
+        }
         if (instanceRaster == null) {
             instanceRaster = new TransparentRaster(sz.height, numIntsPerRow);
         }
@@ -2353,7 +2840,7 @@ class LayerDrawing {
 
         TransparentRaster(int height, int numIntsPerRow) {
             this.intsPerRow = numIntsPerRow;
-            layerBitMap = new int[height * numIntsPerRow];
+            layerBitMap = LayerBitmapPool.alloc(height * numIntsPerRow);
         }
 
         void init(int[] layerBitMap, int intsPerRow) {
@@ -2367,7 +2854,7 @@ class LayerDrawing {
             int hIndex = baseIndex + (hX >> 5);
             if (lIndex == hIndex) {
                 int mask = (2 << (hX & 31)) - (1 << (lX & 31));
-                for (int y = lY; y < hY; y++) {
+                for (int y = lY; y <= hY; y++) {
                     layerBitMap[lIndex] |= mask;
                     lIndex += intsPerRow;
                 }
@@ -2393,7 +2880,7 @@ class LayerDrawing {
             if (lIndex == hIndex) {
                 int mask = (2 << (hX & 31)) - (1 << (lX & 31));
                 mask = ~mask;
-                for (int y = lY; y < hY; y++) {
+                for (int y = lY; y <= hY; y++) {
                     layerBitMap[lIndex] &= mask;
                     lIndex += intsPerRow;
                 }
@@ -2711,7 +3198,7 @@ class LayerDrawing {
             int hIndex = baseIndex + (hX >> 5);
             if (lIndex == hIndex) {
                 int mask = (2 << (hX & 31)) - (1 << (lX & 31));
-                for (int y = lY; y < hY; y++) {
+                for (int y = lY; y <= hY; y++) {
                     int pat = mask & pattern[y & 15];
                     if (pat != 0) {
                         layerBitMap[lIndex] |= pat;
@@ -2804,8 +3291,89 @@ class LayerDrawing {
             }
         }
     }
+
+    /**
+     * ERaster which passes to another ERaster only the rows of a band.
+     * Each thread of the multi-threaded rendering writes through it only the rows of its band,
+     * so the threads never write the same ints of the layer bitmaps.
+     */
+    private static class BandRaster implements ERaster {
+
+        private final int bandLY, bandHY;
+        private ERaster raster;
+
+        private BandRaster(int bandLY, int bandHY) {
+            this.bandLY = bandLY;
+            this.bandHY = bandHY;
+        }
+
+        private BandRaster init(ERaster raster) {
+            this.raster = raster;
+            return this;
+        }
+
+        public void fillBox(int lX, int hX, int lY, int hY) {
+            lY = Math.max(lY, bandLY);
+            hY = Math.min(hY, bandHY);
+            if (lY <= hY) {
+                raster.fillBox(lX, hX, lY, hY);
+            }
+        }
+
+        public void fillHorLine(int y, int lX, int hX) {
+            if (bandLY <= y && y <= bandHY) {
+                raster.fillHorLine(y, lX, hX);
+            }
+        }
+
+        public void fillVerLine(int x, int lY, int hY) {
+            lY = Math.max(lY, bandLY);
+            hY = Math.min(hY, bandHY);
+            if (lY <= hY) {
+                raster.fillVerLine(x, lY, hY);
+            }
+        }
+
+        public void fillPoint(int x, int y) {
+            if (bandLY <= y && y <= bandHY) {
+                raster.fillPoint(x, y);
+            }
+        }
+
+        public void drawHorLine(int y, int lX, int hX) {
+            if (bandLY <= y && y <= bandHY) {
+                raster.drawHorLine(y, lX, hX);
+            }
+        }
+
+        public void drawVerLine(int x, int lY, int hY) {
+            lY = Math.max(lY, bandLY);
+            hY = Math.min(hY, bandHY);
+            if (lY <= hY) {
+                raster.drawVerLine(x, lY, hY);
+            }
+        }
+
+        public void drawPoint(int x, int y) {
+            if (bandLY <= y && y <= bandHY) {
+                raster.drawPoint(x, y);
+            }
+        }
+
+        public EGraphics.Outline getOutline() {
+            return raster.getOutline();
+        }
+
+        public void copyBits(TransparentRaster src, int minSrcX, int maxSrcX, int minSrcY, int maxSrcY, int dx, int dy) {
+            minSrcY = Math.max(minSrcY, bandLY - dy);
+            maxSrcY = Math.min(maxSrcY, bandHY - dy);
+            if (minSrcY <= maxSrcY) {
+                raster.copyBits(src, minSrcX, maxSrcX, minSrcY, maxSrcY, dx, dy);
+            }
+        }
+    }
     // ************************************* RENDERING POLY SHAPES *************************************
-    private static Rectangle tempRect = new Rectangle();
+    private final Rectangle tempRect = new Rectangle();
 
     private void gridToScreen(int dbX, int dbY, Point result) {
         double scrX = (dbX - factorX) * scale_;
@@ -2814,6 +3382,24 @@ class LayerDrawing {
         result.y = (int) (scrY >= 0 ? scrY + 0.5 : scrY - 0.5);
     }
 
+    /**
+     * Method to convert a screen X coordinate to database grid units.
+     * @param x the X coordinate (on the screen).
+     * @return the X coordinate (in database grid units).
+     */
+    private int screenToGridX(int x) {
+        return (int) Math.floor(x / scale_ + factorX);
+    }
+
+    /**
+     * Method to convert a screen Y coordinate to database grid units.
+     * @param y the Y coordinate (on the screen).
+     * @return the Y coordinate (in database grid units).
+     */
+    private int screenToGridY(int y) {
+        return (int) Math.floor(factorY - y / scale_);
+    }
+
     /**
      * Method to draw a list of cached shapes.
      * @param oX the X offset to draw the shapes (in database grid coordinates).
@@ -2830,6 +3416,10 @@ class LayerDrawing {
             periodicRefresh();
 
             if (vb instanceof VectorCache.VectorText) {
+                if (bandOwner != null) {
+                    // text was drawn when the shapes were recorded for the bands
+                    continue;
+                }
                 VectorCache.VectorText vt = (VectorCache.VectorText) vb;
                 TextDescriptor td = vt.descript;
                 if (td != null && !td.isAbsoluteSize()) {
@@ -2918,6 +3508,10 @@ class LayerDrawing {
                 drawText(tempRect, vt.style, vt.descript, drawString, color, baseNode);
                 continue;
             }
+            if (bandShapes != null) {
+                // shapes are drawn by the bands
+                continue;
+            }
 
             ERaster raster = getRaster(vb.layer, vb.graphicsOverride, false);
             if (raster == null) {
@@ -2926,9 +3520,11 @@ class LayerDrawing {
 
             // handle each shape
             if (vb instanceof VectorCache.VectorManhattan) {
-                boxCount++;
                 VectorCache.VectorManhattan vm = (VectorCache.VectorManhattan) vb;
-                boxArrayCount += vm.coords.length / 4;
+                if (TAKE_STATS) {
+                    boxCount++;
+                    boxArrayCount += vm.coords.length / 4;
+                }
                 for (int i = 0; i < vm.coords.length; i += 4) {
                     int c1X = vm.coords[i];
                     int c1Y = vm.coords[i + 1];
@@ -2946,7 +3542,9 @@ class LayerDrawing {
                     drawBox(lX, hX, lY, hY, raster);
                 }
             } else if (vb instanceof VectorCache.VectorPolygon) {
-                polygonCount++;
+                if (TAKE_STATS) {
+                    polygonCount++;
+                }
                 VectorCache.VectorPolygon vp = (VectorCache.VectorPolygon) vb;
                 Point[] intPoints = new Point[vp.points.length];
                 for (int i = 0; i < vp.points.length; i++) {
@@ -2956,7 +3554,9 @@ class LayerDrawing {
                 Point[] clippedPoints = GenMath.clipPoly(intPoints, clipLX, clipHX, clipLY, clipHY);
                 drawPolygon(clippedPoints, raster);
             } else if (vb instanceof VectorCache.VectorLine) {
-                lineCount++;
+                if (TAKE_STATS) {
+                    lineCount++;
+                }
                 VectorCache.VectorLine vl = (VectorCache.VectorLine) vb;
 
                 // determine coordinates of line on the screen
@@ -2966,7 +3566,9 @@ class LayerDrawing {
                 // clip and draw the line
                 drawLine(tempPt1, tempPt2, vl.texture, raster);
             } else if (vb instanceof VectorCache.VectorCross) {
-                crossCount++;
+                if (TAKE_STATS) {
+                    crossCount++;
+                }
                 VectorCache.VectorCross vcr = (VectorCache.VectorCross) vb;
                 gridToScreen(vcr.x + oX, vcr.y + oY, tempPt1);
                 int size = vcr.small ? 3 : 5;
@@ -2977,21 +3579,29 @@ class LayerDrawing {
                 gridToScreen(vci.eX + oX, vci.eY + oY, tempPt2);
                 switch (vci.nature) {
                     case 0:
-                        circleCount++;
+                        if (TAKE_STATS) {
+                            circleCount++;
+                        }
                         drawCircle(tempPt1, tempPt2, raster);
                         break;
                     case 1:
-                        circleCount++;
+                        if (TAKE_STATS) {
+                            circleCount++;
+                        }
                         drawThickCircle(tempPt1, tempPt2, raster);
                         break;
                     case 2:
-                        discCount++;
+                        if (TAKE_STATS) {
+                            discCount++;
+                        }
                         drawDisc(tempPt1, tempPt2, raster);
                         break;
                 }
 
             } else if (vb instanceof VectorCache.VectorCircleArc) {
-                arcCount++;
+                if (TAKE_STATS) {
+                    arcCount++;
+                }
                 VectorCache.VectorCircleArc vca = (VectorCache.VectorCircleArc) vb;
                 gridToScreen(vca.cX + oX, vca.cY + oY, tempPt1);
                 gridToScreen(vca.eX1 + oX, vca.eY1 + oY, tempPt2);
@@ -3085,7 +3695,9 @@ class LayerDrawing {
         if (lX > hX || lY > hY) {
             return;
         }
-        boxDisplayCount++;
+        if (TAKE_STATS) {
+            boxDisplayCount++;
+        }
         EGraphics.Outline o = raster.getOutline();
         if (lY == hY) {
             if (lX == hX) {
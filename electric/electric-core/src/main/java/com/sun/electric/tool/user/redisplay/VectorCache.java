@@ -97,6 +97,8 @@ public class VectorCache {
     private final Map<CellId, List<VectorBase>> addPolyToCell = new HashMap<CellId, List<VectorBase>>();
     /** list of instances to include in cells */
     private final Map<CellId, List<VectorLine>> addInstToCell = new HashMap<CellId, List<VectorLine>>();
+    /** minimal number of shapes and subcells in a cell which is split into a grid */
+    private static final int MIN_GRID_OBJECTS = 256;
     /** local shape builder */
     private final ShapeBuilder shapeBuilder = new ShapeBuilder();
     /** List of VectorManhattanBuilders */
@@ -604,6 +606,230 @@ public class VectorCache {
         }
     }
 
+    /**
+     * Class which sorts the shapes and subcells of a cached cell into a grid of bins,
+     * so that drawing a part of a large cell visits only the shapes and subcells near that part.
+     * Every shape piece and subcell is placed in the bin which contains the center of its bounds.
+     * The boxes of a VectorManhattan are split between the bins.
+     * Text and crosses have no reliable bounds in database units, so they are always visited.
+     */
+    static class VectorCellGrid {
+
+        /** desired number of objects in a bin */
+        private static final int OBJECTS_PER_BIN = 32;
+        /** maximum number of bins in each direction */
+        private static final int MAX_BINS = 256;
+        /** lower-left corner of the grid (in database grid coordinates) */
+        private final int gridX, gridY;
+        /** size of a bin (in database grid coordinates) */
+        private final int binWidth, binHeight;
+        /** number of bins */
+        private final int numX, numY;
+        /** how far the objects extend outside of their bins */
+        private int margin;
+        /** shapes in each bin */
+        private final VectorBase[][] binShapes;
+        /** subcells in each bin */
+        private final VectorSubCell[][] binSubCells;
+        /** bounds of the contents of each bin: lX, lY, hX, hY */
+        private final int[] binBounds;
+        /** shapes which are visited always */
+        private final VectorBase[] unboundedShapes;
+
+        private VectorCellGrid(VectorCache cache, VectorCell vc, int numObjects) {
+            gridX = vc.lX;
+            gridY = vc.lY;
+            long width = (long) vc.hX - vc.lX + 1;
+            long height = (long) vc.hY - vc.lY + 1;
+            int numBins = Math.max(numObjects / OBJECTS_PER_BIN, 1);
+            int nX = (int) Math.round(Math.sqrt(numBins * (double) width / height));
+            int nY = (int) Math.round(numBins / (double) Math.max(nX, 1));
+            numX = Math.max(1, Math.min(MAX_BINS, nX));
+            numY = Math.max(1, Math.min(MAX_BINS, nY));
+            binWidth = (int) Math.min((width + numX - 1) / numX, Integer.MAX_VALUE / 4);
+            binHeight = (int) Math.min((height + numY - 1) / numY, Integer.MAX_VALUE / 4);
+            binBounds = new int[numX * numY * 4];
+            for (int i = 0; i < binBounds.length; i += 4) {
+                binBounds[i] = binBounds[i + 1] = Integer.MAX_VALUE;
+                binBounds[i + 2] = binBounds[i + 3] = Integer.MIN_VALUE;
+            }
+
+            // distribute the shapes
+            List<List<VectorBase>> shapeLists = new ArrayList<List<VectorBase>>();
+            for (int i = 0; i < numX * numY; i++) {
+                shapeLists.add(new ArrayList<VectorBase>());
+            }
+            List<VectorBase> unbounded = new ArrayList<VectorBase>();
+            int[] bounds = new int[4];
+            for (VectorBase vb : vc.shapes) {
+                if (vb instanceof VectorManhattan) {
+                    VectorManhattan vm = (VectorManhattan) vb;
+                    int[] coords = vm.coords;
+                    int numBoxes = coords.length / 4;
+                    int[] boxBins = new int[numBoxes];
+                    int[] binCounts = new int[numX * numY];
+                    for (int i = 0; i < numBoxes; i++) {
+                        int bin = addBounds(coords[i * 4], coords[i * 4 + 1], coords[i * 4 + 2], coords[i * 4 + 3]);
+                        boxBins[i] = bin;
+                        binCounts[bin]++;
+                    }
+                    for (int bin = 0; bin < binCounts.length; bin++) {
+                        if (binCounts[bin] == 0) {
+                            continue;
+                        }
+                        if (binCounts[bin] == numBoxes) {
+                            shapeLists.get(bin).add(vm);
+                            break;
+                        }
+                        int[] binCoords = new int[binCounts[bin] * 4];
+                        int k = 0;
+                        for (int i = 0; i < numBoxes; i++) {
+                            if (boxBins[i] == bin) {
+                                System.arraycopy(coords, i * 4, binCoords, k, 4);
+                                k += 4;
+                            }
+                        }
+                        shapeLists.get(bin).add(new VectorManhattan(binCoords, vm.layer, vm.graphicsOverride, vm.pureLayer));
+                    }
+                } else if (getBounds(vb, bounds)) {
+                    shapeLists.get(addBounds(bounds[0], bounds[1], bounds[2], bounds[3])).add(vb);
+                } else {
+                    unbounded.add(vb);
+                }
+            }
+            unboundedShapes = unbounded.toArray(new VectorBase[unbounded.size()]);
+            binShapes = new VectorBase[numX * numY][];
+            for (int bin = 0; bin < binShapes.length; bin++) {
+                List<VectorBase> shapeList = shapeLists.get(bin);
+                binShapes[bin] = shapeList.toArray(new VectorBase[shapeList.size()]);
+            }
+
+            // distribute the subcells
+            List<List<VectorSubCell>> subCellLists = new ArrayList<List<VectorSubCell>>();
+            for (int i = 0; i < numX * numY; i++) {
+                subCellLists.add(new ArrayList<VectorSubCell>());
+            }
+            for (VectorSubCell vsc : vc.subCells) {
+                VectorCell subVC = cache.findVectorCell(vsc.subCellId, vc.orient.concatenate(vsc.n.orient));
+                if (subVC.lX > subVC.hX) {
+                    // cell without bounds can't be drawn
+                    continue;
+                }
+                subCellLists.get(addBounds(subVC.lX + vsc.offsetX, subVC.lY + vsc.offsetY,
+                        subVC.hX + vsc.offsetX, subVC.hY + vsc.offsetY)).add(vsc);
+            }
+            binSubCells = new VectorSubCell[numX * numY][];
+            for (int bin = 0; bin < binSubCells.length; bin++) {
+                List<VectorSubCell> subCellList = subCellLists.get(bin);
+                binSubCells[bin] = subCellList.toArray(new VectorSubCell[subCellList.size()]);
+            }
+        }
+
+        /**
+         * Method to find the bin of an object and to extend the bounds of the bin.
+         * @return the index of the bin.
+         */
+        private int addBounds(int lX, int lY, int hX, int hY) {
+            int x = Math.max(0, Math.min(numX - 1, (int) ((((long) lX + hX) / 2 - gridX) / binWidth)));
+            int y = Math.max(0, Math.min(numY - 1, (int) ((((long) lY + hY) / 2 - gridY) / binHeight)));
+            int binLX = gridX + x * binWidth;
+            int binLY = gridY + y * binHeight;
+            margin = Math.max(margin, Math.max(binLX - lX, binLY - lY));
+            margin = Math.max(margin, Math.max(hX - (binLX + binWidth), hY - (binLY + binHeight)));
+            int bin = y * numX + x;
+            int i = bin * 4;
+            binBounds[i] = Math.min(binBounds[i], lX);
+            binBounds[i + 1] = Math.min(binBounds[i + 1], lY);
+            binBounds[i + 2] = Math.max(binBounds[i + 2], hX);
+            binBounds[i + 3] = Math.max(binBounds[i + 3], hY);
+            return bin;
+        }
+
+        /**
+         * Method to find the shapes and subcells which may touch an area.
+         * @param lX the low X of the area (in database grid coordinates of the cell).
+         * @param lY the low Y of the area.
+         * @param hX the high X of the area.
+         * @param hY the high Y of the area.
+         * @param shapes the list to which the shapes are added.
+         * @param subCells the list to which the subcells are added.
+         */
+        void search(int lX, int lY, int hX, int hY, List<VectorBase> shapes, List<VectorSubCell> subCells) {
+            for (VectorBase vb : unboundedShapes) {
+                shapes.add(vb);
+            }
+            int minX = Math.max(0, (int) Math.floor(((double) lX - margin - gridX - 1) / binWidth));
+            int maxX = Math.min(numX - 1, (int) Math.floor(((double) hX + margin - gridX) / binWidth));
+            int minY = Math.max(0, (int) Math.floor(((double) lY - margin - gridY - 1) / binHeight));
+            int maxY = Math.min(numY - 1, (int) Math.floor(((double) hY + margin - gridY) / binHeight));
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int bin = y * numX + x;
+                    int i = bin * 4;
+                    if (binBounds[i] > hX || binBounds[i + 1] > hY || binBounds[i + 2] < lX || binBounds[i + 3] < lY) {
+                        continue;
+                    }
+                    for (VectorBase vb : binShapes[bin]) {
+                        shapes.add(vb);
+                    }
+                    for (VectorSubCell vsc : binSubCells[bin]) {
+                        subCells.add(vsc);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Method to compute the bounds of a shape.
+         * @param vb the shape.
+         * @param bounds the array to fill with lX, lY, hX, hY (in database grid coordinates).
+         * @return false if the shape has no reliable bounds.
+         */
+        static boolean getBounds(VectorBase vb, int[] bounds) {
+            if (vb instanceof VectorPolygon) {
+                Point[] points = ((VectorPolygon) vb).points;
+                if (points.length == 0) {
+                    return false;
+                }
+                bounds[0] = bounds[2] = points[0].x;
+                bounds[1] = bounds[3] = points[0].y;
+                for (Point p : points) {
+                    bounds[0] = Math.min(bounds[0], p.x);
+                    bounds[1] = Math.min(bounds[1], p.y);
+                    bounds[2] = Math.max(bounds[2], p.x);
+                    bounds[3] = Math.max(bounds[3], p.y);
+                }
+                return true;
+            }
+            if (vb instanceof VectorLine) {
+                VectorLine vl = (VectorLine) vb;
+                bounds[0] = Math.min(vl.fX, vl.tX);
+                bounds[1] = Math.min(vl.fY, vl.tY);
+                bounds[2] = Math.max(vl.fX, vl.tX);
+                bounds[3] = Math.max(vl.fY, vl.tY);
+                return true;
+            }
+            if (vb instanceof VectorCircle) {
+                VectorCircle vci = (VectorCircle) vb;
+                return getCircleBounds(vci.cX, vci.cY, vci.eX, vci.eY, bounds);
+            }
+            if (vb instanceof VectorCircleArc) {
+                VectorCircleArc vca = (VectorCircleArc) vb;
+                return getCircleBounds(vca.cX, vca.cY, vca.eX1, vca.eY1, bounds);
+            }
+            return false;
+        }
+
+        private static boolean getCircleBounds(int cX, int cY, int eX, int eY, int[] bounds) {
+            int radius = (int) Math.ceil(Math.hypot(eX - cX, eY - cY));
+            bounds[0] = cX - radius;
+            bounds[1] = cY - radius;
+            bounds[2] = cX + radius;
+            bounds[3] = cY + radius;
+            return true;
+        }
+    }
+
     /**
      * Class which defines a cached cell in a single orientation.
      */
@@ -625,6 +851,10 @@ public class VectorCache {
         int fadeOffsetX, fadeOffsetY;
         int[] fadeImageColors;
         int fadeImageWid, fadeImageHei;
+        /** grid of the shapes and subcells (null if not built yet) */
+        private VectorCellGrid grid;
+        /** merged layer coverage of the shapes of this cell and its subcells (null if not built yet or parameterized) */
+        private ArrayList<VectorBase> layerCoverage;
 
         VectorCell(VectorCellGroup vcg, Orientation orient) {
             this.vcg = vcg;
@@ -746,6 +976,99 @@ public class VectorCache {
             shapes.clear();
             subCells.clear();
             fadeImageColors = null;
+            grid = null;
+            layerCoverage = null;
+        }
+
+        /**
+         * Method to return the grid of shapes and subcells of this cell.
+         * @return the grid, or null if this cell is too small to need a grid.
+         */
+        VectorCellGrid getGrid() {
+            if (grid == null && valid && lX <= hX) {
+                int numObjects = subCells.size();
+                for (VectorBase vb : shapes) {
+                    numObjects += vb instanceof VectorManhattan ? ((VectorManhattan) vb).coords.length / 4 : 1;
+                }
+                if (numObjects >= MIN_GRID_OBJECTS) {
+                    grid = new VectorCellGrid(VectorCache.this, this, numObjects);
+                }
+            }
+            return grid;
+        }
+
+        /**
+         * Method to return a coarse version of the contents of this cell, used when the cell is a few pixels big.
+         * It has one box per layer, which covers all the shapes on that layer in this cell and in all of its subcells.
+         * Text and crosses of this cell are kept because their size on the screen doesn't depend on the scale.
+         * The coverage is cached unless a cell of the subtree is parameterized, because then it depends on the context.
+         * @param context the VarContext of this cell, used to evaluate the parameters of its subcells.
+         */
+        ArrayList<VectorBase> getLayerCoverage(VarContext context) {
+            if (layerCoverage != null) {
+                return layerCoverage;
+            }
+            Map<Layer, int[]> coverage = new HashMap<Layer, int[]>();
+            List<Layer> layers = new ArrayList<Layer>();
+            ArrayList<VectorBase> newCoverage = new ArrayList<VectorBase>();
+            for (VectorBase vb : shapes) {
+                if (vb instanceof VectorText || vb instanceof VectorCross) {
+                    newCoverage.add(vb);
+                }
+            }
+            addShapeCoverage(shapes, 0, 0, coverage, layers);
+            boolean parameterized = vcg.isParameterized;
+            Cell cell = subCells.isEmpty() ? null : database.getCell(vcg.cellId);
+            for (VectorSubCell vsc : subCells) {
+                VarContext subContext = context != null ? context.push(cell, vsc.n) : null;
+                VectorCell subVC = drawCell(vsc.subCellId, orient.concatenate(vsc.n.orient), subContext, curScale);
+                if (subVC.valid) {
+                    addShapeCoverage(subVC.getLayerCoverage(subContext), vsc.offsetX, vsc.offsetY, coverage, layers);
+                    if (subVC.layerCoverage == null) {
+                        // the coverage of the subcell depends on its context
+                        parameterized = true;
+                    }
+                }
+            }
+            for (Layer layer : layers) {
+                newCoverage.add(new VectorManhattan(coverage.get(layer), layer, null, false));
+            }
+            if (!parameterized) {
+                layerCoverage = newCoverage;
+            }
+            return newCoverage;
+        }
+
+        private void addShapeCoverage(List<VectorBase> shapeList, int offX, int offY, Map<Layer, int[]> coverage, List<Layer> layers) {
+            int[] bounds = new int[4];
+            for (VectorBase vb : shapeList) {
+                if (vb.layer == null || vb instanceof VectorText || vb instanceof VectorCross) {
+                    continue;
+                }
+                if (vb instanceof VectorManhattan) {
+                    int[] coords = ((VectorManhattan) vb).coords;
+                    for (int i = 0; i < coords.length; i += 4) {
+                        addCoverage(coverage, layers, vb.layer, coords[i] + offX, coords[i + 1] + offY,
+                                coords[i + 2] + offX, coords[i + 3] + offY);
+                    }
+                } else if (VectorCellGrid.getBounds(vb, bounds)) {
+                    addCoverage(coverage, layers, vb.layer, bounds[0] + offX, bounds[1] + offY,
+                            bounds[2] + offX, bounds[3] + offY);
+                }
+            }
+        }
+
+        private void addCoverage(Map<Layer, int[]> coverage, List<Layer> layers, Layer layer, int lX, int lY, int hX, int hY) {
+            int[] box = coverage.get(layer);
+            if (box == null) {
+                coverage.put(layer, new int[]{lX, lY, hX, hY});
+                layers.add(layer);
+                return;
+            }
+            box[0] = Math.min(box[0], lX);
+            box[1] = Math.min(box[1], lY);
+            box[2] = Math.max(box[2], hX);
+            box[3] = Math.max(box[3], hY);
         }
 
         private void clearExports() {
@@ -1103,6 +1426,7 @@ public class VectorCache {
         BitSet changedExports = new BitSet();
         BitSet changedBounds = new BitSet();
         BitSet changedParams = new BitSet();
+        BitSet changedContents = new BitSet();
         Set<CellId> changedVisibility = new HashSet<CellId>();
         for (CellId cellId : snapshot.getCellsDownTop()) {
             int cellIndex = cellId.cellIndex;
@@ -1119,6 +1443,7 @@ public class VectorCache {
 //                changedCells.set(cellIndex);
                 changedExports.set(cellIndex);
                 changedBounds.set(cellIndex);
+                changedContents.set(cellIndex);
                 if (cellId.isIcon()) {
                     changedParams.set(cellIndex);
                 }
@@ -1134,6 +1459,7 @@ public class VectorCache {
                     changedParams.set(cellIndex);
                 }
                 vcg.init();
+                changedContents.set(cellIndex);
 //                changedCells.set(cellIndex);
                 changedVis = true;
             } else {
@@ -1141,6 +1467,8 @@ public class VectorCache {
                 int[] instCounts = cellRevision.getInstCounts();
                 boolean subExportsChanged = false;
                 boolean subParamsChanged = false;
+                boolean subBoundsChanged = false;
+                boolean subContentsChanged = false;
                 for (int i = 0; i < instCounts.length; i++) {
                     if (instCounts[i] == 0) {
                         continue;
@@ -1149,9 +1477,15 @@ public class VectorCache {
                     if (changedExports.get(subCellIndex)) {
                         subExportsChanged = true;
                     }
+                    if (changedBounds.get(subCellIndex)) {
+                        subBoundsChanged = true;
+                    }
                     if (changedParams.get(subCellIndex)) {
                         subParamsChanged = true;
                     }
+                    if (changedContents.get(subCellIndex)) {
+                        subContentsChanged = true;
+                    }
                 }
                 if (vcg.updateBounds(snapshot)) {
                     changedBounds.set(cellIndex);
@@ -1162,8 +1496,20 @@ public class VectorCache {
                     vcg.updateExports();
                     changedVis = true;
                 }
+                if (subContentsChanged) {
+                    // the layer coverage includes the shapes of the subcells
+                    changedContents.set(cellIndex);
+                }
                 if (subParamsChanged) {
                     vcg.clear();
+                } else if (subBoundsChanged || subContentsChanged) {
+                    // the shapes are still valid, but subcells may have moved to other bins
+                    for (VectorCell vc : vcg.orientations.values()) {
+                        if (subBoundsChanged) {
+                            vc.grid = null;
+                        }
+                        vc.layerCoverage = null;
+                    }
                 }
                 if (!changedVis) {
                     Cell cell = database.getCell(cellId);
@@ -139,6 +139,7 @@ public class Panel extends JPanel
 	/** the location of the Y axis vertical line */			private int vertAxisPos;
 	/** the smallest nonzero X value (for log drawing) */	private double smallestXValue;
 	/** the smallest nonzero Y value (for log drawing) */	private double smallestYValue;
+	/** raster views of the signals drawn in this panel */	private final RasterCache rasterCache = new RasterCache();
 
 	/** the background color of a button */					private Color background = null;
 	/** for determining double-clicks */					private long lastClick = 0;
@@ -772,6 +773,21 @@ public class Panel extends JPanel
 		return (int)x;
 	}
 
+	/**
+	 * Method to return a raster view of a signal that is drawn in this panel.
+	 * Raster samples are cached, so redrawing at the same scale or scrolling
+	 * only computes the columns that were not visible before.
+	 * @param sig the signal.
+	 * @param t0 the start time of the view.
+	 * @param t1 the end time of the view.
+	 * @param numPixels the number of pixels between t0 and t1.
+	 * @return a raster view equivalent to sig.getRasterView(t0, t1, numPixels).
+	 */
+	public <S extends Sample> Signal.View<RangeSample<S>> getRasterView(Signal<S> sig, double t0, double t1, int numPixels)
+	{
+		return rasterCache.getRasterView(sig, t0, t1, numPixels);
+	}
+
 	/**
 	 * Method to scale an X coordinate from screen space to data space.
 	 * @param x the X coordinate on the screen.
@@ -1114,6 +1130,8 @@ public class Panel extends JPanel
 
 	private void drawPanelContents(int wid, int hei, Graphics2D localGraphics, Rectangle2D bounds, List<PolyBase> polys)
 	{
+		rasterCache.startPaint();
+
 		// draw the grid first (behind the signals)
 		if (waveWindow.isShowGrid())
 		{
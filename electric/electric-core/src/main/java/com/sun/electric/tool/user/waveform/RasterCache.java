@@ -0,0 +1,266 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RasterCache.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.user.waveform;
+
+import com.sun.electric.tool.simulation.RangeSample;
+import com.sun.electric.tool.simulation.Sample;
+import com.sun.electric.tool.simulation.Signal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Class to cache the raster views of the signals drawn in a Panel.
+ * Raster samples are requested on a grid of columns that are one pixel wide, anchored at time zero.
+ * Redrawing at the same scale reuses the columns already computed, and scrolling only asks the
+ * signal for the strip of columns that has just become visible.
+ */
+class RasterCache
+{
+	/** how many screen widths of columns are kept per signal */	private static final int KEEP_WIDTHS = 3;
+
+	private final Map<Signal<?>,Entry> entries = new HashMap<Signal<?>,Entry>();
+	private int paintCount;
+
+	/**
+	 * The raster samples of one signal at one scale: events sorted by time,
+	 * covering the columns from firstColumn (inclusive) to lastColumn (exclusive).
+	 */
+	private static class Entry
+	{
+		double columnWidth;
+		int modificationCount;
+		long firstColumn, lastColumn;
+		double [] times = new double[0];
+		RangeSample<?> [] samples = new RangeSample<?>[0];
+		int numEvents;
+		int lastUsed;
+	}
+
+	/**
+	 * Method to start a repaint of the panel.
+	 * Signals that were not drawn in the previous repaint are dropped from the cache.
+	 */
+	void startPaint()
+	{
+		for(Iterator<Entry> it = entries.values().iterator(); it.hasNext(); )
+			if (it.next().lastUsed < paintCount) it.remove();
+		paintCount++;
+	}
+
+	/** Method to discard all cached raster samples. */
+	void clear() { entries.clear(); }
+
+	/**
+	 * Method to return a raster view of a signal, reusing cached columns.
+	 * The result is equivalent to sig.getRasterView(t0, t1, numPixels).
+	 */
+	<S extends Sample> Signal.View<RangeSample<S>> getRasterView(Signal<S> sig, double t0, double t1, int numPixels)
+	{
+		double columnWidth = (t1 - t0) / numPixels;
+		if (numPixels <= 0 || !(columnWidth > 0) || Double.isInfinite(columnWidth) ||
+			Math.abs(t0 / columnWidth) > Long.MAX_VALUE / 4 || Math.abs(t1 / columnWidth) > Long.MAX_VALUE / 4)
+				return sig.getRasterView(t0, t1, numPixels);
+		long first = (long)Math.floor(t0 / columnWidth);
+		long last = (long)Math.ceil(t1 / columnWidth);
+
+		Entry e = entries.get(sig);
+		int modificationCount = sig.getModificationCount();
+		if (e == null || e.modificationCount != modificationCount ||
+			Math.abs(e.columnWidth - columnWidth) > columnWidth * 1e-9 ||
+			last <= e.firstColumn || first >= e.lastColumn)
+		{
+			e = new Entry();
+			e.columnWidth = columnWidth;
+			e.modificationCount = modificationCount;
+			e.firstColumn = e.lastColumn = first;
+			entries.put(sig, e);
+		}
+		e.lastUsed = paintCount;
+
+		// fetch only the columns that are not cached yet
+		if (first < e.firstColumn) prepend(sig, e, first);
+		if (last > e.lastColumn) append(sig, e, last);
+		trim(e, first, last, numPixels);
+
+		// the view starts at the last event at or before t0 and ends at the first event at or after t1
+		int lo = findEvent(e, t0);
+		if (lo < 0) lo = 0;
+		int hi = findEvent(e, t1);
+		if (hi < 0 || e.times[hi] < t1) hi++;
+		hi = Math.min(hi, e.numEvents - 1);
+		return new CachedView<S>(e, lo, Math.max(hi - lo + 1, 0));
+	}
+
+	/**
+	 * Adds the columns up to "last".
+	 * A raster view ends with a single sample, so the new strip also covers the last cached column
+	 * and replaces the cached events from its first one on.
+	 */
+	private <S extends Sample> void append(Signal<S> sig, Entry e, long last)
+	{
+		long from = e.numEvents == 0 ? e.lastColumn : Math.max(e.firstColumn, e.lastColumn - 1);
+		Signal.View<RangeSample<S>> strip = getStrip(sig, e, from, last);
+		int num = strip.getNumEvents();
+		int keep = num == 0 ? e.numEvents : findEvent(e, Math.nextAfter(strip.getTime(0), Double.NEGATIVE_INFINITY)) + 1;
+		if (keep < e.numEvents)
+		{
+			// views returned before still use the old arrays
+			e.times = e.times.clone();
+			e.samples = e.samples.clone();
+			e.numEvents = keep;
+		}
+		double lastTime = e.numEvents == 0 ? -Double.MAX_VALUE : e.times[e.numEvents-1];
+		ensureCapacity(e, e.numEvents + num);
+		for(int i=0; i<num; i++)
+		{
+			double time = strip.getTime(i);
+			if (time <= lastTime) continue;
+			RangeSample<S> rs = strip.getSample(i);
+			if (rs == null) continue;
+			e.times[e.numEvents] = time;
+			e.samples[e.numEvents] = rs;
+			e.numEvents++;
+			lastTime = time;
+		}
+		e.lastColumn = last;
+	}
+
+	/**
+	 * Adds the columns from "first".
+	 * The new strip also covers the first cached column, and its last event, which holds a single sample,
+	 * is dropped: the cached events continue it.
+	 */
+	private <S extends Sample> void prepend(Signal<S> sig, Entry e, long first)
+	{
+		if (e.numEvents == 0)
+		{
+			long last = e.lastColumn;
+			e.firstColumn = e.lastColumn = first;
+			append(sig, e, last);
+			return;
+		}
+		Signal.View<RangeSample<S>> strip = getStrip(sig, e, first, Math.min(e.lastColumn, e.firstColumn + 1));
+		double firstTime = e.times[0];
+		int num = strip.getNumEvents() - 1;
+		double [] times = new double[Math.max(num, 0) + e.times.length];
+		RangeSample<?> [] samples = new RangeSample<?>[times.length];
+		int count = 0;
+		double lastTime = -Double.MAX_VALUE;
+		for(int i=0; i<num; i++)
+		{
+			double time = strip.getTime(i);
+			if (time >= firstTime || time <= lastTime) continue;
+			RangeSample<S> rs = strip.getSample(i);
+			if (rs == null) continue;
+			times[count] = time;
+			samples[count] = rs;
+			count++;
+			lastTime = time;
+		}
+		System.arraycopy(e.times, 0, times, count, e.numEvents);
+		System.arraycopy(e.samples, 0, samples, count, e.numEvents);
+		e.times = times;
+		e.samples = samples;
+		e.numEvents += count;
+		e.firstColumn = first;
+	}
+
+	private <S extends Sample> Signal.View<RangeSample<S>> getStrip(Signal<S> sig, Entry e, long first, long last)
+	{
+		return sig.getRasterView(first * e.columnWidth, last * e.columnWidth, (int)(last - first));
+	}
+
+	/** Drops columns far outside the visible ones so that long scrolls do not grow the cache. */
+	private void trim(Entry e, long first, long last, int numPixels)
+	{
+		long keep = (long)numPixels * KEEP_WIDTHS;
+		if (e.lastColumn - e.firstColumn <= keep) return;
+		long slack = (keep - (last - first)) / 2;
+		long newFirst = Math.max(e.firstColumn, first - slack);
+		long newLast = Math.min(e.lastColumn, last + slack);
+		int lo = findEvent(e, newFirst * e.columnWidth);
+		if (lo < 0) lo = 0;
+		int hi = findEvent(e, newLast * e.columnWidth);
+		if (hi < 0 || e.times[hi] < newLast * e.columnWidth) hi++;
+		hi = Math.min(hi + 1, e.numEvents);
+		if (lo == 0 && hi == e.numEvents) return;
+		double [] times = new double[Math.max(hi - lo, 16)];
+		RangeSample<?> [] samples = new RangeSample<?>[times.length];
+		System.arraycopy(e.times, lo, times, 0, hi - lo);
+		System.arraycopy(e.samples, lo, samples, 0, hi - lo);
+		e.times = times;
+		e.samples = samples;
+		e.numEvents = hi - lo;
+		e.firstColumn = newFirst;
+		e.lastColumn = newLast;
+	}
+
+	/** Returns the index of the last event at or before a time (-1 if none). */
+	private static int findEvent(Entry e, double time)
+	{
+		int lo = 0, hi = e.numEvents;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (e.times[mid] <= time) lo = mid + 1; else hi = mid;
+		}
+		return lo - 1;
+	}
+
+	private static void ensureCapacity(Entry e, int size)
+	{
+		if (size <= e.times.length) return;
+		int newSize = Math.max(size, e.times.length * 2);
+		double [] times = new double[newSize];
+		RangeSample<?> [] samples = new RangeSample<?>[newSize];
+		System.arraycopy(e.times, 0, times, 0, e.numEvents);
+		System.arraycopy(e.samples, 0, samples, 0, e.numEvents);
+		e.times = times;
+		e.samples = samples;
+	}
+
+	/** A view of a range of the cached events. */
+	private static class CachedView<S extends Sample> implements Signal.View<RangeSample<S>>
+	{
+		private final double [] times;
+		private final RangeSample<?> [] samples;
+		private final int start, numEvents;
+
+		CachedView(Entry e, int start, int numEvents)
+		{
+			// the arrays are replaced, never modified in place, below numEvents
+			this.times = e.times;
+			this.samples = e.samples;
+			this.start = start;
+			this.numEvents = numEvents;
+		}
+
+		public int getNumEvents() { return numEvents; }
+		public double getTime(int event) { return times[start + event]; }
+		@SuppressWarnings("unchecked")
+		public RangeSample<S> getSample(int event) { return (RangeSample<S>)samples[start + event]; }
+	}
+}
@@ -0,0 +1,68 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ElectricThreadFactory.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.util.concurrent;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.variable.UserInterface;
+import com.sun.electric.tool.Job;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory of worker threads which help the thread that creates the factory.
+ * The workers use the same Environment, EditingPreferences and UserInterface
+ * as that thread, so that they can examine the database and evaluate variables.
+ */
+public class ElectricThreadFactory implements ThreadFactory {
+
+	private final String name;
+	private final Environment env = Environment.getThreadEnvironment();
+	private final EditingPreferences ep = EditingPreferences.getThreadEditingPreferences();
+	private final UserInterface ui = Job.getUserInterface();
+	private int numThreads = 0;
+
+	/**
+	 * @param name
+	 *            the name of the threads, which is followed by their number
+	 */
+	public ElectricThreadFactory(String name) {
+		this.name = name;
+	}
+
+	public synchronized Thread newThread(final Runnable r) {
+		Thread t = new Thread(name + " " + (++numThreads)) {
+			@Override
+			public void run() {
+				Environment.setThreadEnvironment(env);
+				EditingPreferences.setThreadEditingPreferences(ep);
+				if (ui != null)
+					Job.setUserInterface(ui);
+				r.run();
+			}
+		};
+		t.setDaemon(true);
+		return t;
+	}
+}
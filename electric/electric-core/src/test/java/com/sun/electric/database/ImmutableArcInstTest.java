@@ -418,6 +418,17 @@ public class ImmutableArcInstTest {
 
     }
 
+    /**
+     * Test of shareLocation method, of class com.sun.electric.database.ImmutableArcInst.
+     */
+    @Test
+    public void testShareLocation() {
+        System.out.println("shareLocation");
+        assertSame(n0.anchor, ImmutableArcInst.shareLocation(EPoint.fromLambda(1, 2), n0));
+        EPoint p = EPoint.fromLambda(1, 3);
+        assertSame(p, ImmutableArcInst.shareLocation(p, n0));
+    }
+
     /**
      * Test of newInstance method, of class com.sun.electric.database.ImmutableArcInst.
      */
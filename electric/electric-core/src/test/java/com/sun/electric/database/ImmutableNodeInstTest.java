@@ -282,6 +282,10 @@ public class ImmutableNodeInstTest {
     public void testWithSize() {
         System.out.println("withSize");
         assertSame(n0, n0.withSize(EPoint.ORIGIN));
+        ImmutableNodeInst n1 = n0.withSize(EPoint.fromLambda(3, 4));
+        ImmutableNodeInst n2 = n0.withSize(EPoint.fromLambda(3, 4));
+        assertEquals(EPoint.fromLambda(3, 4), n1.size);
+        assertSame(n1.size, n2.size);
     }
 
     /**
@@ -0,0 +1,164 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PackedNodeListTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database;
+
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.IdWriter;
+import com.sun.electric.database.text.ImmutableArrayList;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This module tests that packed nodes of a CellRevision
+ * are the same as the nodes they were packed from.
+ */
+public class PackedNodeListTest extends AbstractJunitBaseClass {
+
+    private Snapshot snapshot;
+
+    @Before
+    public void setUpSnapshot() throws Exception {
+        URL url = PackedNodeListTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        snapshot = lib.getDatabase().backup();
+    }
+
+    @Test
+    public void testViews() throws IOException {
+        int numPacked = 0;
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
+            if (cellBackup == null) {
+                continue;
+            }
+            CellRevision cellRevision = cellBackup.cellRevision;
+            CellRevision packed = cellRevision.withPackedNodes();
+            if (cellRevision.nodes.isEmpty()) {
+                assertSame(cellRevision, packed);
+                continue;
+            }
+            numPacked++;
+            assertTrue(packed.nodes instanceof PackedNodeList);
+            assertSame(packed, packed.withPackedNodes());
+            assertSame(cellRevision.arcs, packed.arcs);
+            assertSame(cellRevision.exports, packed.exports);
+            packed.check();
+            assertTrue(Arrays.equals(write(cellRevision), write(packed)));
+
+            List<ImmutableNodeInst> nodes = cellRevision.nodes;
+            assertEquals(nodes.size(), packed.nodes.size());
+            for (int nodeIndex = 0; nodeIndex < nodes.size(); nodeIndex++) {
+                ImmutableNodeInst n = nodes.get(nodeIndex);
+                ImmutableNodeInst view = packed.nodes.get(nodeIndex);
+                assertNotSame(view, packed.nodes.get(nodeIndex));
+                assertSame(n.getClass(), view.getClass());
+                assertTrue(n.equalsExceptVariables(view));
+                assertTrue(n.equalsVariables(view));
+                assertEquals(n.anchor, view.anchor);
+                assertTrue(packed.sameNode(nodeIndex, n));
+                assertTrue(packed.sameNode(nodeIndex, view));
+                assertTrue(cellRevision.sameNode(nodeIndex, n));
+                assertFalse(cellRevision.sameNode(nodeIndex, view));
+                assertEquals(nodeIndex, packed.nodes.indexOf(n));
+                if (nodeIndex > 0) {
+                    assertFalse(packed.sameNode(nodeIndex, nodes.get(nodeIndex - 1)));
+                }
+                ImmutableNodeInst moved = n.withAnchor(EPoint.fromGrid(n.anchor.getGridX() + 1, n.anchor.getGridY()));
+                if (moved != n) {
+                    assertFalse(packed.sameNode(nodeIndex, moved));
+                }
+            }
+
+            ImmutableNodeInst[] nodesArray = packed.nodes.toArray(new ImmutableNodeInst[packed.nodes.size()]);
+            assertSame(packed.nodes, packed.nodes.with(nodesArray));
+            Iterator<ImmutableNodeInst> it = packed.nodes.iterator();
+            for (int nodeIndex = 0; nodeIndex < nodesArray.length; nodeIndex++) {
+                assertTrue(packed.sameNode(nodeIndex, it.next()));
+                assertTrue(packed.sameNode(nodeIndex, nodesArray[nodeIndex]));
+            }
+            assertFalse(it.hasNext());
+            nodesArray[0] = nodesArray[0].withFlag(ImmutableNodeInst.LOCKED, !nodesArray[0].is(ImmutableNodeInst.LOCKED));
+            ImmutableArrayList<ImmutableNodeInst> edited = packed.nodes.with(nodesArray);
+            assertFalse(edited instanceof PackedNodeList);
+            assertSame(nodesArray[0], edited.get(0));
+
+            CellBackup packedBackup = cellBackup.withPackedNodes();
+            assertSame(cellBackup.techPool, packedBackup.techPool);
+            assertEquals(cellBackup.modified, packedBackup.modified);
+            packedBackup.check();
+        }
+        assertTrue(numPacked > 10);
+    }
+
+    @Test
+    public void testDatabase() {
+        CellBackup[] packedBackups = new CellBackup[snapshot.getNumCells()];
+        for (int cellIndex = 0; cellIndex < packedBackups.length; cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
+            if (cellBackup != null) {
+                packedBackups[cellIndex] = cellBackup.withPackedNodes();
+            }
+        }
+        Snapshot packedSnapshot = snapshot.with(null, snapshot.environment, packedBackups, null);
+        packedSnapshot.check();
+
+        // Cells made from packed nodes are up to date with them, but not with the unpacked nodes
+        EDatabase database = new EDatabase(packedSnapshot, "packed");
+        assertSame(packedSnapshot, database.backup());
+        for (int cellIndex = 0; cellIndex < packedBackups.length; cellIndex++) {
+            CellBackup packedBackup = packedBackups[cellIndex];
+            if (packedBackup == null) {
+                continue;
+            }
+            Cell cell = database.getCell(packedBackup.cellRevision.d.cellId);
+            assertNull(cell.getTopology().backupNodes(packedBackup.cellRevision));
+            if (!packedBackup.cellRevision.nodes.isEmpty()) {
+                assertNotNull(cell.getTopology().backupNodes(snapshot.getCellRevision(cellIndex)));
+            }
+        }
+    }
+
+    private static byte[] write(CellRevision cellRevision) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IdWriter writer = new IdWriter(cellRevision.d.cellId.idManager, new DataOutputStream(out));
+        cellRevision.write(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,197 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SnapshotStoreTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database;
+
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.IdWriter;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This module tests that a Snapshot with stored cells reads them on first use
+ * and equals the Snapshot it was made from.
+ */
+public class SnapshotStoreTest extends AbstractJunitBaseClass {
+
+    private Snapshot snapshot;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = SnapshotStoreTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        snapshot = lib.getDatabase().backup();
+        file = File.createTempFile("snapshot", ".cells");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testReadOnFirstUse() throws IOException {
+        Snapshot stored = snapshot.withStoredCells(file);
+        assertEquals(snapshot.getNumCells(), stored.getNumCells());
+        for (int cellIndex = 0; cellIndex < stored.getNumCells(); cellIndex++) {
+            assertFalse(stored.isCellLoaded(cellIndex));
+        }
+
+        int top = topCellIndex();
+        CellRevision cellRevision = stored.getCellRevision(top);
+        for (int cellIndex = 0; cellIndex < stored.getNumCells(); cellIndex++) {
+            assertEquals(cellIndex == top, stored.isCellLoaded(cellIndex));
+        }
+        assertSame(cellRevision, stored.getCellRevision(top));
+        assertNotSame(snapshot.getCellRevision(top), cellRevision);
+        assertTrue(Arrays.equals(write(snapshot.getCell(top)), write(stored.getCell(top))));
+
+        CellTree cellTree = stored.getCellTree(top);
+        assertSame(stored.getCell(top), cellTree.top);
+        assertSame(cellTree, stored.getCellTree(top));
+        assertEquals(snapshot.getCellTree(top).getBounds(), cellTree.getBounds());
+        for (CellTree subTree : cellTree.getSubTrees()) {
+            if (subTree != null) {
+                assertSame(subTree, stored.getCellTree(subTree.top.cellRevision.d.cellId));
+            }
+        }
+
+        for (int cellIndex = 0; cellIndex < stored.getNumCells(); cellIndex++) {
+            CellBackup cellBackup = snapshot.getCell(cellIndex);
+            if (cellBackup == null) {
+                assertNull(stored.getCell(cellIndex));
+                assertNull(stored.getCellTree(cellIndex));
+                continue;
+            }
+            assertTrue(Arrays.equals(write(cellBackup), write(stored.getCell(cellIndex))));
+            assertEquals(snapshot.getCellTree(cellIndex).getBounds(), stored.getCellTree(cellIndex).getBounds());
+        }
+        assertNull(stored.getCell(stored.getNumCells()));
+        stored.check();
+    }
+
+    @Test
+    public void testConcurrentRead() throws Exception {
+        final Snapshot stored = snapshot.withStoredCells(file);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CellTree[]>> futures = new ArrayList<Future<CellTree[]>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<CellTree[]>() {
+
+                    public CellTree[] call() {
+                        CellTree[] cellTrees = new CellTree[stored.getNumCells()];
+                        for (int cellIndex = cellTrees.length - 1; cellIndex >= 0; cellIndex--) {
+                            cellTrees[cellIndex] = stored.getCellTree(cellIndex);
+                        }
+                        return cellTrees;
+                    }
+                }));
+            }
+            CellTree[] cellTrees = futures.get(0).get();
+            for (Future<CellTree[]> future : futures) {
+                CellTree[] otherTrees = future.get();
+                for (int cellIndex = 0; cellIndex < cellTrees.length; cellIndex++) {
+                    assertSame(cellTrees[cellIndex], otherTrees[cellIndex]);
+                    assertSame(stored.getCell(cellIndex), cellTrees[cellIndex] != null ? cellTrees[cellIndex].top : null);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        stored.check();
+    }
+
+    @Test
+    public void testModify() throws IOException {
+        Snapshot stored = snapshot.withStoredCells(file);
+        assertSame(stored, stored.with(null, null, (CellTree[]) null, null));
+
+        int top = topCellIndex();
+        CellTree[] cellTrees = new CellTree[stored.getNumCells()];
+        for (int cellIndex = 0; cellIndex < cellTrees.length; cellIndex++) {
+            cellTrees[cellIndex] = stored.getCellTree(cellIndex);
+        }
+        CellBackup topBackup = cellTrees[top].top;
+        CellBackup newBackup = topBackup.withRevisionDate(topBackup.cellRevision.d.revisionDate + 1);
+        cellTrees[top] = cellTrees[top].with(newBackup, cellTrees[top].getSubTrees(), stored.techPool);
+        Snapshot modified = stored.with(null, null, cellTrees, null);
+        modified.check();
+        assertEquals(Arrays.asList(stored.idManager.getCellId(top)), modified.getChangedCells(stored));
+        for (int cellIndex = 0; cellIndex < cellTrees.length; cellIndex++) {
+            if (cellIndex != top) {
+                assertSame(stored.getCell(cellIndex), modified.getCell(cellIndex));
+            }
+        }
+    }
+
+    private int topCellIndex() {
+        int top = -1;
+        int maxSubCells = -1;
+        for (int cellIndex = 0; cellIndex < snapshot.getNumCells(); cellIndex++) {
+            CellTree cellTree = snapshot.getCellTree(cellIndex);
+            if (cellTree == null) {
+                continue;
+            }
+            int numSubCells = 0;
+            for (CellTree subTree : cellTree.getSubTrees()) {
+                if (subTree != null) {
+                    numSubCells++;
+                }
+            }
+            if (numSubCells > maxSubCells) {
+                top = cellIndex;
+                maxSubCells = numSubCells;
+            }
+        }
+        assertTrue(maxSubCells > 0);
+        return top;
+    }
+
+    private static byte[] write(CellBackup cellBackup) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IdWriter writer = new IdWriter(cellBackup.cellRevision.d.cellId.idManager, new DataOutputStream(out));
+        cellBackup.write(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+}
@@ -32,7 +32,6 @@ import com.sun.electric.database.id.IdWriter;
 import com.sun.electric.database.id.LibId;
 import com.sun.electric.database.id.TechId;
 import com.sun.electric.database.text.CellName;
-import com.sun.electric.database.text.ImmutableArrayList;
 import com.sun.electric.technology.TechFactory;
 import com.sun.electric.technology.TechPool;
 import com.sun.electric.technology.Technology;
@@ -119,13 +118,12 @@ public class SnapshotTest {
         Snapshot instance = initialSnapshot.with(null, env, (CellTree[]) null, null);
         assertEquals(1, instance.snapshotId);
 
-        List<CellTree> expCellTrees = Collections.singletonList(cellTree);
-        List<CellBackup> expCellBackups = Collections.singletonList(cellBackup);
         List<LibraryBackup> expLibBackups = Collections.singletonList(libBackup);
         Snapshot result = instance.with(null, null, cellTreesArray, libBackupsArray);
         assertEquals(2, result.snapshotId);
-        assertEquals(expCellTrees, result.cellTrees);
-        assertEquals(expCellBackups, result.cellBackups);
+        assertEquals(1, result.getNumCells());
+        assertSame(cellTree, result.getCellTree(0));
+        assertSame(cellBackup, result.getCell(0));
         assertEquals(expLibBackups, result.libBackups);
 
 //        CellId otherId = new CellId();
@@ -170,9 +168,9 @@ public class SnapshotTest {
         assertSame(libIdA, libBackupA.d.libId);
         assertTrue(libBackupA.modified);
 
-        assertEquals(2, newSnapshot.cellBackups.size());
-        assertNull(newSnapshot.cellBackups.get(0));
-        CellBackup newCellA = newSnapshot.cellBackups.get(1);
+        assertEquals(2, newSnapshot.getNumCells());
+        assertNull(newSnapshot.getCell(0));
+        CellBackup newCellA = newSnapshot.getCell(1);
         assertSame(libIdA, newCellA.cellRevision.d.cellId.libId);
         assertSame(cellNameA, newCellA.cellRevision.d.cellId.cellName);
         assertSame(libIdA, newCellA.cellRevision.d.getLibId());
@@ -286,9 +284,8 @@ public class SnapshotTest {
         IdReader reader = new IdReader(new DataInputStream(new ByteArrayInputStream(emptyDiffEmpty)), idManager);
         Snapshot oldSnapshot = idManager.getInitialSnapshot();
 
-        ImmutableArrayList<CellBackup> expCellBackups = new ImmutableArrayList<CellBackup>(CellBackup.NULL_ARRAY);
         Snapshot result = Snapshot.readSnapshot(reader, oldSnapshot);
-        assertEquals(expCellBackups, result.cellBackups);
+        assertEquals(0, result.getNumCells());
     }
 
     /**
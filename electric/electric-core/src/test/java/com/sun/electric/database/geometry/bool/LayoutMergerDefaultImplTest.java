@@ -0,0 +1,122 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LayoutMergerDefaultImplTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.bool;
+
+import com.sun.electric.database.geometry.PolyBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of the merging in stripes of LayoutMergerDefaultImpl,
+ * which compares it with the merging of all boxes by one DeltaMerge.
+ */
+public class LayoutMergerDefaultImplTest {
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(LayoutMergerDefaultImplTest.class);
+    }
+
+    @Test
+    public void testRandomBoxes() throws IOException {
+        Random random = new Random(0);
+        for (int iter = 0; iter < 100; iter++) {
+            int range = 50 + random.nextInt(1000);
+            int numStripes = 1 + random.nextInt(8);
+            int[] stripeY = new int[numStripes + 1];
+            stripeY[0] = Integer.MIN_VALUE;
+            for (int i = 1; i < numStripes; i++) {
+                stripeY[i] = range * i / numStripes;
+            }
+            stripeY[numStripes] = Integer.MAX_VALUE;
+
+            DeltaMerge dm = new DeltaMerge();
+            LayoutMergerDefaultImpl.StripeCollector collector = new LayoutMergerDefaultImpl.StripeCollector(stripeY);
+            int numBoxes = 1 + random.nextInt(2000);
+            for (int i = 0; i < numBoxes; i++) {
+                int lx = random.nextInt(range), ly = random.nextInt(range);
+                int hx = lx + 1 + random.nextInt(range / 5), hy = ly + 1 + random.nextInt(range / 5);
+                if (numStripes > 1 && random.nextInt(4) == 0) {
+                    // a box which starts or ends exactly at a stripe boundary
+                    int y = stripeY[1 + random.nextInt(numStripes - 1)];
+                    if (random.nextBoolean()) {
+                        ly = y;
+                        hy = y + 1 + random.nextInt(10);
+                    } else {
+                        hy = y;
+                        ly = y - 1 - random.nextInt(10);
+                    }
+                }
+                dm.put(lx, ly, hx, hy);
+                collector.put(lx, ly, hx, hy);
+            }
+
+            List<String> expected = describe(mergeInOne(dm));
+            List<String> actual = describe(LayoutMergerDefaultImpl.mergeStripes(collector.dms, "Test"));
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static Iterable<PolyBase.PolyBaseTree> mergeInOne(DeltaMerge dm) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        dm.loop(out);
+        out.close();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        return new UnloadPolys().loop(in, false);
+    }
+
+    /**
+     * Method to describe polygon trees as sorted strings of points, with the sons after their parents.
+     */
+    private static List<String> describe(Iterable<PolyBase.PolyBaseTree> trees) {
+        List<String> result = new ArrayList<String>();
+        for (PolyBase.PolyBaseTree tree : trees) {
+            StringBuilder sb = new StringBuilder();
+            describe(tree, sb);
+            result.add(sb.toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void describe(PolyBase.PolyBaseTree tree, StringBuilder sb) {
+        sb.append(Arrays.toString(tree.getPoly().getPoints()));
+        List<String> sons = describe(tree.getSons());
+        for (String son : sons) {
+            sb.append(" (").append(son).append(')');
+        }
+    }
+}
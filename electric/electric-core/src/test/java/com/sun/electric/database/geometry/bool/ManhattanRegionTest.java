@@ -0,0 +1,161 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegionTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.bool;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of ManhattanRegion, which compares it with java.awt.geom.Area.
+ */
+public class ManhattanRegionTest {
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(ManhattanRegionTest.class);
+    }
+
+    @Test
+    public void testRandomRectangles() {
+        Random random = new Random(0);
+        for (int iter = 0; iter < 50; iter++) {
+            ManhattanRegion region = new ManhattanRegion();
+            Area area = new Area();
+            for (int i = 0; i < 40; i++) {
+                Rectangle2D rect = randomRect(random);
+                int lx = (int) rect.getMinX(), ly = (int) rect.getMinY(), hx = (int) rect.getMaxX(), hy = (int) rect.getMaxY();
+                if (random.nextInt(4) == 0) {
+                    region.subtractRectangle(lx, ly, hx, hy);
+                    area.subtract(new Area(rect));
+                } else {
+                    region.addRectangle(lx, ly, hx, hy);
+                    area.add(new Area(rect));
+                }
+                if (random.nextInt(8) == 0) {
+                    checkSame(area, region, random);
+                }
+            }
+            checkSame(area, region, random);
+        }
+    }
+
+    @Test
+    public void testBooleanOperations() {
+        Random random = new Random(1);
+        for (int iter = 0; iter < 50; iter++) {
+            ManhattanRegion regionA = randomRegion(random);
+            ManhattanRegion regionB = randomRegion(random);
+            Area areaA = new Area(regionA.getShape(null));
+            Area areaB = new Area(regionB.getShape(null));
+
+            ManhattanRegion region = regionA.copy();
+            region.add(regionB);
+            Area area = new Area(areaA);
+            area.add(areaB);
+            checkSame(area, region, random);
+
+            region = regionA.copy();
+            region.intersect(regionB);
+            area = new Area(areaA);
+            area.intersect(areaB);
+            checkSame(area, region, random);
+
+            region = regionA.copy();
+            region.subtract(regionB);
+            area = new Area(areaA);
+            area.subtract(areaB);
+            checkSame(area, region, random);
+
+            AffineTransform trans = new AffineTransform(0, 1, -1, 0, 7, -3);
+            checkSame(areaA.createTransformedArea(trans), regionA.transform(trans), random);
+        }
+        assertNull(randomRegion(random).transform(AffineTransform.getScaleInstance(0.3, 0.3)));
+    }
+
+    @Test
+    public void testPolygon() {
+        Point2D[] ell = {
+            new Point2D.Double(0, 0), new Point2D.Double(30, 0), new Point2D.Double(30, 10),
+            new Point2D.Double(10, 10), new Point2D.Double(10, 40), new Point2D.Double(0, 40)
+        };
+        ManhattanRegion region = new ManhattanRegion();
+        assertTrue(region.addPolygon(ell));
+        assertEquals(30 * 10 + 10 * 30, region.getArea(), 0);
+        assertTrue(region.contains(5, 35));
+        assertFalse(region.contains(20, 20));
+        assertTrue(region.contains(0, 0));
+        assertFalse(region.contains(30, 5));
+
+        Point2D[] diagonal = {new Point2D.Double(0, 0), new Point2D.Double(10, 0), new Point2D.Double(0, 10)};
+        assertFalse(region.addPolygon(diagonal));
+        Point2D[] offGrid = {
+            new Point2D.Double(0, 0), new Point2D.Double(10.5, 0), new Point2D.Double(10.5, 10), new Point2D.Double(0, 10)
+        };
+        assertFalse(region.subtractPolygon(offGrid));
+        assertEquals(30 * 10 + 10 * 30, region.getArea(), 0);
+    }
+
+    private static Rectangle2D randomRect(Random random) {
+        int lx = random.nextInt(100) - 50;
+        int ly = random.nextInt(100) - 50;
+        return new Rectangle2D.Double(lx, ly, random.nextInt(30), random.nextInt(30));
+    }
+
+    private static ManhattanRegion randomRegion(Random random) {
+        ManhattanRegion region = new ManhattanRegion();
+        for (int i = 0; i < 20; i++) {
+            Rectangle2D rect = randomRect(random);
+            region.addRectangle((int) rect.getMinX(), (int) rect.getMinY(), (int) rect.getMaxX(), (int) rect.getMaxY());
+        }
+        return region;
+    }
+
+    private static void checkSame(Area area, ManhattanRegion region, Random random) {
+        Area regionArea = new Area(region.getShape(null));
+        Area xor = new Area(area);
+        xor.exclusiveOr(regionArea);
+        assertTrue(xor.isEmpty());
+        assertEquals(area.isEmpty(), region.isEmpty());
+        for (int i = 0; i < 50; i++) {
+            Rectangle2D rect = randomRect(random);
+            assertEquals(area.intersects(rect) && !intersection(area, rect).isEmpty(), region.intersects(rect));
+            Area clipped = new Area(region.getShape(rect));
+            assertTrue(clipped.equals(intersection(area, rect)));
+            double x = random.nextInt(200) - 100 + (random.nextBoolean() ? 0.5 : 0);
+            double y = random.nextInt(200) - 100 + (random.nextBoolean() ? 0.5 : 0);
+            assertEquals(area.contains(x, y), region.contains(x, y));
+        }
+    }
+
+    private static Area intersection(Area area, Rectangle2D rect) {
+        Area result = new Area(rect);
+        result.intersect(area);
+        return result;
+    }
+}
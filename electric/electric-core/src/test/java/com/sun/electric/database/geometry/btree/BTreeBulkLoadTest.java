@@ -0,0 +1,120 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeBulkLoadTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import com.sun.electric.database.geometry.btree.unboxed.Pair;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedInt;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of BTree.bulkLoad(), which compares bulk-loaded trees with trees filled one insert at a time.
+ */
+public class BTreeBulkLoadTest {
+
+    private static final int PAGE_SIZE = 4096 * 4;
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(BTreeBulkLoadTest.class);
+    }
+
+    private static BTree<Integer,Integer,Pair<Integer,Integer>> newTree() {
+        return new BTree<Integer,Integer,Pair<Integer,Integer>>(new MemoryPageStorage(PAGE_SIZE),
+            UnboxedInt.instance, UnboxedInt.instance, null);
+    }
+
+    @Test
+    public void testBulkLoad() {
+        Random random = new Random(0);
+        int[] sizes = { 0, 1, 2, 3, 1000, 1001, 1002, 50000, 300000 };
+        for (int size : sizes) {
+            BTree<Integer,Integer,Pair<Integer,Integer>> loaded = newTree();
+            BTree<Integer,Integer,Pair<Integer,Integer>> inserted = newTree();
+            BTree<Integer,Integer,Pair<Integer,Integer>>.BulkLoader loader = loaded.bulkLoad();
+            for (int i = 0; i < size; i++) {
+                int val = random.nextInt();
+                loader.append(i * 2, val);
+                inserted.insert(i * 2, val);
+            }
+            loader.finish();
+
+            assertEquals(size, loaded.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals(inserted.getKeyFromOrd(i), loaded.getKeyFromOrd(i));
+                assertEquals(inserted.getValFromOrd(i), loaded.getValFromOrd(i));
+                assertEquals(inserted.getValFromKey(i * 2), loaded.getValFromKey(i * 2));
+                assertNull(loaded.getValFromKey(i * 2 + 1));
+                assertEquals(i, loaded.getOrdFromKeyFloor(i * 2 + 1));
+            }
+        }
+    }
+
+    @Test
+    public void testInsertAfterBulkLoad() {
+        Random random = new Random(1);
+        BTree<Integer,Integer,Pair<Integer,Integer>> tree = newTree();
+        TreeMap<Integer,Integer> map = new TreeMap<Integer,Integer>();
+        BTree<Integer,Integer,Pair<Integer,Integer>>.BulkLoader loader = tree.bulkLoad();
+        for (int i = 0; i < 100000; i++) {
+            loader.append(i * 2, i);
+            map.put(i * 2, i);
+        }
+        loader.finish();
+
+        // appending at the end, inserting between the loaded keys, and removing some
+        for (int i = 0; i < 20000; i++) {
+            tree.insert(200000 + i, -i);
+            map.put(200000 + i, -i);
+            int key = random.nextInt(200000) | 1;
+            if (!map.containsKey(key)) {
+                tree.insert(key, key);
+                map.put(key, key);
+            }
+            key = random.nextInt(200000) & ~1;
+            if (map.remove(key) != null)
+                tree.remove(key);
+        }
+
+        assertEquals(map.size(), tree.size());
+        int ord = 0;
+        for (Map.Entry<Integer,Integer> e : map.entrySet()) {
+            assertEquals(e.getKey(), tree.getKeyFromOrd(ord));
+            assertEquals(e.getValue(), tree.getValFromOrd(ord));
+            assertEquals(e.getValue(), tree.getValFromKey(e.getKey()));
+            ord++;
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnsortedKeys() {
+        BTree<Integer,Integer,Pair<Integer,Integer>>.BulkLoader loader = newTree().bulkLoad();
+        loader.append(2, 0);
+        loader.append(1, 0);
+    }
+}
@@ -0,0 +1,94 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedPageStorageTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of MappedPageStorage, alone and as the second tier of an OverflowPageStorage.
+ */
+public class MappedPageStorageTest {
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(MappedPageStorageTest.class);
+    }
+
+    private static byte[] page(int size, int seed) {
+        byte[] buf = new byte[size];
+        new Random(seed).nextBytes(buf);
+        return buf;
+    }
+
+    @Test
+    public void testSegments() {
+        MappedPageStorage ps = MappedPageStorage.create();
+        int size = ps.getPageSize();
+        assertEquals(0, ps.getNumPages());
+
+        // 64MB segments of 4096 pages: check pages at both sides of the first boundary
+        int[] pages = { 0, 1, 4095, 4096, 4097, 5000 };
+        for (int i = 0; i <= 5000; i++)
+            assertEquals(i, ps.createPage());
+        assertEquals(5001, ps.getNumPages());
+        for (int p : pages)
+            ps.writePage(p, page(size, p), 0);
+
+        byte[] buf = new byte[size + 10];
+        for (int p : pages) {
+            ps.readPage(p, buf, 10);
+            byte[] expected = page(size, p);
+            for (int i = 0; i < size; i++)
+                assertEquals(expected[i], buf[i + 10]);
+        }
+
+        // pages are independent
+        ps.writePage(4096, new byte[size], 0);
+        ps.readPage(4095, buf, 0);
+        assertEquals(page(size, 4095)[size - 1], buf[size - 1]);
+        ps.close();
+    }
+
+    @Test
+    public void testOverflow() {
+        MappedPageStorage mps = MappedPageStorage.create();
+        int size = mps.getPageSize();
+        OverflowPageStorage ps = new OverflowPageStorage(new MemoryPageStorage(size), mps, 10L * size);
+        for (int p = 0; p < 30; p++) {
+            assertEquals(p, ps.createPage());
+            ps.writePage(p, page(size, p), 0);
+            if (p < 10) assertEquals(0, mps.getNumPages());
+        }
+        assertEquals(30, mps.getNumPages());
+
+        byte[] buf = new byte[size];
+        for (int p = 0; p < 30; p++) {
+            ps.readPage(p, buf, 0);
+            assertArrayEquals(page(size, p), buf);
+        }
+        ps.close();
+    }
+}
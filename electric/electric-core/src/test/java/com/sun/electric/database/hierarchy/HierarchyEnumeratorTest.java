@@ -0,0 +1,131 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HierarchyEnumeratorTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.hierarchy;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that per-Cell and shared traversals agree with
+ * the plain enumeration of every Cell instance.
+ */
+public class HierarchyEnumeratorTest extends AbstractJunitBaseClass {
+
+    /** Counts the flattened primitive Nodables, and records the calls it receives. */
+    private static class FlatCounter extends HierarchyEnumerator.Visitor {
+
+        private final boolean skipCells;
+        private int numPrimitives;
+        private final List<String> calls = new ArrayList<String>();
+
+        FlatCounter(boolean skipCells) {
+            this.skipCells = skipCells;
+        }
+
+        public boolean enterCell(HierarchyEnumerator.CellInfo info) {
+            calls.add("enter " + info.getContext().getInstPath("/"));
+            return true;
+        }
+
+        public void exitCell(HierarchyEnumerator.CellInfo info) {
+            calls.add("exit " + info.getContext().getInstPath("/"));
+        }
+
+        public boolean visitNodeInst(Nodable no, HierarchyEnumerator.CellInfo info) {
+            calls.add("visit " + info.getUniqueNodableName(no, "/"));
+            if (!no.isCellInstance()) {
+                numPrimitives++;
+            }
+            return !skipCells;
+        }
+    }
+
+    /** Counts the flattened primitive Nodables below each Cell. */
+    private static class CellCounter extends HierarchyEnumerator.CellVisitor<Integer> {
+
+        private final Environment env = Environment.getThreadEnvironment();
+        private final EditingPreferences ep = EditingPreferences.getThreadEditingPreferences();
+
+        public Integer visitCell(Netlist netlist, Map<CellId, Integer> subCellResults) {
+            // worker threads must see the settings of the thread that started the traversal
+            if (Environment.getThreadEnvironment() != env || EditingPreferences.getThreadEditingPreferences() != ep) {
+                throw new IllegalStateException("visited without the Environment in " + Thread.currentThread().getName());
+            }
+            int numPrimitives = 0;
+            for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext();) {
+                Nodable no = it.next();
+                if (!no.isCellInstance()) {
+                    numPrimitives++;
+                } else if (!((Cell) no.getProto()).isIcon()) {
+                    numPrimitives += subCellResults.get(netlist.getNetlist(no).getCell().getId()).intValue();
+                }
+            }
+            return Integer.valueOf(numPrimitives);
+        }
+    }
+
+    @Test
+    public void testTraversals() throws Exception {
+        URL url = HierarchyEnumeratorTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cell.isIcon()) {
+                continue;
+            }
+            Netlist netlist = cell.getNetlist();
+
+            FlatCounter flat = new FlatCounter(false);
+            HierarchyEnumerator.enumerateCell(netlist, VarContext.globalContext, flat);
+            FlatCounter top = new FlatCounter(true);
+            HierarchyEnumerator.enumerateCell(netlist, VarContext.globalContext, top);
+
+            FlatCounter sharedFlat = new FlatCounter(false);
+            FlatCounter sharedTop = new FlatCounter(true);
+            HierarchyEnumerator.enumerateCell(netlist, VarContext.globalContext,
+                    new HierarchyEnumerator.MultiVisitor(sharedFlat, sharedTop));
+            assertEquals(flat.calls, sharedFlat.calls);
+            assertEquals(top.calls, sharedTop.calls);
+
+            Map<CellId, Integer> serial = HierarchyEnumerator.enumerateCells(netlist, new CellCounter(), 1);
+            Map<CellId, Integer> parallel = HierarchyEnumerator.enumerateCells(netlist, new CellCounter(), 4);
+            assertEquals(flat.numPrimitives, serial.get(cell.getId()).intValue());
+            assertEquals(serial, parallel);
+        }
+    }
+}
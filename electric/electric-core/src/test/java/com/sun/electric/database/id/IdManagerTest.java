@@ -24,7 +24,6 @@
  */
 package com.sun.electric.database.id;
 
-import com.sun.electric.database.CellBackup;
 import com.sun.electric.database.LibraryBackup;
 import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.text.CellName;
@@ -155,7 +154,7 @@ public class IdManagerTest {
 
         assertSame(idManager, initialSnapshot.idManager);
         assertEquals(0, initialSnapshot.snapshotId);
-        assertSame(CellBackup.EMPTY_LIST, initialSnapshot.cellBackups);
+        assertEquals(0, initialSnapshot.getNumCells());
         assertSame(LibraryBackup.EMPTY_LIST, initialSnapshot.libBackups);
 
         assertSame(initialSnapshot, idManager.getInitialSnapshot());
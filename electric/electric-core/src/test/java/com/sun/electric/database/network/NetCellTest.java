@@ -0,0 +1,100 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NetCellTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.network;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that netlists updated after small edits are
+ * the same as netlists computed from scratch.
+ */
+public class NetCellTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        URL url = NetCellTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        Random random = new Random(0);
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cell.isIcon() || cell.isSchematic()) {
+                continue;
+            }
+            cell.getNetlist();
+            for (int step = 0; step < 10 && cell.getNumArcs() >= 2; step++) {
+                ArcInst ai = cell.getArc(random.nextInt(cell.getNumArcs()));
+                switch (random.nextInt(4)) {
+                    case 0:
+                        ai.kill();
+                        break;
+                    case 1:
+                        ArcInst other = cell.getArc(random.nextInt(cell.getNumArcs()));
+                        if (other.getProto() == ai.getProto()) {
+                            ArcInst.newInstanceBase(ai.getProto(), ai.getLambdaBaseWidth(), ai.getHeadPortInst(), other.getTailPortInst());
+                        }
+                        break;
+                    case 2:
+                        ai.setName("net" + step);
+                        break;
+                    case 3:
+                        NodeInst ni = cell.getNode(random.nextInt(cell.getNumNodes()));
+                        ni.move(1, 0);
+                        break;
+                }
+                checkNetlist(cell);
+            }
+        }
+    }
+
+    private void checkNetlist(Cell cell) {
+        Netlist netlist = cell.getNetlist();
+        NetCell netCell = netlist.netCell;
+        NetCell newNetCell = NetCell.newInstance(cell);
+        Netlist newNetlist = newNetCell.getNetlist(Netlist.ShortResistors.NO);
+        assertTrue(Arrays.equals(newNetCell.drawns, netCell.drawns));
+        assertEquals(newNetCell.numDrawns, netCell.numDrawns);
+        assertEquals(newNetCell.numExportedDrawns, netCell.numExportedDrawns);
+        assertEquals(newNetCell.numConnectedDrawns, netCell.numConnectedDrawns);
+        assertTrue(Arrays.equals(newNetlist.nm_net, netlist.nm_net));
+        for (int netIndex = 0; netIndex < newNetlist.getNumNetworks(); netIndex++) {
+            assertEquals(newNetlist.getNetwork(netIndex).describe(false), netlist.getNetwork(netIndex).describe(false));
+        }
+        Netlist shorted = cell.getNetlist(Netlist.ShortResistors.ALL);
+        Netlist newShorted = newNetCell.getNetlist(Netlist.ShortResistors.ALL);
+        assertTrue(Arrays.equals(newShorted.nm_net, shorted.nm_net));
+    }
+}
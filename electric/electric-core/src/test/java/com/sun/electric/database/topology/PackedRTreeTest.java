@@ -0,0 +1,91 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PackedRTreeTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.topology;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.awt.geom.Rectangle2D;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that searches in packed R-Trees find
+ * the same objects as searches in RTNode R-Trees.
+ */
+public class PackedRTreeTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testSearch() throws Exception {
+        URL url = PackedRTreeTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        Random random = new Random(0);
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            Topology topology = cell.getTopology();
+            PackedRTree tree = topology.getPackedRTree();
+            tree.check();
+            assertEquals(cell.getNumNodes() + cell.getNumArcs(), tree.getNumObjects());
+            Rectangle2D cellBounds = cell.getBounds();
+            for (int i = 0; i < 20; i++) {
+                double x = cellBounds.getMinX() + random.nextDouble() * cellBounds.getWidth();
+                double y = cellBounds.getMinY() + random.nextDouble() * cellBounds.getHeight();
+                double w = random.nextDouble() * cellBounds.getWidth() / 4;
+                double h = random.nextDouble() * cellBounds.getHeight() / 4;
+                Rectangle2D bounds = new Rectangle2D.Double(x, y, w, h);
+                checkSearch(topology, bounds, true);
+                checkSearch(topology, bounds, false);
+            }
+            checkSearch(topology, cellBounds, true);
+            checkSearch(topology, cellBounds, false);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        Rectangle2D bounds = new Rectangle2D.Double(-1, -1, 2, 2);
+        assertFalse(new PackedRTree.Search(bounds, PackedRTree.EMPTY, true).hasNext());
+        assertNull(PackedRTree.EMPTY.getBounds());
+    }
+
+    private void checkSearch(Topology topology, Rectangle2D bounds, boolean includeEdges) {
+        Set<RTBounds> expected = new HashSet<RTBounds>();
+        for (RTNode.Search sea = new RTNode.Search(bounds, topology.getRTree(), includeEdges); sea.hasNext();) {
+            expected.add(sea.next());
+        }
+        Set<RTBounds> found = new HashSet<RTBounds>();
+        for (Iterator<RTBounds> it = topology.searchIterator(bounds, includeEdges); it.hasNext();) {
+            assertTrue(found.add(it.next()));
+        }
+        assertEquals(expected, found);
+    }
+}
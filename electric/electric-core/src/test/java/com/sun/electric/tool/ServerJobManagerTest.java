@@ -0,0 +1,109 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ServerJobManagerTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests the order in which ServerJobManager starts waiting jobs.
+ */
+public class ServerJobManagerTest {
+
+    private static EJob newEJob(Job.Type jobType, Job.Priority priority, String jobName) {
+        return new EJob(null, jobType, jobName, priority, null);
+    }
+
+    /**
+     * Method to start waiting jobs until no job can be started.
+     * @return names of started jobs in the order they were started.
+     */
+    private static List<String> startAll(List<EJob> waitingJobs, boolean noStartedJobs) {
+        List<String> started = new ArrayList<String>();
+        for (;;) {
+            int jobIndex = ServerJobManager.selectWaitingJob(waitingJobs, noStartedJobs);
+            if (jobIndex < 0) {
+                return started;
+            }
+            started.add(ServerJobManager.removeWaitingJob(waitingJobs, jobIndex).jobName);
+        }
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        List<EJob> waitingJobs = new ArrayList<EJob>();
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.ANALYSIS, "analysis1"));
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.USER, "user1"));
+        waitingJobs.add(newEJob(Job.Type.CLIENT_EXAMINE, Job.Priority.VISCHANGES, "visChanges"));
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.USER, "user2"));
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.ANALYSIS, "analysis2"));
+        waitingJobs.add(newEJob(Job.Type.CHANGE, Job.Priority.USER, "change"));
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.USER, "user3"));
+
+        // examine jobs before the change job, by priority, then in queue order
+        assertEquals(Arrays.asList("user1", "user2", "visChanges", "analysis1", "analysis2"),
+                startAll(waitingJobs, false));
+
+        // the change job waits for running jobs and runs alone
+        assertEquals(-1, ServerJobManager.selectWaitingJob(waitingJobs, false));
+        assertEquals(0, ServerJobManager.selectWaitingJob(waitingJobs, true));
+        ServerJobManager.removeWaitingJob(waitingJobs, 0);
+        assertEquals(Arrays.asList("user3"), startAll(waitingJobs, false));
+    }
+
+    @Test
+    public void testOnMySnapshot() {
+        List<EJob> waitingJobs = new ArrayList<EJob>();
+        EJob onMySnapshot = newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.ANALYSIS, "onMySnapshot");
+        onMySnapshot.onMySnapshot = true;
+        waitingJobs.add(onMySnapshot);
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.USER, "user"));
+        assertEquals(0, ServerJobManager.selectWaitingJob(waitingJobs, false));
+    }
+
+    @Test
+    public void testNoStarvation() {
+        List<EJob> waitingJobs = new ArrayList<EJob>();
+        waitingJobs.add(newEJob(Job.Type.SERVER_EXAMINE, Job.Priority.ANALYSIS, "analysis"));
+        waitingJobs.add(newEJob(Job.Type.CLIENT_EXAMINE, Job.Priority.USER, "user"));
+
+        // a steady stream of USER jobs overtakes the ANALYSIS job only MAX_OVERTAKES times
+        int numStarted = 0;
+        for (;;) {
+            int jobIndex = ServerJobManager.selectWaitingJob(waitingJobs, false);
+            EJob ejob = ServerJobManager.removeWaitingJob(waitingJobs, jobIndex);
+            if (ejob.jobName.equals("analysis")) {
+                break;
+            }
+            numStarted++;
+            assertTrue(numStarted <= ServerJobManager.MAX_OVERTAKES);
+            waitingJobs.add(newEJob(Job.Type.CLIENT_EXAMINE, Job.Priority.USER, "user"));
+        }
+        assertEquals(ServerJobManager.MAX_OVERTAKES, numStarted);
+    }
+}
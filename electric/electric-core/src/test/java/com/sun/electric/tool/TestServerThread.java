@@ -0,0 +1,93 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: TestServerThread.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.variable.UserInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread which runs test code as server code of a Job, without the Job queue.
+ * Tools which assert Job.inServerThread() can be tested this way.
+ */
+public class TestServerThread extends EThread {
+
+    private final Runnable body;
+    private final Environment env;
+    private final EditingPreferences ep;
+    private final UserInterface ui;
+    private Throwable exception;
+
+    private TestServerThread(String name, Runnable body) {
+        super(name);
+        this.body = body;
+        env = Environment.getThreadEnvironment();
+        ep = EditingPreferences.getThreadEditingPreferences();
+        ui = Job.getUserInterface();
+    }
+
+    @Override
+    UserInterface getUserInterface() {
+        return ui;
+    }
+
+    @Override
+    public void run() {
+        isServerThread = true;
+        database = EDatabase.serverDatabase();
+        Environment.setThreadEnvironment(env);
+        EditingPreferences.setThreadEditingPreferences(ep);
+        try {
+            body.run();
+        } catch (Throwable e) {
+            exception = e;
+        }
+    }
+
+    /**
+     * Method to run "bodies" concurrently on server threads and to wait for all of them.
+     * The threads get the Environment, EditingPreferences and UserInterface of the calling thread.
+     * The first exception or assertion error of a body is thrown again by this method.
+     */
+    public static void run(Runnable... bodies) throws Throwable {
+        List<TestServerThread> threads = new ArrayList<TestServerThread>();
+        for (Runnable body : bodies) {
+            TestServerThread thread = new TestServerThread("Test server " + threads.size(), body);
+            threads.add(thread);
+            thread.start();
+        }
+        for (TestServerThread thread : threads) {
+            thread.join();
+        }
+        for (TestServerThread thread : threads) {
+            if (thread.exception != null) {
+                throw thread.exception;
+            }
+        }
+    }
+}
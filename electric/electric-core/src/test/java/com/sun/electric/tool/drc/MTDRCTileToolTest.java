@@ -0,0 +1,137 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MTDRCTileToolTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.geometry.GeometryHandler;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.TestServerThread;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.tool.util.test.TstUserInterface;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that the tiled DRC finds the same errors as the serial DRC,
+ * for hierarchical and flat cells split into tiles whose seams many objects cross.
+ */
+public class MTDRCTileToolTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testTilesMatchSerial() throws Throwable {
+        URL url = MTDRCTileToolTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        // the checks run as examine jobs, on a database whose cell trees are up to date
+        EDatabase.serverDatabase().backup();
+        int numCells = 0;
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (!cell.isLayout()) {
+                continue;
+            }
+            numCells++;
+            // the jobs which store the DRC dates need a current cell
+            ((TstUserInterface)Job.getUserInterface()).setCurrentCell(cell);
+            List<String> serial = checkSerial(cell);
+            for (int numTiles : new int[] {1, 4, 25}) {
+                assertEquals(cell + " in " + numTiles + " tiles", serial, checkTiled(cell, numTiles));
+            }
+        }
+        assertTrue(numCells > 0);
+    }
+
+    private static DRC.DRCPreferences getPreferences() {
+        DRC.DRCPreferences dp = new DRC.DRCPreferences(true);
+        // no DRC dates in the database, so that every check starts from scratch
+        dp.storeDatesInMemory = true;
+        return dp;
+    }
+
+    private static List<String> checkSerial(final Cell cell) throws Throwable {
+        final ErrorLogger errorLog = DRC.getDRCErrorLogger(true, null);
+        TestServerThread.run(new Runnable() {
+            public void run() {
+                Quick.checkDesignRules(errorLog, cell, null, null, null, null, getPreferences(),
+                        GeometryHandler.GHMode.ALGO_SWEEP, false);
+            }
+        });
+        // forget the DRC dates stored by the check
+        DRC.resetDRCDates(false);
+        return describe(errorLog);
+    }
+
+    /**
+     * Method to check the tiles concurrently, one thread per tile, as MTDRCTileTool does with its tasks.
+     */
+    private static List<String> checkTiled(final Cell cell, int numTiles) throws Throwable {
+        final ErrorLogger errorLog = DRC.getDRCErrorLogger(true, ", tiled");
+        final Quick[] quick = new Quick[1];
+        TestServerThread.run(new Runnable() {
+            public void run() {
+                quick[0] = Quick.prepareTiles(errorLog, cell, null, getPreferences(), GeometryHandler.GHMode.ALGO_SWEEP);
+            }
+        });
+        if (quick[0] != null) {
+            // tiles of no minimal size, so that many objects cross their seams
+            final MTDRCTileTool.TileGrid tileGrid = new MTDRCTileTool.TileGrid(cell.getBounds(), 0, numTiles);
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            tasks.add(new Runnable() {
+                public void run() {
+                    assertTrue(quick[0].checkTiledArea().isRunFine());
+                }
+            });
+            for (int i = 0; i < tileGrid.getNumTiles(); i++) {
+                final int tileIndex = i;
+                tasks.add(new Runnable() {
+                    public void run() {
+                        assertTrue(quick[0].checkTile(tileGrid, tileIndex).isRunFine());
+                    }
+                });
+            }
+            TestServerThread.run(tasks.toArray(new Runnable[tasks.size()]));
+        }
+        return describe(errorLog);
+    }
+
+    private static List<String> describe(ErrorLogger errorLog) {
+        List<String> errors = new ArrayList<String>();
+        for (Iterator<ErrorLogger.MessageLog> it = errorLog.getLogs(); it.hasNext();) {
+            ErrorLogger.MessageLog log = it.next();
+            errors.add(log.getMessageString());
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+}
@@ -0,0 +1,136 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that a GDS file read through memory-mapped windows on several
+ * threads gives the same cells as a GDS file read as a stream on one thread,
+ * also when records cross the edges of the windows and of the batches of structures.
+ */
+public class GDSTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testReaderThreads() throws Exception {
+        URL url = GDSTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        File file = File.createTempFile("gds", ".gds");
+        int numCells = 0;
+        try {
+            for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+                Cell cell = it.next();
+                if (!cell.isLayout()) {
+                    continue;
+                }
+                com.sun.electric.tool.io.output.GDS.GDSPreferences out = new com.sun.electric.tool.io.output.GDS.GDSPreferences(true);
+                assertNotNull(cell.toString(), out.doOutput(cell, VarContext.globalContext, file.getPath()));
+                URL fileURL = file.toURI().toURL();
+                String name = "gds" + numCells++;
+
+                List<String> serial = describe(readGDS(fileURL, name + "serial", cell, 1));
+                assertFalse(cell.toString(), serial.isEmpty());
+                assertEquals(cell.toString(), serial, describe(readGDS(fileURL, name + "parallel", cell, 4)));
+                long mappedWindowSize = GDS.mappedWindowSize;
+                long structureBatchSize = GDS.structureBatchSize;
+                try {
+                    // windows and batches of odd sizes, which records and structures cross
+                    GDS.mappedWindowSize = 37;
+                    GDS.structureBatchSize = 101;
+                    assertEquals(cell.toString(), serial, describe(readGDS(fileURL, name + "small", cell, 4)));
+                } finally {
+                    GDS.mappedWindowSize = mappedWindowSize;
+                    GDS.structureBatchSize = structureBatchSize;
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        assertTrue(numCells > 0);
+    }
+
+    /**
+     * Read a GDS file into a new library.
+     * @param numThreads the number of threads; 1 reads the file as a stream.
+     */
+    private static Library readGDS(URL fileURL, String libName, Cell cell, int numThreads) {
+        Library lib = Library.newInstance(libName, null);
+        GDS.GDSPreferences in = new GDS.GDSPreferences(true);
+        in.readThreads = numThreads;
+        assertNotNull(cell.toString(), in.doInput(fileURL, lib, cell.getTechnology(),
+                new HashMap<Library, Cell>(), new HashMap<CellId, BitSet>(), null));
+        return lib;
+    }
+
+    /**
+     * Describe the cells of a library with their nodes, arcs and exports.
+     * Cells are described by their names, because each library has its own cells.
+     */
+    private static List<String> describe(Library lib) {
+        List<String> desc = new ArrayList<String>();
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            List<String> objs = new ArrayList<String>();
+            for (Iterator<NodeInst> nit = cell.getNodes(); nit.hasNext();) {
+                NodeInst ni = nit.next();
+                objs.add("node " + ni.getProto().getName() + " " + ni.getName() + " " + ni.getAnchorCenter() + " "
+                        + ni.getOrient() + " " + ni.getD().size + " " + Arrays.toString(ni.getTrace()));
+            }
+            for (Iterator<ArcInst> ait = cell.getArcs(); ait.hasNext();) {
+                ArcInst ai = ait.next();
+                objs.add("arc " + ai.getProto().getName() + " " + ai.getName() + " " + ai.getGridBaseWidth() + " "
+                        + ai.getHeadLocation() + " " + ai.getTailLocation());
+            }
+            for (Iterator<Export> eit = cell.getExports(); eit.hasNext();) {
+                Export e = eit.next();
+                objs.add("export " + e.getName() + " " + e.getOriginalPort().getNodeInst().getName() + " "
+                        + e.getCharacteristic());
+            }
+            Collections.sort(objs);
+            desc.add("cell " + cell.getName() + " " + cell.getView() + " " + objs);
+        }
+        return desc;
+    }
+}
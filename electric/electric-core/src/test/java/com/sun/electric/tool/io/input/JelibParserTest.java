@@ -0,0 +1,204 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibParserTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.id.ArcProtoId;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.NodeProtoId;
+import com.sun.electric.database.id.PrimitiveNodeId;
+import com.sun.electric.database.variable.Variable;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that cell contents parsed in a thread pool are the same as
+ * cell contents parsed in one thread.
+ */
+public class JelibParserTest extends AbstractJunitBaseClass {
+
+    private static final String TEST_DATA = "/com/sun/electric/tool/util/test/testData/";
+    /** small batches, so that even small libraries are parsed by several tasks */
+    private static final int BATCH_LINES = 16;
+
+    @Test
+    public void testParserThreads() throws Exception {
+        for (String libName: new String[] {"placementTests", "testLib", "routingMetrics"}) {
+            URL url = JelibParserTest.class.getResource(TEST_DATA + libName + ".jelib");
+            ErrorLogger serialErrors = ErrorLogger.newInstance("serial");
+            ErrorLogger parallelErrors = ErrorLogger.newInstance("parallel");
+            List<String> serial = describe(parse(url, 1, serialErrors));
+            List<String> parallel = describe(parse(url, 4, parallelErrors));
+            assertFalse(serial.isEmpty());
+            assertEquals(libName, serial, parallel);
+            assertEquals(libName, getMessages(serialErrors), getMessages(parallelErrors));
+        }
+    }
+
+    @Test
+    public void testIdOrder() throws Exception {
+        for (String libName: new String[] {"placementTests", "testLib", "routingMetrics"}) {
+            URL url = JelibParserTest.class.getResource(TEST_DATA + libName + ".jelib");
+            List<String> serial = describeIds(parse(url, 1, ErrorLogger.newInstance("serial")));
+            List<String> parallel = describeIds(parse(url, 4, ErrorLogger.newInstance("parallel")));
+            assertFalse(serial.isEmpty());
+            assertEquals(libName, serial, parallel);
+        }
+    }
+
+    @Test
+    public void testErrorLines() throws Exception {
+        URL url = JelibParserTest.class.getResource(TEST_DATA + "placementTests.jelib");
+
+        // truncate every fifth node line of the library
+        File file = File.createTempFile("parser", ".jelib");
+        List<Integer> badLines = new ArrayList<Integer>();
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            int lineNumber = 0;
+            int numNodes = 0;
+            for (String line; (line = in.readLine()) != null; ) {
+                lineNumber++;
+                if (line.startsWith("N") && numNodes++ % 5 == 0) {
+                    line = line.substring(0, line.indexOf('|', line.indexOf('|') + 1));
+                    badLines.add(lineNumber);
+                }
+                out.println(line);
+            }
+            in.close();
+            out.close();
+            assertTrue(badLines.size() > BATCH_LINES);
+
+            URL fileURL = file.toURI().toURL();
+            ErrorLogger serialErrors = ErrorLogger.newInstance("serial");
+            ErrorLogger parallelErrors = ErrorLogger.newInstance("parallel");
+            parse(fileURL, 1, serialErrors);
+            parse(fileURL, 4, parallelErrors);
+            List<String> serial = getMessages(serialErrors);
+            assertEquals(serial, getMessages(parallelErrors));
+            for (int badLine: badLines) {
+                boolean found = false;
+                for (String message: serial) {
+                    found = found || message.contains(", line " + badLine + ", Node instance needs");
+                }
+                assertTrue("line " + badLine, found);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static JelibParser parse(URL url, int numThreads, ErrorLogger errorLogger) throws Exception {
+        IdManager idManager = new IdManager();
+        return JelibParser.parse(idManager.newLibId("lib"), url, FileType.JELIB, false, errorLogger, numThreads, BATCH_LINES);
+    }
+
+    /**
+     * Method to describe the nodes, arcs and exports of all cells with their line numbers.
+     * Ids are described by their names, because each parse has its own IdManager.
+     */
+    private static List<String> describe(JelibParser parser) {
+        List<String> result = new ArrayList<String>();
+        for (JelibParser.CellContents cc: parser.allCells.values()) {
+            result.add("cell " + cc.cellId + " " + cc.lineNumber);
+            for (JelibParser.NodeContents n: cc.nodes) {
+                result.add("node " + n.line + " " + n.protoId + " " + n.nodeName + " " + n.anchor + " " + n.orient + " " +
+                        n.size + " " + n.flags + " " + n.techBits + " " + describe(n.vars));
+            }
+            for (JelibParser.ArcContents a: cc.arcs) {
+                result.add("arc " + a.line + " " + a.arcProtoId + " " + a.arcName + " " + a.diskWidth + " " +
+                        a.headNode.nodeName + " " + a.headPort + " " + a.headPoint + " " +
+                        a.tailNode.nodeName + " " + a.tailPort + " " + a.tailPoint + " " +
+                        a.angle + " " + a.flags + " " + describe(a.vars));
+            }
+            for (JelibParser.ExportContents e: cc.exports) {
+                result.add("export " + e.line + " " + e.exportId + " " + e.exportUserName + " " +
+                        e.originalNode.nodeName + " " + e.originalPort + " " + e.ch + " " +
+                        e.alwaysDrawn + " " + e.bodyOnly + " " + e.pos + " " + describe(e.vars));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method to describe the indices of the ids of cells and of the prototypes of nodes and arcs.
+     * Each parse has its own IdManager, so the indices tell in which order ids were created.
+     */
+    private static List<String> describeIds(JelibParser parser) {
+        List<String> result = new ArrayList<String>();
+        for (JelibParser.CellContents cc: parser.allCells.values()) {
+            result.add("cell " + cc.cellId + " " + cc.cellId.cellIndex + " " + cc.cellId.libId.libIndex);
+            for (JelibParser.NodeContents n: cc.nodes)
+                result.add("node " + n.line + " " + n.protoId + " " + describe(n.protoId));
+            for (JelibParser.ArcContents a: cc.arcs) {
+                ArcProtoId arcProtoId = a.arcProtoId;
+                result.add("arc " + a.line + " " + arcProtoId + " " + arcProtoId.techId.techIndex + " " + arcProtoId.chronIndex);
+            }
+        }
+        return result;
+    }
+
+    private static String describe(NodeProtoId protoId) {
+        if (protoId instanceof CellId) {
+            CellId cellId = (CellId)protoId;
+            return cellId.cellIndex + " " + cellId.libId.libIndex;
+        }
+        PrimitiveNodeId pnId = (PrimitiveNodeId)protoId;
+        return pnId.techId.techIndex + " " + pnId.chronIndex;
+    }
+
+    private static String describe(Variable[] vars) {
+        return vars != null ? Arrays.toString(vars) : "";
+    }
+
+    /**
+     * Method to get the messages of an ErrorLogger.
+     * Messages are sorted, because cells may be parsed in any order.
+     */
+    private static List<String> getMessages(ErrorLogger errorLogger) {
+        List<String> messages = new ArrayList<String>();
+        for (int i = 0; i < errorLogger.getNumLogs(); i++) {
+            messages.add(errorLogger.getLog(i).getMessageString());
+        }
+        Collections.sort(messages);
+        return messages;
+    }
+}
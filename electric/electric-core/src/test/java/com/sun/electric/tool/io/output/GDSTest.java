@@ -0,0 +1,102 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.output;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that GDS files written on several threads are the same as files
+ * written on one thread, with and without merging, and when the writer has to wait
+ * for queued structures.
+ */
+public class GDSTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testWriterThreads() throws Exception {
+        URL url = GDSTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        File file = File.createTempFile("gds", ".gds");
+        int numCells = 0;
+        try {
+            for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+                Cell cell = it.next();
+                if (!cell.isLayout()) {
+                    continue;
+                }
+                numCells++;
+                for (boolean merge : new boolean[]{false, true}) {
+                    byte[] serial = writeGDS(cell, merge, 1, false, file);
+                    assertTrue(cell.toString(), serial.length > 0);
+                    assertArrayEquals(cell.toString(), serial, writeGDS(cell, merge, 4, false, file));
+                    assertArrayEquals(cell.toString(), serial, writeGDS(cell, merge, 4, true, file));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        assertTrue(numCells > 0);
+    }
+
+    /**
+     * Write a cell to a GDS file and read it back.
+     * @param backPressure true to let no structure wait in the queue, so that
+     * the traversal waits for each structure to be encoded.
+     */
+    private static byte[] writeGDS(Cell cell, boolean merge, int numThreads, boolean backPressure, File file)
+            throws IOException {
+        GDS.GDSPreferences gp = new GDS.GDSPreferences(true);
+        gp.outMergesBoxes = merge;
+        gp.writeThreads = numThreads;
+        if (backPressure) {
+            gp.maxPendingBytes = 0;
+            gp.maxPendingPerThread = 0;
+        }
+        assertNotNull(cell.toString(), gp.doOutput(cell, VarContext.globalContext, file.getPath()));
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int len = 0;
+            while (len < bytes.length) {
+                len += in.read(bytes, len, bytes.length - len);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
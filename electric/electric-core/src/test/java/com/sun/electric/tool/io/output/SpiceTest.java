@@ -0,0 +1,113 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SpiceTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.output;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.hierarchy.Nodable;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that Spice decks written on several threads are the same as decks
+ * written on one thread.
+ */
+public class SpiceTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testWriterThreads() throws Exception {
+        URL url = SpiceTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        File file = File.createTempFile("spice", ".spi");
+        int numOverrides = 0;
+        try {
+            for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+                Cell cell = it.next();
+                if (cell.isIcon()) {
+                    continue;
+                }
+
+                // describe the last subcell in a model file, so that the deck has text between subcircuits
+                Cell lastSubCell = null;
+                for (Iterator<Nodable> nit = cell.getNetlist().getNodables(); nit.hasNext();) {
+                    Nodable no = nit.next();
+                    if (no.isCellInstance()) {
+                        Cell subCell = (Cell) no.getProto();
+                        lastSubCell = subCell.contentsView() != null ? subCell.contentsView() : subCell;
+                    }
+                }
+                Map<Cell, String> modelFiles = new HashMap<Cell, String>();
+                if (lastSubCell != null) {
+                    modelFiles.put(lastSubCell, "models/" + lastSubCell.getName() + ".sp");
+                }
+
+                for (boolean cdl : new boolean[]{false, true}) {
+                    String serial = writeDeck(cell, cdl, modelFiles, 1, file);
+                    String parallel = writeDeck(cell, cdl, modelFiles, 4, file);
+                    assertEquals(cell.toString(), serial, parallel);
+                    if (serial.contains("is described in this file")) {
+                        numOverrides++;
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        assertTrue(numOverrides > 0);
+    }
+
+    private static String writeDeck(Cell cell, boolean cdl, Map<Cell, String> modelFiles, int numThreads, File file)
+            throws IOException {
+        Spice.SpicePreferences sp = new Spice.SpicePreferences(true, cdl);
+        sp.numThreads = numThreads;
+        sp.modelFiles = modelFiles;
+        sp.doOutput(cell, VarContext.globalContext, file.getPath());
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int len = 0;
+            while (len < bytes.length) {
+                len += in.read(bytes, len, bytes.length - len);
+            }
+        } finally {
+            in.close();
+        }
+
+        // the header has the time of writing
+        return new String(bytes, "ISO-8859-1").replaceAll("\\*\\*\\* Written on [^\n]*\n", "");
+    }
+}
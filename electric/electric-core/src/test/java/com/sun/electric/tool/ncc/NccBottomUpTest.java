@@ -0,0 +1,123 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NccBottomUpTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.ncc;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
+import com.sun.electric.tool.ncc.result.NccResult;
+import com.sun.electric.tool.ncc.result.NccResults;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that a hierarchical NCC that compares several
+ * compareLists at the same time reports the same results, in the same order,
+ * and halts at the same compareList, as a hierarchical NCC on one thread.
+ */
+public class NccBottomUpTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testConcurrentCompareLists() throws Exception {
+        URL url = NccBottomUpTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        Library copy = loadLibrary("placementTestsCopy", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        assertNotNull(copy);
+
+        // put every schematic of the copy in the group of its original, so that
+        // each level of the hierarchy gets a compareList
+        for (Iterator<Cell> it = copy.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cell.isSchematic()) {
+                NccCellAnnotations.addNccAnnotation(cell, "joinGroup placementTests:" + cell.noLibDescribe());
+            }
+        }
+        Cell cell1 = lib.findNodeProto("PlacementTest3{sch}");
+        Cell cell2 = copy.findNodeProto("PlacementTest3{sch}");
+        assertNotNull(cell1);
+        assertNotNull(cell2);
+
+        // designs that match
+        List<String> serial = describe(compare(cell1, cell2, 1, true));
+        List<String> concurrent = describe(compare(cell1, cell2, 4, true));
+        assertTrue(serial.toString(), serial.size() > 2);
+        assertTrue(serial.get(serial.size() - 1), serial.get(serial.size() - 1).startsWith("PlacementTest3{sch} true"));
+        assertEquals(serial, concurrent);
+
+        // disconnect the input of one inverter, so that its compareList doesn't match
+        Cell inv = copy.findNodeProto("inv-X_12_243{sch}");
+        ArcInst in = inv.findArc("in");
+        assertNotNull(in);
+        in.kill();
+
+        // NCC halts at the inverter
+        serial = describe(compare(cell1, cell2, 1, true));
+        concurrent = describe(compare(cell1, cell2, 4, true));
+        assertTrue(serial.get(serial.size() - 1), serial.get(serial.size() - 1).startsWith("inv-X_12_243{sch} false"));
+        assertEquals(serial, concurrent);
+
+        // NCC goes on to the top
+        List<String> all = describe(compare(cell1, cell2, 1, false));
+        assertTrue(all.size() > serial.size());
+        assertEquals(all, describe(compare(cell1, cell2, 4, false)));
+    }
+
+    private static NccResults compare(Cell cell1, Cell cell2, int numThreads, boolean haltAfterFirstMismatch) {
+        NccOptions options = new NccOptions();
+        options.operation = NccOptions.HIER_EACH_CELL;
+        options.numThreads = numThreads;
+        options.haltAfterFirstMismatch = haltAfterFirstMismatch;
+        return Ncc.compare(cell1, VarContext.globalContext, cell2, VarContext.globalContext, options);
+    }
+
+    /**
+     * Describe the results. Which Cell of a compareList is the first design
+     * depends on hash set order, so the two designs are sorted.
+     */
+    private static List<String> describe(NccResults results) {
+        List<String> desc = new ArrayList<String>();
+        for (NccResult r : results) {
+            NccResult.CellSummary summary = r.getCellSummary();
+            List<String> designs = new ArrayList<String>();
+            for (int i = 0; i < 2; i++) {
+                designs.add(r.getRootCells()[i].libDescribe() + " parts " + summary.numParts[i]
+                        + " wires " + summary.numWires[i] + " ports " + summary.numPorts[i]);
+            }
+            Collections.sort(designs);
+            desc.add(r.getRootCells()[0].noLibDescribe() + " " + r.match() + " " + r.summary(false) + " " + designs);
+        }
+        return desc;
+    }
+}
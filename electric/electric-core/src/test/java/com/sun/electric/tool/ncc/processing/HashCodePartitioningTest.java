@@ -0,0 +1,142 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HashCodePartitioningTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.ncc.processing;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.ncc.Aborter;
+import com.sun.electric.tool.ncc.NccEngine;
+import com.sun.electric.tool.ncc.NccOptions;
+import com.sun.electric.tool.ncc.result.EquivRecReport;
+import com.sun.electric.tool.ncc.result.NccResult;
+import com.sun.electric.tool.ncc.result.NetObjReport;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that hash codes computed by StratHashParallel divide
+ * EquivRecords into the same partition, in the same order, as hash codes
+ * computed on one thread. StratHashParallel itself checks, with assertions
+ * enabled, that every EquivRecord is divided in the order it was hashed by
+ * the code that one thread would have computed.
+ */
+public class HashCodePartitioningTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testParallelHashing() throws Exception {
+        boolean assertionsEnabled = false;
+        assert assertionsEnabled = true;
+        assertTrue("assertions must be enabled", assertionsEnabled);
+
+        URL url = HashCodePartitioningTest.class.getResource("/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = loadLibrary("placementTests", url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        Cell test2 = lib.findNodeProto("PlacementTest2{sch}");
+        Cell test3 = lib.findNodeProto("PlacementTest3{sch}");
+        assertNotNull(test2);
+        assertNotNull(test3);
+
+        // designs that match
+        List<String> serial = describe(compare(test3, test3, 1));
+        List<String> parallel = describe(compare(test3, test3, 4));
+        assertEquals("match true topology true", serial.get(0));
+        assertEquals(serial, parallel);
+
+        // designs that don't match, so the outcome lists the mismatched EquivRecords
+        serial = describe(compare(test3, test2, 1));
+        parallel = describe(compare(test3, test2, 4));
+        assertEquals("match false topology false", serial.get(0));
+        assertTrue(serial.size() > 1);
+        assertEquals(serial, parallel);
+    }
+
+    /**
+     * Compare two designs flat. With several threads, every EquivRecord is
+     * hashed in parallel, however small the design.
+     */
+    private static NccResult compare(Cell cell1, Cell cell2, int numThreads) {
+        NccOptions options = new NccOptions();
+        options.operation = NccOptions.FLAT_TOP_CELL;
+        options.numThreads = numThreads;
+        options.maxMismatchedEquivRecsToPrint = Integer.MAX_VALUE;
+        options.maxMatchedEquivRecsToPrint = Integer.MAX_VALUE;
+        options.maxEquivRecMembersToPrint = Integer.MAX_VALUE;
+        HierarchyInfo hierInfo = new HierarchyInfo();
+        hierInfo.beginNextCompareList(cell1.getName());
+        int minParallelNetObjs = HashCodePartitioning.minParallelNetObjs;
+        HashCodePartitioning.minParallelNetObjs = 0;
+        try {
+            return NccEngine.compare(cell1, VarContext.globalContext, cell2, VarContext.globalContext,
+                    hierInfo, options, new Aborter(null));
+        } finally {
+            HashCodePartitioning.minParallelNetObjs = minParallelNetObjs;
+        }
+    }
+
+    /**
+     * Describe the outcome of a comparison. NetObjects that NCC can't tell apart
+     * land in records in an order that depends on identity hash codes, so the
+     * mismatched records are sorted.
+     */
+    private static List<String> describe(NccResult result) {
+        List<String> records = new ArrayList<String>();
+        List<EquivRecReport> reports = new ArrayList<EquivRecReport>();
+        if (result.getNccGuiInfo().getPartRecReports() != null) {
+            reports.addAll(result.getNccGuiInfo().getPartRecReports());
+        }
+        if (result.getNccGuiInfo().getWireRecReports() != null) {
+            reports.addAll(result.getNccGuiInfo().getWireRecReports());
+        }
+        for (EquivRecReport report : reports) {
+            records.add("record " + report.hasParts() + " matched " + names(report.getMatchedNetObjs())
+                    + " not matched " + names(report.getNotMatchedNetObjs()));
+        }
+        Collections.sort(records);
+        List<String> desc = new ArrayList<String>();
+        desc.add("match " + result.match() + " topology " + result.topologyMatch());
+        desc.addAll(records);
+        return desc;
+    }
+
+    private static List<String> names(List<List<NetObjReport>> netObjs) {
+        List<String> names = new ArrayList<String>();
+        for (List<NetObjReport> objs : netObjs) {
+            List<String> ckt = new ArrayList<String>();
+            for (NetObjReport obj : objs) {
+                ckt.add(obj.instanceDescription());
+            }
+            Collections.sort(ckt);
+            names.add(ckt.toString());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,156 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DoublePairMapTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test of DoublePairMap, which is compared with a HashMap.
+ */
+public class DoublePairMapTest {
+
+	private static List<Double> key(double a, double b) {
+		return Arrays.asList(Double.valueOf(a), Double.valueOf(b));
+	}
+
+	private static void check(Map<List<Double>, Double> expected, DoublePairMap map) {
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<List<Double>, Double> e : expected.entrySet()) {
+			double a = e.getKey().get(0).doubleValue(), b = e.getKey().get(1).doubleValue();
+			assertTrue(map.contains(a, b));
+			assertEquals(e.getValue().doubleValue(), map.get(a, b, Double.NaN), 0);
+		}
+		assertEquals(expected.size() * 2, map.toArray().length);
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(0);
+		DoublePairMap map = new DoublePairMap();
+		Map<List<Double>, Double> expected = new HashMap<List<Double>, Double>();
+		for (int round = 0; round < 20; round++) {
+			// small key ranges give many collisions, and the table grows and shrinks its use
+			int range = 4 + round * 10;
+			for (int i = 0; i < 20000; i++) {
+				double a = random.nextInt(range) * 0.5, b = random.nextInt(range) - range / 2;
+				switch (random.nextInt(3)) {
+				case 0:
+					double v = random.nextDouble();
+					map.put(a, b, v);
+					expected.put(key(a, b), Double.valueOf(v));
+					break;
+				case 1:
+					assertEquals(!expected.containsKey(key(a, b)), map.add(a, b));
+					if (!expected.containsKey(key(a, b)))
+						expected.put(key(a, b), Double.valueOf(0));
+					break;
+				default:
+					assertEquals(expected.remove(key(a, b)) != null, map.remove(a, b));
+					break;
+				}
+				assertEquals(expected.containsKey(key(a, b)), map.contains(a, b));
+			}
+			check(expected, map);
+			map.clear();
+			expected.clear();
+			check(expected, map);
+		}
+	}
+
+	@Test
+	public void testNegativeZero() {
+		DoublePairMap map = new DoublePairMap();
+		map.put(0.0, 1, 5);
+		assertFalse(map.contains(-0.0, 1));
+		assertTrue(map.add(-0.0, 1));
+		assertEquals(2, map.size());
+		assertTrue(map.remove(0.0, 1));
+		assertEquals(0, map.get(-0.0, 1, Double.NaN), 0);
+	}
+
+	/**
+	 * Removing from a cluster which wraps around the end of the table must keep the cluster reachable.
+	 */
+	@Test
+	public void testProbeWraparound() throws Exception {
+		Method hash = DoublePairMap.class.getDeclaredMethod("hash", long.class, long.class);
+		hash.setAccessible(true);
+
+		// keys whose home is one of the last two slots of the initial 16
+		List<Double> keys = new ArrayList<Double>();
+		for (int i = 0; keys.size() < 6; i++) {
+			long bits = Double.doubleToLongBits(i);
+			int home = ((Integer) hash.invoke(null, Long.valueOf(bits), Long.valueOf(0))).intValue() & 15;
+			if (home >= 14)
+				keys.add(Double.valueOf(i));
+		}
+
+		for (int removed = 0; removed < keys.size(); removed++) {
+			DoublePairMap map = new DoublePairMap();
+			for (int i = 0; i < keys.size(); i++)
+				map.put(keys.get(i).doubleValue(), 0, i);
+			assertTrue(map.remove(keys.get(removed).doubleValue(), 0));
+			assertEquals(keys.size() - 1, map.size());
+			for (int i = 0; i < keys.size(); i++) {
+				assertEquals(i != removed, map.contains(keys.get(i).doubleValue(), 0));
+				if (i != removed)
+					assertEquals(i, map.get(keys.get(i).doubleValue(), 0, -1), 0);
+			}
+		}
+	}
+
+	/**
+	 * When the generation number wraps around, entries of old generations must not come back.
+	 */
+	@Test
+	public void testGenerationWraparound() throws Exception {
+		Field generation = DoublePairMap.class.getDeclaredField("generation");
+		generation.setAccessible(true);
+		DoublePairMap map = new DoublePairMap();
+		map.put(1, 2, 3);
+		map.clear();
+
+		// as if the map had been cleared 2^32 - 2 times
+		generation.setInt(map, -1);
+		map.clear();
+		assertEquals(1, generation.getInt(map));
+		assertFalse(map.contains(1, 2));
+		assertEquals(0, map.size());
+		assertTrue(map.add(1, 2));
+		assertEquals(1, map.size());
+	}
+}
@@ -32,7 +32,8 @@ import org.junit.runners.Suite.SuiteClasses;
  * 
  */
 @RunWith(Suite.class)
-@SuiteClasses( { SeaOfGatesOldTest.class, SeaOfGatesNew1Test.class, SeaOfGatesNew2Test.class, SeaOfGatesNew3Test.class })
+@SuiteClasses( { SeaOfGatesOldTest.class, SeaOfGatesNew1Test.class, SeaOfGatesNew2Test.class, SeaOfGatesNew3Test.class,
+	DoublePairMapTest.class, SearchVertexQueueTest.class, WavefrontSearchStateTest.class })
 public class SeaOfGatesTestSuite {
 
 }
@@ -0,0 +1,105 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SearchVertexQueueTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Unit test of SearchVertexQueue, which must pop vertices in the same order as the
+ * TreeSet of SearchVertex that it replaces.
+ */
+public class SearchVertexQueueTest {
+
+	private static class Vertex {
+		final int cost;
+		final double dist;
+
+		Vertex(int cost, double dist) {
+			this.cost = cost;
+			this.dist = dist;
+		}
+	}
+
+	/** the order of SearchVertex.compareTo() */
+	private static final Comparator<Vertex> ORDER = new Comparator<Vertex>() {
+		public int compare(Vertex v1, Vertex v2) {
+			int diff = v1.cost - v2.cost;
+			if (diff != 0)
+				return diff;
+			if (v1.dist < v2.dist)
+				return -1;
+			if (v1.dist > v2.dist)
+				return 1;
+			return 0;
+		}
+	};
+
+	@Test
+	public void testOrder() {
+		Random random = new Random(0);
+		double[] dists = { -0.0, 0.0, 0.5, 1, 1.5, 2.25, 10 };
+		for (int round = 0; round < 50; round++) {
+			SearchVertexQueue<Vertex> queue = new SearchVertexQueue<Vertex>();
+			TreeSet<Vertex> set = new TreeSet<Vertex>(ORDER);
+			int maxCost = 1 + round * 5;
+			for (int i = 0; i < 5000; i++) {
+				if (random.nextInt(3) != 0) {
+					Vertex v = new Vertex(random.nextInt(maxCost),
+						random.nextBoolean() ? dists[random.nextInt(dists.length)] : random.nextInt(20) * 0.25);
+					assertEquals(set.add(v), queue.add(v, v.cost, v.dist));
+				} else {
+					assertSame(set.pollFirst(), queue.removeFirst());
+				}
+				assertEquals(set.size(), queue.size());
+			}
+			while (!set.isEmpty())
+				assertSame(set.pollFirst(), queue.removeFirst());
+			assertNull(queue.removeFirst());
+		}
+	}
+
+	@Test
+	public void testClear() {
+		SearchVertexQueue<Vertex> queue = new SearchVertexQueue<Vertex>();
+		Vertex v = new Vertex(1, 2);
+		for (int i = 0; i < 100; i++)
+			queue.add(new Vertex(i, 0), i, 0);
+		queue.add(v, 1, 2);
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertNull(queue.removeFirst());
+
+		// vertices of the cleared queue no longer hide new ones
+		assertEquals(true, queue.add(v, 1, 2));
+		assertSame(v, queue.removeFirst());
+	}
+}
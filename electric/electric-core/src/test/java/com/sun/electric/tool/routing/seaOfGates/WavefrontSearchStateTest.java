@@ -0,0 +1,93 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: WavefrontSearchStateTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test of the pool of WavefrontSearchState.
+ */
+public class WavefrontSearchStateTest {
+
+	@Test
+	public void testReuse() {
+		WavefrontSearchState state = WavefrontSearchState.acquire(3);
+		assertNull(state.getPlane(2, false));
+		state.getPlane(0, true).put(1, 2, 3);
+		state.getPlane(2, true).add(4, 5);
+		state.getLayerSurround(1).put(6, 7, 8);
+		state.active.add(null, 1, 2);
+		WavefrontSearchState.release(state);
+
+		// the released state is reused empty, and its tables are kept
+		WavefrontSearchState again = WavefrontSearchState.acquire(3);
+		assertSame(state, again);
+		assertEquals(0, again.active.size());
+		assertNotNull(again.getPlane(0, false));
+		assertEquals(0, again.getPlane(0, false).size());
+		assertFalse(again.getPlane(2, false).contains(4, 5));
+		assertEquals(0, again.getLayerSurround(1).size());
+		WavefrontSearchState.release(again);
+	}
+
+	@Test
+	public void testMoreLayers() {
+		WavefrontSearchState state = WavefrontSearchState.acquire(2);
+		WavefrontSearchState.release(state);
+		WavefrontSearchState again = WavefrontSearchState.acquire(6);
+		assertNotNull(again.getPlane(5, true));
+		assertNotNull(again.getLayerSurround(5));
+		WavefrontSearchState.release(again);
+	}
+
+	@Test
+	public void testPoolSize() {
+		List<WavefrontSearchState> states = new ArrayList<WavefrontSearchState>();
+		for (int i = 0; i < 100; i++)
+			states.add(WavefrontSearchState.acquire(2));
+		for (WavefrontSearchState state : states)
+			WavefrontSearchState.release(state);
+
+		// only a bounded number of the released states are kept
+		IdentityHashMap<WavefrontSearchState, Boolean> released = new IdentityHashMap<WavefrontSearchState, Boolean>();
+		for (WavefrontSearchState state : states)
+			released.put(state, Boolean.TRUE);
+		int reused = 0;
+		for (int i = 0; i < 100; i++) {
+			if (released.containsKey(WavefrontSearchState.acquire(2)))
+				reused++;
+		}
+		assertEquals(32, reused);
+	}
+}
@@ -0,0 +1,125 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeSignalTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of BTreeSignal, which compares the views of bulk-loaded signals with those of
+ * signals filled one sample at a time.
+ */
+public class BTreeSignalTest {
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(BTreeSignalTest.class);
+    }
+
+    @Test
+    public void testBulkLoadedViews() {
+        Random random = new Random(0);
+        Stimuli sd = new Stimuli();
+        SignalCollection sc = Stimuli.newSignalCollection(sd, "TRANS SIGNALS");
+        int[] sizes = { 1, 2, 100, 5000, 300000 };
+        for (int size : sizes) {
+            double[] time = new double[size];
+            double[] values = new double[size];
+            double value = 0;
+            for (int i = 0; i < size; i++) {
+                time[i] = i * 0.5;
+                values[i] = value += random.nextGaussian();
+            }
+            Signal<ScalarSample> loaded = ScalarSample.createSignal(sc, sd, "loaded" + size, null, time, values);
+            MutableSignal<ScalarSample> inserted = ScalarSample.createSignal(sc, sd, "inserted" + size, null);
+            for (int i = 0; i < size; i++)
+                inserted.addSample(time[i], new ScalarSample(values[i]));
+
+            assertEquals(inserted.getMinValue(), loaded.getMinValue(), 0);
+            assertEquals(inserted.getMaxValue(), loaded.getMaxValue(), 0);
+            Signal.View<ScalarSample> exactLoaded = loaded.getExactView();
+            Signal.View<ScalarSample> exactInserted = inserted.getExactView();
+            assertEquals(size, exactLoaded.getNumEvents());
+            for (int i = 0; i < size; i += 1 + size / 1000) {
+                assertEquals(exactInserted.getTime(i), exactLoaded.getTime(i), 0);
+                assertEquals(exactInserted.getSample(i).getValue(), exactLoaded.getSample(i).getValue(), 0);
+            }
+
+            // the whole signal, and random windows at several resolutions
+            double end = time[size - 1];
+            compareRasters(inserted, loaded, 0, end, 500);
+            for (int j = 0; j < 20; j++) {
+                double t0 = random.nextDouble() * end;
+                double t1 = t0 + random.nextDouble() * (end - t0);
+                compareRasters(inserted, loaded, t0, t1, 1 + random.nextInt(2000));
+            }
+        }
+    }
+
+    @Test
+    public void testPyramidRanges() {
+        Random random = new Random(1);
+        Stimuli sd = new Stimuli();
+        SignalCollection sc = Stimuli.newSignalCollection(sd, "TRANS SIGNALS");
+        int size = 200000;
+        double[] time = new double[size];
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            time[i] = i * 0.5;
+            // the tree keeps values as floats
+            values[i] = (float)random.nextGaussian();
+        }
+        // a spike at the end of a window must not leak into the next window
+        values[size / 2] = 100;
+        values[size / 2 + 1] = -100;
+        Signal<ScalarSample> pyramid = ScalarSample.createSignal(sc, sd, "pyramid", null, time, values);
+
+        // replacing a sample discards the pyramid, so this signal is summarized by the tree alone
+        MutableSignal<ScalarSample> tree = ScalarSample.createSignal(sc, sd, "tree", null, time, values);
+        tree.replaceSample(time[0], new ScalarSample(values[0]));
+
+        double end = time[size - 1];
+        compareRasters(tree, pyramid, 0, end, 500);
+        compareRasters(tree, pyramid, time[size / 2] - 1000, time[size / 2 + 1] + 1000, 7);
+        for (int j = 0; j < 50; j++) {
+            double t0 = random.nextDouble() * end;
+            double t1 = t0 + random.nextDouble() * (end - t0);
+            compareRasters(tree, pyramid, t0, t1, 1 + random.nextInt(200));
+        }
+    }
+
+    private static void compareRasters(Signal<ScalarSample> expected, Signal<ScalarSample> actual,
+        double t0, double t1, int numPixels) {
+        Signal.View<RangeSample<ScalarSample>> e = expected.getRasterView(t0, t1, numPixels);
+        Signal.View<RangeSample<ScalarSample>> a = actual.getRasterView(t0, t1, numPixels);
+        assertEquals(e.getNumEvents(), a.getNumEvents());
+        for (int i = 0; i < e.getNumEvents(); i++) {
+            assertEquals(e.getTime(i), a.getTime(i), 0);
+            RangeSample<ScalarSample> es = e.getSample(i), as = a.getSample(i);
+            assertEquals(es.getMin().getValue(), as.getMin().getValue(), 0);
+            assertEquals(es.getMax().getValue(), as.getMax().getValue(), 0);
+        }
+    }
+}
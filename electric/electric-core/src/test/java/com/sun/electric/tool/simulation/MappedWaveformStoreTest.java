@@ -0,0 +1,122 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedWaveformStoreTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of MappedWaveformStore, which compares its min/max pyramid with a brute-force scan.
+ */
+public class MappedWaveformStoreTest {
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(MappedWaveformStoreTest.class);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        MappedWaveformStore.Writer writer = new MappedWaveformStore.Writer(3);
+        assertNull(writer.finish());
+    }
+
+    @Test
+    public void testFinished() throws Exception {
+        MappedWaveformStore.Writer writer = new MappedWaveformStore.Writer(2);
+        writer.addRow(0, new double[] { 1, 2 });
+        writer.addRow(1, new double[] { 3, 4 });
+        MappedWaveformStore store = writer.finish();
+        File file = store.getFile();
+        assertTrue(file.exists());
+
+        Stimuli sd = new Stimuli();
+        SignalCollection sc = Stimuli.newSignalCollection(sd, "TRANS SIGNALS");
+        Signal<ScalarSample> a = ScalarSample.createSignal(sc, sd, "a", null, store, 0);
+        Signal<ScalarSample> b = ScalarSample.createSignal(sc, sd, "b", null, store, 1);
+        assertEquals(4, b.getExactView().getSample(1).getValue(), 0);
+        sd.finished();
+        assertFalse(file.exists());
+
+        // the mapping stays readable until it is garbage-collected
+        assertEquals(3, a.getExactView().getSample(1).getValue(), 0);
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        Random random = new Random(0);
+        int[] sizes = { 1, 63, 64, 65, 1000, 4097, 70001 };
+        for (int numRows : sizes) {
+            int numSignals = 1 + random.nextInt(4);
+            double[][] values = new double[numSignals][numRows];
+            double[] row = new double[numSignals];
+            MappedWaveformStore.Writer writer = new MappedWaveformStore.Writer(numSignals);
+            for (int j = 0; j < numRows; j++) {
+                for (int i = 0; i < numSignals; i++)
+                    row[i] = values[i][j] = random.nextGaussian();
+                writer.addRow(j * 0.5, row);
+            }
+            MappedWaveformStore store = writer.finish();
+            assertEquals(numSignals, store.getNumSignals());
+            assertEquals(numRows, store.getNumRows());
+
+            for (int i = 0; i < numSignals; i++) {
+                double[] minMax = new double[2];
+                brute(values[i], 0, numRows, minMax);
+                assertEquals(minMax[0], store.getMinValue(i), 0);
+                assertEquals(minMax[1], store.getMaxValue(i), 0);
+            }
+            for (int j = 0; j < numRows; j += 1 + numRows / 50) {
+                assertEquals(j * 0.5, store.getTime(j), 0);
+                assertEquals(j, store.findRowFloor(j * 0.5 + 0.25));
+                for (int i = 0; i < numSignals; i++)
+                    assertEquals(values[i][j], store.getValue(i, j), 0);
+            }
+            assertEquals(-1, store.findRowFloor(-1));
+
+            double[] expected = new double[2];
+            double[] actual = new double[2];
+            for (int k = 0; k < 200; k++) {
+                int lo = random.nextInt(numRows);
+                int hi = lo + 1 + random.nextInt(numRows - lo);
+                int sig = random.nextInt(numSignals);
+                brute(values[sig], lo, hi, expected);
+                store.getRange(sig, lo, hi, actual);
+                assertEquals(expected[0], actual[0], 0);
+                assertEquals(expected[1], actual[1], 0);
+            }
+        }
+    }
+
+    private static void brute(double[] values, int lo, int hi, double[] minMax) {
+        minMax[0] = Double.POSITIVE_INFINITY;
+        minMax[1] = Double.NEGATIVE_INFINITY;
+        for (int j = lo; j < hi; j++) {
+            minMax[0] = Math.min(minMax[0], values[j]);
+            minMax[1] = Math.max(minMax[1], values[j]);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LayerDrawingTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import com.sun.electric.database.Environment;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.user.GraphicsPreferences;
+import com.sun.electric.tool.user.UserInterfaceMain;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests that the layer bitmaps drawn in bands of rows by several threads
+ * are the same as those drawn by one thread.
+ */
+public class LayerDrawingTest extends AbstractJunitBaseClass {
+
+    /** the size of the offscreen, which is not a multiple of the bits of an int */
+    private static final Dimension SIZE = new Dimension(301, 257);
+    /** the offscreen shows the area [-150,150] x [-128,128] of the database */
+    private static final Point2D CENTER = new Point2D.Double(0, 0);
+
+    private static GraphicsPreferences getGraphicsPreferences() throws Exception {
+        if (UserInterfaceMain.getGraphicsPreferences() == null) {
+            Field field = UserInterfaceMain.class.getDeclaredField("currentGraphicsPreferences");
+            field.setAccessible(true);
+            field.set(null, new GraphicsPreferences(true, Environment.getThreadEnvironment().techPool));
+        }
+        return UserInterfaceMain.getGraphicsPreferences();
+    }
+
+    private static Layer[] getLayers() {
+        Technology tech = Technology.findTechnology("mocmos");
+        return new Layer[] {tech.findLayer("Metal-1"), tech.findLayer("Metal-2"), tech.findLayer("Polysilicon-1"),
+            tech.findLayer("N-Well")};
+    }
+
+    /**
+     * Draws random shapes, many of which cross the edges of the bands and of the offscreen,
+     * by one thread and in 3, 8 and 16 bands, with and without patterns.
+     */
+    @Test
+    public void testBands() throws Exception {
+        GraphicsPreferences gp = getGraphicsPreferences();
+        Layer[] layers = getLayers();
+        Random random = new Random(11);
+        for (int n = 0; n < 10; n++) {
+            List<VectorCache.VectorBase> shapes = new ArrayList<VectorCache.VectorBase>();
+            for (int i = 0; i < 60; i++) {
+                Layer layer = layers[random.nextInt(layers.length)];
+                double x = random.nextInt(360) - 180 + random.nextInt(4) / 4.0;
+                double y = random.nextInt(300) - 150 + random.nextInt(4) / 4.0;
+                double w = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(120);
+                double h = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(120);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        shapes.add(new VectorCache.VectorLine(x, y, x + w, y - h, random.nextInt(4), layer, null));
+                        break;
+                    case 1:
+                        shapes.add(new VectorCache.VectorPolygon(new Point2D[] {new Point2D.Double(x, y),
+                            new Point2D.Double(x + w, y + h / 3), new Point2D.Double(x + w / 2, y + h)}, layer, null));
+                        break;
+                    case 2:
+                        shapes.add(new VectorCache.VectorCircle(x, y, x + w / 3, y, random.nextInt(3), layer, null));
+                        break;
+                    default:
+                        shapes.add(new VectorCache.VectorManhattan(x, y, x + w, y + h, layer, null, false));
+                }
+            }
+            for (boolean patterned : new boolean[] {false, true}) {
+                Map<Layer, int[]> serial = LayerDrawing.drawShapes(gp, SIZE, 1, CENTER, patterned, shapes, 1, 1);
+                assertFalse(serial.isEmpty());
+                for (int numBands : new int[] {3, 8, 16}) {
+                    Map<Layer, int[]> bands = LayerDrawing.drawShapes(gp, SIZE, 1, CENTER, patterned, shapes, numBands, 4);
+                    assertEquals(serial.keySet(), bands.keySet());
+                    for (Layer layer : serial.keySet()) {
+                        assertTrue(layer + " in " + numBands + " bands", Arrays.equals(serial.get(layer), bands.get(layer)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Boxes which fit in one int of a row are filled from their top row to their bottom row,
+     * like wider boxes. Before the bands were drawn in parallel, they lost their bottom row.
+     */
+    @Test
+    public void testNarrowBoxRows() throws Exception {
+        GraphicsPreferences gp = getGraphicsPreferences();
+        Layer layer = getLayers()[0];
+        for (boolean patterned : new boolean[] {false, true}) {
+            for (int y = -130; y < 130; y += 7) {
+                double h = (y & 3) * 2.5;
+                // columns 67 to 84 are in the third int of a row
+                List<VectorCache.VectorBase> narrow = new ArrayList<VectorCache.VectorBase>();
+                narrow.add(new VectorCache.VectorManhattan(-83, y, -66, y + h, layer, null, false));
+                List<VectorCache.VectorBase> wide = new ArrayList<VectorCache.VectorBase>();
+                wide.add(new VectorCache.VectorManhattan(-140, y, 50, y + h, layer, null, false));
+                BitSet narrowRows = getRows(LayerDrawing.drawShapes(gp, SIZE, 1, CENTER, patterned, narrow, 1, 1).get(layer));
+                BitSet wideRows = getRows(LayerDrawing.drawShapes(gp, SIZE, 1, CENTER, patterned, wide, 1, 1).get(layer));
+                if (!patterned) {
+                    assertEquals("y=" + y + " h=" + h, wideRows, narrowRows);
+                } else {
+                    // patterns leave some rows of a narrow box empty
+                    BitSet extra = (BitSet) narrowRows.clone();
+                    extra.andNot(wideRows);
+                    assertTrue("y=" + y + " h=" + h, extra.isEmpty());
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to tell which rows of a bitmap have some bits set.
+     */
+    private static BitSet getRows(int[] bits) {
+        int intsPerRow = (SIZE.width + Integer.SIZE - 1) / Integer.SIZE;
+        BitSet rows = new BitSet();
+        if (bits != null) {
+            for (int i = 0; i < bits.length; i++) {
+                if (bits[i] != 0) {
+                    rows.set(i / intsPerRow);
+                }
+            }
+        }
+        return rows;
+    }
+}
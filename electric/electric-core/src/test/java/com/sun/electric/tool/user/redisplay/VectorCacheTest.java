@@ -0,0 +1,251 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: VectorCacheTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.database.variable.Variable;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.technologies.Schematics;
+import com.sun.electric.tool.user.GraphicsPreferences;
+import com.sun.electric.tool.user.UserInterfaceMain;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Point2D;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This module tests the grid and the layer coverage of cached cells.
+ */
+public class VectorCacheTest extends AbstractJunitBaseClass {
+
+    private static final Orientation[] ORIENTATIONS = {Orientation.IDENT, Orientation.R, Orientation.YR};
+
+    /**
+     * The vector cache reads the text font from the graphics preferences, which are loaded only with the user interface.
+     */
+    private static void initGraphicsPreferences() throws Exception {
+        if (UserInterfaceMain.getGraphicsPreferences() == null) {
+            Field field = UserInterfaceMain.class.getDeclaredField("currentGraphicsPreferences");
+            field.setAccessible(true);
+            field.set(null, new GraphicsPreferences(true, Environment.getThreadEnvironment().techPool));
+        }
+    }
+
+    /**
+     * Checks that a search of the grid finds every shape and subcell which touches the searched area,
+     * and that the boxes of the shapes are all found when the area is the whole cell.
+     */
+    @Test
+    public void testGridSearch() throws Exception {
+        initGraphicsPreferences();
+        Library lib = readLibrary("sclib", "/com/sun/electric/lib/sclib.jelib");
+        VectorCache cache = new VectorCache(EDatabase.serverDatabase());
+        Random random = new Random(17);
+        int numGrids = 0;
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            for (Orientation orient : ORIENTATIONS) {
+                VectorCache.VectorCell vc = cache.drawCell(cell.getId(), orient, VarContext.globalContext, 1);
+                VectorCache.VectorCellGrid grid = vc.getGrid();
+                if (grid == null) {
+                    continue;
+                }
+                numGrids++;
+
+                // the whole cell
+                List<VectorCache.VectorBase> shapes = new ArrayList<VectorCache.VectorBase>();
+                List<VectorCache.VectorSubCell> subCells = new ArrayList<VectorCache.VectorSubCell>();
+                grid.search(vc.lX, vc.lY, vc.hX, vc.hY, shapes, subCells);
+                assertEquals(boxes(vc.shapes, null), boxes(shapes, null));
+                assertEquals(new HashSet<VectorCache.VectorSubCell>(vc.subCells), new HashSet<VectorCache.VectorSubCell>(subCells));
+
+                // random windows
+                long width = (long) vc.hX - vc.lX;
+                long height = (long) vc.hY - vc.lY;
+                for (int i = 0; i < 200; i++) {
+                    int lX = vc.lX + (int) (random.nextDouble() * width);
+                    int lY = vc.lY + (int) (random.nextDouble() * height);
+                    int hX = lX + (int) (random.nextDouble() * width / 4);
+                    int hY = lY + (int) (random.nextDouble() * height / 4);
+                    int[] window = {lX, lY, hX, hY};
+                    shapes.clear();
+                    subCells.clear();
+                    grid.search(lX, lY, hX, hY, shapes, subCells);
+                    Set<String> found = boxes(shapes, null);
+                    for (String box : boxes(vc.shapes, window)) {
+                        assertTrue(cell + " " + orient + " misses " + box, found.contains(box));
+                    }
+                    for (VectorCache.VectorSubCell vsc : vc.subCells) {
+                        VectorCache.VectorCell subVC = cache.findVectorCell(vsc.subCellId, orient.concatenate(vsc.n.orient));
+                        if (touches(window, subVC.lX + vsc.offsetX, subVC.lY + vsc.offsetY, subVC.hX + vsc.offsetX, subVC.hY + vsc.offsetY)) {
+                            assertTrue(subCells.contains(vsc));
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(numGrids > 0);
+    }
+
+    /**
+     * Checks that the layer coverage of a cell covers its own shapes and the shapes of all of its subcells.
+     */
+    @Test
+    public void testLayerCoverage() throws Exception {
+        initGraphicsPreferences();
+        Library lib = readLibrary("placementTests", "/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        VectorCache cache = new VectorCache(EDatabase.serverDatabase());
+        int numWithSubCells = 0;
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            for (Orientation orient : ORIENTATIONS) {
+                VectorCache.VectorCell vc = cache.drawCell(cell.getId(), orient, VarContext.globalContext, 1);
+                Map<Layer, int[]> coverage = new HashMap<Layer, int[]>();
+                for (VectorCache.VectorBase vb : vc.getLayerCoverage(VarContext.globalContext)) {
+                    if (vb instanceof VectorCache.VectorManhattan) {
+                        assertNull("one box per layer", coverage.put(vb.layer, ((VectorCache.VectorManhattan) vb).coords));
+                        assertEquals(4, ((VectorCache.VectorManhattan) vb).coords.length);
+                    } else {
+                        assertTrue(vb instanceof VectorCache.VectorText || vb instanceof VectorCache.VectorCross);
+                        assertTrue(vc.shapes.contains(vb));
+                    }
+                }
+                checkCovered(cache, vc, 0, 0, coverage);
+                if (!vc.subCells.isEmpty()) {
+                    numWithSubCells++;
+                }
+            }
+        }
+        assertTrue(numWithSubCells > 0);
+    }
+
+    /**
+     * Checks that the layer coverage of a cell is cached unless the cell has a parameterized subcell,
+     * whose shapes are drawn in the context of the instance.
+     */
+    @Test
+    public void testParameterizedCoverage() throws Exception {
+        initGraphicsPreferences();
+        // reading a library allows changes of the database
+        readLibrary("placementTests", "/com/sun/electric/tool/util/test/testData/placementTests.jelib");
+        Library lib = Library.newInstance("paramCoverage", null);
+        Cell sub = Cell.makeInstance(lib, "sub{sch}");
+        NodeInst.makeInstance(Schematics.tech().resistorNode, new Point2D.Double(0, 0), 2, 1, sub);
+        Cell plain = Cell.makeInstance(lib, "plain{sch}");
+        NodeInst.makeInstance(Schematics.tech().resistorNode, new Point2D.Double(0, 0), 2, 1, plain);
+        Cell top = Cell.makeInstance(lib, "top{sch}");
+        NodeInst.makeInstance(plain, new Point2D.Double(0, 0), 0, 0, top);
+        Cell paramTop = Cell.makeInstance(lib, "paramTop{sch}");
+        NodeInst.makeInstance(sub, new Point2D.Double(0, 0), 0, 0, paramTop);
+        NodeInst.makeInstance(plain, new Point2D.Double(10, 0), 0, 0, paramTop);
+        Variable param = Variable.newInstance(Variable.newKey("ATTR_size"), "1", TextDescriptor.getCellTextDescriptor());
+        sub.getCellGroup().addParam(param.withParam(true).withInherit(true));
+
+        VectorCache cache = new VectorCache(EDatabase.serverDatabase());
+        VectorCache.VectorCell topVC = cache.drawCell(top.getId(), Orientation.IDENT, VarContext.globalContext, 1);
+        assertSame(topVC.getLayerCoverage(VarContext.globalContext), topVC.getLayerCoverage(VarContext.globalContext));
+
+        VectorCache.VectorCell paramVC = cache.drawCell(paramTop.getId(), Orientation.IDENT, VarContext.globalContext, 1);
+        List<VectorCache.VectorBase> coverage = paramVC.getLayerCoverage(VarContext.globalContext);
+        assertNotSame(coverage, paramVC.getLayerCoverage(VarContext.globalContext));
+        assertEquals(boxes(coverage, null), boxes(paramVC.getLayerCoverage(VarContext.globalContext), null));
+        assertFalse(boxes(coverage, null).isEmpty());
+    }
+
+    private void checkCovered(VectorCache cache, VectorCache.VectorCell vc, int offX, int offY, Map<Layer, int[]> coverage) {
+        int[] bounds = new int[4];
+        for (VectorCache.VectorBase vb : vc.shapes) {
+            if (vb.layer == null || vb instanceof VectorCache.VectorText || vb instanceof VectorCache.VectorCross) {
+                continue;
+            }
+            if (vb instanceof VectorCache.VectorManhattan) {
+                int[] coords = ((VectorCache.VectorManhattan) vb).coords;
+                for (int i = 0; i < coords.length; i += 4) {
+                    assertInside(coverage.get(vb.layer), coords[i] + offX, coords[i + 1] + offY, coords[i + 2] + offX, coords[i + 3] + offY);
+                }
+            } else if (VectorCache.VectorCellGrid.getBounds(vb, bounds)) {
+                assertInside(coverage.get(vb.layer), bounds[0] + offX, bounds[1] + offY, bounds[2] + offX, bounds[3] + offY);
+            }
+        }
+        for (VectorCache.VectorSubCell vsc : vc.subCells) {
+            VectorCache.VectorCell subVC = cache.findVectorCell(vsc.subCellId, vc.orient.concatenate(vsc.n.orient));
+            assertTrue(subVC.valid);
+            checkCovered(cache, subVC, offX + vsc.offsetX, offY + vsc.offsetY, coverage);
+        }
+    }
+
+    private static void assertInside(int[] box, int lX, int lY, int hX, int hY) {
+        assertNotNull(box);
+        assertTrue(box[0] <= lX && box[1] <= lY && box[2] >= hX && box[3] >= hY);
+    }
+
+    private static boolean touches(int[] window, int lX, int lY, int hX, int hY) {
+        return lX <= window[2] && hX >= window[0] && lY <= window[3] && hY >= window[1];
+    }
+
+    /**
+     * Method to describe the boxes of the Manhattan shapes, optionally only those which touch a window.
+     */
+    private static Set<String> boxes(List<VectorCache.VectorBase> shapes, int[] window) {
+        Set<String> boxes = new HashSet<String>();
+        for (VectorCache.VectorBase vb : shapes) {
+            if (!(vb instanceof VectorCache.VectorManhattan)) {
+                continue;
+            }
+            int[] coords = ((VectorCache.VectorManhattan) vb).coords;
+            for (int i = 0; i < coords.length; i += 4) {
+                if (window == null || touches(window, coords[i], coords[i + 1], coords[i + 2], coords[i + 3])) {
+                    boxes.add(vb.layer + " " + coords[i] + " " + coords[i + 1] + " " + coords[i + 2] + " " + coords[i + 3]);
+                }
+            }
+        }
+        return boxes;
+    }
+
+    private Library readLibrary(String libName, String resource) throws Exception {
+        URL url = VectorCacheTest.class.getResource(resource);
+        Library lib = loadLibrary(libName, url.getFile(), LoadLibraryType.fileSystem);
+        assertNotNull(lib);
+        return lib;
+    }
+}
@@ -0,0 +1,106 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RasterCacheTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.user.waveform;
+
+import com.sun.electric.tool.simulation.RangeSample;
+import com.sun.electric.tool.simulation.ScalarSample;
+import com.sun.electric.tool.simulation.Signal;
+import com.sun.electric.tool.simulation.SignalCollection;
+import com.sun.electric.tool.simulation.Stimuli;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of RasterCache, which compares the cached raster views with direct ones while panning.
+ */
+public class RasterCacheTest {
+
+    private static final int NUM_SAMPLES = 200000;
+    private static final int NUM_PIXELS = 500;
+    private static final double WIDTH = 20000;
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(RasterCacheTest.class);
+    }
+
+    @Test
+    public void testPanning() {
+        // a square wave which toggles at every sample, so every column spans -1 to 1
+        double[] time = new double[NUM_SAMPLES];
+        double[] values = new double[NUM_SAMPLES];
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            time[i] = i;
+            values[i] = (i & 1) == 0 ? -1 : 1;
+        }
+        Stimuli sd = new Stimuli();
+        SignalCollection sc = Stimuli.newSignalCollection(sd, "TRANS SIGNALS");
+        Signal<ScalarSample> sig = ScalarSample.createSignal(sc, sd, "square", null, time, values);
+
+        RasterCache cache = new RasterCache();
+        double step = WIDTH / 25;
+        double t0 = 50000;
+        for (int pan = 0; pan < 60; pan++) {
+            if (pan < 20) t0 += step; else
+                if (pan < 40) t0 -= step; else
+                    t0 += (pan % 2 == 0 ? 7 : -5) * step;
+            cache.startPaint();
+            Signal.View<RangeSample<ScalarSample>> cached = cache.getRasterView(sig, t0, t0 + WIDTH, NUM_PIXELS);
+            Signal.View<RangeSample<ScalarSample>> direct = sig.getRasterView(t0, t0 + WIDTH, NUM_PIXELS);
+            assertTrue(cached.getTime(0) <= t0);
+            assertTrue(cached.getTime(cached.getNumEvents() - 1) >= t0 + WIDTH - WIDTH / NUM_PIXELS);
+            assertTrue("pan " + pan, countPoints(cached) <= countPoints(direct));
+            checkColumns(direct, t0);
+            checkColumns(cached, t0);
+        }
+    }
+
+    /** Returns the number of events which hold a single value. */
+    private static int countPoints(Signal.View<RangeSample<ScalarSample>> view) {
+        int count = 0;
+        for (int i = 0; i < view.getNumEvents(); i++) {
+            RangeSample<ScalarSample> rs = view.getSample(i);
+            if (rs.getMin().getValue() == rs.getMax().getValue()) count++;
+        }
+        return count;
+    }
+
+    /** Checks that the events drawn in every column of the view span the whole square wave. */
+    private static void checkColumns(Signal.View<RangeSample<ScalarSample>> view, double t0) {
+        double columnWidth = WIDTH / NUM_PIXELS;
+        int event = 0;
+        for (int c = 0; c < NUM_PIXELS; c++) {
+            double lo = t0 + c * columnWidth, hi = lo + columnWidth;
+            while (event + 1 < view.getNumEvents() && view.getTime(event + 1) <= lo) event++;
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int i = event; i < view.getNumEvents() && view.getTime(i) < hi; i++) {
+                RangeSample<ScalarSample> rs = view.getSample(i);
+                min = Math.min(min, rs.getMin().getValue());
+                max = Math.max(max, rs.getMax().getValue());
+            }
+            assertEquals("column " + c + " at " + lo, -1, min, 0);
+            assertEquals("column " + c + " at " + lo, 1, max, 0);
+        }
+    }
+}
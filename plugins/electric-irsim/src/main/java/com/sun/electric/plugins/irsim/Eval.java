@@ -18,6 +18,7 @@
 
 package com.sun.electric.plugins.irsim;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 public class Eval
@@ -112,6 +113,7 @@ public class Eval
 				if (xInputs.size() > 0) EvalNOinputs(xInputs);
 
 				long brkFlag = EvalNodes(evList);
+				freeEventList(evList);
 
 //				if (stopping(STOPREASONSIMULATE))
 //				{
@@ -314,7 +316,7 @@ public class Eval
 			// enqueue event so consequences are computed.
 			enqueueInput(n, val);
 
-			if (n.curr.val != val || !n.curr.inp)
+			if (n.curr.val != val || !n.curr.isInp())
 				theSim.addHist(n, val, true, theSim.curDelta, 0L, 0L);
 		}
 	}
@@ -391,12 +393,34 @@ public class Eval
 
 	/***************************************** SCHED *****************************************/
 
-	/** size of event array, must be power of 2 */		private static final int TSIZE		= 1024;
-	private static final int TMASK		= (TSIZE - 1);
+	/*
+	 * The pending events are kept in a calendar queue: an array of buckets, each
+	 * one a sorted doubly-linked list, where bucket "i" holds the events whose time
+	 * divided by the bucket width is "i" modulo the number of buckets.  The number
+	 * of buckets follows the number of pending events and the bucket width follows
+	 * the spacing of the earliest events, so that the scan for the next event
+	 * rarely looks at more than a few buckets.
+	 */
+
+	/** initial number of buckets, must be power of 2 */	private static final int MIN_BUCKETS	= 1024;
+	/** event times sampled to choose bucket width */		private static final int WIDTH_SAMPLES	= 32;
+	/** direct searches before width is recomputed */		private static final int MAX_MISSES		= 8;
+	/** most events kept for reuse */						private static final int MAX_FREE_EVENTS	= 65536;
+
+	/** used as head of doubly-linked lists */			private Event [] evArray = new Event[MIN_BUCKETS];
+	/** number of buckets - 1 */						private int evMask = MIN_BUCKETS - 1;
+	/** log2 of the bucket width, in DELTAs */			private int evShift = 0;
+	/** direct searches since the last resize */		private int evMisses = 0;
+	/** events available for reuse, linked by fLink */	private Event freeEvents;
+	/** number of events in freeEvents */				private int numFreeEvents;
+
+	private Event getEVArray(long t) { return evArray[(int)(t >> evShift) & evMask]; }
 
-	/** used as head of doubly-linked lists */			private Event [] evArray = new Event[TSIZE];
+	/** Method to return the number of buckets in the calendar. */
+	int getNumBuckets() { return evArray.length; }
 
-	private Event getEVArray(long t) { return evArray[(int)(t & TMASK)]; }
+	/** Method to return log2 of the bucket width, in DELTAs. */
+	int getBucketShift() { return evShift; }
 
 	/**
 	 * find the next event to be processed by scanning event wheel.  Return
@@ -407,26 +431,34 @@ public class Eval
 	{
 		if (nPending == 0) return null;
 
+		// shrink the calendar when most buckets are empty
+		if (evArray.length > MIN_BUCKETS && nPending < (evArray.length >> 2))
+			resizeEvents(evArray.length >> 1);
+
 //if (DEBUG) System.out.println("Find events up to " + stopTime);
 		Event event = null;
 		boolean eventValid = false;
-		long time = theSim.maxTime;
-		for(long i = theSim.curDelta, limit = i + TSIZE; i < limit; i++)
+		long bucket = theSim.curDelta >> evShift;
+		for(int i = 0; i < evArray.length; i++, bucket++)
 		{
-			event = getEVArray(i);
-			if (event != event.fLink)
+			event = evArray[(int)bucket & evMask];
+			if (event != event.fLink && (event.fLink.nTime >> evShift) <= bucket)		// common case
 			{
-				if (event.fLink.nTime < limit)		// common case
-				{
-					eventValid = true;
-					break;
-				}
-				if (event.fLink.nTime < time)
-					time = (event.fLink).nTime;
+				eventValid = true;
+				break;
 			}
 		}
 		if (!eventValid)
 		{
+			// nothing within a year of the calendar: search the buckets directly
+			if (++evMisses > MAX_MISSES)
+				resizeEvents(evArray.length);
+			long time = theSim.maxTime;
+			for(Event hdr : evArray)
+			{
+				if (hdr != hdr.fLink && hdr.fLink.nTime < time)
+					time = hdr.fLink.nTime;
+			}
 			if (time == theSim.maxTime)
 			{
 				System.out.println("*** internal error: no events but npending set");
@@ -438,7 +470,7 @@ public class Eval
 
 		Event evList = event.fLink;
 
-		time = evList.nTime;
+		long time = evList.nTime;
 
 		if (time >= stopTime)
 		{
@@ -481,6 +513,22 @@ public class Eval
 		return evList;
 	}
 
+	/**
+	 * Remove the next list of events from the event wheel and from their nodes, as step
+	 * does before evaluating them.  The list should be returned with freeEventList.
+	 * Used to exercise the event wheel without a network.
+	 */
+	Event takeNextEvents(long stopTime)
+	{
+		Event evList = getNextEvent(stopTime);
+		for(Event e = evList; e != null; e = e.fLink)
+		{
+			freeFromNode(e, e.eNode);
+			nPending--;
+		}
+		return evList;
+	}
+
 	/**
 	 * remove event from all structures it belongs to and return it to free pool
 	 */
@@ -492,6 +540,121 @@ public class Eval
 		nPending--;
 
 		freeFromNode(event, event.eNode);
+		recycleEvent(event);
+	}
+
+	/**
+	 * Get an event, reusing a freed one if possible.
+	 */
+	private Event newEvent()
+	{
+		Event ev = freeEvents;
+		if (ev == null) return new Event();
+		freeEvents = ev.fLink;
+		numFreeEvents--;
+		ev.fLink = null;
+		return ev;
+	}
+
+	/**
+	 * Return an event that is no longer on any list to the free pool.
+	 */
+	private void recycleEvent(Event ev)
+	{
+		if (numFreeEvents >= MAX_FREE_EVENTS) return;
+		ev.eNode = ev.cause = null;
+		ev.bLink = ev.nLink = null;
+		ev.fLink = freeEvents;
+		freeEvents = ev;
+		numFreeEvents++;
+	}
+
+	/**
+	 * Return a list of processed events (linked by fLink) to the free pool.
+	 */
+	void freeEventList(Event evList)
+	{
+		Event next = null;
+		for(Event ev = evList; ev != null; ev = next)
+		{
+			next = ev.fLink;
+			recycleEvent(ev);
+		}
+	}
+
+	/**
+	 * Insert event into its bucket, after any events with the same time.
+	 */
+	private void insertEvent(Event ev)
+	{
+		long eTime = ev.nTime;
+		Event marker = getEVArray(eTime);
+
+		// Check whether we need to insert-sort in the list
+		if ((marker.bLink != marker) && ((marker.bLink).nTime > eTime))
+		{
+			do { marker = marker.fLink; } while (marker.nTime <= eTime);
+		}
+
+		// insert event right before event pointed to by marker
+		ev.fLink = marker;
+		ev.bLink = marker.bLink;
+		marker.bLink.fLink = ev;
+		marker.bLink = ev;
+	}
+
+	/**
+	 * Rebuild the calendar with the given number of buckets, choosing the bucket
+	 * width from the average spacing of the earliest pending events.
+	 */
+	private void resizeEvents(int newSize)
+	{
+		int count = 0;
+		for(Event hdr : evArray)
+		{
+			for(Event ev = hdr.fLink; ev != hdr; ev = ev.fLink)
+				count++;
+		}
+
+		// unhook all events, keeping events with equal times in order
+		Event [] events = new Event[count];
+		long [] times = new long[count];
+		count = 0;
+		for(Event hdr : evArray)
+		{
+			for(Event ev = hdr.fLink; ev != hdr; ev = ev.fLink)
+			{
+				events[count] = ev;
+				times[count++] = ev.nTime;
+			}
+		}
+		Arrays.sort(times);
+
+		// width is about three times the average distance between event times
+		long prev = Math.min(theSim.curDelta, count > 0 ? times[0] : theSim.curDelta);
+		long span = 0;
+		int gaps = 0;
+		for(int i = 0; i < count && gaps < WIDTH_SAMPLES; i++)
+		{
+			if (times[i] == prev) continue;
+			span += times[i] - prev;
+			prev = times[i];
+			gaps++;
+		}
+		long width = gaps == 0 ? 1 : Math.max(1, 3 * span / gaps);
+		evShift = Math.min(63 - Long.numberOfLeadingZeros(width), 48);
+
+		evArray = new Event[newSize];
+		evMask = newSize - 1;
+		for(int i = 0; i < newSize; i++)
+		{
+			Event hdr = new Event();
+			evArray[i] = hdr;
+			hdr.fLink = hdr.bLink = hdr;
+		}
+		for(Event ev : events)
+			insertEvent(ev);
+		evMisses = 0;
 	}
 
 	/**
@@ -500,7 +663,7 @@ public class Eval
 	 */
 	public void enqueueEvent(Sim.Node n, int newValue, long delta, long rTime)
 	{
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta + delta;
@@ -523,20 +686,10 @@ public class Eval
 		 * in event wheel.  Event lists are kept sorted by increasing
 		 * event time.
 		 */
-		Event marker = getEVArray(eTime);
-
-		// Check whether we need to insert-sort in the list
-		if ((marker.bLink != marker) && ((marker.bLink).nTime > eTime))
-		{
-			do { marker = marker.fLink; } while (marker.nTime <= eTime);
-		}
-
-		// insert event right before event pointed to by marker
-		newEV.fLink = marker;
-		newEV.bLink = marker.bLink;
-		marker.bLink.fLink = newEV;
-		marker.bLink = newEV;
+		insertEvent(newEV);
 		nPending++;
+		if (nPending > (evArray.length << 1))
+			resizeEvents(evArray.length << 1);
 //if (DEBUG) System.out.println("Adding event at " + newEV.nTime + " in enqueueEvent (cur="+theSim.curDelta+" delta="+delta);
 		/*
 		 * thread event onto list of events for this node, keeping it
@@ -544,6 +697,7 @@ public class Eval
 		 */
 		if ((n.events != null) && (n.events.nTime > eTime))
 		{
+			Event marker;
 			for(marker = n.events; (marker.nLink != null) &&
 				(marker.nLink.nTime > eTime); marker = marker.nLink);
 			newEV.nLink = marker.nLink;
@@ -558,13 +712,13 @@ public class Eval
 	/**
 	 * same as enqueueEvent, but assumes 0 delay and rtise/fall time
 	 */
-	private void enqueueInput(Sim.Node n, int newValue)
+	void enqueueInput(Sim.Node n, int newValue)
 	{
 		// Punt any pending events for this node.
 		while(n.events != null)
 			freeEvent(n.events);
 
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta;
@@ -575,13 +729,18 @@ public class Eval
 		newEV.eval = (byte)newValue;
 		newEV.type = Sim.REVAL;			// anything, doesn't matter
 
-		// Add new event to HEAD of list at appropriate entry in event wheel
-		Event marker = getEVArray(eTime);
-		newEV.fLink = marker.fLink;
-		newEV.bLink = marker;
-		marker.fLink.bLink = newEV;
-		marker.fLink = newEV;
+		// Add new event ahead of other events at this time in the event wheel
+		Event hdr = getEVArray(eTime);
+		Event marker = hdr.fLink;
+		while(marker != hdr && marker.nTime < eTime)
+			marker = marker.fLink;
+		newEV.fLink = marker;
+		newEV.bLink = marker.bLink;
+		marker.bLink.fLink = newEV;
+		marker.bLink = newEV;
 		nPending++;
+		if (nPending > (evArray.length << 1))
+			resizeEvents(evArray.length << 1);
 //if (DEBUG) System.out.println("Adding event at " + newEV.nTime + " in enqueueInput");
 		// thread event onto (now empty) list of events for this node
 		newEV.nLink = null;
@@ -593,7 +752,11 @@ public class Eval
 	 */
 	public void initEvent()
 	{
-		for(int i = 0; i < TSIZE; i++)
+		evArray = new Event[MIN_BUCKETS];
+		evMask = MIN_BUCKETS - 1;
+		evShift = 0;
+		evMisses = 0;
+		for(int i = 0; i < MIN_BUCKETS; i++)
 		{
 			Event event = new Event();
 			evArray[i] = event;
@@ -625,17 +788,7 @@ public class Eval
 			nPending++;
 			long eTime = ev.nTime;
 //if (DEBUG) System.out.println("Adding of event at time "+eTime + " in requeueEvents");
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && ((target.bLink).nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
+			insertEvent(ev);
 
 			if (thread)
 			{
@@ -662,7 +815,7 @@ public class Eval
 		if (nPending == 0) return;
 		System.out.println("Warning: there are " + nPending + " pending events:");
 
-//		for(int i=0; i<TSIZE; i++)
+//		for(int i=0; i<evArray.length; i++)
 //		{
 //			Event hdr = evArray[i];
 //			for(Event evhdr = hdr.fLink; evhdr != hdr; evhdr = evhdr.fLink)
@@ -683,9 +836,8 @@ public class Eval
 		Event tmpList = null;
 
 		// first empty out the time wheel onto the temporary list
-		for(int i=0; i<TSIZE; i++)
+		for(Event hdr : evArray)
 		{
-			Event hdr = evArray[i];
 			Event next = null;
 			for(Event evhdr = hdr.fLink; evhdr != hdr; evhdr = next)
 			{
@@ -700,6 +852,7 @@ public class Eval
 				if (isInc == 0 && ev.nTime - ev.delay >= bTime)
 				{
 					freeFromNode(ev, ev.eNode);
+					recycleEvent(ev);
 				} else
 				{
 					ev.fLink = tmpList;		// move it to tmp list
@@ -730,18 +883,7 @@ public class Eval
 
 			ev.nTime -= ev.delay;
 			ev.type = Sim.PENDING;
-			long eTime = ev.nTime;
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && (target.bLink.nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
+			insertEvent(ev);
 		}
 
 		nPending = nEvents;
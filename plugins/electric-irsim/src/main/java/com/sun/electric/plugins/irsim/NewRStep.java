@@ -844,7 +844,7 @@ public class NewRStep extends Eval
 	 */
 	private boolean isCurrTransition(Sim.HistEnt h)
 	{
-		return h.hTime == theSim.curDelta && (h.inp || h.delay != 0);
+		return h.hTime == theSim.curDelta && (h.isInp() || h.delay != 0);
 	}
 
 	/**
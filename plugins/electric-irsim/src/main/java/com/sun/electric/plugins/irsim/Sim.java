@@ -207,12 +207,10 @@ public class Sim implements SimAPI
 		n.nPot = X;
 		n.awPending = null;
 
-		n.head = new HistEnt();
 		n.head.next = lastHist;
 		n.head.hTime = 0;
 		n.head.val = X;
-		n.head.inp = false;
-		n.head.punt = false;
+		n.head.flags = 0;
 		n.head.rTime = n.head.delay = 0;
 		n.curr = n.head;
 
@@ -376,15 +374,20 @@ public class Sim implements SimAPI
 		/** rise/fall time */						short    rTime;
 		/** punt time */							short    pTime;
 		/** time of transition */					long     hTime;
-		/** 1 if node became an input */			boolean  inp;
-		/** 1 if this event was punted */			boolean  punt;
+		/** INP and PUNT bits */					byte     flags;
 		/** value: HIGH, LOW, or X */				byte     val;
 
+		/** set if node became an input */			static final byte INP  = 1;
+		/** set if this event was punted */			static final byte PUNT = 2;
+
+		boolean isInp() { return (flags & INP) != 0; }
+		boolean isPunt() { return (flags & PUNT) != 0; }
+
 		public HistEnt getNextHist()
 		{
 			HistEnt h;
 			HistEnt p = this;
-			for(h = p.next; h.punt; h = h.next) ;
+			for(h = p.next; (h.flags & PUNT) != 0; h = h.next) ;
 			return h;
 		}
         
@@ -519,6 +522,7 @@ public class Sim implements SimAPI
 	public static final int	MAX_ERRS	= 20;
 
 	/** this is probably sufficient per stage */							private static final int	MAX_PARALLEL	= 30;
+	/** most history entries kept for reuse */								private static final int	MAX_FREE_HIST	= 65536;
 
 	/** power supply node */												public  Node    powerNode;
 	/** ground supply node */												public  Node    groundNode;
@@ -536,6 +540,8 @@ public class Sim implements SimAPI
 	public  Trans [] parallelTransistors = new Trans[MAX_PARALLEL];
 
 	/** pointer to dummy hist-entry that serves as tail for all nodes */	private HistEnt lastHist;
+	/** list of history entries available for reuse */						private HistEnt freeHist;
+	/** number of entries in freeHist */									private int     numFreeHist;
 	public  int      numEdges;
 	public  int      numPunted;
 	public  int      numConsPunted;
@@ -1346,9 +1352,8 @@ public class Sim implements SimAPI
 		powerNode = getNode("Vdd");
 		powerNode.nPot = HIGH;
 		powerNode.nFlags |= (INPUT | POWER_RAIL);
-		powerNode.head.inp = true;
+		powerNode.head.flags = HistEnt.INP;
 		powerNode.head.val = HIGH;
-		powerNode.head.punt = false;
 		powerNode.head.hTime = 0;
 		powerNode.head.rTime = powerNode.head.delay = 0;
 		powerNode.head.next = lastHist;
@@ -1357,9 +1362,8 @@ public class Sim implements SimAPI
 		groundNode = getNode("Gnd");
 		groundNode.nPot = LOW;
 		groundNode.nFlags |= (INPUT | POWER_RAIL);
-		groundNode.head.inp = true;
+		groundNode.head.flags = HistEnt.INP;
 		groundNode.head.val = LOW;
-		groundNode.head.punt = false;
 		groundNode.head.hTime = 0;
 		groundNode.head.rTime = groundNode.head.delay = 0;
 		groundNode.head.next = lastHist;
@@ -1523,9 +1527,35 @@ public class Sim implements SimAPI
 		dummy.next = lastHist;
 		dummy.hTime = maxTime;
 		dummy.val = X;
-		dummy.inp = true;
-		dummy.punt = false;
+		dummy.flags = HistEnt.INP;
 		dummy.delay = dummy.rTime = 0;
+		freeHist = null;
+		numFreeHist = 0;
+	}
+
+	/**
+	 * Get a history entry, reusing one released by backToTime if possible.
+	 */
+	private HistEnt newHistEnt()
+	{
+		HistEnt h = freeHist;
+		if (h == null) return new HistEnt();
+		freeHist = h.next;
+		numFreeHist--;
+		h.next = null;
+		return h;
+	}
+
+	/**
+	 * Return a history entry that is no longer on any history list.
+	 * Entries still referenced by the Analyzer window or cursor are left to the garbage collector.
+	 */
+	private void freeHistEnt(Node nd, HistEnt h)
+	{
+		if (h == lastHist || h == nd.wind || h == nd.cursor || numFreeHist >= MAX_FREE_HIST) return;
+		h.next = freeHist;
+		freeHist = h;
+		numFreeHist++;
 	}
 
 	/**
@@ -1536,17 +1566,15 @@ public class Sim implements SimAPI
 		numEdges++;
 		HistEnt curr = node.curr;
 
-		while(curr.next.punt)		// skip past any punted events
+		while((curr.next.flags & HistEnt.PUNT) != 0)		// skip past any punted events
 			curr = curr.next;
 
-		HistEnt newH = new HistEnt();
-		if (newH == null) return;
+		HistEnt newH = newHistEnt();
 
 		newH.next = curr.next;
 		newH.hTime = time;
 		newH.val = (byte)value;
-		newH.inp = inp;
-		newH.punt = false;
+		newH.flags = inp ? HistEnt.INP : 0;
 		newH.delay = (short)delay;
 		newH.rTime = (short)rTime;
 		node.curr = curr.next = newH;
@@ -1564,20 +1592,19 @@ public class Sim implements SimAPI
 
 		numPunted++;
 
-		HistEnt newP = new HistEnt();
+		HistEnt newP = newHistEnt();
 
 		newP.hTime = ev.nTime;
 		newP.val = ev.eval;
-		newP.inp = false;
-		newP.punt = true;
+		newP.flags = HistEnt.PUNT;
 		newP.delay = (short)ev.delay;
 		newP.rTime = ev.rTime;
 		newP.pTime = (short)(newP.hTime - tim);
 
-		if (h.next.punt)		// there are some punted events already
+		if ((h.next.flags & HistEnt.PUNT) != 0)		// there are some punted events already
 		{
 			numConsPunted++;
-			do { h = h.next; } while(h.next.punt);
+			do { h = h.next; } while((h.next.flags & HistEnt.PUNT) != 0);
 		}
 
 		newP.next = h.next;
@@ -1603,7 +1630,7 @@ public class Sim implements SimAPI
 		{
 			long qTime;
 
-			if (h.punt)
+			if ((h.flags & HistEnt.PUNT) != 0)
 			{
 				// if already punted, skip it
 				long puntTime = h.hTime - h.pTime;
@@ -1618,6 +1645,7 @@ public class Sim implements SimAPI
 					curDelta = tmp;
 				}
 				p.next = h.next;
+				freeHistEnt(nd, h);
 				h = p;
 			} else
 			{
@@ -1631,6 +1659,7 @@ public class Sim implements SimAPI
 					curDelta = tmp;
 
 					p.next = h.next;		// and free it
+					freeHistEnt(nd, h);
 					h = p;
 				}
 				else
@@ -1641,16 +1670,17 @@ public class Sim implements SimAPI
 		p.next = lastHist;
 		p = h;
 		// p now points to the 1st event in the future (to be deleted)
-		if (p != lastHist)
+		while(p != lastHist)
 		{
-			while(h.next != lastHist)
-				h = h.next;
+			h = p.next;
+			freeHistEnt(nd, p);
+			p = h;
 		}
 
 		h = nd.curr;
 		nd.nPot = h.val;
 		nd.setTime(h.hTime);
-		if (h.inp)
+		if ((h.flags & HistEnt.INP) != 0)
 			nd.nFlags |= INPUT;
 
 		if (nd.nGateList.size() != 0)		// recompute transistor states
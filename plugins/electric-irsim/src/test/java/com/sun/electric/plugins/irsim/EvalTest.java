@@ -0,0 +1,318 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: EvalTest.java
+ * IRSIM simulator
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.irsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the event queue of Eval with the fixed 1024-slot time wheel it replaced.
+ * Both are given the same events, and must return them at the same times and in the same order.
+ */
+public class EvalTest {
+
+    private static final long MAX_TIME = 0x0FFFFFFFFFFFFFFFL;
+    private static final int NUM_NODES = 40;
+
+    private Random rand;
+    private Sim sim;
+    private Eval eval;
+    private TimeWheel wheel;
+    private Sim.Node[] nodes;
+    private int numEvents;
+
+    @Before
+    public void setUp() {
+        rand = new Random(12345);
+        sim = new Sim(0, "RC", true);
+        sim.maxTime = MAX_TIME;
+        eval = new Eval(sim);
+        eval.initEvent();
+        wheel = new TimeWheel();
+        nodes = new Sim.Node[NUM_NODES];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Sim.Node(sim);
+        }
+        numEvents = 0;
+    }
+
+    /**
+     * Many pending events grow the calendar, which shrinks again while they are processed.
+     */
+    @Test
+    public void testGrowAndShrink() {
+        for (int i = 0; i < 6000; i++) {
+            enqueue(rand.nextInt(nodes.length), 1 + rand.nextInt(20000));
+        }
+        assertEquals(4096, eval.getNumBuckets());
+        int shift = eval.getBucketShift();
+        assertTrue("bucket width follows the event spacing", shift > 0);
+
+        int pulls = 0;
+        while (wheel.nPending > 100) {
+            pull(sim.curDelta + 1 + rand.nextInt(50));
+            if (rand.nextInt(4) == 0) {
+                enqueue(rand.nextInt(nodes.length), 1 + rand.nextInt(500));
+            }
+            if (rand.nextInt(50) == 0) {
+                input(rand.nextInt(nodes.length));
+            }
+            pulls++;
+        }
+        assertTrue(pulls > 100);
+        pull(sim.curDelta);
+        assertEquals(1024, eval.getNumBuckets());
+        drain();
+    }
+
+    /**
+     * Events more than a calendar year apart make the queue recompute the bucket width.
+     */
+    @Test
+    public void testWidthRecomputation() {
+        for (int i = 0; i < 8; i++) {
+            enqueue(i, 50000 + rand.nextInt(100000));
+        }
+        assertEquals(0, eval.getBucketShift());
+        for (int i = 0; i < 200; i++) {
+            pull(MAX_TIME);
+            enqueue(rand.nextInt(nodes.length), 50000 + rand.nextInt(100000));
+            if (rand.nextInt(10) == 0) {
+                enqueue(rand.nextInt(nodes.length), rand.nextInt(3));
+            }
+        }
+        assertTrue("bucket width grows for sparse events", eval.getBucketShift() >= 10);
+
+        // dense events again, at the old width
+        for (int i = 0; i < 3000; i++) {
+            enqueue(rand.nextInt(nodes.length), rand.nextInt(1000));
+        }
+        drain();
+    }
+
+    /**
+     * Backing up in time drops the events created after the new time and keeps the others.
+     */
+    @Test
+    public void testBackToTime() {
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 500; i++) {
+                enqueue(rand.nextInt(nodes.length), rand.nextInt(round % 2 == 0 ? 300 : 30000));
+            }
+            long start = sim.curDelta;
+            for (int i = 0; i < 200 && wheel.nPending > 0; i++) {
+                pull(sim.curDelta + 1 + rand.nextInt(round % 2 == 0 ? 20 : 2000));
+                if (rand.nextInt(3) == 0) {
+                    enqueue(rand.nextInt(nodes.length), 1 + rand.nextInt(100));
+                }
+                if (rand.nextInt(40) == 0) {
+                    input(rand.nextInt(nodes.length));
+                }
+            }
+            long bTime = start + (long) (rand.nextDouble() * (sim.curDelta - start));
+            sim.curDelta = wheel.curDelta = bTime;
+            assertNull(eval.backSimTime(bTime, 0));
+            wheel.backSimTime(bTime);
+        }
+        drain();
+    }
+
+    private void enqueue(int node, long delta) {
+        int id = ++numEvents;
+        assertTrue(id <= Short.MAX_VALUE);
+        eval.enqueueEvent(nodes[node], Sim.HIGH, delta, id);
+        wheel.enqueueEvent(node, delta, id);
+    }
+
+    private void input(int node) {
+        eval.enqueueInput(nodes[node], Sim.LOW);
+        wheel.enqueueInput(node);
+    }
+
+    /**
+     * Takes the next events from both queues, as step does, and compares them.
+     */
+    private boolean pull(long stopTime) {
+        String expected = wheel.takeNextEvents(stopTime);
+        Eval.Event evList = eval.takeNextEvents(stopTime);
+        StringBuilder sb = new StringBuilder();
+        for (Eval.Event e = evList; e != null; e = e.fLink) {
+            sb.append(' ').append(describe(e.nTime, e.rTime, e.eNode.index));
+        }
+        eval.freeEventList(evList);
+        assertEquals(expected, evList == null ? null : sb.toString());
+        if (evList == null) {
+            sim.curDelta = wheel.curDelta = stopTime;
+        } else {
+            assertEquals(wheel.curDelta, sim.curDelta);
+        }
+        return evList != null;
+    }
+
+    private void drain() {
+        while (pull(MAX_TIME)) {
+        }
+        assertEquals(0, wheel.nPending);
+    }
+
+    private String describe(long time, int id, int nodeIndex) {
+        return time + ":" + id + "@" + (nodeIndex - nodes[0].index);
+    }
+
+    /**
+     * The event wheel of Eval before the calendar queue: 1024 one-DELTA slots,
+     * with events more than 1024 DELTAs away found by a full search.
+     */
+    private class TimeWheel {
+
+        private static final int TSIZE = 1024;
+        private static final int TMASK = TSIZE - 1;
+
+        private final WheelEvent[] evArray = new WheelEvent[TSIZE];
+        private final List<List<WheelEvent>> nodeEvents = new ArrayList<List<WheelEvent>>();
+        long curDelta;
+        int nPending;
+
+        TimeWheel() {
+            for (int i = 0; i < TSIZE; i++) {
+                WheelEvent hdr = new WheelEvent();
+                hdr.fLink = hdr.bLink = hdr;
+                evArray[i] = hdr;
+            }
+            for (int i = 0; i < NUM_NODES; i++) {
+                nodeEvents.add(new ArrayList<WheelEvent>());
+            }
+        }
+
+        void enqueueEvent(int node, long delta, int id) {
+            WheelEvent ev = new WheelEvent();
+            ev.nTime = curDelta + delta;
+            ev.delay = delta;
+            ev.id = id;
+            ev.node = node;
+            insert(ev);
+            nPending++;
+            nodeEvents.get(node).add(ev);
+        }
+
+        void enqueueInput(int node) {
+            for (WheelEvent ev : nodeEvents.get(node)) {
+                ev.bLink.fLink = ev.fLink;
+                ev.fLink.bLink = ev.bLink;
+                nPending--;
+            }
+            nodeEvents.get(node).clear();
+
+            WheelEvent ev = new WheelEvent();
+            ev.nTime = curDelta;
+            ev.node = node;
+            WheelEvent marker = evArray[(int) (curDelta & TMASK)];
+            ev.fLink = marker.fLink;
+            ev.bLink = marker;
+            marker.fLink.bLink = ev;
+            marker.fLink = ev;
+            nPending++;
+            nodeEvents.get(node).add(ev);
+        }
+
+        String takeNextEvents(long stopTime) {
+            if (nPending == 0) return null;
+            WheelEvent event = null;
+            boolean eventValid = false;
+            long time = MAX_TIME;
+            for (long i = curDelta, limit = i + TSIZE; i < limit; i++) {
+                event = evArray[(int) (i & TMASK)];
+                if (event != event.fLink) {
+                    if (event.fLink.nTime < limit) {
+                        eventValid = true;
+                        break;
+                    }
+                    if (event.fLink.nTime < time) time = event.fLink.nTime;
+                }
+            }
+            if (!eventValid) event = evArray[(int) (time & TMASK)];
+
+            time = event.fLink.nTime;
+            if (time >= stopTime) return null;
+            curDelta = time;
+
+            StringBuilder sb = new StringBuilder();
+            for (WheelEvent ev = event.fLink; ev != event && ev.nTime == time; ev = event.fLink) {
+                ev.bLink.fLink = ev.fLink;
+                ev.fLink.bLink = ev.bLink;
+                nPending--;
+                nodeEvents.get(ev.node).remove(ev);
+                sb.append(' ').append(describe(ev.nTime, ev.id, nodes[ev.node].index));
+            }
+            return sb.toString();
+        }
+
+        void backSimTime(long bTime) {
+            List<WheelEvent> tmpList = new ArrayList<WheelEvent>();
+            for (WheelEvent hdr : evArray) {
+                for (WheelEvent ev = hdr.fLink; ev != hdr; ev = hdr.fLink) {
+                    ev.bLink.fLink = ev.fLink;
+                    ev.fLink.bLink = ev.bLink;
+                    if (ev.nTime - ev.delay >= bTime) {
+                        nodeEvents.get(ev.node).remove(ev);
+                    } else {
+                        tmpList.add(0, ev);
+                    }
+                }
+            }
+            nPending = 0;
+            for (WheelEvent ev : tmpList) {
+                insert(ev);
+                nPending++;
+            }
+        }
+
+        private void insert(WheelEvent ev) {
+            long eTime = ev.nTime;
+            WheelEvent marker = evArray[(int) (eTime & TMASK)];
+            if (marker.bLink != marker && marker.bLink.nTime > eTime) {
+                do {
+                    marker = marker.fLink;
+                } while (marker.nTime <= eTime);
+            }
+            ev.fLink = marker;
+            ev.bLink = marker.bLink;
+            marker.bLink.fLink = ev;
+            marker.bLink = ev;
+        }
+    }
+
+    private static class WheelEvent {
+
+        WheelEvent fLink, bLink;
+        long nTime, delay;
+        int id, node;
+    }
+}
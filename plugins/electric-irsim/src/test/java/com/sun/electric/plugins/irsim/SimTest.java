@@ -0,0 +1,224 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SimTest.java
+ * IRSIM simulator
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.irsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the reuse of history entries which backToTime discards.
+ */
+public class SimTest {
+
+    private Random rand;
+    private Sim sim;
+    private List<Sim.Node> nodes;
+    private Sim.HistEnt lastHist;
+
+    @Before
+    public void setUp() {
+        rand = new Random(4321);
+        sim = new Sim(0, "RC", true);
+        TestAnalyzer analyzer = new TestAnalyzer();
+        sim.setAnalyzer(analyzer);
+        sim.loadConfig(SimTest.class.getResource("scmos0.3.prm"), analyzer);
+        sim.initNetwork();
+        for (int i = 0; i < 6; i++) {
+            sim.putTransistor("g" + i, "s" + i, "d" + i, 2.0, 3.0, 9.0, 12.0, 0, 10 * i, i % 2 == 0);
+        }
+        sim.finishNetwork();
+        nodes = new ArrayList<Sim.Node>(sim.getNodeList());
+        lastHist = nodes.get(0).head.next;
+        for (Sim.Node n : nodes) {
+            assertSame(lastHist, n.head.next);
+        }
+    }
+
+    /**
+     * A history entry discarded by backToTime is reused, unless it is the tail of all
+     * histories or the Analyzer still points at it as a window start or cursor.
+     */
+    @Test
+    public void testReusedHistory() {
+        Map<Sim.HistEnt, Boolean> seen = new IdentityHashMap<Sim.HistEnt, Boolean>();
+        int reused = 0, kept = 0;
+        for (int round = 0; round < 300; round++) {
+            // simulate a while
+            long start = sim.getCurDelta();
+            long t = start;
+            for (int i = 0; i < 30; i++) {
+                t += 1 + rand.nextInt(10);
+                sim.setCurDelta(t);
+                reused += addHistory(seen, t);
+            }
+
+            // point the Analyzer at some entries
+            Map<Sim.HistEnt, String> pointed = new IdentityHashMap<Sim.HistEnt, String>();
+            for (Sim.Node n : nodes) {
+                n.wind = rand.nextBoolean() ? pickEntry(n) : null;
+                n.cursor = rand.nextBoolean() ? pickEntry(n) : null;
+                if (n.wind != null) pointed.put(n.wind, describe(n.wind));
+                if (n.cursor != null) pointed.put(n.cursor, describe(n.cursor));
+            }
+
+            // back up, as the Analyzer does
+            long bTime = start + rand.nextInt((int) (t - start + 1));
+            sim.setCurDelta(bTime);
+            sim.backSimTime(bTime, 0);
+            sim.clearCurNode();
+            for (Sim.Node n : nodes) {
+                sim.backToTime(n);
+            }
+            for (Sim.HistEnt h : pointed.keySet()) {
+                if (!onHistory(h)) kept++;
+            }
+
+            // new entries must not be any of the pointed ones
+            t = bTime;
+            for (int i = 0; i < 10; i++) {
+                t += 1 + rand.nextInt(10);
+                sim.setCurDelta(t);
+                reused += addHistory(seen, t);
+            }
+            for (Map.Entry<Sim.HistEnt, String> e : pointed.entrySet()) {
+                assertEquals(e.getValue(), describe(e.getKey()));
+            }
+            for (Sim.Node n : nodes) {
+                checkHistory(n);
+            }
+        }
+        assertTrue("discarded entries are reused", reused > 1000);
+        assertTrue("entries held by the Analyzer are discarded", kept > 50);
+    }
+
+    /**
+     * Adds a transition, and sometimes a punted one, to a random node.
+     * @return the number of entries reused.
+     */
+    private int addHistory(Map<Sim.HistEnt, Boolean> seen, long t) {
+        Sim.Node n = nodes.get(rand.nextInt(nodes.size()));
+        int reused = 0;
+        if (rand.nextInt(4) == 0) {
+            Eval.Event ev = new Eval.Event();
+            ev.nTime = t + 1 + rand.nextInt(5);
+            ev.delay = ev.nTime - t;
+            ev.eval = Sim.LOW;
+            sim.addPunted(n, ev, t);
+            Sim.HistEnt p = n.curr;
+            while (!p.isPunt()) p = p.next;
+            while (p.next.isPunt()) p = p.next;
+            reused += checkNew(seen, p);
+        }
+        sim.addHist(n, n.curr.val == Sim.HIGH ? Sim.LOW : Sim.HIGH, false, t, rand.nextInt(3), 0);
+        reused += checkNew(seen, n.curr);
+        return reused;
+    }
+
+    private int checkNew(Map<Sim.HistEnt, Boolean> seen, Sim.HistEnt h) {
+        assertNotSame(lastHist, h);
+        for (Sim.Node n : nodes) {
+            assertNotSame(n.wind, h);
+            assertNotSame(n.cursor, h);
+        }
+        return seen.put(h, Boolean.TRUE) != null ? 1 : 0;
+    }
+
+    private Sim.HistEnt pickEntry(Sim.Node n) {
+        List<Sim.HistEnt> entries = new ArrayList<Sim.HistEnt>();
+        for (Sim.HistEnt h = n.head; h != lastHist; h = h.next) {
+            entries.add(h);
+        }
+        Collections.shuffle(entries, rand);
+        return entries.get(0);
+    }
+
+    private boolean onHistory(Sim.HistEnt h) {
+        for (Sim.Node n : nodes) {
+            for (Sim.HistEnt p = n.head; p != lastHist; p = p.next) {
+                if (p == h) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that the history of a node ends at the shared tail, in time order.
+     */
+    private void checkHistory(Sim.Node n) {
+        assertSame(lastHist, lastHist.next);
+        assertEquals(sim.maxTime, lastHist.hTime);
+        long time = 0;
+        int length = 0;
+        for (Sim.HistEnt h = n.head; h != lastHist; h = h.next) {
+            assertTrue(++length < 100000);
+            if (!h.isPunt()) {
+                assertTrue(h.hTime >= time);
+                time = h.hTime;
+            }
+        }
+    }
+
+    private static String describe(Sim.HistEnt h) {
+        return h.hTime + " " + h.val + " " + h.flags + " " + h.delay;
+    }
+
+    private static class TestAnalyzer implements SimAPI.Analyzer {
+
+        public void updateWindowIfAnalyzerOn(long endT) {
+        }
+
+        public void dispWatchVec(long which) {
+        }
+
+        public String canonicString(String s) {
+            return s.toLowerCase();
+        }
+
+        public double atof(String text) {
+            return Double.parseDouble(text);
+        }
+
+        public int atoi(String s) {
+            s = s.trim();
+            int v = 0;
+            for (int i = 0; i < s.length() && Character.isDigit(s.charAt(i)); i++) {
+                v = v * 10 + (s.charAt(i) - '0');
+            }
+            return v;
+        }
+
+        public String formatDouble(double v) {
+            return Double.toString(v);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: CellAbstract.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.minarea.hierarchical;
+
+import com.sun.electric.api.minarea.LayoutCell;
+import com.sun.electric.api.minarea.ManhattanOrientation;
+import com.sun.electric.api.minarea.MinAreaChecker.ErrorLogger;
+import com.sun.electric.api.minarea.geometry.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * The merged geometry of one unique LayoutCell.
+ *
+ * The polygons of a cell are formed by merging its own rectangles with what its subcell
+ * instances expose. An instance that no other geometry of the cell reaches into (instances
+ * may abut) is "clean": only the polygons that touch its bounding box can connect to anything
+ * outside it, so only their rectangles, the abstract of the subcell, take part in the merge.
+ * The polygons inside a clean instance are final and are reported through the subcell.
+ * Any other instance contributes all of its geometry.
+ *
+ * A polygon formed in a cell that touches the bounding box of the cell becomes part of the
+ * abstract of the cell; the others are final unless an instance of the cell is not clean.
+ */
+class CellAbstract {
+
+    private static final int[] NO_RECTS = {};
+    final LayoutCell cell;
+    final int minX, minY, maxX, maxY;
+    /** rectangles of the polygons of this cell that touch the bounding box */
+    private int[] boundaryRects = NO_RECTS;
+    /** rectangles of the other polygons of this cell */
+    private int[] interiorRects = NO_RECTS;
+    /** rectangles of the interior polygons smaller than minimal area, and their areas */
+    private final List<int[]> violations = new ArrayList<int[]>();
+    private final List<Long> violationAreas = new ArrayList<Long>();
+    /** clean subcell instances */
+    private final List<CellAbstract> cleanSubcells = new ArrayList<CellAbstract>();
+    private final List<ManhattanOrientation> cleanOrients = new ArrayList<ManhattanOrientation>();
+    private int[] cleanAnchors = NO_RECTS;
+    /** true if this cell or a clean subcell instance below it has violations */
+    private boolean hasViolations;
+    /** boundary rectangles in each orientation, computed on demand */
+    private final int[][] orientedBoundaryRects = new int[ManhattanOrientation.values().length][];
+    /** lexigraphically largest vertex of each violation in each orientation, computed on demand */
+    private final int[][] orientedVertices = new int[ManhattanOrientation.values().length][];
+
+    CellAbstract(LayoutCell cell) {
+        this.cell = cell;
+        minX = cell.getBoundingMinX();
+        minY = cell.getBoundingMinY();
+        maxX = cell.getBoundingMaxX();
+        maxY = cell.getBoundingMaxY();
+    }
+
+    /**
+     * Merge the geometry of the cell.
+     * The abstracts of all subcells must be computed already.
+     * @param subcells finds the abstract of a subcell
+     * @param minArea minimal area of valid polygon
+     * @param isTop true if this is the top cell, whose polygons are all final
+     */
+    void compute(SubcellAbstracts subcells, long minArea, boolean isTop) {
+        // collect own rectangles and instance bounding boxes
+        final int numRects = cell.getNumRectangles();
+        final int numSubcells = cell.getNumSubcells();
+        final int[] boxes = new int[(numRects + numSubcells) * 4];
+        cell.readRectangleCoords(boxes, 0, numRects);
+        final CellAbstract[] subs = new CellAbstract[numSubcells];
+        final ManhattanOrientation[] orients = new ManhattanOrientation[numSubcells];
+        final int[] anchors = new int[numSubcells * 2];
+        final SubcellAbstracts subcellAbstracts = subcells;
+        cell.traverseSubcellInstances(new LayoutCell.SubcellHandler() {
+
+            private int i = 0;
+
+            public void apply(LayoutCell subCell, int anchorX, int anchorY, ManhattanOrientation orient) {
+                CellAbstract sub = subcellAbstracts.get(subCell);
+                subs[i] = sub;
+                orients[i] = orient;
+                anchors[i * 2 + 0] = anchorX;
+                anchors[i * 2 + 1] = anchorY;
+                int b = (numRects + i) * 4;
+                boxes[b + 0] = sub.minX;
+                boxes[b + 1] = sub.minY;
+                boxes[b + 2] = sub.maxX;
+                boxes[b + 3] = sub.maxY;
+                orient.transformRects(boxes, b, 1);
+                boxes[b + 0] += anchorX;
+                boxes[b + 1] += anchorY;
+                boxes[b + 2] += anchorX;
+                boxes[b + 3] += anchorY;
+                i++;
+            }
+        });
+        boolean[] intruded = findIntrudedInstances(boxes, numRects, numSubcells);
+
+        RectMerger merger = new RectMerger();
+        for (int i = 0; i < numRects; i++) {
+            merger.add(boxes[i * 4 + 0], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3]);
+        }
+        int numClean = 0;
+        for (int i = 0; i < numSubcells; i++) {
+            if (intruded[i]) {
+                subs[i].addAllRects(merger, orients[i], anchors[i * 2 + 0], anchors[i * 2 + 1]);
+            } else {
+                int[] rects = subs[i].getBoundaryRects(orients[i]);
+                merger.add(rects, rects.length / 4, ManhattanOrientation.R0, anchors[i * 2 + 0], anchors[i * 2 + 1]);
+                numClean++;
+            }
+        }
+        cleanAnchors = new int[numClean * 2];
+        for (int i = 0; i < numSubcells; i++) {
+            if (!intruded[i]) {
+                cleanAnchors[cleanSubcells.size() * 2 + 0] = anchors[i * 2 + 0];
+                cleanAnchors[cleanSubcells.size() * 2 + 1] = anchors[i * 2 + 1];
+                cleanSubcells.add(subs[i]);
+                cleanOrients.add(orients[i]);
+                hasViolations |= subs[i].hasViolations;
+            }
+        }
+
+        int numBoundary = 0, numInterior = 0;
+        List<RectMerger.MergedPolygon> polygons = merger.merge();
+        boolean[] boundary = new boolean[polygons.size()];
+        for (int i = 0; i < polygons.size(); i++) {
+            RectMerger.MergedPolygon poly = polygons.get(i);
+            boundary[i] = !isTop && poly.touches(minX, minY, maxX, maxY);
+            if (boundary[i]) {
+                numBoundary += poly.rects.length;
+            } else {
+                numInterior += poly.rects.length;
+                if (poly.area < minArea) {
+                    violations.add(poly.rects);
+                    violationAreas.add(Long.valueOf(poly.area));
+                    hasViolations = true;
+                }
+            }
+        }
+        boundaryRects = new int[numBoundary];
+        interiorRects = new int[numInterior];
+        numBoundary = numInterior = 0;
+        for (int i = 0; i < polygons.size(); i++) {
+            int[] rects = polygons.get(i).rects;
+            if (boundary[i]) {
+                System.arraycopy(rects, 0, boundaryRects, numBoundary, rects.length);
+                numBoundary += rects.length;
+            } else {
+                System.arraycopy(rects, 0, interiorRects, numInterior, rects.length);
+                numInterior += rects.length;
+            }
+        }
+    }
+
+    /**
+     * Find the subcell instances that other geometry of the cell reaches into.
+     * Two boxes interact if their interiors overlap; abutting boxes don't.
+     * The scan goes from left to right; boxes that are still open are kept sorted by minY,
+     * except unusually tall boxes, which are checked against every box.
+     * @param boxes own rectangles followed by bounding boxes of instances
+     * @param numRects the number of own rectangles
+     * @param numSubcells the number of instances
+     * @return a flag for each instance
+     */
+    private static boolean[] findIntrudedInstances(final int[] boxes, int numRects, int numSubcells) {
+        boolean[] intruded = new boolean[numSubcells];
+        int numBoxes = numRects + numSubcells;
+        if (numSubcells == 0 || numBoxes < 2) {
+            return intruded;
+        }
+        int[] heights = new int[numBoxes];
+        for (int i = 0; i < numBoxes; i++) {
+            heights[i] = boxes[i * 4 + 3] - boxes[i * 4 + 1];
+        }
+        Arrays.sort(heights);
+        long tallHeight = Math.max(1, 4L * heights[numBoxes * 9 / 10]);
+
+        long[] byMinX = new long[numBoxes];
+        for (int i = 0; i < numBoxes; i++) {
+            byMinX[i] = ((long) boxes[i * 4 + 0] << 32) | i;
+        }
+        Arrays.sort(byMinX);
+        PriorityQueue<Long> byMaxX = new PriorityQueue<Long>();
+        TreeSet<Long> byMinY = new TreeSet<Long>();
+        List<Integer> tall = new ArrayList<Integer>();
+        for (int k = 0; k < numBoxes; k++) {
+            int r = (int) byMinX[k];
+            int rMinX = boxes[r * 4 + 0], rMinY = boxes[r * 4 + 1], rMaxX = boxes[r * 4 + 2], rMaxY = boxes[r * 4 + 3];
+            if (rMinX >= rMaxX || rMinY >= rMaxY) {
+                continue;
+            }
+            while (!byMaxX.isEmpty() && (byMaxX.peek().longValue() >> 32) <= rMinX) {
+                int c = (int) byMaxX.poll().longValue();
+                if (!byMinY.remove(Long.valueOf(((long) boxes[c * 4 + 1] << 32) | c))) {
+                    tall.remove(Integer.valueOf(c));
+                }
+            }
+            List<Integer> candidates = new ArrayList<Integer>(tall);
+            for (Long key : byMinY.subSet(Long.valueOf((rMinY - tallHeight) << 32), Long.valueOf((long) rMaxY << 32))) {
+                candidates.add(Integer.valueOf((int) key.longValue()));
+            }
+            for (Integer ci : candidates) {
+                int c = ci.intValue();
+                if (boxes[c * 4 + 1] < rMaxY && boxes[c * 4 + 3] > rMinY) {
+                    if (c >= numRects) {
+                        intruded[c - numRects] = true;
+                    }
+                    if (r >= numRects) {
+                        intruded[r - numRects] = true;
+                    }
+                }
+            }
+            byMaxX.add(Long.valueOf(((long) rMaxX << 32) | r));
+            if (rMaxY - rMinY > tallHeight) {
+                tall.add(Integer.valueOf(r));
+            } else {
+                byMinY.add(Long.valueOf(((long) rMinY << 32) | r));
+            }
+        }
+        return intruded;
+    }
+
+    /**
+     * Add all geometry of an instance of this cell.
+     */
+    private void addAllRects(RectMerger merger, ManhattanOrientation orient, int x, int y) {
+        merger.add(boundaryRects, boundaryRects.length / 4, orient, x, y);
+        merger.add(interiorRects, interiorRects.length / 4, orient, x, y);
+        for (int i = 0; i < cleanSubcells.size(); i++) {
+            Point p = new Point(cleanAnchors[i * 2 + 0], cleanAnchors[i * 2 + 1]).transform(orient);
+            cleanSubcells.get(i).addAllRects(merger, orient.concatenate(cleanOrients.get(i)), p.getX() + x, p.getY() + y);
+        }
+    }
+
+    /**
+     * @return the boundary rectangles of this cell in an orientation
+     */
+    private synchronized int[] getBoundaryRects(ManhattanOrientation orient) {
+        int[] rects = orientedBoundaryRects[orient.ordinal()];
+        if (rects == null) {
+            rects = boundaryRects.clone();
+            orient.transformRects(rects, 0, rects.length / 4);
+            orientedBoundaryRects[orient.ordinal()] = rects;
+        }
+        return rects;
+    }
+
+    /**
+     * @return the lexigraphically largest vertices of the violations of this cell in an orientation
+     */
+    private synchronized int[] getViolationVertices(ManhattanOrientation orient) {
+        int[] vertices = orientedVertices[orient.ordinal()];
+        if (vertices == null) {
+            vertices = new int[violations.size() * 2];
+            for (int i = 0; i < violations.size(); i++) {
+                int[] rects = violations.get(i).clone();
+                orient.transformRects(rects, 0, rects.length / 4);
+                int vx = Integer.MIN_VALUE;
+                int vy = Integer.MIN_VALUE;
+                for (int j = 0; j < rects.length; j += 4) {
+                    if (rects[j + 2] > vx || rects[j + 2] == vx && rects[j + 3] > vy) {
+                        vx = rects[j + 2];
+                        vy = rects[j + 3];
+                    }
+                }
+                vertices[i * 2 + 0] = vx;
+                vertices[i * 2 + 1] = vy;
+            }
+            orientedVertices[orient.ordinal()] = vertices;
+        }
+        return vertices;
+    }
+
+    /**
+     * Report the violations of an instance of this cell and of the clean instances below it.
+     */
+    void report(ErrorLogger errorLogger, ManhattanOrientation orient, int x, int y) {
+        if (!hasViolations) {
+            return;
+        }
+        int[] vertices = getViolationVertices(orient);
+        for (int i = 0; i < violationAreas.size(); i++) {
+            errorLogger.reportMinAreaViolation(violationAreas.get(i).longValue(), vertices[i * 2 + 0] + x, vertices[i * 2 + 1] + y);
+        }
+        for (int i = 0; i < cleanSubcells.size(); i++) {
+            Point p = new Point(cleanAnchors[i * 2 + 0], cleanAnchors[i * 2 + 1]).transform(orient);
+            cleanSubcells.get(i).report(errorLogger, orient.concatenate(cleanOrients.get(i)), p.getX() + x, p.getY() + y);
+        }
+    }
+
+    /**
+     * Finds the abstract of a subcell.
+     */
+    interface SubcellAbstracts {
+
+        CellAbstract get(LayoutCell subCell);
+    }
+}
@@ -0,0 +1,227 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HierarchicalChecker.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.minarea.hierarchical;
+
+import com.sun.electric.api.minarea.LayoutCell;
+import com.sun.electric.api.minarea.ManhattanOrientation;
+import com.sun.electric.api.minarea.MinAreaChecker;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hierarchical MinAreaChecker.
+ * Each unique LayoutCell is merged once, bottom-up, from its own rectangles and the abstracts
+ * of its subcells (see CellAbstract), so identical instances are not flattened again.
+ * Cells that don't instantiate one another are merged concurrently.
+ */
+public class HierarchicalChecker implements MinAreaChecker {
+
+    /** name of the parameter with the number of worker threads */
+    public static final String NUM_THREADS = "numThreads";
+    private final int DEBUG = 1;
+
+    /**
+     *
+     * @return the algorithm name
+     */
+    public String getAlgorithmName() {
+        return "Hierarchical";
+    }
+
+    /**
+     *
+     * @return the names and default values of algorithm parameters
+     */
+    public Properties getDefaultParameters() {
+        Properties parameters = new Properties();
+        parameters.setProperty(NUM_THREADS, String.valueOf(Runtime.getRuntime().availableProcessors()));
+        return parameters;
+    }
+
+    /**
+     * @param topCell
+     *            top cell of the layout
+     * @param minArea
+     *            minimal area of valid polygon
+     * @param parameters
+     *            algorithm parameters
+     * @param errorLogger
+     *            an API to report violations
+     */
+    public void check(LayoutCell topCell, long minArea, Properties parameters, ErrorLogger errorLogger) {
+        String defaultNumThreads = getDefaultParameters().getProperty(NUM_THREADS);
+        int numThreads = Integer.parseInt(parameters.getProperty(NUM_THREADS, defaultNumThreads));
+        UniqueCells uniqueCells = new UniqueCells(topCell, minArea);
+        if (numThreads > 1 && uniqueCells.abstracts.size() > 1) {
+            uniqueCells.computeConcurrently(numThreads);
+        } else {
+            uniqueCells.computeInOrder();
+        }
+        if (DEBUG >= 1) {
+            System.out.println(uniqueCells.abstracts.size() + " unique cells");
+        }
+        uniqueCells.get(topCell).report(errorLogger, ManhattanOrientation.R0, 0, 0);
+    }
+
+    /**
+     * The abstracts of the unique cells below the top cell.
+     * The calling thread hands each cell to the worker threads once all of its subcells are merged,
+     * so the dependency counts are only touched by one thread.
+     */
+    private static class UniqueCells implements CellAbstract.SubcellAbstracts {
+
+        private final LayoutCell topCell;
+        private final long minArea;
+        /** index of each unique cell in abstracts */
+        private final Map<LayoutCell, Integer> indices = new IdentityHashMap<LayoutCell, Integer>();
+        /** abstracts of the unique cells, each after the abstracts of its subcells */
+        private final List<CellAbstract> abstracts = new ArrayList<CellAbstract>();
+        /** for each unique cell, the indices of the unique cells that instantiate it */
+        private final List<List<Integer>> users = new ArrayList<List<Integer>>();
+        /** for each unique cell, the number of unique cells it instantiates */
+        private final List<Integer> numSubcells = new ArrayList<Integer>();
+
+        private UniqueCells(LayoutCell topCell, long minArea) {
+            this.topCell = topCell;
+            this.minArea = minArea;
+            indexCell(topCell);
+        }
+
+        /**
+         * Index a cell after the cells it instantiates.
+         * @return the index of the cell
+         */
+        private int indexCell(LayoutCell cell) {
+            Integer index = indices.get(cell);
+            if (index != null) {
+                return index.intValue();
+            }
+            final Map<LayoutCell, LayoutCell> subcells = new IdentityHashMap<LayoutCell, LayoutCell>();
+            cell.traverseSubcellInstances(new LayoutCell.SubcellHandler() {
+
+                public void apply(LayoutCell subCell, int anchorX, int anchorY, ManhattanOrientation orient) {
+                    subcells.put(subCell, subCell);
+                }
+            });
+            List<Integer> subIndices = new ArrayList<Integer>();
+            for (LayoutCell subCell : subcells.keySet()) {
+                subIndices.add(Integer.valueOf(indexCell(subCell)));
+            }
+            int i = abstracts.size();
+            indices.put(cell, Integer.valueOf(i));
+            abstracts.add(new CellAbstract(cell));
+            users.add(new ArrayList<Integer>());
+            numSubcells.add(Integer.valueOf(subIndices.size()));
+            for (Integer sub : subIndices) {
+                users.get(sub.intValue()).add(Integer.valueOf(i));
+            }
+            return i;
+        }
+
+        public CellAbstract get(LayoutCell subCell) {
+            return abstracts.get(indices.get(subCell).intValue());
+        }
+
+        private void compute(int i) {
+            CellAbstract cellAbstract = abstracts.get(i);
+            cellAbstract.compute(this, minArea, cellAbstract.cell == topCell);
+        }
+
+        private void computeInOrder() {
+            for (int i = 0; i < abstracts.size(); i++) {
+                compute(i);
+            }
+        }
+
+        private void computeConcurrently(int numThreads) {
+            int[] numUnmerged = new int[abstracts.size()];
+            for (int i = 0; i < numUnmerged.length; i++) {
+                numUnmerged[i] = numSubcells.get(i).intValue();
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MinArea");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            CompletionService<Integer> merged = new ExecutorCompletionService<Integer>(pool);
+            try {
+                int numRunning = 0;
+                for (int i = 0; i < numUnmerged.length; i++) {
+                    if (numUnmerged[i] == 0) {
+                        submit(merged, i);
+                        numRunning++;
+                    }
+                }
+                while (numRunning > 0) {
+                    int i = merged.take().get().intValue();
+                    numRunning--;
+                    for (Integer user : users.get(i)) {
+                        if (--numUnmerged[user.intValue()] == 0) {
+                            submit(merged, user.intValue());
+                            numRunning++;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private void submit(CompletionService<Integer> merged, final int i) {
+            merged.submit(new Callable<Integer>() {
+
+                public Integer call() {
+                    compute(i);
+                    return Integer.valueOf(i);
+                }
+            });
+        }
+    }
+}
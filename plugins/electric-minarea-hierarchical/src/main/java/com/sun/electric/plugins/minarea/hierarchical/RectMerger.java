@@ -0,0 +1,311 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RectMerger.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.minarea.hierarchical;
+
+import com.sun.electric.api.minarea.ManhattanOrientation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges Manhattan rectangles into polygons.
+ * Rectangles that overlap or share an edge segment belong to the same polygon.
+ * Rectangles that touch only at a corner don't, whichever way the corner points. DeltaMerge
+ * joins them when the left one is above the right one, so its polygons depend on the
+ * orientation of the layout, while a cell merged here has the same polygons in every
+ * orientation of its instances.
+ * Each polygon is returned as a set of disjoint rectangles.
+ */
+class RectMerger {
+
+    /**
+     * A merged polygon.
+     */
+    static class MergedPolygon {
+
+        /** disjoint rectangles (minX, minY, maxX, maxY) that cover the polygon */
+        final int[] rects;
+        /** area of the polygon without its holes */
+        final long area;
+        /** lexigraphically largest vertex */
+        final int vertexX, vertexY;
+
+        private MergedPolygon(int[] rects) {
+            this.rects = rects;
+            long a = 0;
+            int vx = Integer.MIN_VALUE;
+            int vy = Integer.MIN_VALUE;
+            for (int i = 0; i < rects.length; i += 4) {
+                a += (long) (rects[i + 2] - rects[i + 0]) * (rects[i + 3] - rects[i + 1]);
+                if (rects[i + 2] > vx || rects[i + 2] == vx && rects[i + 3] > vy) {
+                    vx = rects[i + 2];
+                    vy = rects[i + 3];
+                }
+            }
+            area = a;
+            vertexX = vx;
+            vertexY = vy;
+        }
+
+        /**
+         * @return true if some rectangle of the polygon reaches a side of the box
+         */
+        boolean touches(int minX, int minY, int maxX, int maxY) {
+            for (int i = 0; i < rects.length; i += 4) {
+                if (rects[i + 0] <= minX || rects[i + 1] <= minY || rects[i + 2] >= maxX || rects[i + 3] >= maxY) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    private int[] coords = new int[64];
+    private int numRects;
+
+    /**
+     * Add a rectangle. Empty rectangles are ignored.
+     */
+    void add(int minX, int minY, int maxX, int maxY) {
+        if (minX >= maxX || minY >= maxY) {
+            return;
+        }
+        if (numRects * 4 >= coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[numRects * 4 + 0] = minX;
+        coords[numRects * 4 + 1] = minY;
+        coords[numRects * 4 + 2] = maxX;
+        coords[numRects * 4 + 3] = maxY;
+        numRects++;
+    }
+
+    /**
+     * Add rectangles placed by a subcell instance.
+     * @param rects rectangles in the coordinates of the subcell
+     * @param count the number of rectangles
+     * @param orient orientation of the instance
+     * @param x x-coordinate of the anchor of the instance
+     * @param y y-coordinate of the anchor of the instance
+     */
+    void add(int[] rects, int count, ManhattanOrientation orient, int x, int y) {
+        while ((numRects + count) * 4 > coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        System.arraycopy(rects, 0, coords, numRects * 4, count * 4);
+        orient.transformRects(coords, numRects * 4, count);
+        for (int i = numRects * 4, end = (numRects + count) * 4; i < end; i += 2) {
+            coords[i + 0] += x;
+            coords[i + 1] += y;
+        }
+        numRects += count;
+    }
+
+    /**
+     * Merge the rectangles added so far.
+     * The scan goes from left to right over the slabs between consecutive x-coordinates of rectangles.
+     * In each slab the y-intervals of the rectangles that cover it are merged, and intervals of
+     * adjacent slabs that share an edge segment are joined into the same polygon. Identical
+     * intervals of consecutive slabs are combined into one output rectangle.
+     * @return the polygons
+     */
+    List<MergedPolygon> merge() {
+        List<MergedPolygon> polygons = new ArrayList<MergedPolygon>();
+        if (numRects == 0) {
+            return polygons;
+        }
+        int[] xs = new int[numRects * 2];
+        for (int i = 0; i < numRects; i++) {
+            xs[i * 2 + 0] = coords[i * 4 + 0];
+            xs[i * 2 + 1] = coords[i * 4 + 2];
+        }
+        Arrays.sort(xs);
+        int numXs = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (numXs == 0 || xs[i] != xs[numXs - 1]) {
+                xs[numXs++] = xs[i];
+            }
+        }
+        int[] byMinX = sortedIndices(0);
+
+        // rectangles that cover the current slab, sorted by minY
+        int[] active = new int[16];
+        int numActive = 0;
+        int next = 0;
+
+        // merged intervals of the previous and the current slab: y0, y1, interval id, start of output rectangle
+        int[] prev = new int[16];
+        int numPrev = 0;
+        int[] cur = new int[16];
+        int numCur = 0;
+
+        int[] parents = new int[64];
+        int numIds = 0;
+        int[] out = new int[64];
+        int[] outIds = new int[16];
+        int numOut = 0;
+
+        for (int k = 0; k < numXs; k++) {
+            int x = xs[k];
+
+            // update the rectangles that cover the slab [x, xs[k+1]]
+            int n = 0;
+            for (int i = 0; i < numActive; i++) {
+                if (coords[active[i] * 4 + 2] > x) {
+                    active[n++] = active[i];
+                }
+            }
+            numActive = n;
+            for (; next < numRects && coords[byMinX[next] * 4 + 0] == x; next++) {
+                int r = byMinX[next];
+                if (numActive == active.length) {
+                    active = Arrays.copyOf(active, active.length * 2);
+                }
+                int pos = numActive;
+                while (pos > 0 && coords[active[pos - 1] * 4 + 1] > coords[r * 4 + 1]) {
+                    active[pos] = active[pos - 1];
+                    pos--;
+                }
+                active[pos] = r;
+                numActive++;
+            }
+
+            // merge intervals of the slab; touching intervals share a horizontal edge segment
+            numCur = 0;
+            for (int i = 0; i < numActive;) {
+                int y0 = coords[active[i] * 4 + 1];
+                int y1 = coords[active[i] * 4 + 3];
+                for (i++; i < numActive && coords[active[i] * 4 + 1] <= y1; i++) {
+                    y1 = Math.max(y1, coords[active[i] * 4 + 3]);
+                }
+                if (numCur * 4 == cur.length) {
+                    cur = Arrays.copyOf(cur, cur.length * 2);
+                }
+                if (numIds == parents.length) {
+                    parents = Arrays.copyOf(parents, parents.length * 2);
+                }
+                parents[numIds] = numIds;
+                cur[numCur * 4 + 0] = y0;
+                cur[numCur * 4 + 1] = y1;
+                cur[numCur * 4 + 2] = numIds++;
+                cur[numCur * 4 + 3] = x;
+                numCur++;
+            }
+
+            // join with intervals of the previous slab that share a vertical edge segment
+            for (int i = 0, j = 0; i < numPrev && j < numCur;) {
+                int lo = Math.max(prev[i * 4 + 0], cur[j * 4 + 0]);
+                int hi = Math.min(prev[i * 4 + 1], cur[j * 4 + 1]);
+                if (lo < hi) {
+                    union(parents, prev[i * 4 + 2], cur[j * 4 + 2]);
+                }
+                if (prev[i * 4 + 1] < cur[j * 4 + 1]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+
+            // continue identical intervals, close the others
+            for (int i = 0, j = 0; i < numPrev;) {
+                while (j < numCur && cur[j * 4 + 0] < prev[i * 4 + 0]) {
+                    j++;
+                }
+                if (j < numCur && cur[j * 4 + 0] == prev[i * 4 + 0] && cur[j * 4 + 1] == prev[i * 4 + 1]) {
+                    cur[j * 4 + 3] = prev[i * 4 + 3];
+                } else {
+                    if (numOut * 4 == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                        outIds = Arrays.copyOf(outIds, outIds.length * 2);
+                    }
+                    out[numOut * 4 + 0] = prev[i * 4 + 3];
+                    out[numOut * 4 + 1] = prev[i * 4 + 0];
+                    out[numOut * 4 + 2] = x;
+                    out[numOut * 4 + 3] = prev[i * 4 + 1];
+                    outIds[numOut++] = prev[i * 4 + 2];
+                }
+                i++;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+            numPrev = numCur;
+        }
+        assert numPrev == 0;
+
+        // group output rectangles by polygon
+        int[] roots = new int[numOut];
+        int[] counts = new int[numIds + 1];
+        for (int i = 0; i < numOut; i++) {
+            roots[i] = find(parents, outIds[i]);
+            counts[roots[i] + 1]++;
+        }
+        for (int i = 0; i < numIds; i++) {
+            counts[i + 1] += counts[i];
+        }
+        int[] starts = counts.clone();
+        int[] grouped = new int[numOut * 4];
+        for (int i = 0; i < numOut; i++) {
+            System.arraycopy(out, i * 4, grouped, counts[roots[i]]++ * 4, 4);
+        }
+        for (int id = 0; id < numIds; id++) {
+            if (starts[id + 1] > starts[id]) {
+                polygons.add(new MergedPolygon(Arrays.copyOfRange(grouped, starts[id] * 4, starts[id + 1] * 4)));
+            }
+        }
+        return polygons;
+    }
+
+    /** Returns indices of the rectangles sorted by one coordinate. */
+    private int[] sortedIndices(int coord) {
+        long[] keys = new long[numRects];
+        for (int i = 0; i < numRects; i++) {
+            keys[i] = ((long) coords[i * 4 + coord] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] indices = new int[numRects];
+        for (int i = 0; i < numRects; i++) {
+            indices[i] = (int) keys[i];
+        }
+        return indices;
+    }
+
+    private static int find(int[] parents, int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private static void union(int[] parents, int id1, int id2) {
+        int root1 = find(parents, id1);
+        int root2 = find(parents, id2);
+        if (root1 < root2) {
+            parents[root2] = root1;
+        } else {
+            parents[root1] = root2;
+        }
+    }
+}
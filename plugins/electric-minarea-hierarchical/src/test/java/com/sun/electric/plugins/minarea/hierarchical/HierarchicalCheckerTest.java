@@ -0,0 +1,188 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HierarchicalCheckerTest.java
+ *
+ * Copyright (c) 2011, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.plugins.minarea.hierarchical;
+
+import com.sun.electric.api.minarea.LayoutCell;
+import com.sun.electric.api.minarea.ManhattanOrientation;
+import com.sun.electric.api.minarea.MinAreaChecker;
+import com.sun.electric.api.minarea.geometry.Point;
+import com.sun.electric.api.minarea.launcher.DefaultLayoutCell;
+import com.sun.electric.api.minarea.launcher.Launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests that the hierarchical checker reports the same violations as
+ * a check of the flattened layout.
+ */
+public class HierarchicalCheckerTest {
+
+    @Test
+    public void testGetAlgorithmName() {
+        assertEquals("Hierarchical", new HierarchicalChecker().getAlgorithmName());
+    }
+
+    @Test
+    public void testLauncher() {
+        Launcher.main(new String[] {"SimpleHierarchy_CPG.lay", "1000", "com.sun.electric.plugins.minarea.hierarchical.HierarchicalChecker"});
+    }
+
+    @Test
+    public void testCornerTouch() {
+        DefaultLayoutCell cell = new DefaultLayoutCell("corners");
+        cell.addRectangle(0, 0, 10, 10);
+        cell.addRectangle(10, 10, 20, 20);
+        cell.addRectangle(30, 10, 40, 20);
+        cell.addRectangle(40, 0, 50, 10);
+        cell.addRectangle(60, 0, 70, 10);
+        cell.addRectangle(70, 5, 80, 10);
+        assertEquals(sorted("100 10 10", "100 20 20", "100 40 20", "100 50 10", "150 80 10"),
+                check(cell, 1000, 1));
+    }
+
+    /**
+     * DeltaMerge joins the second pair of rectangles of testCornerTouch into one polygon of
+     * area 200, but not the first pair; turned by 90 degrees, it is the other way round. The
+     * hierarchical checker joins neither pair, so every instance of a cell has the same polygons.
+     */
+    @Test
+    public void testCornerTouchOrientations() {
+        DefaultLayoutCell cell = new DefaultLayoutCell("corners");
+        cell.addRectangle(0, 0, 10, 10);
+        cell.addRectangle(10, 10, 20, 20);
+        cell.addRectangle(30, 10, 40, 20);
+        cell.addRectangle(40, 0, 50, 10);
+        for (ManhattanOrientation orient : ManhattanOrientation.values()) {
+            DefaultLayoutCell top = new DefaultLayoutCell("top");
+            top.addSubCell(cell, 0, 0, orient);
+            List<String> areas = new ArrayList<String>();
+            for (String violation : check(top, 1000, 1)) {
+                areas.add(violation.substring(0, violation.indexOf(' ')));
+            }
+            assertEquals(orient.toString(), sorted("100", "100", "100", "100"), areas);
+        }
+    }
+
+    @Test
+    public void testHierarchyMatchesFlat() {
+        ManhattanOrientation[] orients = ManhattanOrientation.values();
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            LayoutCell[] leaves = {randomLeaf(random, "a", 8), randomLeaf(random, "b", 8), randomLeaf(random, "c", 6)};
+            DefaultLayoutCell[] rows = new DefaultLayoutCell[2];
+            for (int k = 0; k < rows.length; k++) {
+                rows[k] = new DefaultLayoutCell("row" + k);
+                for (int i = 0; i < 4; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        // mostly abutting instances, some overlapping ones
+                        int dx = random.nextInt(5) == 0 ? random.nextInt(3) : 0;
+                        rows[k].addSubCell(leaves[random.nextInt(leaves.length)], i * 8 + dx, j * 8, orients[random.nextInt(orients.length)]);
+                    }
+                }
+                addRandomRects(random, rows[k], 30, 20);
+            }
+            DefaultLayoutCell top = new DefaultLayoutCell("top");
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    top.addSubCell(rows[random.nextInt(rows.length)], i * 40, j * 40, orients[random.nextInt(orients.length)]);
+                }
+            }
+            addRandomRects(random, top, 100, 100);
+            long minArea = 1 + random.nextInt(40);
+
+            DefaultLayoutCell flat = new DefaultLayoutCell("flat");
+            flatten(flat, top, 0, 0, ManhattanOrientation.R0);
+            List<String> expected = check(flat, minArea, 1);
+            assertEquals(expected, check(top, minArea, 1));
+            assertEquals(expected, check(top, minArea, 4));
+        }
+    }
+
+    private static LayoutCell randomLeaf(Random random, String name, int size) {
+        DefaultLayoutCell cell = new DefaultLayoutCell(name);
+        cell.addRectangle(0, 0, 1, 1);
+        cell.addRectangle(size - 1, size - 1, size, size);
+        for (int n = 1 + random.nextInt(6); n > 0; n--) {
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            cell.addRectangle(x, y, Math.min(size, x + 1 + random.nextInt(4)), Math.min(size, y + 1 + random.nextInt(4)));
+        }
+        return cell;
+    }
+
+    private static void addRandomRects(Random random, DefaultLayoutCell cell, int w, int h) {
+        for (int n = random.nextInt(3); n > 0; n--) {
+            int x = random.nextInt(w);
+            int y = random.nextInt(h);
+            cell.addRectangle(x, y, x + 1 + random.nextInt(w / 3), y + 1 + random.nextInt(3));
+        }
+    }
+
+    private static void flatten(final DefaultLayoutCell flat, LayoutCell cell, final int x, final int y, final ManhattanOrientation orient) {
+        int[] coords = new int[cell.getNumRectangles() * 4];
+        cell.readRectangleCoords(coords, 0, cell.getNumRectangles());
+        orient.transformRects(coords, 0, cell.getNumRectangles());
+        for (int i = 0; i < coords.length; i += 4) {
+            flat.addRectangle(coords[i + 0] + x, coords[i + 1] + y, coords[i + 2] + x, coords[i + 3] + y);
+        }
+        cell.traverseSubcellInstances(new LayoutCell.SubcellHandler() {
+
+            public void apply(LayoutCell subCell, int anchorX, int anchorY, ManhattanOrientation subOrient) {
+                Point p = new Point(anchorX, anchorY).transform(orient);
+                flatten(flat, subCell, p.getX() + x, p.getY() + y, orient.concatenate(subOrient));
+            }
+        });
+    }
+
+    private static List<String> check(LayoutCell topCell, long minArea, int numThreads) {
+        final List<String> violations = new ArrayList<String>();
+        Properties parameters = new Properties();
+        parameters.setProperty(HierarchicalChecker.NUM_THREADS, String.valueOf(numThreads));
+        new HierarchicalChecker().check(topCell, minArea, parameters, new MinAreaChecker.ErrorLogger() {
+
+            public synchronized void reportMinAreaViolation(long area, int x, int y) {
+                violations.add(area + " " + x + " " + y);
+            }
+
+            public void printReports() {
+            }
+        });
+        Collections.sort(violations);
+        return violations;
+    }
+
+    private static List<String> sorted(String... violations) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, violations);
+        Collections.sort(list);
+        return list;
+    }
+}